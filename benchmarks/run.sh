@@ -0,0 +1,11 @@
+#!/bin/sh
+# Build the application and the benchmarks, then run the benchmarks. The results are written as JSON
+# to benchmarks/results/<commit>.json, to be compared across commits. Extra arguments are passed to
+# JMH, e.g. a regular expression selecting the benchmarks: ./benchmarks/run.sh Serialization
+set -e
+cd "$(dirname "$0")/.."
+mvn -B -q install -DskipTests -Dmaven.javadoc.skip=true -Dmaven.source.skip=true
+mvn -B -q -f benchmarks/pom.xml package
+mkdir -p benchmarks/results
+commit=$(git rev-parse --short HEAD 2>/dev/null || echo local)
+java -jar benchmarks/target/benchmarks.jar -rf json -rff "benchmarks/results/$commit.json" "$@"
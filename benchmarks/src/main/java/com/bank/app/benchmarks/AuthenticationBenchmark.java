@@ -0,0 +1,66 @@
+package com.bank.app.benchmarks;
+
+import com.bank.app.auth.AccessTokenPrincipal;
+import com.bank.app.auth.JwksKeyStore;
+import com.bank.app.auth.LocalJwtVerifier;
+import com.bank.app.auth.OktaOAuthAuthenticator;
+import com.bank.app.auth.VerifiedTokenCache;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.util.Duration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Authentication of a bearer token: signature and claims verification against a local key set,
+ * with and without the verified token cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthenticationBenchmark {
+
+    @Param({"false", "true"})
+    public boolean tokenCache;
+
+    private OktaOAuthAuthenticator authenticator;
+    private String accessToken;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper mapper = Jackson.newObjectMapper();
+        Tokens tokens = new Tokens(mapper);
+        // never started, the key set is loaded once and not refreshed
+        JwksKeyStore keyStore = new JwksKeyStore(tokens.writeKeySet().toUri().toURL(), mapper, null,
+                Duration.hours(1), Duration.minutes(1), Duration.seconds(5));
+        if (!keyStore.refresh())
+            throw new IllegalStateException("Failed to load the key set");
+        LocalJwtVerifier verifier = new LocalJwtVerifier(keyStore, mapper,
+                Tokens.ISSUER, Tokens.AUDIENCE, Tokens.CLIENT_ID, Duration.seconds(30));
+        authenticator = new OktaOAuthAuthenticator(verifier,
+                tokenCache ? new VerifiedTokenCache(new MetricRegistry(), 10000, Duration.minutes(5)) : null);
+        accessToken = tokens.accessToken("jane.doe@example.com", true);
+    }
+
+    @Benchmark
+    public Optional<AccessTokenPrincipal> authenticate() throws AuthenticationException {
+        return authenticator.authenticate(accessToken);
+    }
+}
@@ -0,0 +1,86 @@
+package com.bank.app.benchmarks;
+
+import com.bank.app.model.Account;
+import com.bank.app.model.Customer;
+import com.bank.app.model.Transaction;
+import org.hibernate.SessionFactory;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Model objects of realistic shape, and a session factory for DAOs whose database access is
+ * overridden.
+ */
+public final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /**
+     * @return a session factory failing on any call, for DAOs which never reach the database.
+     */
+    public static SessionFactory noSessionFactory() {
+        return (SessionFactory) Proxy.newProxyInstance(Fixtures.class.getClassLoader(),
+                new Class<?>[]{SessionFactory.class},
+                (proxy, method, args) -> {
+                    throw new UnsupportedOperationException("No database in the benchmarks: " + method.getName());
+                });
+    }
+
+    public static Account account(String id, Account.AccountType type, long balance) {
+        Account account = new Account();
+        account.setId(id);
+        account.setAccountType(type);
+        account.setBalance(balance);
+        account.setCreatedOn(new Date());
+        return account;
+    }
+
+    /**
+     * A customer with accounts, each with posted transactions.
+     *
+     * @param accounts - number of accounts.
+     * @param transactionsPerAccount - number of transactions of every account.
+     * @return the customer.
+     */
+    public static Customer customer(int accounts, int transactionsPerAccount) {
+        Customer customer = new Customer();
+        customer.setId("CU0000017a2b3c4d5e000000000001");
+        customer.setFirstName("Jane");
+        customer.setLastName("Doe");
+        customer.setAddress("1 Main Street, Springfield");
+        customer.setEmail("jane.doe@example.com");
+        customer.setPhone("+1 555 0100");
+        customer.setDateOfBirth("01-02-1980");
+        customer.setSsn("123-45-6789");
+        List<Account> customerAccounts = new ArrayList<>(accounts);
+        long postedOn = System.currentTimeMillis();
+        for (int a = 0; a < accounts; a++) {
+            Account account = account(String.format("SA0000017a2b3c4d5e%012d", a), Account.AccountType.Savings, 0);
+            account.setCustomer(customer);
+            List<Transaction> transactions = new ArrayList<>(transactionsPerAccount);
+            long balance = 0;
+            for (int t = 0; t < transactionsPerAccount; t++) {
+                Transaction transaction = new Transaction();
+                transaction.setId(String.format("CR0000017a2b3c4d5e%06d%06d", a, t));
+                transaction.setAccount(account);
+                transaction.setTransactionType(t % 3 == 0 ? Transaction.TransactionType.DEBIT : Transaction.TransactionType.CREDIT);
+                transaction.setAmmount(1234 + t);
+                transaction.setBalanceBefore(balance);
+                balance += transaction.getTransactionType() == Transaction.TransactionType.CREDIT
+                        ? transaction.getAmmount() : -transaction.getAmmount();
+                transaction.setBalanceAfter(balance);
+                transaction.setPostedOn(new Date(postedOn + t * 1000L));
+                transactions.add(transaction);
+            }
+            account.setTransactions(transactions);
+            account.setBalance(balance);
+            customerAccounts.add(account);
+        }
+        customer.setAccounts(customerAccounts);
+        return customer;
+    }
+}
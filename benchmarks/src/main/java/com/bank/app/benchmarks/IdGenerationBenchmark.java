@@ -0,0 +1,68 @@
+package com.bank.app.benchmarks;
+
+import com.bank.app.db.AccountDAO;
+import com.bank.app.db.Shards;
+import com.bank.app.id.IdGenerator;
+import com.bank.app.id.TimeOrderedIdGenerator;
+import com.bank.app.model.Account;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Identifier generation, alone and as done by AccountDAO.add, from one and from several threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdGenerationBenchmark {
+
+    private IdGenerator idGenerator;
+    private AccountDAO accountDAO;
+
+    @Setup
+    public void setUp() {
+        idGenerator = new TimeOrderedIdGenerator(1);
+        accountDAO = new AccountDAO(Fixtures.noSessionFactory(), Shards.single(Fixtures.noSessionFactory()), idGenerator) {
+            @Override
+            protected Account persist(Account account) {
+                return account;
+            }
+        };
+    }
+
+    @State(Scope.Thread)
+    public static class NewAccount {
+        final Account account = Fixtures.account(null, Account.AccountType.Checking, 100);
+    }
+
+    @Benchmark
+    public String nextId() {
+        return idGenerator.nextId();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String nextIdContended() {
+        return idGenerator.nextId();
+    }
+
+    @Benchmark
+    public String addAccount(NewAccount newAccount) {
+        accountDAO.add(newAccount.account);
+        return newAccount.account.getId();
+    }
+}
@@ -0,0 +1,88 @@
+package com.bank.app.benchmarks;
+
+import com.bank.app.json.CachedWriterJsonProvider;
+import com.bank.app.json.JsonAcceleration;
+import com.bank.app.model.Transaction;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.jackson.JacksonMessageBodyProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response write of a page of transactions through the JSON provider of Jersey, as for
+ * GET /accounts/{id}/transactions: with a plain object mapper reading the properties by reflection,
+ * with the object mapper and provider of Dropwizard, and in the accelerated mode of the json config.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class JsonWriterBenchmark {
+
+    private static final Type TRANSACTIONS = new GenericType<List<Transaction>>() {}.getType();
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    @Param({"reflective", "dropwizard", "accelerated"})
+    public String mode;
+
+    @Param({"1000", "10000"})
+    public int transactions;
+
+    private JacksonMessageBodyProvider provider;
+    private List<Transaction> page;
+
+    @State(Scope.Thread)
+    public static class Buffer {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(1 << 20);
+    }
+
+    @Setup
+    public void setUp() {
+        switch (mode) {
+            case "reflective":
+                provider = new JacksonMessageBodyProvider(new ObjectMapper());
+                break;
+            case "dropwizard":
+                provider = new JacksonMessageBodyProvider(Jackson.newObjectMapper());
+                break;
+            case "accelerated":
+                provider = new CachedWriterJsonProvider(JsonAcceleration.configure(Jackson.newObjectMapper()));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mode " + mode);
+        }
+        page = Fixtures.customer(1, transactions).getAccounts().get(0).getTransactions();
+    }
+
+    @Benchmark
+    public int writeTransactions(Buffer buffer) throws IOException {
+        buffer.output.reset();
+        provider.writeTo(page, List.class, TRANSACTIONS, NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE,
+                new MultivaluedHashMap<>(), buffer.output);
+        return buffer.output.size();
+    }
+}
@@ -0,0 +1,130 @@
+package com.bank.app.benchmarks;
+
+import com.bank.app.db.CustomerDAO;
+import com.bank.app.db.EmployeeDAO;
+import com.bank.app.id.TimeOrderedIdGenerator;
+import com.bank.app.load.Seeder;
+import com.bank.app.model.Account;
+import com.bank.app.model.Customer;
+import com.bank.app.model.Employee;
+import com.bank.app.model.Transaction;
+import com.bank.app.search.MembershipFilter;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.context.internal.ManagedSessionContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Name search of the customers and employees through their DAOs, against an embedded H2 database
+ * seeded with a million rows of each: served by the trigram index, and by the '%term%' LIKE query
+ * the DAOs fall back to while their index is not built. Every search runs in a read-only session of
+ * its own, as a request would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class SearchBenchmark {
+
+    @Param({"1000000"})
+    public int rows;
+
+    // a last name of one row in fifteen, and a term no name contains
+    @Param({"smith", "zqx"})
+    public String term;
+
+    private SessionFactory sessionFactory;
+    private CustomerDAO indexedCustomers;
+    private CustomerDAO likeCustomers;
+    private EmployeeDAO indexedEmployees;
+    private EmployeeDAO likeEmployees;
+
+    @Setup
+    public void setUp() {
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(Customer.class)
+                .addAnnotatedClass(Account.class)
+                .addAnnotatedClass(Transaction.class)
+                .addAnnotatedClass(Employee.class)
+                .setProperty("hibernate.connection.driver_class", "org.h2.Driver")
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:search;MODE=MySQL;DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.connection.username", "sa")
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                .setProperty("hibernate.hbm2ddl.auto", "create")
+                .setProperty("hibernate.current_session_context_class", "managed")
+                .setProperty("hibernate.jdbc.batch_size", "50")
+                .buildSessionFactory();
+        Seeder seeder = new Seeder();
+        seeder.seed(sessionFactory, rows, 0, 0);
+        seeder.seedEmployees(sessionFactory, rows);
+
+        TimeOrderedIdGenerator idGenerator = new TimeOrderedIdGenerator(1);
+        indexedCustomers = new CustomerDAO(sessionFactory, new MembershipFilter(rows, 0.01), idGenerator);
+        indexedCustomers.rebuildSearchIndex();
+        indexedEmployees = new EmployeeDAO(sessionFactory);
+        indexedEmployees.rebuildSearchIndex();
+        // never built, so every search is a LIKE query
+        likeCustomers = new CustomerDAO(sessionFactory, new MembershipFilter(rows, 0.01), idGenerator);
+        likeEmployees = new EmployeeDAO(sessionFactory);
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public int customersByIndex() {
+        return search(() -> indexedCustomers.findByName(term));
+    }
+
+    @Benchmark
+    public int customersByLike() {
+        return search(() -> likeCustomers.findByName(term));
+    }
+
+    @Benchmark
+    public int employeesByIndex() {
+        return search(() -> indexedEmployees.findByName(term));
+    }
+
+    @Benchmark
+    public int employeesByLike() {
+        return search(() -> likeEmployees.findByName(term));
+    }
+
+    private int search(Supplier<List<?>> search) {
+        Session session = sessionFactory.openSession();
+        try {
+            session.setDefaultReadOnly(true);
+            ManagedSessionContext.bind(session);
+            session.beginTransaction();
+            try {
+                return search.get().size();
+            } finally {
+                session.getTransaction().rollback();
+            }
+        } finally {
+            ManagedSessionContext.unbind(sessionFactory);
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.bank.app.benchmarks;
+
+import com.bank.app.model.Customer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jackson.Jackson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of a customer with its accounts and their transactions, with the object
+ * mapper configured as by Dropwizard.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"3"})
+    public int accounts;
+
+    @Param({"0", "20", "500"})
+    public int transactionsPerAccount;
+
+    private ObjectMapper mapper;
+    private Customer customer;
+
+    @Setup
+    public void setUp() {
+        mapper = Jackson.newObjectMapper();
+        customer = Fixtures.customer(accounts, transactionsPerAccount);
+    }
+
+    @Benchmark
+    public byte[] serializeCustomer() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(customer);
+    }
+}
@@ -0,0 +1,104 @@
+package com.bank.app.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Locally generated RSA signing key, with its key set written to a file and access tokens signed
+ * with it, so that token verification can be exercised without an issuer.
+ */
+public class Tokens {
+
+    public static final String ISSUER = "https://issuer.example.com/oauth2/default";
+    public static final String AUDIENCE = "api://default";
+    public static final String CLIENT_ID = "benchmarks";
+
+    private static final String KID = "local";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final ObjectMapper mapper;
+    private final KeyPair keyPair;
+
+    public Tokens(ObjectMapper mapper) throws GeneralSecurityException {
+        this.mapper = mapper;
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        this.keyPair = generator.generateKeyPair();
+    }
+
+    /**
+     * Write the key set holding the public key.
+     *
+     * @return the file, to be loaded through a file:// url.
+     * @throws IOException if the file cannot be written.
+     */
+    public Path writeKeySet() throws IOException {
+        RSAPublicKey key = (RSAPublicKey) keyPair.getPublic();
+        Map<String, Object> jwk = ImmutableMap.<String, Object>builder()
+                .put("kty", "RSA")
+                .put("use", "sig")
+                .put("alg", "RS256")
+                .put("kid", KID)
+                .put("n", encode(key.getModulus()))
+                .put("e", encode(key.getPublicExponent()))
+                .build();
+        Path file = Files.createTempFile("jwks", ".json");
+        file.toFile().deleteOnExit();
+        mapper.writeValue(file.toFile(), ImmutableMap.of("keys", ImmutableList.of(jwk)));
+        return file;
+    }
+
+    /**
+     * Sign an access token valid for an hour.
+     *
+     * @param subject - email address of the user.
+     * @param admin - value of the isAdmin claim.
+     * @return the signed token.
+     * @throws GeneralSecurityException if the token cannot be signed.
+     * @throws IOException if the token cannot be encoded.
+     */
+    public String accessToken(String subject, boolean admin) throws GeneralSecurityException, IOException {
+        long now = Instant.now().getEpochSecond();
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("iss", ISSUER);
+        claims.put("aud", AUDIENCE);
+        claims.put("cid", CLIENT_ID);
+        claims.put("sub", subject);
+        claims.put("isAdmin", admin);
+        claims.put("iat", now);
+        claims.put("exp", now + 3600);
+        String signingInput = ENCODER.encodeToString(mapper.writeValueAsBytes(ImmutableMap.of("alg", "RS256", "kid", KID)))
+                + "." + ENCODER.encodeToString(mapper.writeValueAsBytes(claims));
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+        return signingInput + "." + ENCODER.encodeToString(signature.sign());
+    }
+
+    private static String encode(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        // drop the sign byte
+        if (bytes.length > 1 && bytes[0] == 0) {
+            byte[] unsigned = new byte[bytes.length - 1];
+            System.arraycopy(bytes, 1, unsigned, 0, unsigned.length);
+            bytes = unsigned;
+        }
+        return ENCODER.encodeToString(bytes);
+    }
+}
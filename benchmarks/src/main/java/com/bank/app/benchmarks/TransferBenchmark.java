@@ -0,0 +1,147 @@
+package com.bank.app.benchmarks;
+
+import com.bank.app.audit.AuditLog;
+import com.bank.app.config.AuditConfig;
+import com.bank.app.db.AccountDAO;
+import com.bank.app.db.AccountDailyRollupDAO;
+import com.bank.app.db.PendingCreditDAO;
+import com.bank.app.db.Shards;
+import com.bank.app.db.TransactionDAO;
+import com.bank.app.id.TimeOrderedIdGenerator;
+import com.bank.app.model.Account;
+import com.bank.app.model.Transaction;
+import com.bank.app.model.TransferDetails;
+import com.bank.app.model.TransferResult;
+import com.bank.app.service.TransferService;
+import com.google.common.collect.ImmutableList;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The in-process part of POST /transactions and /transactions/batch: validation, striped locking,
+ * balance checks and building the postings. The DAOs are replaced by in-memory stand-ins, so the
+ * database round trips are not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferBenchmark {
+
+    private static final int ACCOUNTS = 1000;
+
+    @Param({"100"})
+    public int batchSize;
+
+    private TransferService transferService;
+    private List<TransferDetails> transfers;
+    private List<TransferDetails> batch;
+
+    @Setup
+    public void setUp() {
+        SessionFactory sessionFactory = Fixtures.noSessionFactory();
+        Shards shards = new Shards(ImmutableList.of(sessionFactory)) {
+            // no transaction to run the transfers in
+            @Override
+            public <T> T inTransaction(int shard, Supplier<T> work) {
+                return work.get();
+            }
+        };
+        Map<String, Account> accounts = new HashMap<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            String id = String.format("SA%025d", i);
+            // large enough for every transfer of the run
+            accounts.put(id, Fixtures.account(id, Account.AccountType.Savings, Long.MAX_VALUE / 4));
+        }
+        transferService = new TransferService(new InMemoryAccountDAO(sessionFactory, shards, accounts),
+                new TransactionDAO(sessionFactory, shards) {
+                    @Override
+                    public void add(Transaction transaction) {
+                    }
+                },
+                new AccountDailyRollupDAO(sessionFactory, shards) {
+                    @Override
+                    public void apply(List<Transaction> postings) {
+                    }
+                },
+                new PendingCreditDAO(sessionFactory, shards),
+                new TimeOrderedIdGenerator(1),
+                null,
+                1024,
+                batchSize,
+                // not started: the debug events are dropped
+                new AuditLog(new AuditConfig()));
+
+        transfers = new ArrayList<>(ACCOUNTS);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            transfers.add(new TransferDetails(String.format("SA%025d", i), String.format("SA%025d", (i + 1) % ACCOUNTS), 100));
+        }
+        batch = transfers.subList(0, batchSize);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public List<Transaction> transfer(Cursor cursor) {
+        cursor.next = (cursor.next + 1) % ACCOUNTS;
+        return transferService.transfer(transfers.get(cursor.next));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<Transaction> transferContended(Cursor cursor) {
+        cursor.next = (cursor.next + 1) % ACCOUNTS;
+        return transferService.transfer(transfers.get(cursor.next));
+    }
+
+    @Benchmark
+    public List<TransferResult> transferBatch() {
+        return transferService.transferBatch(batch);
+    }
+
+    private static final class InMemoryAccountDAO extends AccountDAO {
+        private final Map<String, Account> accounts;
+
+        InMemoryAccountDAO(SessionFactory sessionFactory, Shards shards, Map<String, Account> accounts) {
+            super(sessionFactory, shards, null);
+            this.accounts = accounts;
+        }
+
+        @Override
+        public Map<String, Account> findByIdsForUpdate(Collection<String> accountIds) {
+            Map<String, Account> found = new HashMap<>();
+            for (String accountId : accountIds) {
+                found.put(accountId, accounts.get(accountId));
+            }
+            return found;
+        }
+
+        @Override
+        public void update(Account account) {
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.bank.app.load;
+
+import lombok.Getter;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and outcomes of the requests made to one endpoint during a phase of the load test.
+ */
+@Getter
+public class EndpointStats {
+
+    // one hour, in microseconds
+    private static final long HIGHEST_LATENCY = TimeUnit.HOURS.toMicros(1);
+
+    private final String endpoint;
+    private final Histogram latencies = new ConcurrentHistogram(HIGHEST_LATENCY, 3);
+    private final LongAdder errors = new LongAdder();
+    // SQL statements prepared during the phase, -1 when other endpoints ran at the same time
+    private long statements = -1;
+
+    public EndpointStats(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public void record(long nanos, boolean success) {
+        latencies.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), HIGHEST_LATENCY));
+        if (!success)
+            errors.increment();
+    }
+
+    public void setStatements(long statements) {
+        this.statements = statements;
+    }
+
+    /**
+     * @param seconds - duration of the phase.
+     * @return the figures of the report, latencies in milliseconds.
+     */
+    public Map<String, Object> summary(double seconds) {
+        long requests = latencies.getTotalCount();
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("endpoint", endpoint);
+        summary.put("requests", requests);
+        summary.put("errors", errors.sum());
+        summary.put("throughput", requests / seconds);
+        summary.put("p50", latencies.getValueAtPercentile(50) / 1000.0);
+        summary.put("p99", latencies.getValueAtPercentile(99) / 1000.0);
+        summary.put("p999", latencies.getValueAtPercentile(99.9) / 1000.0);
+        summary.put("max", latencies.getMaxValue() / 1000.0);
+        summary.put("statementsPerRequest", statements < 0 || requests == 0 ? null : (double) statements / requests);
+        return summary;
+    }
+}
@@ -0,0 +1,182 @@
+package com.bank.app.load;
+
+import com.bank.app.BankingApplication;
+import com.bank.app.benchmarks.Tokens;
+import com.bank.app.config.BankingAppConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.testing.ConfigOverride;
+import io.dropwizard.testing.DropwizardTestSupport;
+import org.hibernate.stat.Statistics;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.Response;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end load test. Starts the application against an in-memory H2 database, with access tokens
+ * signed by a local key, seeds it and drives its endpoints over HTTP: first every endpoint on its
+ * own, then all of them mixed. Reports the throughput and the latency percentiles of every endpoint,
+ * and the SQL statements per request of the endpoints run on their own.
+ *
+ * Settings are system properties:
+ * <pre>
+ *   load.config                  configuration of the application (benchmarks/load-test.yml)
+ *   load.customers               customers seeded (1000)
+ *   load.accountsPerCustomer     accounts of every customer (2)
+ *   load.transactionsPerAccount  transactions of every account (20)
+ *   load.threads                 concurrent clients (16)
+ *   load.warmup                  seconds of warm up before every phase (5)
+ *   load.duration                seconds of every phase (20)
+ *   load.mode                    transfer mode, SYNC, JOURNAL or PIPELINE (SYNC)
+ *   load.output                  file the report is written to as JSON, none by default
+ * </pre>
+ */
+public class LoadTest {
+
+    private final Seeder data = new Seeder();
+    private final int threads = Integer.getInteger("load.threads", 16);
+    private final int warmupSeconds = Integer.getInteger("load.warmup", 5);
+    private final int durationSeconds = Integer.getInteger("load.duration", 20);
+
+    private WebTarget api;
+    private String token;
+    private Statistics statistics;
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest().run();
+    }
+
+    private void run() throws Exception {
+        ObjectMapper mapper = Jackson.newObjectMapper();
+        Tokens tokens = new Tokens(mapper);
+        File ledger = Files.createTempDirectory("ledger").toFile();
+        File audit = Files.createTempDirectory("audit").toFile();
+        DropwizardTestSupport<BankingAppConfig> app = new DropwizardTestSupport<>(BankingApplication.class,
+                new File(System.getProperty("load.config", "benchmarks/load-test.yml")).getAbsolutePath(),
+                ConfigOverride.config("authConfig.jwksUri", tokens.writeKeySet().toUri().toString()),
+                ConfigOverride.config("transfer.mode", System.getProperty("load.mode", "SYNC")),
+                ConfigOverride.config("ledger.directory", ledger.getAbsolutePath()),
+                ConfigOverride.config("audit.currentLogFilename", new File(audit, "audit.log").getAbsolutePath()));
+        app.before();
+        Client client = ClientBuilder.newClient();
+        try {
+            BankingApplication application = app.getApplication();
+            statistics = application.getSessionFactory().getStatistics();
+            data.seed(application.getSessionFactory(),
+                    Integer.getInteger("load.customers", 1000),
+                    Integer.getInteger("load.accountsPerCustomer", 2),
+                    Integer.getInteger("load.transactionsPerAccount", 20));
+            // let the search indexes pick up the seeded customers
+            Thread.sleep(2 * app.getConfiguration().getSearch().getRebuildInterval().toMilliseconds());
+
+            api = client.target("http://localhost:" + app.getLocalPort() + "/api");
+            token = tokens.accessToken("load.test@example.com", true);
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            List<Map<String, Object>> isolated = new ArrayList<>();
+            for (Workload workload : Workload.values()) {
+                isolated.add(phase(Collections.singletonList(workload)).get(workload).summary(durationSeconds));
+            }
+            report.put("isolated", isolated);
+            List<Map<String, Object>> mixed = new ArrayList<>();
+            for (EndpointStats stats : phase(Arrays.asList(Workload.values())).values()) {
+                mixed.add(stats.summary(durationSeconds));
+            }
+            report.put("mixed", mixed);
+
+            print("Endpoints on their own", isolated);
+            print("Mixed workload", mixed);
+            String output = System.getProperty("load.output");
+            if (output != null)
+                mapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(new File(output), report);
+        } finally {
+            client.close();
+            app.after();
+        }
+    }
+
+    private Map<Workload, EndpointStats> phase(List<Workload> workloads) throws InterruptedException {
+        drive(workloads, warmupSeconds, null);
+        Map<Workload, EndpointStats> stats = new EnumMap<>(Workload.class);
+        for (Workload workload : workloads) {
+            stats.put(workload, new EndpointStats(workload.getEndpoint()));
+        }
+        long statements = statistics.getPrepareStatementCount();
+        drive(workloads, durationSeconds, stats);
+        if (workloads.size() == 1)
+            stats.get(workloads.get(0)).setStatements(statistics.getPrepareStatementCount() - statements);
+        return stats;
+    }
+
+    private void drive(List<Workload> workloads, int seconds, Map<Workload, EndpointStats> stats) throws InterruptedException {
+        int totalWeight = 0;
+        for (Workload workload : workloads) {
+            totalWeight += workload.getWeight();
+        }
+        int weights = totalWeight;
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService clients = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            clients.execute(() -> {
+                Random random = ThreadLocalRandom.current();
+                while (System.nanoTime() < end) {
+                    Workload workload = pick(workloads, random.nextInt(weights));
+                    long start = System.nanoTime();
+                    boolean success;
+                    try {
+                        Response response = workload.send(api, token, data, random);
+                        // read the body, it is part of the cost of the request
+                        response.readEntity(String.class);
+                        success = response.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL;
+                        response.close();
+                    } catch (RuntimeException e) {
+                        success = false;
+                    }
+                    if (stats != null)
+                        stats.get(workload).record(System.nanoTime() - start, success);
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(seconds + 60, TimeUnit.SECONDS);
+    }
+
+    private static Workload pick(List<Workload> workloads, int point) {
+        for (Workload workload : workloads) {
+            point -= workload.getWeight();
+            if (point < 0)
+                return workload;
+        }
+        return workloads.get(workloads.size() - 1);
+    }
+
+    private static void print(String title, List<Map<String, Object>> rows) {
+        System.out.printf("%n%s%n", title);
+        System.out.printf("%-22s %9s %7s %10s %9s %9s %9s %9s %11s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "stmts/req");
+        for (Map<String, Object> row : rows) {
+            Object statements = row.get("statementsPerRequest");
+            System.out.printf("%-22s %9d %7d %10.1f %9.2f %9.2f %9.2f %9.2f %11s%n",
+                    row.get("endpoint"), row.get("requests"), row.get("errors"), row.get("throughput"),
+                    row.get("p50"), row.get("p99"), row.get("p999"), row.get("max"),
+                    statements == null ? "-" : String.format("%.2f", (Double) statements));
+        }
+    }
+}
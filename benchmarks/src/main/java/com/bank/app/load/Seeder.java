@@ -0,0 +1,147 @@
+package com.bank.app.load;
+
+import com.bank.app.model.Account;
+import com.bank.app.model.Customer;
+import com.bank.app.model.Employee;
+import com.bank.app.model.Transaction;
+import lombok.Getter;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Inserts customers, accounts, transactions and employees straight through Hibernate, bypassing the API.
+ */
+@Getter
+public class Seeder {
+
+    private static final String[] FIRST_NAMES = {"James", "Mary", "Robert", "Patricia", "John", "Jennifer",
+            "Michael", "Linda", "David", "Elizabeth", "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica"};
+    private static final String[] LAST_NAMES = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia",
+            "Miller", "Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson"};
+    private static final int COMMIT_EVERY = 1000;
+    // opening balance of the accounts, in cents, large enough for every transfer of the run
+    private static final long OPENING_BALANCE = 1_000_000_000L;
+
+    private final List<String> customerIds = new ArrayList<>();
+    private final List<String> accountIds = new ArrayList<>();
+
+    /**
+     * Insert the data set.
+     *
+     * @param sessionFactory - session factory of the application.
+     * @param customers - number of customers.
+     * @param accountsPerCustomer - number of accounts of every customer.
+     * @param transactionsPerAccount - number of transactions of every account.
+     */
+    public void seed(SessionFactory sessionFactory, int customers, int accountsPerCustomer, int transactionsPerAccount) {
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        int rows = 0;
+        StatelessSession session = sessionFactory.openStatelessSession();
+        try {
+            org.hibernate.Transaction transaction = session.beginTransaction();
+            Date now = new Date();
+            for (int c = 0; c < customers; c++) {
+                Customer customer = new Customer();
+                customer.setId(String.format("CU%023d", c));
+                customer.setFirstName(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]);
+                customer.setLastName(LAST_NAMES[random.nextInt(LAST_NAMES.length)]);
+                customer.setAddress(c + " Main Street");
+                customer.setEmail("customer" + c + "@example.com");
+                // stateless sessions do not run the entity callbacks
+                customer.setEmailNormalized(Customer.normalizeEmail(customer.getEmail()));
+                customer.setPhone("+1 555 " + c);
+                customer.setDob(now);
+                customer.setSsn(String.format("%09d", c));
+                session.insert(customer);
+                customerIds.add(customer.getId());
+                rows++;
+
+                for (int a = 0; a < accountsPerCustomer; a++) {
+                    Account account = new Account();
+                    account.setId(String.format("SA%023d", c * accountsPerCustomer + a));
+                    account.setAccountType(Account.AccountType.Savings);
+                    account.setCreatedOn(now);
+                    account.setCustomer(customer);
+                    long balance = OPENING_BALANCE;
+                    account.setBalance(balance);
+                    session.insert(account);
+                    accountIds.add(account.getId());
+                    rows++;
+
+                    for (int t = 0; t < transactionsPerAccount; t++) {
+                        Transaction posting = new Transaction();
+                        posting.setId(String.format("CR%s%06d", account.getId(), t));
+                        posting.setAccount(account);
+                        posting.setTransactionType(Transaction.TransactionType.CREDIT);
+                        posting.setAmmount(100);
+                        posting.setBalanceBefore(balance);
+                        posting.setBalanceAfter(balance += 100);
+                        posting.setPostedOn(new Date(now.getTime() - (transactionsPerAccount - t) * 60_000L));
+                        session.insert(posting);
+                        rows++;
+                        if (rows % COMMIT_EVERY == 0) {
+                            transaction.commit();
+                            transaction = session.beginTransaction();
+                        }
+                    }
+                    if (transactionsPerAccount > 0) {
+                        account.setBalance(balance);
+                        session.update(account);
+                    }
+                }
+            }
+            transaction.commit();
+        } finally {
+            session.close();
+        }
+        System.out.printf("Seeded %d rows in %d ms%n", rows, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Insert employees, named like the customers.
+     *
+     * @param sessionFactory - session factory of the application.
+     * @param employees - number of employees.
+     */
+    public void seedEmployees(SessionFactory sessionFactory, int employees) {
+        Random random = new Random(43);
+        long start = System.nanoTime();
+        StatelessSession session = sessionFactory.openStatelessSession();
+        try {
+            org.hibernate.Transaction transaction = session.beginTransaction();
+            Date now = new Date();
+            for (int e = 0; e < employees; e++) {
+                session.insert(Employee.builder()
+                        .firstName(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)])
+                        .lastName(LAST_NAMES[random.nextInt(LAST_NAMES.length)])
+                        .designation("Teller")
+                        .phone("+1 555 " + e)
+                        .email("employee" + e + "@example.com")
+                        .dateOfJoining(now)
+                        .build());
+                if ((e + 1) % COMMIT_EVERY == 0) {
+                    transaction.commit();
+                    transaction = session.beginTransaction();
+                }
+            }
+            transaction.commit();
+        } finally {
+            session.close();
+        }
+        System.out.printf("Seeded %d employees in %d ms%n", employees, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * @param random - source of randomness.
+     * @return a last name the customer search can be run with.
+     */
+    public static String searchTerm(Random random) {
+        return LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+    }
+}
@@ -0,0 +1,94 @@
+package com.bank.app.load;
+
+import com.google.common.collect.ImmutableMap;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The requests the load test drives, with their share of the mixed workload.
+ */
+public enum Workload {
+
+    TRANSFER("POST /transactions", 30) {
+        @Override
+        Response send(WebTarget api, String token, Seeder data, Random random) {
+            List<String> accounts = data.getAccountIds();
+            int from = random.nextInt(accounts.size());
+            int to = (from + 1 + random.nextInt(accounts.size() - 1)) % accounts.size();
+            return api.path("transactions").request()
+                    .header("Authorization", "Bearer " + token)
+                    .post(Entity.entity(ImmutableMap.of(
+                            "fromAccountId", accounts.get(from),
+                            "toAccountId", accounts.get(to),
+                            "ammount", "1.00"), MediaType.APPLICATION_JSON_TYPE));
+        }
+    },
+    ACCOUNT_READ("GET /accounts/{id}", 40) {
+        @Override
+        Response send(WebTarget api, String token, Seeder data, Random random) {
+            return api.path("accounts").path(pick(data.getAccountIds(), random)).request()
+                    .header("Authorization", "Bearer " + token)
+                    .get();
+        }
+    },
+    CUSTOMER_SEARCH("GET /customers?name", 15) {
+        @Override
+        Response send(WebTarget api, String token, Seeder data, Random random) {
+            return api.path("customers")
+                    .queryParam("name", Seeder.searchTerm(random))
+                    .queryParam("limit", 20)
+                    .request()
+                    .header("Authorization", "Bearer " + token)
+                    .get();
+        }
+    },
+    ACCOUNT_LIST("GET /accounts", 10) {
+        @Override
+        Response send(WebTarget api, String token, Seeder data, Random random) {
+            return api.path("accounts")
+                    .queryParam("after", pick(data.getAccountIds(), random))
+                    .queryParam("limit", 50)
+                    .request()
+                    .header("Authorization", "Bearer " + token)
+                    .get();
+        }
+    },
+    // the only endpoints checking the token
+    EMPLOYEE_SEARCH("GET /employees?name", 5) {
+        @Override
+        Response send(WebTarget api, String token, Seeder data, Random random) {
+            return api.path("employees")
+                    .queryParam("name", Seeder.searchTerm(random))
+                    .request()
+                    .header("Authorization", "Bearer " + token)
+                    .get();
+        }
+    };
+
+    private final String endpoint;
+    private final int weight;
+
+    Workload(String endpoint, int weight) {
+        this.endpoint = endpoint;
+        this.weight = weight;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    abstract Response send(WebTarget api, String token, Seeder data, Random random);
+
+    private static String pick(List<String> ids, Random random) {
+        return ids.get(random.nextInt(ids.size()));
+    }
+}
@@ -1,39 +1,117 @@
 package com.bank.app;
 
+import com.bank.app.audit.AuditListener;
+import com.bank.app.audit.AuditLog;
+import com.bank.app.cache.VersionCache;
+import com.bank.app.cache.VersionInvalidationListener;
 import com.bank.app.config.AuthConfig;
 import com.bank.app.config.BankingAppConfig;
+import com.bank.app.config.LedgerConfig;
+import com.bank.app.config.ProvisioningConfig;
+import com.bank.app.config.ReadReplicasConfig;
+import com.bank.app.config.RequestTimingConfig;
+import com.bank.app.config.ShardingConfig;
+import com.bank.app.config.TransferConfig;
 import com.bank.app.auth.AccessTokenPrincipal;
+import com.bank.app.auth.JwksKeyStore;
+import com.bank.app.auth.LocalJwtVerifier;
 import com.bank.app.auth.OktaOAuthAuthenticator;
+import com.bank.app.auth.VerifiedTokenCache;
 import com.bank.app.db.AccountDAO;
+import com.bank.app.db.AccountDailyRollupDAO;
 import com.bank.app.db.CustomerDAO;
 import com.bank.app.db.EmployeeDAO;
+import com.bank.app.db.LedgerCheckpointDAO;
+import com.bank.app.db.OktaIdentityDAO;
+import com.bank.app.db.OktaSyncCheckpointDAO;
+import com.bank.app.db.PendingCreditDAO;
+import com.bank.app.db.ProvisioningTaskDAO;
+import com.bank.app.db.Shards;
 import com.bank.app.db.TransactionDAO;
+import com.bank.app.id.IdGenerator;
+import com.bank.app.id.TimeOrderedIdGenerator;
+import com.bank.app.json.CachedWriterJsonProvider;
+import com.bank.app.json.JsonAcceleration;
+import com.bank.app.ledger.Ledger;
+import com.bank.app.ledger.LedgerProjector;
+import com.bank.app.ledger.LedgerReplayCommand;
+import com.bank.app.metrics.HibernateCacheMetrics;
+import com.bank.app.metrics.HibernateStatisticsMetrics;
+import com.bank.app.metrics.RequestTimingListener;
+import com.bank.app.metrics.TimedProxyFactory;
 import com.bank.app.model.Account;
+import com.bank.app.model.AccountDailyRollup;
 import com.bank.app.model.Customer;
 import com.bank.app.model.Employee;
+import com.bank.app.model.LedgerCheckpoint;
+import com.bank.app.model.OktaIdentity;
+import com.bank.app.model.OktaSyncCheckpoint;
+import com.bank.app.model.PendingCredit;
+import com.bank.app.model.ProvisioningTask;
 import com.bank.app.model.Transaction;
+import com.bank.app.okta.OktaIdentitySync;
+import com.bank.app.okta.OktaProvisioningWorker;
+import com.bank.app.okta.OktaSdkUserDirectory;
+import com.bank.app.okta.OktaUserDirectory;
+import com.bank.app.replica.ReadRouter;
+import com.bank.app.replica.ReadRoutingListener;
 import com.bank.app.resource.AccountResource;
 import com.bank.app.resource.CustomerResource;
 import com.bank.app.resource.EmployeeResource;
 import com.bank.app.resource.TransactionResource;
-import com.okta.jwt.JwtHelper;
+import com.bank.app.search.MembershipFilter;
+import com.bank.app.search.SearchIndexLoader;
+import com.bank.app.service.CreditRelay;
+import com.bank.app.service.StatementService;
+import com.bank.app.service.TransferPipeline;
+import com.bank.app.service.TransferService;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.okta.sdk.authc.credentials.TokenClientCredentials;
+import com.okta.sdk.client.Client;
+import com.okta.sdk.client.Clients;
+import com.okta.jwt.JwtVerifier;
 import io.dropwizard.Application;
 import io.dropwizard.auth.AuthDynamicFeature;
 import io.dropwizard.auth.AuthValueFactoryProvider;
 import io.dropwizard.auth.oauth.OAuthCredentialAuthFilter;
 import io.dropwizard.db.DataSourceFactory;
 import io.dropwizard.hibernate.HibernateBundle;
+import io.dropwizard.hibernate.SessionFactoryFactory;
+import io.dropwizard.hibernate.SessionFactoryHealthCheck;
+import io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Supplier;
 
 @Slf4j
 public class BankingApplication extends Application<BankingAppConfig> {
 
+    private static final ImmutableList<Class<?>> ENTITIES = ImmutableList.of(Employee.class, Account.class,
+            Customer.class, Transaction.class, ProvisioningTask.class, OktaIdentity.class, LedgerCheckpoint.class,
+            AccountDailyRollup.class, PendingCredit.class, OktaSyncCheckpoint.class);
+
+    private Shards shards;
+
     private final HibernateBundle<BankingAppConfig> hibernateBundle
-            = new HibernateBundle<BankingAppConfig>(Employee.class, Account.class, Customer.class, Transaction.class) {
+            = new HibernateBundle<BankingAppConfig>(ENTITIES, new SessionFactoryFactory()) {
         @Override
         public DataSourceFactory getDataSourceFactory(BankingAppConfig configuration) {
             return configuration.getDataSourceFactory();
@@ -44,6 +122,20 @@ public class BankingApplication extends Application<BankingAppConfig> {
         new BankingApplication().run(args);
     }
 
+    /**
+     * @return the session factory of the application, once it is running.
+     */
+    public SessionFactory getSessionFactory() {
+        return hibernateBundle.getSessionFactory();
+    }
+
+    /**
+     * @return the shards holding the accounts, once the application is running.
+     */
+    public Shards getShards() {
+        return shards;
+    }
+
     @Override
     public String getName() {
         return "BankingApplication";
@@ -52,50 +144,330 @@ public class BankingApplication extends Application<BankingAppConfig> {
     @Override
     public void initialize(final Bootstrap<BankingAppConfig> bootstrap) {
         bootstrap.addBundle(hibernateBundle);
+        bootstrap.addCommand(new LedgerReplayCommand());
     }
 
     @Override
     public void run(final BankingAppConfig configuration,
                     final Environment environment) {
-        final EmployeeDAO employeeDAO
-                = new EmployeeDAO(hibernateBundle.getSessionFactory());
-        final CustomerDAO customerDAO
-                = new CustomerDAO(hibernateBundle.getSessionFactory());
-        final AccountDAO accountDAO
-                = new AccountDAO(hibernateBundle.getSessionFactory());
-        final TransactionDAO transactionDAO
-                = new TransactionDAO(hibernateBundle.getSessionFactory());
+        final IdGenerator idGenerator = new TimeOrderedIdGenerator(configuration.getIds().getNodeId());
+        // before anything is written with the object mapper
+        if (configuration.getJson().isAccelerated()) {
+            JsonAcceleration.configure(environment.getObjectMapper());
+            // registered ahead of the provider of Dropwizard, which is added when the server is built
+            environment.jersey().register(new CachedWriterJsonProvider(environment.getObjectMapper()));
+        }
+        // managed first, so that it is stopped last and records the money movements of everything else
+        final AuditLog auditLog = new AuditLog(configuration.getAudit());
+        environment.lifecycle().manage(auditLog);
+        environment.metrics().register(MetricRegistry.name(AuditLog.class, "queue-size"),
+                (Gauge<Long>) auditLog::getQueueSize);
+        environment.metrics().register(MetricRegistry.name(AuditLog.class, "dropped"),
+                (Gauge<Long>) auditLog::getDroppedCount);
+        // every public DAO method is timed
+        final TimedProxyFactory timedProxyFactory = new TimedProxyFactory(environment.metrics());
+        // accounts and their transactions are spread over the shards, shard 0 being the main database
+        shards = configureShards(configuration, environment);
+        final EmployeeDAO employeeDAO = timedProxyFactory.create(EmployeeDAO.class,
+                new Class<?>[]{SessionFactory.class},
+                new Object[]{hibernateBundle.getSessionFactory()});
+        final CustomerDAO customerDAO = timedProxyFactory.create(CustomerDAO.class,
+                new Class<?>[]{SessionFactory.class, MembershipFilter.class, IdGenerator.class},
+                new Object[]{hibernateBundle.getSessionFactory(), new MembershipFilter(
+                        configuration.getSearch().getEmailFilterExpectedInsertions(),
+                        configuration.getSearch().getEmailFilterFalsePositiveRate()),
+                        idGenerator});
+        final AccountDAO accountDAO = timedProxyFactory.create(AccountDAO.class,
+                new Class<?>[]{SessionFactory.class, Shards.class, IdGenerator.class},
+                new Object[]{hibernateBundle.getSessionFactory(), shards, idGenerator});
+        final TransactionDAO transactionDAO = timedProxyFactory.create(TransactionDAO.class,
+                new Class<?>[]{SessionFactory.class, Shards.class},
+                new Object[]{hibernateBundle.getSessionFactory(), shards});
+        final AccountDailyRollupDAO rollupDAO = timedProxyFactory.create(AccountDailyRollupDAO.class,
+                new Class<?>[]{SessionFactory.class, Shards.class},
+                new Object[]{hibernateBundle.getSessionFactory(), shards});
+        final PendingCreditDAO pendingCreditDAO = timedProxyFactory.create(PendingCreditDAO.class,
+                new Class<?>[]{SessionFactory.class, Shards.class},
+                new Object[]{hibernateBundle.getSessionFactory(), shards});
+        final ProvisioningTaskDAO provisioningTaskDAO = timedProxyFactory.create(ProvisioningTaskDAO.class,
+                new Class<?>[]{SessionFactory.class},
+                new Object[]{hibernateBundle.getSessionFactory()});
+
+        // second-level cache hit ratios on the admin metrics endpoint
+        HibernateCacheMetrics.register(environment.metrics(), hibernateBundle.getSessionFactory());
+        // statements, queries, loads and flushes
+        HibernateStatisticsMetrics.register(environment.metrics(), hibernateBundle.getSessionFactory());
+
+        // versions of the accounts and customers for conditional reads, forgotten when a write commits
+        final VersionCache versionCache = new VersionCache(configuration.getCache().getVersionCacheMaxSize(),
+                configuration.getCache().getVersionCacheTtl());
+        VersionInvalidationListener invalidationListener = new VersionInvalidationListener(versionCache);
+        // money movements are audited once committed
+        AuditListener auditListener = new AuditListener(auditLog);
+        for (int shard = 0; shard < shards.count(); shard++) {
+            EventListenerRegistry listenerRegistry = shards.sessionFactory(shard)
+                    .unwrap(SessionFactoryImplementor.class)
+                    .getServiceRegistry()
+                    .getService(EventListenerRegistry.class);
+            listenerRegistry.appendListeners(EventType.POST_COMMIT_INSERT, invalidationListener);
+            listenerRegistry.appendListeners(EventType.POST_COMMIT_UPDATE, invalidationListener);
+            listenerRegistry.appendListeners(EventType.POST_COMMIT_DELETE, invalidationListener);
+            listenerRegistry.appendListeners(EventType.POST_COMMIT_INSERT, auditListener);
+            listenerRegistry.appendListeners(EventType.POST_COMMIT_DELETE, auditListener);
+        }
+
+        // read-only resource methods, served by the read replicas when there are any
+        configureReadReplicas(configuration, environment);
 
         // base url for our resources
         environment.jersey().setUrlPattern("/api/*");
 
+        // the resource methods are timed through their @Timed annotation, this breaks a sample of the requests down
+        RequestTimingConfig timingConfig = configuration.getRequestTiming();
+        if (timingConfig.isServerTimingHeader() || timingConfig.getLogSampleRate() > 0)
+            environment.jersey().register(new RequestTimingListener(timingConfig.isServerTimingHeader(),
+                    timingConfig.getLogSampleRate()));
+        if (timingConfig.isServerTimingHeader())
+            environment.jersey().register(new RequestTimingListener.ServerTimingFilter());
+
         // configure OAuth
         if (configuration.getAuthConfig().isAuthEnabled())
             configureOAuth(configuration, environment);
 
+        // journal mode: postings go to the ledger first and reach the database in the background
+        Ledger ledger = null;
+        if (configuration.getTransfer().getMode() == TransferConfig.Mode.JOURNAL) {
+            if (shards.count() > 1)
+                throw new IllegalStateException("The JOURNAL transfer mode does not support shards");
+            ledger = configureLedger(configuration, environment, accountDAO, transactionDAO, rollupDAO);
+        }
+
+        TransferConfig transferConfig = configuration.getTransfer();
+        // every transfer is a unit of work of its own, so that the pipeline can post groups outside of a request
+        final TransferService transferService = new UnitOfWorkAwareProxyFactory(hibernateBundle).create(
+                TransferService.class,
+                new Class<?>[]{AccountDAO.class, TransactionDAO.class, AccountDailyRollupDAO.class, PendingCreditDAO.class,
+                        IdGenerator.class, Ledger.class, int.class, int.class, AuditLog.class},
+                new Object[]{accountDAO, transactionDAO, rollupDAO, pendingCreditDAO, idGenerator, ledger,
+                        transferConfig.getLockStripes(), transferConfig.getMaxBatchSize(), auditLog});
+
+        // the credits of the transfers between shards are posted in the background
+        if (shards.count() > 1) {
+            CreditRelay creditRelay = new UnitOfWorkAwareProxyFactory(hibernateBundle).create(
+                    CreditRelay.class,
+                    new Class<?>[]{PendingCreditDAO.class, AccountDAO.class, TransactionDAO.class,
+                            AccountDailyRollupDAO.class, ShardingConfig.class, ScheduledExecutorService.class},
+                    new Object[]{pendingCreditDAO, accountDAO, transactionDAO, rollupDAO, configuration.getSharding(),
+                            environment.lifecycle().scheduledExecutorService("credit-relay-%d").threads(1).build()});
+            environment.lifecycle().manage(creditRelay);
+        }
+
+        // pipeline mode: single transfers are committed in groups by one sequencer thread
+        TransferPipeline transferPipeline = null;
+        if (transferConfig.getMode() == TransferConfig.Mode.PIPELINE) {
+            transferPipeline = new TransferPipeline(transferService,
+                    environment.lifecycle().executorService("transfer-responder-%d")
+                            .minThreads(transferConfig.getResponderThreads())
+                            .maxThreads(transferConfig.getResponderThreads())
+                            .build(),
+                    transferConfig.getPipelineCapacity(),
+                    transferConfig.getGroupSize(),
+                    transferConfig.getGroupInterval());
+            environment.lifecycle().manage(transferPipeline);
+            environment.metrics().register(MetricRegistry.name(TransferPipeline.class, "queue-size"),
+                    (Gauge<Integer>) transferPipeline::getQueueSize);
+        }
+
+        // in-memory indexes for the name and email searches and the email uniqueness check
+        configureSearch(configuration, environment, customerDAO, employeeDAO);
+
+        // okta user provisioning, applied in the background from the outbox
+        configureProvisioning(configuration, environment, provisioningTaskDAO);
+
         // add resources
-        environment.jersey().register(new EmployeeResource(employeeDAO, configuration));
-        environment.jersey().register(new CustomerResource(customerDAO, accountDAO));
-        environment.jersey().register(new AccountResource(accountDAO, transactionDAO, customerDAO));
-        environment.jersey().register(new TransactionResource(transactionDAO, accountDAO));
+        environment.jersey().register(new EmployeeResource(employeeDAO, provisioningTaskDAO, environment.getObjectMapper(), auditLog));
+        environment.jersey().register(new CustomerResource(customerDAO, accountDAO, environment.getObjectMapper(), versionCache, auditLog));
+        environment.jersey().register(new AccountResource(accountDAO, transactionDAO, customerDAO, environment.getObjectMapper(), versionCache,
+                new StatementService(transactionDAO, rollupDAO), auditLog));
+        environment.jersey().register(new TransactionResource(transactionDAO, transferService, transferPipeline, environment.getObjectMapper(), auditLog));
+    }
+
+    private Shards configureShards(final BankingAppConfig configuration, final Environment environment) {
+        ShardingConfig shardingConfig = configuration.getSharding();
+        List<SessionFactory> sessionFactories = new ArrayList<>();
+        sessionFactories.add(hibernateBundle.getSessionFactory());
+        SessionFactoryFactory sessionFactoryFactory = new SessionFactoryFactory();
+        for (int i = 0; i < shardingConfig.getShards().size(); i++) {
+            String name = "shard-" + (i + 1);
+            DataSourceFactory dataSourceFactory = shardingConfig.getShards().get(i);
+            requireSharedCache("sharding.shards[" + i + "]", dataSourceFactory);
+            SessionFactory sessionFactory = sessionFactoryFactory.build(hibernateBundle, environment,
+                    dataSourceFactory, ENTITIES, name);
+            environment.healthChecks().register(name, new SessionFactoryHealthCheck(
+                    environment.getHealthCheckExecutorService(),
+                    dataSourceFactory.getValidationQueryTimeout().orElse(Duration.seconds(5)),
+                    sessionFactory,
+                    dataSourceFactory.getValidationQuery()));
+            HibernateStatisticsMetrics.register(environment.metrics(), name, sessionFactory);
+            sessionFactories.add(sessionFactory);
+        }
+        if (sessionFactories.size() > 1)
+            requireSharedCache("database", configuration.getDataSourceFactory());
+        return new Shards(sessionFactories);
+    }
+
+    private void configureReadReplicas(final BankingAppConfig configuration, final Environment environment) {
+        ReadReplicasConfig replicasConfig = configuration.getReadReplicas();
+        Map<String, SessionFactory> sessionFactories = new LinkedHashMap<>();
+        sessionFactories.put(ReadRouter.PRIMARY, hibernateBundle.getSessionFactory());
+        List<String> replicas = new ArrayList<>();
+        SessionFactoryFactory sessionFactoryFactory = new SessionFactoryFactory();
+        for (int i = 0; i < replicasConfig.getReplicas().size(); i++) {
+            String name = "replica-" + i;
+            DataSourceFactory dataSourceFactory = replicasConfig.getReplicas().get(i);
+            requireSharedCache("readReplicas.replicas[" + i + "]", dataSourceFactory);
+            // built and health checked like the bundle builds the primary one
+            SessionFactory sessionFactory = sessionFactoryFactory.build(hibernateBundle, environment,
+                    dataSourceFactory, ENTITIES, name);
+            environment.healthChecks().register(name, new SessionFactoryHealthCheck(
+                    environment.getHealthCheckExecutorService(),
+                    dataSourceFactory.getValidationQueryTimeout().orElse(Duration.seconds(5)),
+                    sessionFactory,
+                    dataSourceFactory.getValidationQuery()));
+            HibernateStatisticsMetrics.register(environment.metrics(), name, sessionFactory);
+            sessionFactories.put(name, sessionFactory);
+            replicas.add(name);
+        }
+        if (!replicas.isEmpty())
+            requireSharedCache("database", configuration.getDataSourceFactory());
+
+        ReadRouter router = new ReadRouter(replicas,
+                environment.healthChecks(),
+                environment.lifecycle().scheduledExecutorService("read-replica-health-%d").threads(1).build(),
+                replicasConfig.getHealthCheckInterval(),
+                replicasConfig.getStalenessBound());
+        environment.lifecycle().manage(router);
+        environment.jersey().register(new ReadRoutingListener(router, sessionFactories));
+        if (router.hasReplicas())
+            environment.jersey().register(new ReadRoutingListener.LastWriteFilter(replicasConfig.getStalenessBound()));
+    }
+
+    // EhCacheRegionFactory creates a cache manager per session factory, named after ehcache.xml: the second one fails.
+    // The account ids are unique across the shards, so their entries can share the regions
+    private static void requireSharedCache(String name, DataSourceFactory dataSourceFactory) {
+        if ("org.hibernate.cache.ehcache.EhCacheRegionFactory".equals(
+                dataSourceFactory.getProperties().get("hibernate.cache.region.factory_class")))
+            throw new IllegalStateException(name + " must use org.hibernate.cache.ehcache.SingletonEhCacheRegionFactory"
+                    + " when there are read replicas or shards, so that all the session factories share one cache");
+    }
+
+    private Ledger configureLedger(final BankingAppConfig configuration,
+                                   final Environment environment,
+                                   final AccountDAO accountDAO,
+                                   final TransactionDAO transactionDAO,
+                                   final AccountDailyRollupDAO rollupDAO) {
+        LedgerConfig ledgerConfig = configuration.getLedger();
+        ScheduledExecutorService scheduler = environment.lifecycle()
+                .scheduledExecutorService("ledger-%d").threads(2).build();
+        // managed in this order, so the projector stops before the ledger closes its journal
+        Ledger ledger = new Ledger(ledgerConfig, scheduler);
+        environment.lifecycle().manage(ledger);
+
+        LedgerProjector projector = new UnitOfWorkAwareProxyFactory(hibernateBundle).create(
+                LedgerProjector.class,
+                new Class<?>[]{Ledger.class, AccountDAO.class, TransactionDAO.class, AccountDailyRollupDAO.class,
+                        LedgerCheckpointDAO.class, LedgerConfig.class, ScheduledExecutorService.class},
+                new Object[]{ledger, accountDAO, transactionDAO, rollupDAO,
+                        new TimedProxyFactory(environment.metrics()).create(LedgerCheckpointDAO.class,
+                                new Class<?>[]{SessionFactory.class},
+                                new Object[]{hibernateBundle.getSessionFactory()}),
+                        ledgerConfig, scheduler});
+        environment.lifecycle().manage(projector);
+        return ledger;
+    }
+
+    private void configureSearch(final BankingAppConfig configuration,
+                                 final Environment environment,
+                                 final CustomerDAO customerDAO,
+                                 final EmployeeDAO employeeDAO) {
+        Map<String, Runnable> rebuilds = new LinkedHashMap<>();
+        rebuilds.put("customer emails", customerDAO::rebuildEmailFilter);
+        if (configuration.getSearch().isIndexEnabled()) {
+            rebuilds.put("customers", customerDAO::rebuildSearchIndex);
+            rebuilds.put("employees", employeeDAO::rebuildSearchIndex);
+        }
+        environment.lifecycle().manage(new SearchIndexLoader(rebuilds,
+                environment.lifecycle().scheduledExecutorService("search-index-%d").threads(1).build(),
+                configuration.getSearch().getRebuildInterval()));
+    }
+
+    private void configureProvisioning(final BankingAppConfig configuration,
+                                       final Environment environment,
+                                       final ProvisioningTaskDAO provisioningTaskDAO) {
+        AuthConfig authConfig = configuration.getAuthConfig();
+        // one client (and connection pool) for the whole application, built on first use
+        Supplier<Client> oktaClient = Suppliers.memoize(() -> Clients.builder()
+                .setOrgUrl(authConfig.getBaseUrl())
+                .setClientCredentials(new TokenClientCredentials(authConfig.getApiToken()))
+                .build());
+        OktaUserDirectory directory = new OktaSdkUserDirectory(oktaClient);
+        OktaIdentityDAO identityDAO = new TimedProxyFactory(environment.metrics()).create(OktaIdentityDAO.class,
+                new Class<?>[]{SessionFactory.class},
+                new Object[]{hibernateBundle.getSessionFactory()});
+        ScheduledExecutorService scheduler = environment.lifecycle()
+                .scheduledExecutorService("okta-provisioning-%d").threads(2).build();
+        UnitOfWorkAwareProxyFactory proxyFactory = new UnitOfWorkAwareProxyFactory(hibernateBundle);
+
+        OktaProvisioningWorker worker = proxyFactory.create(
+                OktaProvisioningWorker.class,
+                new Class<?>[]{ProvisioningTaskDAO.class, OktaIdentityDAO.class, OktaUserDirectory.class,
+                        ProvisioningConfig.class, ScheduledExecutorService.class},
+                new Object[]{provisioningTaskDAO, identityDAO, directory, configuration.getProvisioning(), scheduler});
+        environment.lifecycle().manage(worker);
+
+        OktaIdentitySync identitySync = proxyFactory.create(
+                OktaIdentitySync.class,
+                new Class<?>[]{OktaIdentityDAO.class, OktaSyncCheckpointDAO.class, OktaUserDirectory.class,
+                        ProvisioningConfig.class, ScheduledExecutorService.class},
+                new Object[]{identityDAO, new OktaSyncCheckpointDAO(hibernateBundle.getSessionFactory()), directory,
+                        configuration.getProvisioning(), scheduler});
+        environment.lifecycle().manage(identitySync);
     }
 
     private void configureOAuth(final BankingAppConfig configuration, final Environment environment) {
         try {
             AuthConfig authConfig = configuration.getAuthConfig();
 
-            JwtHelper helper = new JwtHelper()
-                    .setIssuerUrl(authConfig.getIssuer())
-                    .setClientId(authConfig.getClientId());
+            // signing keys are held locally and refreshed in the background
+            String jwksUri = authConfig.getJwksUri();
+            if (StringUtils.isEmpty(jwksUri)) {
+                jwksUri = StringUtils.removeEnd(authConfig.getIssuer(), "/") + "/v1/keys";
+            }
+            JwksKeyStore keyStore = new JwksKeyStore(new URL(jwksUri),
+                    environment.getObjectMapper(),
+                    environment.lifecycle().scheduledExecutorService("jwks-refresh-%d").threads(1).build(),
+                    authConfig.getJwksRefreshInterval(),
+                    authConfig.getJwksMinRefetchInterval(),
+                    authConfig.getJwksTimeout());
+            environment.lifecycle().manage(keyStore);
+
+            JwtVerifier jwtVerifier = new LocalJwtVerifier(keyStore,
+                    environment.getObjectMapper(),
+                    authConfig.getIssuer(),
+                    authConfig.getAudience(),
+                    authConfig.getClientId(),
+                    authConfig.getClockSkew());
 
-            String audience = authConfig.getAudience();
-            if (StringUtils.isNotEmpty(audience)) {
-                helper.setAudience(audience);
+            VerifiedTokenCache tokenCache = null;
+            if (authConfig.getTokenCacheMaxSize() > 0) {
+                tokenCache = new VerifiedTokenCache(environment.metrics(),
+                        authConfig.getTokenCacheMaxSize(),
+                        authConfig.getTokenCacheMaxTtl());
             }
 
             environment.jersey().register(new AuthDynamicFeature(
                 new OAuthCredentialAuthFilter.Builder<AccessTokenPrincipal>()
-                    .setAuthenticator(new OktaOAuthAuthenticator(helper.build()))
+                    .setAuthenticator(new OktaOAuthAuthenticator(jwtVerifier, tokenCache))
                     .setPrefix("Bearer")
                     .buildAuthFilter()));
 
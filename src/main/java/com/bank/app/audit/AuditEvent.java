@@ -0,0 +1,35 @@
+package com.bank.app.audit;
+
+/**
+ * A slot of the ring buffer of the {@link AuditLog}, reused for every event written to it.
+ */
+final class AuditEvent {
+
+    enum Kind {
+        // money movements, never sampled nor dropped
+        AUDIT,
+        // what the application is doing, sampled
+        DEBUG
+    }
+
+    // sequence of the event held, written last by the producer and read first by the writer
+    volatile long sequence = -1;
+
+    Kind kind;
+    long timestamp;
+    String thread;
+    String action;
+    String reference;
+    String subject;
+    String target;
+    boolean hasAmount;
+    long amount;
+
+    void clear() {
+        thread = null;
+        action = null;
+        reference = null;
+        subject = null;
+        target = null;
+    }
+}
@@ -0,0 +1,66 @@
+package com.bank.app.audit;
+
+import com.bank.app.model.Account;
+import com.bank.app.model.PendingCredit;
+import com.bank.app.model.Transaction;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Writes an audit record for every money movement once it has committed, whichever path wrote it:
+ * postings of transfers and credit relays, credits waiting for the relay, and the balances of the
+ * accounts opened and deleted. The debit and the credit of a transfer share the id after their DB/CR
+ * prefix.
+ */
+public class AuditListener implements PostCommitInsertEventListener, PostCommitDeleteEventListener {
+
+    private final AuditLog auditLog;
+
+    public AuditListener(AuditLog auditLog) {
+        this.auditLog = auditLog;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        Object entity = event.getEntity();
+        if (entity instanceof Transaction) {
+            Transaction posting = (Transaction) entity;
+            auditLog.audit(posting.getTransactionType() == Transaction.TransactionType.CREDIT ? "credit" : "debit",
+                    posting.getId(), posting.getAccount().getId(), null, posting.getAmmount());
+        } else if (entity instanceof PendingCredit) {
+            PendingCredit credit = (PendingCredit) entity;
+            auditLog.audit("credit.pending", credit.getId(), credit.getFromAccountId(), credit.getToAccountId(),
+                    credit.getAmmount());
+        } else if (entity instanceof Account) {
+            Account account = (Account) entity;
+            auditLog.audit("account.open", account.getId(), account.getId(), null, account.getBalance());
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Account) {
+            Account account = (Account) event.getEntity();
+            auditLog.audit("account.delete", account.getId(), account.getId(), null, account.getBalance());
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+        // nothing was committed, nothing moved
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        // nothing was committed, nothing moved
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        Class<?> type = persister.getMappedClass();
+        return type == Transaction.class || type == PendingCredit.class || type == Account.class;
+    }
+}
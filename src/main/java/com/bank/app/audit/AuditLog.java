@@ -0,0 +1,283 @@
+package com.bank.app.audit;
+
+import com.bank.app.config.AuditConfig;
+import io.dropwizard.lifecycle.Managed;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Structured event log written off the request threads. Events are copied into the preallocated
+ * slots of a ring buffer, without formatting nor allocation, and one writer thread formats them as JSON
+ * lines and appends them to a {@link RollingFile} in batches.
+ *
+ * Two kinds of events go through it. Audit records of money movements are never sampled: when the
+ * buffer is full their producer waits for the writer. Debug events only keep a sample of the calls,
+ * and are dropped when the buffer is full, so that they never slow the requests down. Audit records
+ * must be written once the change they describe is committed.
+ *
+ * Until the log is started, and once it is stopped, audit records go to the application log and
+ * debug events are dropped. Producers are counted while they publish, and the writer only stops once
+ * none is left and the buffer is empty, so that a record published while the log stops is still
+ * written. A batch the file refuses is tried again a few times, and if it still
+ * cannot be written its audit records go to the application log too; a batch written in part may
+ * then leave some records twice, never none.
+ */
+@Slf4j
+public class AuditLog implements Managed {
+
+    private static final long FULL_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final int WRITE_ATTEMPTS = 3;
+    private static final long WRITE_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final AuditConfig config;
+    private final AuditEvent[] slots;
+    private final int mask;
+    private final double debugSampleRate;
+    // next sequence to hand out to a producer
+    private final AtomicLong head = new AtomicLong();
+    // next sequence to be written, the slots of the sequences below it are free
+    private volatile long tail;
+    private final AtomicLong dropped = new AtomicLong();
+    // producers between the check of running and the hand over of their slot
+    private final AtomicInteger producers = new AtomicInteger();
+    private volatile boolean running;
+    private Thread writer;
+
+    public AuditLog(AuditConfig config) {
+        this.config = config;
+        int capacity = Integer.highestOneBit(config.getRingBufferSize() - 1) << 1;
+        this.slots = new AuditEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new AuditEvent();
+        }
+        this.mask = capacity - 1;
+        this.debugSampleRate = config.getDebugSampleRate();
+    }
+
+    @Override
+    public void start() throws IOException {
+        RollingFile file = new RollingFile(Paths.get(config.getCurrentLogFilename()),
+                config.getMaxFileSize().toBytes(), config.getArchivedFileCount());
+        running = true;
+        writer = new Thread(() -> write(file), "audit-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        if (isNull(writer))
+            return;
+        // the events already in the buffer are still written
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join();
+    }
+
+    /**
+     * Record a money movement. Never sampled nor dropped.
+     *
+     * @param action - what happened, e.g. transfer.
+     * @param reference - id of the movement, e.g. of its debit transaction.
+     * @param subject - the account debited.
+     * @param target - the account credited.
+     * @param amount - amount moved, in cents.
+     */
+    public void audit(String action, String reference, String subject, String target, long amount) {
+        if (!publish(AuditEvent.Kind.AUDIT, action, reference, subject, target, true, amount))
+            log.info("Audit {} {} from {} to {}, {} cents", action, reference, subject, target, amount);
+    }
+
+    /**
+     * Record a sample of what the application is doing.
+     *
+     * @param action - what is being done, e.g. account.find.
+     * @param subject - what it is done to, e.g. an account id; may be null.
+     */
+    public void debug(String action, String subject) {
+        debug(action, subject, null);
+    }
+
+    /**
+     * Record a sample of what the application is doing.
+     *
+     * @param action - what is being done, e.g. account.link.
+     * @param subject - what it is done to, e.g. an account id; may be null.
+     * @param target - what else is involved, e.g. a customer id; may be null.
+     */
+    public void debug(String action, String subject, String target) {
+        if (!running || debugSampleRate <= 0)
+            return;
+        if (debugSampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= debugSampleRate)
+            return;
+        publish(AuditEvent.Kind.DEBUG, action, null, subject, target, false, 0);
+    }
+
+    /**
+     * @return number of events waiting for the writer.
+     */
+    public long getQueueSize() {
+        return head.get() - tail;
+    }
+
+    /**
+     * @return number of debug events dropped because the buffer was full or the file could not be written.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    // false when the log is not running, the event is then left to the caller
+    private boolean publish(AuditEvent.Kind kind,
+                            String action,
+                            String reference,
+                            String subject,
+                            String target,
+                            boolean hasAmount,
+                            long amount) {
+        producers.incrementAndGet();
+        try {
+            // checked once counted: the writer cannot stop before the slot is handed over
+            if (!running)
+                return false;
+            long sequence;
+            while (true) {
+                sequence = head.get();
+                if (sequence - tail >= slots.length) {
+                    if (kind == AuditEvent.Kind.DEBUG) {
+                        dropped.incrementAndGet();
+                        return true;
+                    }
+                    LockSupport.unpark(writer);
+                    LockSupport.parkNanos(FULL_WAIT_NANOS);
+                } else if (head.compareAndSet(sequence, sequence + 1)) {
+                    break;
+                }
+            }
+            AuditEvent event = slots[(int) sequence & mask];
+            event.kind = kind;
+            event.timestamp = System.currentTimeMillis();
+            event.thread = Thread.currentThread().getName();
+            event.action = action;
+            event.reference = reference;
+            event.subject = subject;
+            event.target = target;
+            event.hasAmount = hasAmount;
+            event.amount = amount;
+            // hands the slot over to the writer
+            event.sequence = sequence;
+            return true;
+        } finally {
+            producers.decrementAndGet();
+        }
+    }
+
+    private void write(RollingFile file) {
+        long pollNanos = TimeUnit.MILLISECONDS.toNanos(config.getPollInterval().toMilliseconds());
+        StringBuilder batch = new StringBuilder(256 * config.getBatchSize());
+        // the audit records of the batch, kept for the application log if the file cannot take them
+        StringBuilder audits = new StringBuilder(256 * config.getBatchSize());
+        long next = 0;
+        try {
+            // in this order: a producer counted after running is read false sees it false too
+            while (running || producers.get() != 0 || head.get() != next) {
+                int count = 0;
+                int auditCount = 0;
+                while (count < config.getBatchSize()) {
+                    AuditEvent event = slots[(int) next & mask];
+                    if (event.sequence != next)
+                        break;
+                    int start = batch.length();
+                    format(event, batch);
+                    if (event.kind == AuditEvent.Kind.AUDIT) {
+                        audits.append(batch, start, batch.length());
+                        auditCount++;
+                    }
+                    event.clear();
+                    next++;
+                    count++;
+                }
+                if (count == 0) {
+                    LockSupport.parkNanos(pollNanos);
+                    continue;
+                }
+                tail = next;
+                if (!write(file, batch, count)) {
+                    // the audit records are kept in the application log, the debug events are lost
+                    log.error("Audit log unavailable, {} audit records follow in the application log", auditCount);
+                    for (String line : audits.toString().split("\n")) {
+                        if (!line.isEmpty())
+                            log.info("Audit {}", line);
+                    }
+                    dropped.addAndGet(count - auditCount);
+                }
+                batch.setLength(0);
+                audits.setLength(0);
+            }
+        } finally {
+            try {
+                file.close();
+            } catch (IOException e) {
+                log.error("Failed to close the audit log", e);
+            }
+        }
+    }
+
+    // tries the batch a few times, the file reopening itself after a failure
+    private static boolean write(RollingFile file, StringBuilder batch, int count) {
+        byte[] bytes = batch.toString().getBytes(StandardCharsets.UTF_8);
+        for (int attempt = 1; attempt <= WRITE_ATTEMPTS; attempt++) {
+            try {
+                file.write(bytes);
+                return true;
+            } catch (IOException e) {
+                log.error("Failed to write {} events to the audit log, attempt {} of {}", count, attempt, WRITE_ATTEMPTS, e);
+                if (attempt < WRITE_ATTEMPTS)
+                    LockSupport.parkNanos(WRITE_RETRY_NANOS);
+            }
+        }
+        return false;
+    }
+
+    private static void format(AuditEvent event, StringBuilder out) {
+        out.append("{\"ts\":\"");
+        DateTimeFormatter.ISO_INSTANT.formatTo(Instant.ofEpochMilli(event.timestamp), out);
+        out.append("\",\"kind\":\"").append(event.kind == AuditEvent.Kind.AUDIT ? "audit" : "debug").append('"');
+        field(out, "action", event.action);
+        field(out, "reference", event.reference);
+        field(out, "subject", event.subject);
+        field(out, "target", event.target);
+        if (event.hasAmount)
+            out.append(",\"amountCents\":").append(event.amount);
+        field(out, "thread", event.thread);
+        out.append("}\n");
+    }
+
+    private static void field(StringBuilder out, String name, String value) {
+        if (isNull(value))
+            return;
+        out.append(",\"").append(name).append("\":\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+                out.append('\\').append(c);
+            else if (c < 0x20)
+                out.append(String.format("\\u%04x", (int) c));
+            else
+                out.append(c);
+        }
+        out.append('"');
+    }
+}
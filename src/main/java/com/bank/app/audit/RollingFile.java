@@ -0,0 +1,134 @@
+package com.bank.app.audit;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Append-only file archived next to itself, under its name suffixed with the time of the archive, once
+ * it grows past a size. Only the newest archives are kept if their count is bounded.
+ *
+ * A failed write or archive never leaves the file closed: the file is reopened by the next write, and
+ * when it cannot be archived it keeps growing until the archive is tried again.
+ */
+@Slf4j
+final class RollingFile implements Closeable {
+
+    private static final DateTimeFormatter ARCHIVE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+    private static final long ROLL_RETRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final Path path;
+    private final String prefix;
+    private final String suffix;
+    private final long maxBytes;
+    private final int archivedFileCount;
+    // null after a failed write or open, until the next write opens the file again
+    private OutputStream out;
+    private long size;
+    // no archive is tried before this time after one failed
+    private long rollRetryAt;
+
+    RollingFile(Path path, long maxBytes, int archivedFileCount) throws IOException {
+        this.path = path.toAbsolutePath();
+        String name = this.path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        this.prefix = (dot > 0 ? name.substring(0, dot) : name) + "-";
+        this.suffix = dot > 0 ? name.substring(dot) : "";
+        this.maxBytes = maxBytes;
+        this.archivedFileCount = archivedFileCount;
+        Files.createDirectories(this.path.getParent());
+        open();
+    }
+
+    /**
+     * Append bytes, archiving the file first if it is full.
+     *
+     * @param bytes - whole lines.
+     * @throws IOException if the file cannot be written or archived.
+     */
+    void write(byte[] bytes) throws IOException {
+        if (isNull(out))
+            open();
+        if (size > 0 && size + bytes.length > maxBytes && System.currentTimeMillis() >= rollRetryAt)
+            roll();
+        try {
+            out.write(bytes);
+        } catch (IOException e) {
+            closeQuietly();
+            throw e;
+        }
+        size += bytes.length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (nonNull(out))
+            out.close();
+        out = null;
+    }
+
+    private void open() throws IOException {
+        out = Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        size = Files.size(path);
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            log.warn("Failed to close the audit log {}", path, e);
+        }
+        out = null;
+    }
+
+    private void roll() throws IOException {
+        closeQuietly();
+        Path archive = path.resolveSibling(prefix + LocalDateTime.now().format(ARCHIVE_TIME) + suffix);
+        try {
+            Files.move(path, archive);
+        } catch (IOException e) {
+            // keep appending to the full file rather than losing the lines
+            log.error("Failed to archive the audit log {} to {}, retried in {} ms", path, archive, ROLL_RETRY_MILLIS, e);
+            rollRetryAt = System.currentTimeMillis() + ROLL_RETRY_MILLIS;
+        }
+        open();
+        if (archivedFileCount > 0) {
+            try {
+                deleteOldArchives();
+            } catch (IOException e) {
+                log.warn("Failed to delete the old archives of the audit log {}", path, e);
+            }
+        }
+    }
+
+    private void deleteOldArchives() throws IOException {
+        List<Path> archives = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path.getParent(), prefix + "*" + suffix)) {
+            for (Path archive : stream) {
+                archives.add(archive);
+            }
+        }
+        // the archive time sorts as text
+        Collections.sort(archives);
+        for (int i = 0; i < archives.size() - archivedFileCount; i++) {
+            Path archive = archives.get(i);
+            if (Files.deleteIfExists(archive))
+                log.info("Deleted audit log archive {}", archive);
+        }
+    }
+}
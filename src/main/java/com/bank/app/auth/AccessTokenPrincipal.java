@@ -12,6 +12,10 @@ public class AccessTokenPrincipal implements Principal {
         this.accessToken = accessToken;
     }
 
+    Jwt getAccessToken() {
+        return accessToken;
+    }
+
     @Override
     public String getName() {
         // the 'sub' claim in the access token will be the email address
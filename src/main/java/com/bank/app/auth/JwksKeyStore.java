@@ -0,0 +1,146 @@
+package com.bank.app.auth;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.util.Duration;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * Local copy of the issuer's JSON web key set. The keys are preloaded at startup and refreshed
+ * in the background, so signature verification never waits on the issuer. A token signed with an
+ * unknown 'kid' triggers a single refetch (rate limited), which picks up rotated keys. When the
+ * issuer cannot be reached the last good key set keeps being served.
+ *
+ * The key set location can be any URL, e.g. a file:// URL pointing at a local JWKS document.
+ */
+@Slf4j
+public class JwksKeyStore implements Managed {
+
+    private final URL jwksUrl;
+    private final ObjectMapper mapper;
+    private final ScheduledExecutorService scheduler;
+    private final Duration refreshInterval;
+    private final Duration minRefetchInterval;
+    private final Duration timeout;
+    private final Object fetchLock = new Object();
+
+    private volatile Map<String, PublicKey> keys = Collections.emptyMap();
+    private volatile long lastFetchNanos;
+
+    public JwksKeyStore(URL jwksUrl,
+                        ObjectMapper mapper,
+                        ScheduledExecutorService scheduler,
+                        Duration refreshInterval,
+                        Duration minRefetchInterval,
+                        Duration timeout) {
+        this.jwksUrl = jwksUrl;
+        this.mapper = mapper;
+        this.scheduler = scheduler;
+        this.refreshInterval = refreshInterval;
+        this.minRefetchInterval = minRefetchInterval;
+        this.timeout = timeout;
+        this.lastFetchNanos = System.nanoTime() - minRefetchInterval.toNanoseconds();
+    }
+
+    @Override
+    public void start() {
+        if (!refresh())
+            log.warn("Could not preload the signing keys from {}, will retry in the background", jwksUrl);
+        long interval = refreshInterval.toMilliseconds();
+        scheduler.scheduleWithFixedDelay(this::refresh, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        // the scheduler is managed by the environment's lifecycle
+    }
+
+    /**
+     * Retrieve the public key identified by the key id. Unknown key ids cause one refetch of the key
+     * set, unless the key set has been fetched within the minimum refetch interval.
+     *
+     * @param kid - the 'kid' header of the token.
+     * @return the public key, null if the issuer does not know the key id.
+     */
+    public PublicKey getKey(String kid) {
+        PublicKey key = keys.get(kid);
+        if (nonNull(key))
+            return key;
+        synchronized (fetchLock) {
+            key = keys.get(kid);
+            if (nonNull(key))
+                return key;
+            if (System.nanoTime() - lastFetchNanos < minRefetchInterval.toNanoseconds())
+                return null;
+            log.info("Unknown signing key {}, refetch the key set", kid);
+            refresh();
+            return keys.get(kid);
+        }
+    }
+
+    /**
+     * Fetch the key set and replace the keys held in memory. On failure the current keys are kept.
+     *
+     * @return true if the key set was fetched successfully.
+     */
+    public boolean refresh() {
+        synchronized (fetchLock) {
+            lastFetchNanos = System.nanoTime();
+            try {
+                Map<String, PublicKey> fetched = fetch();
+                if (fetched.isEmpty()) {
+                    log.warn("Key set fetched from {} contains no RSA signing keys, keeping {} cached keys",
+                            jwksUrl, keys.size());
+                    return false;
+                }
+                keys = Collections.unmodifiableMap(fetched);
+                return true;
+            } catch (IOException | GeneralSecurityException | RuntimeException e) {
+                log.warn("Failed to fetch the key set from {}, keeping {} cached keys", jwksUrl, keys.size(), e);
+                return false;
+            }
+        }
+    }
+
+    private Map<String, PublicKey> fetch() throws IOException, GeneralSecurityException {
+        URLConnection connection = jwksUrl.openConnection();
+        connection.setConnectTimeout((int) timeout.toMilliseconds());
+        connection.setReadTimeout((int) timeout.toMilliseconds());
+        JsonNode jwks;
+        try (InputStream in = connection.getInputStream()) {
+            jwks = mapper.readTree(in);
+        }
+
+        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+        Base64.Decoder decoder = Base64.getUrlDecoder();
+        Map<String, PublicKey> fetched = new HashMap<>();
+        for (JsonNode jwk : jwks.path("keys")) {
+            if (!"RSA".equals(jwk.path("kty").asText()) || "enc".equals(jwk.path("use").asText()))
+                continue;
+            BigInteger modulus = new BigInteger(1, decoder.decode(jwk.path("n").asText()));
+            BigInteger exponent = new BigInteger(1, decoder.decode(jwk.path("e").asText()));
+            fetched.put(jwk.path("kid").asText(),
+                    keyFactory.generatePublic(new RSAPublicKeySpec(modulus, exponent)));
+        }
+        return fetched;
+    }
+}
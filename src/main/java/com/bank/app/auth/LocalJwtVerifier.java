@@ -0,0 +1,173 @@
+package com.bank.app.auth;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.okta.jwt.JoseException;
+import com.okta.jwt.Jwt;
+import com.okta.jwt.JwtVerifier;
+import io.dropwizard.util.Duration;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Verifies RSA signed access tokens against the keys held by a {@link JwksKeyStore}, without
+ * any call to the issuer on the request path. Checks the signature, issuer, audience and the
+ * validity window of the token.
+ */
+public class LocalJwtVerifier implements JwtVerifier {
+
+    private static final TypeReference<Map<String, Object>> CLAIMS_TYPE = new TypeReference<Map<String, Object>>() {};
+
+    private final JwksKeyStore keyStore;
+    private final ObjectMapper mapper;
+    private final String issuer;
+    private final String audience;
+    private final String clientId;
+    private final long clockSkewSeconds;
+
+    public LocalJwtVerifier(JwksKeyStore keyStore,
+                            ObjectMapper mapper,
+                            String issuer,
+                            String audience,
+                            String clientId,
+                            Duration clockSkew) {
+        this.keyStore = keyStore;
+        this.mapper = mapper;
+        this.issuer = issuer;
+        this.audience = audience;
+        this.clientId = clientId;
+        this.clockSkewSeconds = clockSkew.toSeconds();
+    }
+
+    @Override
+    public Jwt decodeAccessToken(String jwtString) throws JoseException {
+        Map<String, Object> claims = verify(jwtString);
+        if (StringUtils.isNotEmpty(audience) && !hasAudience(claims, audience))
+            throw new JoseException("Token audience does not match " + audience);
+        return toJwt(jwtString, claims);
+    }
+
+    @Override
+    public Jwt decodeIdToken(String jwtString, String nonce) throws JoseException {
+        Map<String, Object> claims = verify(jwtString);
+        if (!hasAudience(claims, clientId))
+            throw new JoseException("Token audience does not match the client id");
+        if (nonce != null && !nonce.equals(claims.get("nonce")))
+            throw new JoseException("Token nonce does not match");
+        return toJwt(jwtString, claims);
+    }
+
+    private Map<String, Object> verify(String jwtString) throws JoseException {
+        if (isNull(jwtString))
+            throw new JoseException("Token is missing");
+        int firstDot = jwtString.indexOf('.');
+        int lastDot = jwtString.lastIndexOf('.');
+        if (firstDot < 0 || firstDot == lastDot)
+            throw new JoseException("Malformed token");
+
+        Base64.Decoder decoder = Base64.getUrlDecoder();
+        try {
+            JsonNode header = mapper.readTree(decoder.decode(jwtString.substring(0, firstDot)));
+            String algorithm = signatureAlgorithm(header.path("alg").asText());
+            String kid = header.path("kid").asText();
+            PublicKey key = keyStore.getKey(kid);
+            if (isNull(key))
+                throw new JoseException("No signing key found for kid " + kid);
+
+            Signature signature = Signature.getInstance(algorithm);
+            signature.initVerify(key);
+            signature.update(jwtString.substring(0, lastDot).getBytes(StandardCharsets.US_ASCII));
+            if (!signature.verify(decoder.decode(jwtString.substring(lastDot + 1))))
+                throw new JoseException("Invalid token signature");
+
+            Map<String, Object> claims = mapper.readValue(decoder.decode(jwtString.substring(firstDot + 1, lastDot)), CLAIMS_TYPE);
+            validateClaims(claims);
+            return Collections.unmodifiableMap(claims);
+        } catch (IOException | GeneralSecurityException | IllegalArgumentException e) {
+            throw new JoseException("Failed to verify the token", e);
+        }
+    }
+
+    private void validateClaims(Map<String, Object> claims) throws JoseException {
+        if (!issuer.equals(claims.get("iss")))
+            throw new JoseException("Token issuer does not match " + issuer);
+        long now = Instant.now().getEpochSecond();
+        Instant expiresAt = epochSeconds(claims.get("exp"));
+        if (isNull(expiresAt) || expiresAt.getEpochSecond() + clockSkewSeconds < now)
+            throw new JoseException("Token is expired");
+        Instant notBefore = epochSeconds(claims.get("nbf"));
+        if (notBefore != null && notBefore.getEpochSecond() - clockSkewSeconds > now)
+            throw new JoseException("Token is not valid yet");
+    }
+
+    private static String signatureAlgorithm(String alg) throws JoseException {
+        switch (alg) {
+            case "RS256": return "SHA256withRSA";
+            case "RS384": return "SHA384withRSA";
+            case "RS512": return "SHA512withRSA";
+            default: throw new JoseException("Unsupported signing algorithm " + alg);
+        }
+    }
+
+    private static boolean hasAudience(Map<String, Object> claims, String expected) {
+        Object aud = claims.get("aud");
+        if (aud instanceof Collection)
+            return ((Collection<?>) aud).contains(expected);
+        return expected != null && expected.equals(aud);
+    }
+
+    private static Instant epochSeconds(Object claim) {
+        return claim instanceof Number ? Instant.ofEpochSecond(((Number) claim).longValue()) : null;
+    }
+
+    private static Jwt toJwt(String jwtString, Map<String, Object> claims) {
+        return new VerifiedJwt(jwtString, epochSeconds(claims.get("iat")), epochSeconds(claims.get("exp")), claims);
+    }
+
+    private static final class VerifiedJwt implements Jwt {
+        private final String tokenValue;
+        private final Instant issuedAt;
+        private final Instant expiresAt;
+        private final Map<String, Object> claims;
+
+        private VerifiedJwt(String tokenValue, Instant issuedAt, Instant expiresAt, Map<String, Object> claims) {
+            this.tokenValue = tokenValue;
+            this.issuedAt = issuedAt;
+            this.expiresAt = expiresAt;
+            this.claims = claims;
+        }
+
+        @Override
+        public String getTokenValue() {
+            return tokenValue;
+        }
+
+        @Override
+        public Instant getIssuedAt() {
+            return issuedAt;
+        }
+
+        @Override
+        public Instant getExpiresAt() {
+            return expiresAt;
+        }
+
+        @Override
+        public Map<String, Object> getClaims() {
+            return claims;
+        }
+    }
+}
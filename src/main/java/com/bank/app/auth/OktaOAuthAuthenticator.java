@@ -8,23 +8,44 @@ import io.dropwizard.auth.Authenticator;
 
 import java.util.Optional;
 
+import static java.util.Objects.isNull;
+
 public class OktaOAuthAuthenticator implements Authenticator<String, AccessTokenPrincipal> {
 
     private final JwtVerifier jwtVerifier;
+    private final VerifiedTokenCache tokenCache;
 
     public OktaOAuthAuthenticator(JwtVerifier jwtVerifier) {
+        this(jwtVerifier, null);
+    }
+
+    public OktaOAuthAuthenticator(JwtVerifier jwtVerifier, VerifiedTokenCache tokenCache) {
         this.jwtVerifier = jwtVerifier;
+        this.tokenCache = tokenCache;
     }
 
     @Override
     public Optional<AccessTokenPrincipal> authenticate(String accessToken) throws AuthenticationException {
+        if (isNull(tokenCache))
+            return Optional.of(verify(accessToken));
+
+        // the same bearer token is presented many times, skip the signature check while it is valid
+        String key = VerifiedTokenCache.keyOf(accessToken);
+        Optional<AccessTokenPrincipal> cached = tokenCache.get(key);
+        if (cached.isPresent())
+            return cached;
+        AccessTokenPrincipal principal = verify(accessToken);
+        tokenCache.put(key, principal, principal.getAccessToken().getExpiresAt());
+        return Optional.of(principal);
+    }
 
+    private AccessTokenPrincipal verify(String accessToken) throws AuthenticationException {
         try {
             Jwt jwt = jwtVerifier.decodeAccessToken(accessToken);
             // if we made it this far we have a valid jwt
-            return Optional.of(new AccessTokenPrincipal(jwt));
+            return new AccessTokenPrincipal(jwt);
         } catch (JoseException e) {
             throw new AuthenticationException(e);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,122 @@
+package com.bank.app.auth;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import io.dropwizard.util.Duration;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Bounded cache of verified access tokens, keyed by the SHA-256 hash of the raw token so that
+ * bearer tokens are never retained in memory. An entry lives until the token's 'exp' claim or
+ * the configured maximum ttl, whichever comes first; the least recently used entries are evicted
+ * once the cache is full.
+ */
+public class VerifiedTokenCache {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private final Cache<String, Entry> cache;
+    private final Clock clock;
+    private final Meter hits;
+    private final Meter misses;
+    private final Meter evictions;
+    private final Meter expirations;
+
+    public VerifiedTokenCache(MetricRegistry metrics, long maximumSize, Duration maximumTtl) {
+        this.clock = Clock.systemUTC();
+        this.hits = metrics.meter(name(VerifiedTokenCache.class, "hits"));
+        this.misses = metrics.meter(name(VerifiedTokenCache.class, "misses"));
+        this.evictions = metrics.meter(name(VerifiedTokenCache.class, "evictions"));
+        this.expirations = metrics.meter(name(VerifiedTokenCache.class, "expirations"));
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(maximumTtl.toMilliseconds(), TimeUnit.MILLISECONDS)
+                .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+                .removalListener(notification -> {
+                    if (notification.getCause() == RemovalCause.SIZE)
+                        evictions.mark();
+                    else if (notification.getCause() == RemovalCause.EXPIRED)
+                        expirations.mark();
+                })
+                .build();
+        metrics.register(name(VerifiedTokenCache.class, "size"), (Gauge<Long>) cache::size);
+    }
+
+    /**
+     * Compute the cache key of a raw access token.
+     *
+     * @param accessToken - the raw bearer token.
+     * @return the url-safe base64 encoded SHA-256 hash of the token.
+     */
+    public static String keyOf(String accessToken) {
+        MessageDigest digest = SHA_256.get();
+        digest.reset();
+        byte[] hash = digest.digest(accessToken.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+    }
+
+    /**
+     * Retrieve the principal verified earlier for the token key, if it has not expired yet.
+     *
+     * @param key - hash of the access token, see {@link #keyOf(String)}.
+     * @return optional principal.
+     */
+    public Optional<AccessTokenPrincipal> get(String key) {
+        Entry entry = cache.getIfPresent(key);
+        if (entry == null) {
+            misses.mark();
+            return Optional.empty();
+        }
+        if (!clock.instant().isBefore(entry.expiresAt)) {
+            cache.invalidate(key);
+            expirations.mark();
+            misses.mark();
+            return Optional.empty();
+        }
+        hits.mark();
+        return Optional.of(entry.principal);
+    }
+
+    /**
+     * Remember a verified principal until the token expires.
+     *
+     * @param key - hash of the access token, see {@link #keyOf(String)}.
+     * @param principal - principal built from the verified token.
+     * @param expiresAt - value of the token's 'exp' claim.
+     */
+    public void put(String key, AccessTokenPrincipal principal, Instant expiresAt) {
+        if (expiresAt == null || !clock.instant().isBefore(expiresAt))
+            return;
+        cache.put(key, new Entry(principal, expiresAt));
+    }
+
+    private static final class Entry {
+        private final AccessTokenPrincipal principal;
+        private final Instant expiresAt;
+
+        private Entry(AccessTokenPrincipal principal, Instant expiresAt) {
+            this.principal = principal;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.bank.app.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.dropwizard.util.Duration;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Remembers the current version tag of the entities served with an ETag, so that conditional reads
+ * can be answered without loading the entity. Entries are invalidated when a write to the entity
+ * commits, see {@link VersionInvalidationListener}, and expire after a short ttl, which bounds how
+ * long writes made by other nodes can go unnoticed.
+ *
+ * A version read from the database is only cached if the entity has not been invalidated since the
+ * read started: callers take a stamp before reading and hand it back with the version.
+ */
+public class VersionCache {
+
+    private static final int STRIPES = 1024;
+
+    private final Cache<String, String> versions;
+    // incremented on every invalidation of the keys of the stripe
+    private final AtomicLongArray invalidations = new AtomicLongArray(STRIPES);
+
+    public VersionCache(long maximumSize, Duration ttl) {
+        this.versions = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl.toMilliseconds(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public static String accountKey(String accountId) {
+        return "account:" + accountId;
+    }
+
+    public static String customerKey(String customerId) {
+        return "customer:" + customerId;
+    }
+
+    /**
+     * Take a stamp before reading the version of an entity from the database.
+     *
+     * @param key - key of the entity.
+     * @return the stamp to pass to {@link #put(String, long, String)}.
+     */
+    public long stamp(String key) {
+        return invalidations.get(stripe(key));
+    }
+
+    /**
+     * @param key - key of the entity.
+     * @return the version tag of the entity, null if it is not known.
+     */
+    public String get(String key) {
+        return versions.getIfPresent(key);
+    }
+
+    /**
+     * Remember the version tag read from the database, unless the entity was invalidated meanwhile.
+     *
+     * @param key - key of the entity.
+     * @param stamp - stamp taken before the read.
+     * @param version - the version tag.
+     */
+    public void put(String key, long stamp, String version) {
+        versions.put(key, version);
+        // an invalidation which ran between the stamp and the put may have missed the entry
+        if (invalidations.get(stripe(key)) != stamp)
+            versions.invalidate(key);
+    }
+
+    /**
+     * Forget the version of an entity, called once a write to it has committed.
+     *
+     * @param key - key of the entity.
+     */
+    public void invalidate(String key) {
+        invalidations.incrementAndGet(stripe(key));
+        versions.invalidate(key);
+    }
+
+    private static int stripe(String key) {
+        return (key.hashCode() & Integer.MAX_VALUE) % STRIPES;
+    }
+}
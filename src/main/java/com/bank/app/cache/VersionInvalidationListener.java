@@ -0,0 +1,87 @@
+package com.bank.app.cache;
+
+import com.bank.app.model.Account;
+import com.bank.app.model.Customer;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * Invalidates the cached versions of accounts and customers once a write to them has committed. The
+ * version of a customer covers its accounts, so a write to an account also invalidates its customer,
+ * and the previous customer when the account is linked to another one.
+ */
+public class VersionInvalidationListener implements PostCommitInsertEventListener,
+        PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private final VersionCache versionCache;
+
+    public VersionInvalidationListener(VersionCache versionCache) {
+        this.versionCache = versionCache;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        invalidate(event.getEntity(), null, event.getPersister());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        invalidate(event.getEntity(), event.getOldState(), event.getPersister());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        invalidate(event.getEntity(), event.getDeletedState(), event.getPersister());
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+        // nothing was committed, the cached versions are still current
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        // nothing was committed, the cached versions are still current
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        // nothing was committed, the cached versions are still current
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        Class<?> type = persister.getMappedClass();
+        return type == Account.class || type == Customer.class;
+    }
+
+    private void invalidate(Object entity, Object[] previousState, EntityPersister persister) {
+        if (entity instanceof Customer) {
+            versionCache.invalidate(VersionCache.customerKey(((Customer) entity).getId()));
+        } else if (entity instanceof Account) {
+            Account account = (Account) entity;
+            versionCache.invalidate(VersionCache.accountKey(account.getId()));
+            invalidateCustomer(account.getCustomer());
+            if (nonNull(previousState))
+                invalidateCustomer(previousState[persister.getEntityMetamodel().getPropertyIndex("customer")]);
+        }
+    }
+
+    private void invalidateCustomer(Object customer) {
+        if (customer instanceof HibernateProxy) {
+            // the id of an uninitialized customer is known without loading it
+            Object id = ((HibernateProxy) customer).getHibernateLazyInitializer().getIdentifier();
+            versionCache.invalidate(VersionCache.customerKey(String.valueOf(id)));
+        } else if (customer instanceof Customer) {
+            versionCache.invalidate(VersionCache.customerKey(((Customer) customer).getId()));
+        }
+    }
+}
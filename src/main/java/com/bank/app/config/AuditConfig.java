@@ -0,0 +1,35 @@
+package com.bank.app.config;
+
+import io.dropwizard.util.Duration;
+import io.dropwizard.util.Size;
+import lombok.Getter;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+@Getter
+public class AuditConfig {
+    // the file the events are written to, one JSON object per line
+    @NotNull
+    private String currentLogFilename = "audit/audit.log";
+    // the file is archived next to it once it grows past this size
+    @NotNull
+    private Size maxFileSize = Size.megabytes(100);
+    // archives kept, 0 keeps all of them
+    @Min(0)
+    private int archivedFileCount = 0;
+    // events held in memory until the writer gets to them, rounded up to a power of two
+    @Min(64)
+    private int ringBufferSize = 8192;
+    // most events written to the file at once
+    @Min(1)
+    private int batchSize = 512;
+    // how long the writer sleeps when there is no event to write
+    private Duration pollInterval = Duration.milliseconds(10);
+    // share of the debug events kept; audit records are never sampled
+    @DecimalMin("0")
+    @DecimalMax("1")
+    private double debugSampleRate = 0.01;
+}
@@ -1,5 +1,6 @@
 package com.bank.app.config;
 
+import io.dropwizard.util.Duration;
 import lombok.Getter;
 
 @Getter
@@ -10,4 +11,13 @@ public class AuthConfig {
     private String issuer;
     private String audience;
     private String apiToken;
+    // signing keys, defaults to the issuer's /v1/keys endpoint; file:// urls are accepted
+    private String jwksUri;
+    private Duration jwksRefreshInterval = Duration.minutes(15);
+    private Duration jwksMinRefetchInterval = Duration.seconds(30);
+    private Duration jwksTimeout = Duration.seconds(5);
+    private Duration clockSkew = Duration.seconds(30);
+    // verified tokens kept in memory, 0 disables the cache
+    private long tokenCacheMaxSize = 10000;
+    private Duration tokenCacheMaxTtl = Duration.hours(1);
 }
\ No newline at end of file
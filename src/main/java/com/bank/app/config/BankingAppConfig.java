@@ -18,4 +18,48 @@ public class BankingAppConfig extends Configuration {
     @Valid
     @JsonProperty("database")
     private DataSourceFactory dataSourceFactory = new DataSourceFactory();
+
+    @NotNull
+    @Valid
+    private ReadReplicasConfig readReplicas = new ReadReplicasConfig();
+
+    @NotNull
+    @Valid
+    private ShardingConfig sharding = new ShardingConfig();
+
+    @NotNull
+    @Valid
+    private AuditConfig audit = new AuditConfig();
+
+    @NotNull
+    @Valid
+    private JsonConfig json = new JsonConfig();
+
+    @NotNull
+    @Valid
+    private ProvisioningConfig provisioning = new ProvisioningConfig();
+
+    @NotNull
+    @Valid
+    private TransferConfig transfer = new TransferConfig();
+
+    @NotNull
+    @Valid
+    private SearchConfig search = new SearchConfig();
+
+    @NotNull
+    @Valid
+    private IdConfig ids = new IdConfig();
+
+    @NotNull
+    @Valid
+    private CacheConfig cache = new CacheConfig();
+
+    @NotNull
+    @Valid
+    private LedgerConfig ledger = new LedgerConfig();
+
+    @NotNull
+    @Valid
+    private RequestTimingConfig requestTiming = new RequestTimingConfig();
 }
@@ -0,0 +1,15 @@
+package com.bank.app.config;
+
+import io.dropwizard.util.Duration;
+import lombok.Getter;
+
+import javax.validation.constraints.Min;
+
+@Getter
+public class CacheConfig {
+    // number of account and customer versions remembered for conditional reads
+    @Min(1)
+    private long versionCacheMaxSize = 100000;
+    // bounds how long a write made by another node can be answered with 304 Not Modified
+    private Duration versionCacheTtl = Duration.seconds(10);
+}
@@ -0,0 +1,15 @@
+package com.bank.app.config;
+
+import com.bank.app.id.TimeOrderedIdGenerator;
+import lombok.Getter;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+@Getter
+public class IdConfig {
+    // must be different on every node sharing the database
+    @Min(0)
+    @Max(TimeOrderedIdGenerator.MAX_NODE_ID)
+    private int nodeId = 0;
+}
@@ -0,0 +1,9 @@
+package com.bank.app.config;
+
+import lombok.Getter;
+
+@Getter
+public class JsonConfig {
+    // response writers resolved once per type and @JsonFormat dates formatted without SimpleDateFormat
+    private boolean accelerated = false;
+}
@@ -0,0 +1,28 @@
+package com.bank.app.config;
+
+import com.bank.app.ledger.Journal;
+import io.dropwizard.util.Duration;
+import lombok.Getter;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+@Getter
+public class LedgerConfig {
+    // directory of the journal segments and the balance snapshots
+    @NotNull
+    private String directory = "ledger";
+    // records of 128 bytes per segment file
+    @Min(1024)
+    private int segmentRecords = 1 << 20;
+    // GROUP makes every posting durable before the transfer returns
+    @NotNull
+    private Journal.FsyncPolicy fsync = Journal.FsyncPolicy.GROUP;
+    // how often the journal is forced to disk with the INTERVAL policy
+    private Duration fsyncInterval = Duration.milliseconds(10);
+    private Duration snapshotInterval = Duration.minutes(5);
+    // how often the journal is pushed into the database tables
+    private Duration projectInterval = Duration.milliseconds(500);
+    @Min(1)
+    private int projectBatchSize = 1000;
+}
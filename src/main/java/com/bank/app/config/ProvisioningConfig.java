@@ -0,0 +1,24 @@
+package com.bank.app.config;
+
+import io.dropwizard.util.Duration;
+import lombok.Getter;
+
+import javax.validation.constraints.Min;
+
+@Getter
+public class ProvisioningConfig {
+    // how often the outbox is polled for pending tasks
+    private Duration pollInterval = Duration.seconds(5);
+    // time a claimed task is reserved for the worker that claimed it
+    private Duration lease = Duration.minutes(2);
+    @Min(1)
+    private int batchSize = 50;
+    @Min(1)
+    private int maxAttempts = 10;
+    private Duration initialBackoff = Duration.seconds(5);
+    private Duration maxBackoff = Duration.minutes(10);
+    // how often the email to okta user id mapping is reconciled with okta
+    private Duration syncInterval = Duration.minutes(15);
+    // how often the whole directory is listed, to drop the mappings of the users deleted in okta
+    private Duration fullSyncInterval = Duration.days(1);
+}
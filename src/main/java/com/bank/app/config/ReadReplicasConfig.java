@@ -0,0 +1,22 @@
+package com.bank.app.config;
+
+import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.util.Duration;
+import lombok.Getter;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+public class ReadReplicasConfig {
+    // the read-only resource methods are spread over these databases, none by default
+    @NotNull
+    @Valid
+    private List<DataSourceFactory> replicas = new ArrayList<>();
+    // how long the reads of a client go to the primary after it wrote, covers the replication lag
+    private Duration stalenessBound = Duration.seconds(5);
+    // a replica failing its health check gets no reads until it passes one
+    private Duration healthCheckInterval = Duration.seconds(10);
+}
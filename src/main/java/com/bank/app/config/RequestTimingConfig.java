@@ -0,0 +1,16 @@
+package com.bank.app.config;
+
+import lombok.Getter;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+
+@Getter
+public class RequestTimingConfig {
+    // add a Server-Timing header with the breakdown of every request, for debugging only
+    private boolean serverTimingHeader = false;
+    // share of the requests whose breakdown is logged, 0 to log none
+    @DecimalMin("0")
+    @DecimalMax("1")
+    private double logSampleRate = 0;
+}
@@ -0,0 +1,22 @@
+package com.bank.app.config;
+
+import io.dropwizard.util.Duration;
+import lombok.Getter;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+
+@Getter
+public class SearchConfig {
+    // serve name and email searches from the in-memory trigram indexes
+    private boolean indexEnabled = true;
+    // how often the indexes are rebuilt from the database, picks up writes made by other nodes
+    private Duration rebuildInterval = Duration.minutes(10);
+    // the customer email filter is sized for at least this many emails
+    @Min(1)
+    private long emailFilterExpectedInsertions = 1000000;
+    @DecimalMin("0.0001")
+    @DecimalMax("0.5")
+    private double emailFilterFalsePositiveRate = 0.01;
+}
@@ -0,0 +1,29 @@
+package com.bank.app.config;
+
+import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.util.Duration;
+import lombok.Getter;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+public class ShardingConfig {
+    // the databases holding accounts besides the main one, which is shard 0; none by default
+    @NotNull
+    @Valid
+    @Size(max = 255)
+    private List<DataSourceFactory> shards = new ArrayList<>();
+    // how often the credits of the transfers between shards are posted
+    private Duration relayInterval = Duration.seconds(1);
+    // pending credits posted per unit of work claiming them
+    @Min(1)
+    private int relayBatchSize = 500;
+    // failed attempts after which a credit is given up on and its debit returned
+    @Min(1)
+    private int relayMaxAttempts = 10;
+}
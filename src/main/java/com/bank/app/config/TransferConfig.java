@@ -0,0 +1,40 @@
+package com.bank.app.config;
+
+import io.dropwizard.util.Duration;
+import lombok.Getter;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+@Getter
+public class TransferConfig {
+    // number of in-process locks the account ids are striped over
+    @Min(1)
+    private int lockStripes = 1024;
+    // largest number of transfers accepted in one batch
+    @Min(1)
+    private int maxBatchSize = 1000;
+    // where the postings are written first
+    @NotNull
+    private Mode mode = Mode.SYNC;
+    // PIPELINE mode: transfers waiting for the sequencer, refused with 503 beyond it
+    @Min(1)
+    private int pipelineCapacity = 4096;
+    // PIPELINE mode: transfers committed in one transaction
+    @Min(1)
+    private int groupSize = 256;
+    // PIPELINE mode: longest wait for a group to fill up
+    private Duration groupInterval = Duration.milliseconds(5);
+    // PIPELINE mode: threads writing the responses of the committed transfers
+    @Min(1)
+    private int responderThreads = 4;
+
+    public enum Mode {
+        // postings and balances are written to the database in the request's transaction
+        SYNC,
+        // postings are appended to the ledger journal and projected to the database in the background
+        JOURNAL,
+        // single transfers are queued and committed to the database in groups by one sequencer thread
+        PIPELINE
+    }
+}
@@ -1,41 +1,56 @@
 package com.bank.app.db;
 
+import com.bank.app.id.IdGenerator;
 import com.bank.app.model.Account;
+import com.bank.app.model.Customer;
 import com.google.common.base.Optional;
-import io.dropwizard.hibernate.AbstractDAO;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 
-import javax.persistence.Query;
+import javax.persistence.LockModeType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.function.Consumer;
 
 @Slf4j
-public class AccountDAO extends AbstractDAO<Account> {
+public class AccountDAO extends ShardedDAO<Account> {
 
-    public AccountDAO(SessionFactory sessionFactory) {
-        super(sessionFactory);
+    private final IdGenerator idGenerator;
+
+    public AccountDAO(SessionFactory sessionFactory,
+                      Shards shards,
+                      IdGenerator idGenerator) {
+        super(sessionFactory, shards);
+        this.idGenerator = idGenerator;
     }
 
     /**
-     * Add an account to the database.
+     * Add an account to the database. The accounts of a customer are placed on the same shard.
      *
      * @param acoount
      */
     public void add(Account acoount) {
-        String randomString = UUID.randomUUID().toString().substring(1, 7);
-        StringBuilder idBuilder = new StringBuilder();
+        String type = null;
         switch (acoount.getAccountType()) {
-            case Loan: idBuilder.append("LN");
+            case Loan: type = "LN";
                 break;
-            case Savings:idBuilder.append("SA");
+            case Savings:type = "SA";
                 break;
-            case Checking:idBuilder.append("CH");
+            case Checking:type = "CH";
                 break;
         }
-        acoount.setId(idBuilder.append(randomString).toString());
-        persist(acoount);
+        String generatedId = idGenerator.nextId();
+        String placement = acoount.getCustomer() != null ? acoount.getCustomer().getId() : generatedId;
+        acoount.setId(getShards().accountId(type, generatedId, placement));
+        int shard = getShards().shardOf(acoount.getId());
+        if (shard == 0)
+            persist(acoount);
+        else
+            session(shard).persist(acoount);
     }
 
     /**
@@ -44,11 +59,121 @@ public class AccountDAO extends AbstractDAO<Account> {
      * @return list of accounts.
      */
     public List<Account> findAll() {
-        Query query = this.currentSession().createQuery("from Account");
-        return query.getResultList();
+        List<Account> accounts = new ArrayList<>();
+        for (int shard = 0; shard < getShards().count(); shard++) {
+            accounts.addAll(session(shard).createQuery("from Account", Account.class).getResultList());
+        }
+        return accounts;
         //return list(namedQuery("com.bank.app.model.Account.findAll"));
     }
 
+    /**
+     * Retrieve a page of accounts ordered by id. The next page starts after the id of the last
+     * account of the current page.
+     *
+     * @param afterId - id of the last account of the previous page, an empty string for the first page.
+     * @param limit - maximum number of accounts to return.
+     * @return list of accounts.
+     */
+    public List<Account> findPage(String afterId, int limit) {
+        List<Account> accounts = new ArrayList<>();
+        for (int shard = 0; shard < getShards().count(); shard++) {
+            accounts.addAll(session(shard)
+                    .createNamedQuery("com.bank.app.model.Account.findPage", Account.class)
+                    .setParameter("afterId", afterId)
+                    .setMaxResults(limit)
+                    .getResultList());
+        }
+        return firstById(accounts, Account::getId, limit);
+    }
+
+    /**
+     * Read all the accounts, one at a time, without holding them in memory. The shards are read one
+     * after the other, the accounts of a shard ordered by id.
+     *
+     * @param consumer - receives every account.
+     */
+    public void scrollAll(Consumer<Account> consumer) {
+        for (int shard = 0; shard < getShards().count(); shard++) {
+            ScrollingReader.scroll(getShards().sessionFactory(shard),
+                    "select a from Account a order by a.id",
+                    Account.class, consumer);
+        }
+    }
+
+    /**
+     * Load the transactions of the accounts with one query, so that they are part of the accounts'
+     * JSON representation. One query per shard.
+     *
+     * @param accounts - accounts loaded in the current unit of work.
+     * @return the same accounts.
+     */
+    public List<Account> fetchTransactions(List<Account> accounts) {
+        if (accounts.isEmpty())
+            return accounts;
+        List<String> ids = new ArrayList<>(accounts.size());
+        for (Account account : accounts) {
+            ids.add(account.getId());
+        }
+        for (Map.Entry<Integer, List<String>> shard : getShards().byShard(ids).entrySet()) {
+            session(shard.getKey())
+                    .createNamedQuery("com.bank.app.model.Account.fetchTransactions", Account.class)
+                    .setParameterList("ids", shard.getValue())
+                    .getResultList();
+        }
+        return accounts;
+    }
+
+    /**
+     * Add the accounts held by the other shards than the main database to the accounts of the
+     * customers, with one query per shard. The customers must be loaded with their accounts in a
+     * read-only unit of work: the customers are not meant to be written back.
+     *
+     * @param customers - customers with their accounts of the main database loaded.
+     * @param includeTransactions - whether to load the transactions of the accounts added.
+     * @return the same customers.
+     */
+    public List<Customer> fetchFromShards(List<Customer> customers, boolean includeTransactions) {
+        if (getShards().count() == 1 || customers.isEmpty())
+            return customers;
+        Map<String, Customer> byId = new HashMap<>();
+        for (Customer customer : customers) {
+            byId.put(customer.getId(), customer);
+        }
+        for (int shard = 1; shard < getShards().count(); shard++) {
+            List<Object[]> rows = session(shard)
+                    .createNamedQuery("com.bank.app.model.Account.findByCustomers", Object[].class)
+                    .setParameterList("customerIds", byId.keySet())
+                    .getResultList();
+            List<Account> accounts = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                Account account = (Account) row[0];
+                byId.get((String) row[1]).getAccounts().add(account);
+                accounts.add(account);
+            }
+            if (includeTransactions)
+                fetchTransactions(accounts);
+        }
+        return customers;
+    }
+
+    /**
+     * Count the accounts of a customer held by the other shards than the main database.
+     *
+     * @param customerId - unique identifier of the customer.
+     * @return number of accounts.
+     */
+    public long countOnOtherShards(String customerId) {
+        long count = 0;
+        for (int shard = 1; shard < getShards().count(); shard++) {
+            count += session(shard)
+                    .createNamedQuery("com.bank.app.model.Account.countByCustomer", Long.class)
+                    .setParameter("customerId", customerId)
+                    .getSingleResult();
+        }
+        return count;
+    }
+
     /**
      * Retrieve the account by it's id
      *
@@ -56,7 +181,53 @@ public class AccountDAO extends AbstractDAO<Account> {
      * @return optional account object.
      */
     public Optional<Account> findById(String accountId) {
-        return Optional.fromNullable(get(accountId));
+        int shard = getShards().shardOf(accountId);
+        return Optional.fromNullable(shard == 0 ? get(accountId) : session(shard).get(Account.class, accountId));
+    }
+
+    /**
+     * Retrieve the accounts with the given ids in one query and lock their rows until the end of the
+     * transaction. The rows are locked shard after shard in ascending shard order, in ascending id
+     * order within a shard.
+     *
+     * @param accountIds - unique identifiers of the accounts.
+     * @return map of the accounts found, by id.
+     */
+    public Map<String, Account> findByIdsForUpdate(Collection<String> accountIds) {
+        Map<String, Account> accounts = new HashMap<>();
+        for (Map.Entry<Integer, List<String>> shard : getShards().byShard(accountIds).entrySet()) {
+            List<Account> found = session(shard.getKey())
+                    .createNamedQuery("com.bank.app.model.Account.findByIds", Account.class)
+                    .setParameterList("ids", shard.getValue())
+                    .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                    .getResultList();
+            for (Account account : found) {
+                accounts.put(account.getId(), account);
+            }
+        }
+        return accounts;
+    }
+
+    /**
+     * Retrieve the accounts with the given ids in one query, read-only: changes made to them are
+     * never written back to the database.
+     *
+     * @param accountIds - unique identifiers of the accounts.
+     * @return map of the accounts found, by id.
+     */
+    public Map<String, Account> findByIdsReadOnly(Collection<String> accountIds) {
+        Map<String, Account> accounts = new HashMap<>();
+        for (Map.Entry<Integer, List<String>> shard : getShards().byShard(accountIds).entrySet()) {
+            List<Account> found = session(shard.getKey())
+                    .createNamedQuery("com.bank.app.model.Account.findByIds", Account.class)
+                    .setParameterList("ids", shard.getValue())
+                    .setReadOnly(true)
+                    .getResultList();
+            for (Account account : found) {
+                accounts.put(account.getId(), account);
+            }
+        }
+        return accounts;
     }
 
     /**
@@ -65,7 +236,7 @@ public class AccountDAO extends AbstractDAO<Account> {
      * @param account - details of the account to be used to update the account.
      */
     public void update(Account account) {
-        this.currentSession().merge(account);
+        sessionOf(account.getId()).merge(account);
     }
 
     /**
@@ -74,8 +245,8 @@ public class AccountDAO extends AbstractDAO<Account> {
      * @param accountId - unique identifier of the account.
      */
     public void delete(String accountId) {
-        Session session = this.currentSession();
-        session.delete(get(accountId));
+        Session session = sessionOf(accountId);
+        session.delete(session.get(Account.class, accountId));
         session.getTransaction().commit();
     }
 }
@@ -0,0 +1,120 @@
+package com.bank.app.db;
+
+import com.bank.app.model.AccountDailyRollup;
+import com.bank.app.model.Money;
+import com.bank.app.model.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static java.util.Objects.isNull;
+
+@Slf4j
+public class AccountDailyRollupDAO extends ShardedDAO<AccountDailyRollup> {
+
+    public AccountDailyRollupDAO(SessionFactory sessionFactory, Shards shards) {
+        super(sessionFactory, shards);
+    }
+
+    /**
+     * Day of a posting time, in UTC.
+     *
+     * @param postedOn - posting time.
+     * @return the day.
+     */
+    public static LocalDate day(Date postedOn) {
+        return postedOn.toInstant().atZone(ZoneOffset.UTC).toLocalDate();
+    }
+
+    /**
+     * Add postings to the rollups of their account and day, with one query per shard for the existing
+     * rollups. Must be called with the postings in posting order, in the unit of work which adds them,
+     * while the accounts are locked.
+     *
+     * @param postings - the postings, not yet committed.
+     */
+    public void apply(List<Transaction> postings) {
+        if (postings.isEmpty())
+            return;
+        if (getShards().count() == 1) {
+            apply(0, postings);
+            return;
+        }
+        Map<Integer, List<Transaction>> byShard = new TreeMap<>();
+        for (Transaction posting : postings) {
+            byShard.computeIfAbsent(getShards().shardOf(posting.getAccount().getId()), s -> new ArrayList<>()).add(posting);
+        }
+        for (Map.Entry<Integer, List<Transaction>> shard : byShard.entrySet()) {
+            apply(shard.getKey(), shard.getValue());
+        }
+    }
+
+    private void apply(int shard, List<Transaction> postings) {
+        Session session = session(shard);
+        Set<String> accountIds = new HashSet<>();
+        LocalDate firstDay = null;
+        LocalDate lastDay = null;
+        for (Transaction posting : postings) {
+            accountIds.add(posting.getAccount().getId());
+            LocalDate day = day(posting.getPostedOn());
+            if (isNull(firstDay) || day.isBefore(firstDay))
+                firstDay = day;
+            if (isNull(lastDay) || day.isAfter(lastDay))
+                lastDay = day;
+        }
+        Map<AccountDailyRollup.Key, AccountDailyRollup> rollups = new HashMap<>();
+        List<AccountDailyRollup> existing = session
+                .createNamedQuery("com.bank.app.model.AccountDailyRollup.findByAccountsAndDays", AccountDailyRollup.class)
+                .setParameterList("accountIds", accountIds)
+                .setParameter("firstDay", firstDay)
+                .setParameter("lastDay", lastDay)
+                .getResultList();
+        for (AccountDailyRollup rollup : existing) {
+            rollups.put(new AccountDailyRollup.Key(rollup.getAccountId(), rollup.getDay()), rollup);
+        }
+
+        for (Transaction posting : postings) {
+            AccountDailyRollup.Key key = new AccountDailyRollup.Key(posting.getAccount().getId(), day(posting.getPostedOn()));
+            AccountDailyRollup rollup = rollups.get(key);
+            if (isNull(rollup)) {
+                rollup = new AccountDailyRollup(key.getAccountId(), key.getDay(), posting.getBalanceBefore(), 0, 0, 0, 0);
+                session.persist(rollup);
+                rollups.put(key, rollup);
+            }
+            if (posting.getTransactionType() == Transaction.TransactionType.CREDIT)
+                rollup.setCredits(Money.add(rollup.getCredits(), posting.getAmmount()));
+            else
+                rollup.setDebits(Money.add(rollup.getDebits(), posting.getAmmount()));
+            rollup.setTransactionCount(rollup.getTransactionCount() + 1);
+            rollup.setClosingBalance(posting.getBalanceAfter());
+        }
+    }
+
+    /**
+     * Retrieve the rollups of an account for a range of days, oldest first.
+     *
+     * @param accountId - unique identifier of the account.
+     * @param firstDay - first day (inclusive).
+     * @param endDay - day after the last day (exclusive).
+     * @return the rollups of the days with postings.
+     */
+    public List<AccountDailyRollup> findRange(String accountId, LocalDate firstDay, LocalDate endDay) {
+        return sessionOf(accountId)
+                .createNamedQuery("com.bank.app.model.AccountDailyRollup.findRange", AccountDailyRollup.class)
+                .setParameter("accountId", accountId)
+                .setParameter("firstDay", firstDay)
+                .setParameter("endDay", endDay)
+                .getResultList();
+    }
+}
@@ -1,20 +1,46 @@
 package com.bank.app.db;
 
+import com.bank.app.id.IdGenerator;
+import com.bank.app.model.Account;
 import com.bank.app.model.Customer;
+import com.bank.app.search.MembershipFilter;
+import com.bank.app.search.TrigramIndex;
 import com.google.common.base.Optional;
-import io.dropwizard.hibernate.AbstractDAO;
+import com.google.common.collect.Iterables;
+import com.google.common.hash.BloomFilter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.Hibernate;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.UUID;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import static java.util.Objects.nonNull;
 
 @Slf4j
-public class CustomerDAO extends AbstractDAO<Customer> {
+public class CustomerDAO extends RoutedDAO<Customer> {
+
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
+    private final SessionFactory sessionFactory;
+    private final TrigramIndex<String> nameIndex = new TrigramIndex<>();
+    private final TrigramIndex<String> emailIndex = new TrigramIndex<>();
+    private final MembershipFilter emailFilter;
+    private final IdGenerator idGenerator;
 
-    public CustomerDAO(SessionFactory sessionFactory) {
+    public CustomerDAO(SessionFactory sessionFactory,
+                       MembershipFilter emailFilter,
+                       IdGenerator idGenerator) {
         super(sessionFactory);
+        this.sessionFactory = sessionFactory;
+        this.emailFilter = emailFilter;
+        this.idGenerator = idGenerator;
     }
 
     /**
@@ -23,10 +49,12 @@ public class CustomerDAO extends AbstractDAO<Customer> {
      * @param customer - details of the customer.
      */
     public void add(Customer customer) {
-        String randomString = UUID.randomUUID().toString().substring(1, 7);
         StringBuilder idBuilder = new StringBuilder();
-        customer.setId(idBuilder.append("CID").append(randomString).toString());
+        customer.setId(idBuilder.append("CID").append(idGenerator.nextId()).toString());
         persist(customer);
+        // surface a duplicate email now rather than at commit
+        currentSession().flush();
+        index(customer);
     }
 
     /**
@@ -38,6 +66,82 @@ public class CustomerDAO extends AbstractDAO<Customer> {
         return list(namedQuery("com.bank.app.model.Customer.findAll"));
     }
 
+    /**
+     * Return all the customers with their accounts, loaded with one query.
+     *
+     * @return list of customers.
+     */
+    public List<Customer> findAllWithAccounts() {
+        return list(namedQuery("com.bank.app.model.Customer.findAllWithAccounts"));
+    }
+
+    /**
+     * Load the accounts of the customers, and optionally the transactions of these accounts, with one
+     * query each, so that they are part of the customers' JSON representation. Accounts which are
+     * already loaded are not fetched again.
+     *
+     * @param customers - customers loaded in the current session.
+     * @param includeTransactions - whether the transactions of the accounts should be loaded too.
+     * @return the same customers.
+     */
+    public List<Customer> fetchAccounts(List<Customer> customers, boolean includeTransactions) {
+        if (customers.isEmpty())
+            return customers;
+        List<String> ids = new ArrayList<>(customers.size());
+        for (Customer customer : customers) {
+            if (!Hibernate.isInitialized(customer.getAccounts()))
+                ids.add(customer.getId());
+        }
+        if (!ids.isEmpty()) {
+            list(
+                    namedQuery("com.bank.app.model.Customer.fetchAccounts")
+                            .setParameterList("ids", ids)
+            );
+        }
+        if (includeTransactions) {
+            List<String> accountIds = new ArrayList<>();
+            for (Customer customer : customers) {
+                for (Account account : customer.getAccounts()) {
+                    accountIds.add(account.getId());
+                }
+            }
+            if (!accountIds.isEmpty()) {
+                this.currentSession()
+                        .createNamedQuery("com.bank.app.model.Account.fetchTransactions", Account.class)
+                        .setParameterList("ids", accountIds)
+                        .getResultList();
+            }
+        }
+        return customers;
+    }
+
+    /**
+     * Retrieve a page of customers ordered by id. The next page starts after the id of the last
+     * customer of the current page.
+     *
+     * @param afterId - id of the last customer of the previous page, an empty string for the first page.
+     * @param limit - maximum number of customers to return.
+     * @return list of customers.
+     */
+    public List<Customer> findPage(String afterId, int limit) {
+        return list(
+                namedQuery("com.bank.app.model.Customer.findPage")
+                        .setParameter("afterId", afterId)
+                        .setMaxResults(limit)
+        );
+    }
+
+    /**
+     * Read all the customers ordered by id, one at a time, without holding them in memory.
+     *
+     * @param consumer - receives every customer.
+     */
+    public void scrollAll(Consumer<Customer> consumer) {
+        ScrollingReader.scroll(sessionFactory,
+                "select c from Customer c order by c.id",
+                Customer.class, consumer);
+    }
+
     /**
      * Retrieve list of customers whose first name or last name matched with the
      * parameter.
@@ -46,10 +150,20 @@ public class CustomerDAO extends AbstractDAO<Customer> {
      * @return list of customers whose first name or last name matched with the string.
      */
     public List<Customer> findByName(String name) {
+        Optional<Set<String>> ids = nameIndex.search(name);
+        if (ids.isPresent()) {
+            List<Customer> customers = new ArrayList<>();
+            for (Customer customer : findByIds(ids.get())) {
+                if (StringUtils.containsIgnoreCase(customer.getFirstName(), name)
+                        || StringUtils.containsIgnoreCase(customer.getLastName(), name))
+                    customers.add(customer);
+            }
+            return customers;
+        }
         StringBuilder builder = new StringBuilder("%");
         builder.append(name).append("%");
         return list(
-                namedQuery("com.bank.app.model.Account.findByName")
+                namedQuery("com.bank.app.model.Customer.findByName")
                         .setParameter("name", builder.toString())
         );
     }
@@ -61,6 +175,15 @@ public class CustomerDAO extends AbstractDAO<Customer> {
      * @return list of customers.
      */
     public List<Customer> findByEmail(String email) {
+        Optional<Set<String>> ids = emailIndex.search(email);
+        if (ids.isPresent()) {
+            List<Customer> customers = new ArrayList<>();
+            for (Customer customer : findByIds(ids.get())) {
+                if (StringUtils.containsIgnoreCase(customer.getEmail(), email))
+                    customers.add(customer);
+            }
+            return customers;
+        }
         StringBuilder builder = new StringBuilder("%");
         builder.append(email).append("%");
         return list(
@@ -69,6 +192,23 @@ public class CustomerDAO extends AbstractDAO<Customer> {
         );
     }
 
+    /**
+     * Retrieve the customer whose email is exactly the email passed in, ignoring case. Emails which
+     * are certainly not taken are answered without querying the database.
+     *
+     * @param email - the email.
+     * @return the customer using the email.
+     */
+    public Optional<Customer> findByNormalizedEmail(String email) {
+        String normalized = Customer.normalizeEmail(email);
+        if (!emailFilter.mightContain(normalized))
+            return Optional.absent();
+        return Optional.fromNullable(uniqueResult(
+                namedQuery("com.bank.app.model.Customer.findByNormalizedEmail")
+                        .setParameter("email", normalized)
+        ));
+    }
+
     /**
      * Retrieve the customer with the identifier.
      *
@@ -86,6 +226,7 @@ public class CustomerDAO extends AbstractDAO<Customer> {
      */
     public void update(Customer customer) {
         this.currentSession().merge(customer);
+        index(customer);
     }
 
     /**
@@ -97,5 +238,70 @@ public class CustomerDAO extends AbstractDAO<Customer> {
         Session session = this.currentSession();
         session.delete(get(customerId));
         session.getTransaction().commit();
+        nameIndex.remove(customerId);
+        emailIndex.remove(customerId);
+    }
+
+    /**
+     * Retrieve the customers with the identifiers, ordered by id.
+     *
+     * @param customerIds - unique identifiers of the customers.
+     * @return the customers found.
+     */
+    public List<Customer> findByIds(Collection<String> customerIds) {
+        List<Customer> customers = new ArrayList<>(customerIds.size());
+        for (List<String> ids : Iterables.partition(new TreeSet<>(customerIds), MAX_IDS_PER_QUERY)) {
+            customers.addAll(list(
+                    namedQuery("com.bank.app.model.Customer.findByIds")
+                            .setParameterList("ids", ids)
+            ));
+        }
+        return customers;
+    }
+
+    /**
+     * Rebuild the name and email search indexes from the customers table. Writes made through this DAO
+     * while the table is read are kept.
+     */
+    public void rebuildSearchIndex() {
+        TrigramIndex<String>.Rebuild names = nameIndex.rebuild();
+        TrigramIndex<String>.Rebuild emails = emailIndex.rebuild();
+        try {
+            scrollAll(customer -> {
+                names.add(customer.getId(), customer.getFirstName(), customer.getLastName());
+                emails.add(customer.getId(), customer.getEmail());
+            });
+            names.commit();
+            emails.commit();
+        } finally {
+            names.abort();
+            emails.abort();
+        }
+    }
+
+    /**
+     * Rebuild the filter of the emails in use from the customers table.
+     */
+    public void rebuildEmailFilter() {
+        long count;
+        try (Session session = sessionFactory.openSession()) {
+            count = session.createNamedQuery("com.bank.app.model.Customer.count", Long.class).getSingleResult();
+        }
+        BloomFilter<CharSequence> filter = emailFilter.rebuild(count);
+        try {
+            ScrollingReader.scroll(sessionFactory,
+                    "select c.emailNormalized from Customer c where c.emailNormalized is not null",
+                    String.class, filter::put);
+            emailFilter.commit();
+        } finally {
+            emailFilter.abort();
+        }
+    }
+
+    private void index(Customer customer) {
+        nameIndex.add(customer.getId(), customer.getFirstName(), customer.getLastName());
+        emailIndex.add(customer.getId(), customer.getEmail());
+        if (nonNull(customer.getEmail()))
+            emailFilter.put(Customer.normalizeEmail(customer.getEmail()));
     }
 }
@@ -1,19 +1,33 @@
 package com.bank.app.db;
 
 import com.bank.app.model.Employee;
+import com.bank.app.search.TrigramIndex;
 import com.google.common.base.Optional;
-import io.dropwizard.hibernate.AbstractDAO;
+import com.google.common.collect.Iterables;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
 
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 
 @Slf4j
-public class EmployeeDAO extends AbstractDAO<Employee> {
+public class EmployeeDAO extends RoutedDAO<Employee> {
+
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
+    private final SessionFactory sessionFactory;
+    private final TrigramIndex<Long> nameIndex = new TrigramIndex<>();
+    private final TrigramIndex<Long> emailIndex = new TrigramIndex<>();
 
     public EmployeeDAO(SessionFactory sessionFactory) {
         super(sessionFactory);
+        this.sessionFactory = sessionFactory;
     }
 
     /**
@@ -23,6 +37,8 @@ public class EmployeeDAO extends AbstractDAO<Employee> {
      */
     public void add(Employee employee) {
         persist(employee);
+        nameIndex.add(employee.getId(), employee.getFirstName(), employee.getLastName());
+        emailIndex.add(employee.getId(), employee.getEmail());
     }
 
     /**
@@ -34,6 +50,33 @@ public class EmployeeDAO extends AbstractDAO<Employee> {
         return list(namedQuery("com.bank.app.model.Employee.findAll"));
     }
 
+    /**
+     * Retrieve a page of employees ordered by id. The next page starts after the id of the last
+     * employee of the current page.
+     *
+     * @param afterId - id of the last employee of the previous page, 0 for the first page.
+     * @param limit - maximum number of employees to return.
+     * @return list of employees.
+     */
+    public List<Employee> findPage(long afterId, int limit) {
+        return list(
+                namedQuery("com.bank.app.model.Employee.findPage")
+                        .setParameter("afterId", afterId)
+                        .setMaxResults(limit)
+        );
+    }
+
+    /**
+     * Read all the employees ordered by id, one at a time, without holding them in memory.
+     *
+     * @param consumer - receives every employee.
+     */
+    public void scrollAll(Consumer<Employee> consumer) {
+        ScrollingReader.scroll(sessionFactory,
+                "select e from Employee e order by e.id",
+                Employee.class, consumer);
+    }
+
     /**
      * Retrieve list of employees whose first name or last name matched with the
      * parameter.
@@ -42,6 +85,16 @@ public class EmployeeDAO extends AbstractDAO<Employee> {
      * @return list of employees whose first name or last name matched with the string.
      */
     public List<Employee> findByName(String name) {
+        Optional<Set<Long>> ids = nameIndex.search(name);
+        if (ids.isPresent()) {
+            List<Employee> employees = new ArrayList<>();
+            for (Employee employee : findByIds(ids.get())) {
+                if (StringUtils.containsIgnoreCase(employee.getFirstName(), name)
+                        || StringUtils.containsIgnoreCase(employee.getLastName(), name))
+                    employees.add(employee);
+            }
+            return employees;
+        }
         StringBuilder builder = new StringBuilder("%");
         builder.append(name).append("%");
         return list(
@@ -57,6 +110,15 @@ public class EmployeeDAO extends AbstractDAO<Employee> {
      * @return list of employees.
      */
     public List<Employee> findByEmail(String email) {
+        Optional<Set<Long>> ids = emailIndex.search(email);
+        if (ids.isPresent()) {
+            List<Employee> employees = new ArrayList<>();
+            for (Employee employee : findByIds(ids.get())) {
+                if (StringUtils.containsIgnoreCase(employee.getEmail(), email))
+                    employees.add(employee);
+            }
+            return employees;
+        }
         StringBuilder builder = new StringBuilder("%");
         builder.append(email).append("%");
         return list(
@@ -84,5 +146,44 @@ public class EmployeeDAO extends AbstractDAO<Employee> {
         Session session = this.currentSession();
         session.delete(session.get(Employee.class, employeeId));
         session.getTransaction().commit();
+        nameIndex.remove(employeeId);
+        emailIndex.remove(employeeId);
+    }
+
+    /**
+     * Retrieve the employees with the identifiers, ordered by id.
+     *
+     * @param employeeIds - unique identifiers of the employees.
+     * @return the employees found.
+     */
+    public List<Employee> findByIds(Collection<Long> employeeIds) {
+        List<Employee> employees = new ArrayList<>(employeeIds.size());
+        for (List<Long> ids : Iterables.partition(new TreeSet<>(employeeIds), MAX_IDS_PER_QUERY)) {
+            employees.addAll(list(
+                    namedQuery("com.bank.app.model.Employee.findByIds")
+                            .setParameterList("ids", ids)
+            ));
+        }
+        return employees;
+    }
+
+    /**
+     * Rebuild the name and email search indexes from the employees table. Writes made through this DAO
+     * while the table is read are kept.
+     */
+    public void rebuildSearchIndex() {
+        TrigramIndex<Long>.Rebuild names = nameIndex.rebuild();
+        TrigramIndex<Long>.Rebuild emails = emailIndex.rebuild();
+        try {
+            scrollAll(employee -> {
+                names.add(employee.getId(), employee.getFirstName(), employee.getLastName());
+                emails.add(employee.getId(), employee.getEmail());
+            });
+            names.commit();
+            emails.commit();
+        } finally {
+            names.abort();
+            emails.abort();
+        }
     }
 }
@@ -0,0 +1,35 @@
+package com.bank.app.db;
+
+import com.bank.app.model.LedgerCheckpoint;
+import io.dropwizard.hibernate.AbstractDAO;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+
+import static java.util.Objects.isNull;
+
+@Slf4j
+public class LedgerCheckpointDAO extends AbstractDAO<LedgerCheckpoint> {
+
+    public LedgerCheckpointDAO(SessionFactory sessionFactory) {
+        super(sessionFactory);
+    }
+
+    /**
+     * Sequence of the last ledger journal record projected into the database.
+     *
+     * @return the sequence, 0 if nothing has been projected yet.
+     */
+    public long getSequence() {
+        LedgerCheckpoint checkpoint = get(LedgerCheckpoint.ID);
+        return isNull(checkpoint) ? 0 : checkpoint.getSequence();
+    }
+
+    /**
+     * Record the sequence of the last ledger journal record projected into the database.
+     *
+     * @param sequence - sequence of the record.
+     */
+    public void save(long sequence) {
+        this.currentSession().merge(new LedgerCheckpoint(LedgerCheckpoint.ID, sequence));
+    }
+}
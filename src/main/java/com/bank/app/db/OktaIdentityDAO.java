@@ -0,0 +1,70 @@
+package com.bank.app.db;
+
+import com.bank.app.model.OktaIdentity;
+import com.google.common.base.Optional;
+import io.dropwizard.hibernate.AbstractDAO;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+@Slf4j
+public class OktaIdentityDAO extends AbstractDAO<OktaIdentity> {
+
+    public OktaIdentityDAO(SessionFactory sessionFactory) {
+        super(sessionFactory);
+    }
+
+    /**
+     * Retrieve the Okta identity of the email address.
+     *
+     * @param email - email address of the employee, case insensitive.
+     * @return optional identity.
+     */
+    public Optional<OktaIdentity> findByEmail(String email) {
+        return Optional.fromNullable(get(normalize(email)));
+    }
+
+    /**
+     * Add or replace the Okta user id of an email address.
+     *
+     * @param email - email address of the employee.
+     * @param oktaUserId - id of the user in Okta.
+     * @param oktaLastUpdated - last time the user was updated in Okta, if known.
+     */
+    public void save(String email, String oktaUserId, Date oktaLastUpdated) {
+        this.currentSession().merge(new OktaIdentity(normalize(email), oktaUserId, oktaLastUpdated));
+    }
+
+    /**
+     * Remove the Okta identity of an email address.
+     *
+     * @param email - email address of the employee.
+     */
+    public void delete(String email) {
+        Session session = this.currentSession();
+        OktaIdentity identity = get(normalize(email));
+        if (identity != null)
+            session.delete(identity);
+    }
+
+    /**
+     * Retrieve the Okta identities last updated before a time, or at an unknown time.
+     *
+     * @param before - exclusive upper bound of the last update time.
+     * @return list of identities.
+     */
+    public List<OktaIdentity> findUpdatedBefore(Date before) {
+        return list(
+                namedQuery("com.bank.app.model.OktaIdentity.findUpdatedBefore")
+                        .setParameter("before", before)
+        );
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,36 @@
+package com.bank.app.db;
+
+import com.bank.app.model.OktaSyncCheckpoint;
+import com.google.common.base.Optional;
+import io.dropwizard.hibernate.AbstractDAO;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+
+import java.util.Date;
+
+@Slf4j
+public class OktaSyncCheckpointDAO extends AbstractDAO<OktaSyncCheckpoint> {
+
+    public OktaSyncCheckpointDAO(SessionFactory sessionFactory) {
+        super(sessionFactory);
+    }
+
+    /**
+     * Progress of the synchronisation of the Okta identities.
+     *
+     * @return optional checkpoint, absent until the synchronisation has run once.
+     */
+    public Optional<OktaSyncCheckpoint> find() {
+        return Optional.fromNullable(get(OktaSyncCheckpoint.ID));
+    }
+
+    /**
+     * Record the progress of the synchronisation of the Okta identities.
+     *
+     * @param syncedUntil - start of the last run, every user updated before it has been synchronised.
+     * @param fullSyncedAt - start of the last run over the whole directory.
+     */
+    public void save(Date syncedUntil, Date fullSyncedAt) {
+        this.currentSession().merge(new OktaSyncCheckpoint(OktaSyncCheckpoint.ID, syncedUntil, fullSyncedAt));
+    }
+}
@@ -0,0 +1,67 @@
+package com.bank.app.db;
+
+import com.bank.app.model.PendingCredit;
+import com.google.common.base.Optional;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+
+@Slf4j
+public class PendingCreditDAO extends ShardedDAO<PendingCredit> {
+
+    public PendingCreditDAO(SessionFactory sessionFactory, Shards shards) {
+        super(sessionFactory, shards);
+    }
+
+    /**
+     * Add a pending credit on the shard of the debited account.
+     *
+     * @param credit - the pending credit.
+     */
+    public void add(PendingCredit credit) {
+        sessionOf(credit.getFromAccountId()).persist(credit);
+    }
+
+    /**
+     * Retrieve the oldest credits of a shard waiting for the relay.
+     *
+     * @param shard - the shard.
+     * @param limit - maximum number of credits to return.
+     * @return the credits, oldest first.
+     */
+    public List<PendingCredit> findBatch(int shard, int limit) {
+        return session(shard)
+                .createNamedQuery("com.bank.app.model.PendingCredit.findBatch", PendingCredit.class)
+                .setParameter("status", PendingCredit.Status.PENDING)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * Retrieve a pending credit and lock it until the end of the transaction, so that it is either
+     * posted or given up on, not both.
+     *
+     * @param id - id of the credit.
+     * @param fromAccountId - debited account, whose shard holds the credit.
+     * @return the credit, absent once it has been posted.
+     */
+    public Optional<PendingCredit> findForUpdate(String id, String fromAccountId) {
+        return Optional.fromNullable(sessionOf(fromAccountId).find(PendingCredit.class, id, LockModeType.PESSIMISTIC_WRITE));
+    }
+
+    /**
+     * Delete pending credits once they are applied.
+     *
+     * @param shard - the shard holding the credits.
+     * @param ids - ids of the credits.
+     */
+    public void delete(int shard, Collection<String> ids) {
+        session(shard)
+                .createNamedQuery("com.bank.app.model.PendingCredit.delete")
+                .setParameterList("ids", ids)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,78 @@
+package com.bank.app.db;
+
+import com.bank.app.model.ProvisioningTask;
+import io.dropwizard.hibernate.AbstractDAO;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import javax.persistence.LockModeType;
+import java.util.Date;
+import java.util.List;
+
+@Slf4j
+public class ProvisioningTaskDAO extends AbstractDAO<ProvisioningTask> {
+
+    public ProvisioningTaskDAO(SessionFactory sessionFactory) {
+        super(sessionFactory);
+    }
+
+    /**
+     * Queue a provisioning task, it is applied once the surrounding transaction commits.
+     *
+     * @param task - details of the change to the user directory.
+     */
+    public void add(ProvisioningTask task) {
+        Date now = new Date();
+        task.setStatus(ProvisioningTask.Status.PENDING);
+        task.setCreatedOn(now);
+        task.setNextAttemptAt(now);
+        persist(task);
+    }
+
+    /**
+     * Claim the pending tasks that are due. The claimed rows are locked until the transaction
+     * ends and their next attempt is pushed to the end of the lease, so that other workers skip
+     * them while they are being applied. A task is only due once the earlier tasks of its email
+     * are done, so that a user is never deleted before a create queued ahead of it is applied.
+     *
+     * @param now - current time.
+     * @param leaseUntil - time until which the claimed tasks are reserved.
+     * @param limit - maximum number of tasks to claim.
+     * @return list of claimed tasks, oldest first.
+     */
+    public List<ProvisioningTask> claimDue(Date now, Date leaseUntil, int limit) {
+        List<ProvisioningTask> tasks = list(
+                namedQuery("com.bank.app.model.ProvisioningTask.findDue")
+                        .setParameter("status", ProvisioningTask.Status.PENDING)
+                        .setParameter("now", now)
+                        .setMaxResults(limit)
+                        .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+        );
+        for (ProvisioningTask task : tasks) {
+            task.setNextAttemptAt(leaseUntil);
+        }
+        return tasks;
+    }
+
+    /**
+     * Store the outcome of a failed attempt.
+     *
+     * @param task - task with the updated attempt details.
+     */
+    public void update(ProvisioningTask task) {
+        this.currentSession().merge(task);
+    }
+
+    /**
+     * Remove a task which has been applied.
+     *
+     * @param taskId - unique identifier of the task.
+     */
+    public void delete(long taskId) {
+        Session session = this.currentSession();
+        ProvisioningTask task = session.get(ProvisioningTask.class, taskId);
+        if (task != null)
+            session.delete(task);
+    }
+}
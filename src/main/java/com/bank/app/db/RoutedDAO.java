@@ -0,0 +1,48 @@
+package com.bank.app.db;
+
+import io.dropwizard.hibernate.AbstractDAO;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+/**
+ * DAO whose reads can be served by a read replica. While a read-only unit of work routed to a replica
+ * is bound to the thread, see {@link com.bank.app.replica.ReadRoutingListener}, the DAO works with the
+ * session of the replica instead of the session of its own session factory.
+ *
+ * @param <E> - the entity type.
+ */
+public abstract class RoutedDAO<E> extends AbstractDAO<E> {
+
+    private static final ThreadLocal<SessionFactory> READS = new ThreadLocal<>();
+
+    protected RoutedDAO(SessionFactory sessionFactory) {
+        super(sessionFactory);
+    }
+
+    /**
+     * Serve the DAO calls of the current thread from the session bound to a session factory.
+     *
+     * @param sessionFactory - session factory of the read replica.
+     */
+    public static void bindReads(SessionFactory sessionFactory) {
+        READS.set(sessionFactory);
+    }
+
+    public static void unbindReads() {
+        READS.remove();
+    }
+
+    /**
+     * @return whether the DAO calls of the current thread are served by a read replica, which may lag
+     * behind the primary.
+     */
+    public static boolean isReadingReplica() {
+        return READS.get() != null;
+    }
+
+    @Override
+    protected Session currentSession() {
+        SessionFactory reads = READS.get();
+        return reads == null ? super.currentSession() : reads.getCurrentSession();
+    }
+}
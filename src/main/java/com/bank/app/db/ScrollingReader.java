@@ -0,0 +1,51 @@
+package com.bank.app.db;
+
+import org.hibernate.CacheMode;
+import org.hibernate.FlushMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.util.function.Consumer;
+
+/**
+ * Reads the rows of a query one at a time through a forward-only cursor, in a read-only session of
+ * its own. The session is cleared after every fetch of rows so that memory use does not grow with
+ * the number of rows read.
+ *
+ * With MySQL the rows are only streamed from the server when the connection url contains
+ * useCursorFetch=true, otherwise the driver buffers the whole result.
+ */
+final class ScrollingReader {
+
+    static final int FETCH_SIZE = 500;
+
+    private ScrollingReader() {
+    }
+
+    static <T> void scroll(SessionFactory sessionFactory, String hql, Class<T> type, Consumer<T> consumer) {
+        Session session = sessionFactory.openSession();
+        try {
+            session.setDefaultReadOnly(true);
+            session.setHibernateFlushMode(FlushMode.MANUAL);
+            session.setCacheMode(CacheMode.IGNORE);
+            ScrollableResults results = session.createQuery(hql, type)
+                    .setReadOnly(true)
+                    .setFetchSize(FETCH_SIZE)
+                    .scroll(ScrollMode.FORWARD_ONLY);
+            try {
+                int count = 0;
+                while (results.next()) {
+                    consumer.accept(type.cast(results.get(0)));
+                    if (++count % FETCH_SIZE == 0)
+                        session.clear();
+                }
+            } finally {
+                results.close();
+            }
+        } finally {
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.bank.app.db;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * DAO of rows living on the shard of their account, see {@link Shards}.
+ *
+ * @param <E> - the entity type.
+ */
+public abstract class ShardedDAO<E> extends RoutedDAO<E> {
+
+    private final Shards shards;
+
+    protected ShardedDAO(SessionFactory sessionFactory, Shards shards) {
+        super(sessionFactory);
+        this.shards = shards;
+    }
+
+    public Shards getShards() {
+        return shards;
+    }
+
+    /**
+     * @param shard - the shard.
+     * @return the session of the current unit of work on the shard.
+     */
+    protected Session session(int shard) {
+        return shards.session(shard, currentSession());
+    }
+
+    /**
+     * @param accountId - unique identifier of an account.
+     * @return the session of the current unit of work on the shard of the account.
+     */
+    protected Session sessionOf(String accountId) {
+        return session(shards.shardOf(accountId));
+    }
+
+    /**
+     * Merge the pages read from every shard into one page.
+     *
+     * @param rows - the rows of every shard.
+     * @param id - the id the pages are ordered by.
+     * @param limit - maximum number of rows to return.
+     * @return the first rows by id.
+     */
+    protected static <T> List<T> firstById(List<T> rows, Function<T, String> id, int limit) {
+        rows.sort(Comparator.comparing(id));
+        return rows.size() > limit ? new ArrayList<>(rows.subList(0, limit)) : rows;
+    }
+}
@@ -0,0 +1,230 @@
+package com.bank.app.db;
+
+import com.google.common.collect.ImmutableList;
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import static java.util.Objects.isNull;
+
+/**
+ * The databases holding the accounts with their transactions, daily rollups and pending credits.
+ * Shard 0 is the main database, which also holds every other table.
+ *
+ * The shard of an account is part of its id: the account type (2 characters), the shard (2 hex
+ * digits) and a generated id (25 characters). Ids of any other length, i.e. of the accounts created
+ * before the ids carried a shard, are on shard 0.
+ *
+ * The DAOs reach the other shards through sessions opened on demand for the unit of work of the
+ * thread. They follow it: same read-only, flush and cache modes, a transaction if it has one,
+ * committed just before it and closed with it. A unit of work writing to several shards is therefore
+ * committed shard after shard, not atomically. Money movements avoid that through
+ * {@link #inTransaction(int, Supplier)}: a non-transactional unit of work writes to one shard in a
+ * transaction of its own there, so that it is committed on exactly one database.
+ */
+public class Shards {
+
+    private static final int SHARD_DIGITS = 2;
+    public static final int MAX_SHARDS = 1 << (4 * SHARD_DIGITS);
+    private static final int TYPE_LENGTH = 2;
+    private static final int GENERATED_ID_LENGTH = 25;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final List<SessionFactory> sessionFactories;
+    private final ThreadLocal<UnitSessions> units = new ThreadLocal<>();
+
+    /**
+     * @param sessionFactories - session factories of the shards, the main database first.
+     */
+    public Shards(List<SessionFactory> sessionFactories) {
+        if (sessionFactories.isEmpty() || sessionFactories.size() > MAX_SHARDS)
+            throw new IllegalArgumentException("There must be between 1 and " + MAX_SHARDS + " shards");
+        this.sessionFactories = ImmutableList.copyOf(sessionFactories);
+    }
+
+    /**
+     * @param sessionFactory - session factory of the main database.
+     * @return the shards of an unsharded database.
+     */
+    public static Shards single(SessionFactory sessionFactory) {
+        return new Shards(ImmutableList.of(sessionFactory));
+    }
+
+    public int count() {
+        return sessionFactories.size();
+    }
+
+    public SessionFactory sessionFactory(int shard) {
+        return sessionFactories.get(shard);
+    }
+
+    /**
+     * @param accountId - unique identifier of the account.
+     * @return the shard of the account; ids naming an unknown shard are looked up, in vain, on shard 0.
+     */
+    public int shardOf(String accountId) {
+        if (sessionFactories.size() == 1
+                || isNull(accountId)
+                || accountId.length() != TYPE_LENGTH + SHARD_DIGITS + GENERATED_ID_LENGTH)
+            return 0;
+        int shard = 0;
+        for (int i = TYPE_LENGTH; i < TYPE_LENGTH + SHARD_DIGITS; i++) {
+            int digit = Character.digit(accountId.charAt(i), 16);
+            if (digit < 0)
+                return 0;
+            shard = shard * 16 + digit;
+        }
+        return shard < sessionFactories.size() ? shard : 0;
+    }
+
+    /**
+     * Build the id of a new account, which places it on a shard.
+     *
+     * @param type - the two characters of the account type.
+     * @param generatedId - generated unique id, 25 characters.
+     * @param placement - the accounts with the same placement are on the same shard, e.g. the customer id.
+     * @return the account id.
+     */
+    public String accountId(String type, String generatedId, String placement) {
+        int shard = Math.floorMod(placement.hashCode(), sessionFactories.size());
+        StringBuilder id = new StringBuilder(TYPE_LENGTH + SHARD_DIGITS + generatedId.length()).append(type);
+        for (int i = SHARD_DIGITS - 1; i >= 0; i--) {
+            id.append(HEX[(shard >>> (4 * i)) & 0xF]);
+        }
+        return id.append(generatedId).toString();
+    }
+
+    /**
+     * Group account ids by shard.
+     *
+     * @param accountIds - unique identifiers of accounts.
+     * @return the ids of every shard, by ascending shard.
+     */
+    public Map<Integer, List<String>> byShard(Collection<String> accountIds) {
+        Map<Integer, List<String>> byShard = new TreeMap<>();
+        for (String accountId : accountIds) {
+            byShard.computeIfAbsent(shardOf(accountId), s -> new ArrayList<>()).add(accountId);
+        }
+        return byShard;
+    }
+
+    /**
+     * Run work in a transaction of its own on one shard, within the unit of work of the thread, which
+     * must not be transactional. The work must write to that shard only, the other shards are read
+     * outside of any transaction: the outcome of the commit on the shard is the outcome of the work.
+     *
+     * @param shard - the shard written to.
+     * @param work - the work, which reaches the shard through the DAOs.
+     * @return the result of the work, once committed.
+     * @throws RuntimeException thrown by the work or the commit, the transaction is rolled back.
+     */
+    public <T> T inTransaction(int shard, Supplier<T> work) {
+        Session unit = sessionFactories.get(0).getCurrentSession();
+        if (unit.getTransaction().isActive())
+            throw new IllegalStateException("The unit of work already has a transaction");
+        Session session = session(shard, unit);
+        Transaction transaction = session.beginTransaction();
+        try {
+            T result = work.get();
+            transaction.commit();
+            return result;
+        } catch (RuntimeException e) {
+            if (transaction.getStatus().canRollback())
+                transaction.rollback();
+            throw e;
+        } finally {
+            // the entities read in the transaction may change once their locks are released
+            session.clear();
+        }
+    }
+
+    /**
+     * @param shard - the shard.
+     * @param unit - session of the unit of work of the thread, on the main database.
+     * @return the session of the unit of work on the shard.
+     */
+    Session session(int shard, Session unit) {
+        if (shard == 0)
+            return unit;
+        UnitSessions sessions = units.get();
+        if (isNull(sessions) || sessions.unit != unit) {
+            sessions = new UnitSessions(unit);
+            units.set(sessions);
+            unit.addEventListeners(sessions);
+            if (unit.getTransaction().isActive())
+                unit.getTransaction().registerSynchronization(sessions);
+        }
+        return sessions.get(shard);
+    }
+
+    // the sessions of one unit of work on the other shards
+    private final class UnitSessions extends BaseSessionEventListener implements Synchronization {
+        private final Session unit;
+        private final Map<Integer, Session> sessions = new TreeMap<>();
+
+        private UnitSessions(Session unit) {
+            this.unit = unit;
+        }
+
+        Session get(int shard) {
+            Session session = sessions.get(shard);
+            if (isNull(session)) {
+                session = sessionFactories.get(shard).openSession();
+                session.setDefaultReadOnly(unit.isDefaultReadOnly());
+                session.setHibernateFlushMode(unit.getHibernateFlushMode());
+                session.setCacheMode(unit.getCacheMode());
+                if (unit.getTransaction().isActive())
+                    session.beginTransaction();
+                sessions.put(shard, session);
+            }
+            return session;
+        }
+
+        @Override
+        public void beforeCompletion() {
+            // the unit of work is committing: a shard failing to commit rolls it back
+            for (Session session : sessions.values()) {
+                if (session.getTransaction().isActive())
+                    session.getTransaction().commit();
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status != Status.STATUS_COMMITTED)
+                rollback();
+        }
+
+        @Override
+        public void end() {
+            // the session of the unit of work is closed
+            try {
+                rollback();
+                for (Session session : sessions.values()) {
+                    session.close();
+                }
+            } finally {
+                sessions.clear();
+                if (units.get() == this)
+                    units.remove();
+            }
+        }
+
+        private void rollback() {
+            for (Session session : sessions.values()) {
+                if (session.getTransaction().isActive())
+                    session.getTransaction().rollback();
+            }
+        }
+    }
+}
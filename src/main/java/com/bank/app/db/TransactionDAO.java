@@ -1,17 +1,23 @@
 package com.bank.app.db;
 
 import com.bank.app.model.Transaction;
-import io.dropwizard.hibernate.AbstractDAO;
+import com.google.common.base.Optional;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.SessionFactory;
+import org.hibernate.query.Query;
+
+import static java.util.Objects.nonNull;
 
 @Slf4j
-public class TransactionDAO extends AbstractDAO<Transaction> {
+public class TransactionDAO extends ShardedDAO<Transaction> {
 
-    public TransactionDAO(SessionFactory sessionFactory) {
-        super(sessionFactory);
+    public TransactionDAO(SessionFactory sessionFactory, Shards shards) {
+        super(sessionFactory, shards);
     }
 
     /**
@@ -20,7 +26,22 @@ public class TransactionDAO extends AbstractDAO<Transaction> {
      * @param transaction - details of the transaction.
      */
     public void add(Transaction transaction) {
-        persist(transaction);
+        int shard = getShards().shardOf(transaction.getAccount().getId());
+        if (shard == 0)
+            persist(transaction);
+        else
+            session(shard).persist(transaction);
+    }
+
+    /**
+     * Whether a transaction was posted on an account.
+     *
+     * @param id - unique identifier of the transaction.
+     * @param accountId - unique identifier of the account.
+     * @return true if the transaction exists.
+     */
+    public boolean exists(String id, String accountId) {
+        return sessionOf(accountId).get(Transaction.class, id) != null;
     }
 
     /**
@@ -28,6 +49,128 @@ public class TransactionDAO extends AbstractDAO<Transaction> {
      * @return
      */
     public List<Transaction> findAll() {
-        return list(namedQuery("com.bank.app.model.Transaction.findAll"));
+        List<Transaction> transactions = new ArrayList<>();
+        for (int shard = 0; shard < getShards().count(); shard++) {
+            transactions.addAll(session(shard)
+                    .createNamedQuery("com.bank.app.model.Transaction.findAll", Transaction.class)
+                    .getResultList());
+        }
+        return transactions;
+    }
+
+    /**
+     * Retrieve a page of transactions ordered by id. The next page starts after the id of the last
+     * transaction of the current page.
+     *
+     * @param afterId - id of the last transaction of the previous page, an empty string for the first page.
+     * @param limit - maximum number of transactions to return.
+     * @return list of transactions.
+     */
+    public List<Transaction> findPage(String afterId, int limit) {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int shard = 0; shard < getShards().count(); shard++) {
+            transactions.addAll(session(shard)
+                    .createNamedQuery("com.bank.app.model.Transaction.findPage", Transaction.class)
+                    .setParameter("afterId", afterId)
+                    .setMaxResults(limit)
+                    .getResultList());
+        }
+        return firstById(transactions, Transaction::getId, limit);
+    }
+
+    /**
+     * Retrieve a page of the transactions posted on an account, ordered by posting time and id. The
+     * query is served by the (account_id, posted_on, id) index. The next page starts after the
+     * posting time and id of the last transaction of the current page.
+     *
+     * @param accountId - unique identifier of the account.
+     * @param from - earliest posting time (inclusive), null for no lower bound.
+     * @param to - latest posting time (exclusive), null for no upper bound.
+     * @param type - type of the transactions, null for all types.
+     * @param afterPostedOn - posting time of the last transaction of the previous page, null for the first page.
+     * @param afterId - id of the last transaction of the previous page.
+     * @param limit - maximum number of transactions to return.
+     * @return list of transactions.
+     */
+    public List<Transaction> findByAccount(String accountId,
+                                           Date from,
+                                           Date to,
+                                           Transaction.TransactionType type,
+                                           Date afterPostedOn,
+                                           String afterId,
+                                           int limit) {
+        StringBuilder hql = new StringBuilder("select t from Transaction t where t.account.id = :accountId");
+        if (nonNull(from))
+            hql.append(" and t.postedOn >= :from");
+        if (nonNull(to))
+            hql.append(" and t.postedOn < :to");
+        if (nonNull(type))
+            hql.append(" and t.transactionType = :type");
+        if (nonNull(afterPostedOn))
+            hql.append(" and (t.postedOn > :afterPostedOn or (t.postedOn = :afterPostedOn and t.id > :afterId))");
+        hql.append(" order by t.postedOn, t.id");
+
+        Query<Transaction> query = sessionOf(accountId).createQuery(hql.toString(), Transaction.class)
+                .setParameter("accountId", accountId)
+                .setMaxResults(limit);
+        if (nonNull(from))
+            query.setParameter("from", from);
+        if (nonNull(to))
+            query.setParameter("to", to);
+        if (nonNull(type))
+            query.setParameter("type", type);
+        if (nonNull(afterPostedOn)) {
+            query.setParameter("afterPostedOn", afterPostedOn);
+            query.setParameter("afterId", afterId);
+        }
+        return list(query);
+    }
+
+    /**
+     * Retrieve the last transaction posted on an account before a time.
+     *
+     * @param accountId - unique identifier of the account.
+     * @param before - posting time (exclusive).
+     * @return optional transaction.
+     */
+    public Optional<Transaction> findLastBefore(String accountId, Date before) {
+        List<Transaction> transactions = sessionOf(accountId)
+                .createNamedQuery("com.bank.app.model.Transaction.findLastBefore", Transaction.class)
+                .setParameter("accountId", accountId)
+                .setParameter("before", before)
+                .setMaxResults(1)
+                .getResultList();
+        return transactions.isEmpty() ? Optional.absent() : Optional.of(transactions.get(0));
+    }
+
+    /**
+     * Total amount and number of the transactions posted on an account during a period, by type.
+     *
+     * @param accountId - unique identifier of the account.
+     * @param from - earliest posting time (inclusive).
+     * @param to - latest posting time (exclusive).
+     * @return rows of the transaction type, the total amount in cents and the number of transactions.
+     */
+    public List<Object[]> sumByType(String accountId, Date from, Date to) {
+        return sessionOf(accountId)
+                .createNamedQuery("com.bank.app.model.Transaction.sumByType", Object[].class)
+                .setParameter("accountId", accountId)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .getResultList();
+    }
+
+    /**
+     * Read all the transactions, one at a time, without holding them in memory. The shards are read
+     * one after the other, the transactions of a shard ordered by id.
+     *
+     * @param consumer - receives every transaction.
+     */
+    public void scrollAll(Consumer<Transaction> consumer) {
+        for (int shard = 0; shard < getShards().count(); shard++) {
+            ScrollingReader.scroll(getShards().sessionFactory(shard),
+                    "select e from Transaction e order by e.id",
+                    Transaction.class, consumer);
+        }
     }
 }
@@ -0,0 +1,15 @@
+package com.bank.app.id;
+
+/**
+ * Source of the unique part of the identifiers of accounts, customers and transactions. The type
+ * prefix (LN, SA, CH, CID, DB, CR) is prepended by the caller.
+ */
+public interface IdGenerator {
+
+    /**
+     * Generate a new identifier. Implementations must be safe for concurrent use.
+     *
+     * @return an identifier never returned before by any node of the application.
+     */
+    String nextId();
+}
@@ -0,0 +1,68 @@
+package com.bank.app.id;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates identifiers made of the current time in milliseconds (11 hex digits), the node id (4 hex
+ * digits) and a sequence number (10 hex digits). Identifiers sort in the order they were generated,
+ * to the millisecond, so new rows are appended at the end of the primary key index.
+ *
+ * The node id and the sequence make the identifiers unique; the sequence starts at a random value at
+ * startup. Threads reserve blocks of sequence numbers from a shared counter and hand them out without
+ * synchronisation.
+ */
+public class TimeOrderedIdGenerator implements IdGenerator {
+
+    public static final int MAX_NODE_ID = 0xFFFF;
+
+    private static final int BLOCK_SIZE = 1024;
+    private static final long SEQUENCE_MASK = (1L << 40) - 1;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final int nodeId;
+    private final AtomicLong sequence;
+    private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(Block::new);
+
+    /**
+     * @param nodeId - identifier of this node, unique among the nodes sharing the database.
+     */
+    public TimeOrderedIdGenerator(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID)
+            throw new IllegalArgumentException("The node id must be between 0 and " + MAX_NODE_ID);
+        this.nodeId = nodeId;
+        this.sequence = new AtomicLong(new SecureRandom().nextLong() & SEQUENCE_MASK);
+    }
+
+    @Override
+    public String nextId() {
+        Block block = blocks.get();
+        if (block.next == block.end) {
+            block.next = sequence.getAndAdd(BLOCK_SIZE);
+            block.end = block.next + BLOCK_SIZE;
+        }
+        long seq = block.next++ & SEQUENCE_MASK;
+        // a clock moving backwards must not reorder the ids of a thread
+        long time = Math.max(System.currentTimeMillis(), block.lastTime);
+        block.lastTime = time;
+
+        char[] id = new char[25];
+        hex(id, 0, time, 11);
+        hex(id, 11, nodeId, 4);
+        hex(id, 15, seq, 10);
+        return new String(id);
+    }
+
+    private static void hex(char[] buffer, int offset, long value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            buffer[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    private static final class Block {
+        private long next;
+        private long end;
+        private long lastTime;
+    }
+}
@@ -0,0 +1,75 @@
+package com.bank.app.json;
+
+import com.fasterxml.jackson.annotation.JacksonAnnotation;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.dropwizard.jackson.JacksonMessageBodyProvider;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.util.Objects.isNull;
+
+/**
+ * JSON provider writing every response type with an object writer resolved the first time the type
+ * is written, where Jackson's provider resolves the type and configures a writer for every response.
+ * Responses of resource methods carrying Jackson annotations, such as {@code @JsonView}, are still
+ * written by Jackson's provider, which reads them.
+ */
+public class CachedWriterJsonProvider extends JacksonMessageBodyProvider {
+
+    private final ObjectMapper mapper;
+    // by generic type for the generic entities, by runtime class otherwise, as Jackson's provider does
+    private final ConcurrentMap<Type, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    public CachedWriterJsonProvider(ObjectMapper mapper) {
+        super(mapper);
+        this.mapper = mapper;
+    }
+
+    @Override
+    public void writeTo(Object value,
+                        Class<?> type,
+                        Type genericType,
+                        Annotation[] annotations,
+                        MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders,
+                        OutputStream entityStream) throws IOException {
+        if (isNull(value) || hasJacksonAnnotation(annotations)) {
+            super.writeTo(value, type, genericType, annotations, mediaType, httpHeaders, entityStream);
+            return;
+        }
+        Type key = isNull(genericType) || genericType instanceof Class ? value.getClass() : genericType;
+        writers.computeIfAbsent(key, this::writerFor).writeValue(entityStream, value);
+    }
+
+    private ObjectWriter writerFor(Type type) {
+        // the entity stream is closed by the container
+        return mapper.writerFor(mapper.getTypeFactory().constructType(type))
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    private static boolean hasJacksonAnnotation(Annotation[] annotations) {
+        if (isNull(annotations))
+            return false;
+        for (Annotation annotation : annotations) {
+            if (annotation.annotationType().isAnnotationPresent(JacksonAnnotation.class))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of response types with a resolved writer.
+     */
+    public int getWriterCount() {
+        return writers.size();
+    }
+}
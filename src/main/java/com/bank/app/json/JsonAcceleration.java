@@ -0,0 +1,32 @@
+package com.bank.app.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+
+import java.util.Date;
+
+/**
+ * Cheaper JSON serialization for the object mapper of the application: bean properties read through
+ * generated bytecode rather than reflection, and {@code @JsonFormat} dates formatted by a shared
+ * {@link java.time.format.DateTimeFormatter}.
+ */
+public final class JsonAcceleration {
+
+    private JsonAcceleration() {
+    }
+
+    /**
+     * Configure the object mapper, before anything has been serialized with it.
+     *
+     * @param mapper - the object mapper.
+     * @return the object mapper.
+     */
+    public static ObjectMapper configure(ObjectMapper mapper) {
+        // Dropwizard's object mapper comes with Afterburner, a mapper of another origin may not
+        if (!mapper.getRegisteredModuleIds().contains(AfterburnerModule.class.getName()))
+            mapper.registerModule(new AfterburnerModule());
+        return mapper.registerModule(new SimpleModule(JsonAcceleration.class.getName())
+                .addSerializer(Date.class, new PatternDateSerializer()));
+    }
+}
@@ -0,0 +1,68 @@
+package com.bank.app.json;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+import com.fasterxml.jackson.databind.ser.std.DateSerializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.regex.Pattern;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Writes the dates of the properties annotated with a {@code @JsonFormat} pattern through a
+ * {@link DateTimeFormatter}, built once per property and shared by every thread, where Jackson
+ * clones a {@code SimpleDateFormat} for every date it writes. The other dates, and the patterns
+ * the two formats read differently, are left to Jackson's serializer.
+ */
+public class PatternDateSerializer extends StdSerializer<Date> implements ContextualSerializer {
+
+    // letters meaning the same to SimpleDateFormat and DateTimeFormatter, and unquoted separators
+    private static final Pattern SUPPORTED = Pattern.compile("[yMdHhmsa \\-/:.,]+");
+
+    // null until the serializer is contextualized for a property with a pattern
+    private final DateTimeFormatter formatter;
+
+    public PatternDateSerializer() {
+        this(null);
+    }
+
+    private PatternDateSerializer(DateTimeFormatter formatter) {
+        super(Date.class);
+        this.formatter = formatter;
+    }
+
+    @Override
+    public JsonSerializer<?> createContextual(SerializerProvider provider, BeanProperty property)
+            throws JsonMappingException {
+        JsonFormat.Value format = findFormatOverrides(provider, property, handledType());
+        if (isNull(format) || !format.hasPattern() || !SUPPORTED.matcher(format.getPattern()).matches())
+            return DateSerializer.instance.createContextual(provider, property);
+        // the same locale and time zone as Jackson would give the SimpleDateFormat
+        Locale locale = format.hasLocale() ? format.getLocale() : provider.getLocale();
+        TimeZone timeZone = format.hasTimeZone() ? format.getTimeZone() : provider.getTimeZone();
+        return new PatternDateSerializer(DateTimeFormatter.ofPattern(format.getPattern(), locale)
+                .withZone(timeZone.toZoneId()));
+    }
+
+    @Override
+    public void serialize(Date value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        if (isNull(formatter)) {
+            provider.defaultSerializeDateValue(value, generator);
+            return;
+        }
+        // not toInstant(), which java.sql.Date does not support
+        generator.writeString(formatter.format(Instant.ofEpochMilli(value.getTime())));
+    }
+}
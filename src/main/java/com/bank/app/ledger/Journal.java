@@ -0,0 +1,403 @@
+package com.bank.app.ledger;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Append-only journal of postings, made of fixed-size {@link JournalRecord}s written to memory
+ * mapped segment files. A segment is named after the sequence of its first record and holds a fixed
+ * number of records; a new segment is created when the current one is full.
+ *
+ * When the journal is opened the records are checked in order. The journal ends at the first record
+ * with a bad checksum or an unexpected sequence, i.e. a write torn by a crash; the rest of the
+ * segment is zeroed and later segments removed, so that stale records are never read back.
+ *
+ * The records of one append are written together or not at all: they are encoded and the segments
+ * they need created before the first is written, and readers see them once they are all written.
+ * Whether they survive a crash of the host depends on the {@link FsyncPolicy}; readers which must not
+ * get ahead of what survives, such as the projection into the database, stop at the durable sequence.
+ * A journal which could not be forced to disk refuses any further append, what it holds on disk is
+ * unknown until it is opened again.
+ */
+@Slf4j
+public class Journal implements Closeable {
+
+    public enum FsyncPolicy {
+        // the operating system writes the pages back when it sees fit
+        NEVER,
+        // the journal is forced to disk periodically, see sync()
+        INTERVAL,
+        // appenders wait until their records are on disk; concurrent appenders share one fsync
+        GROUP
+    }
+
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final FsyncPolicy fsyncPolicy;
+    private final Object syncLock = new Object();
+
+    // guarded by this
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private Segment active;
+    private boolean closed;
+
+    private volatile long lastSequence;
+    private volatile long durableSequence;
+    // set once forcing the journal to disk failed
+    private volatile IOException failure;
+
+    private Journal(Path directory, int recordsPerSegment, FsyncPolicy fsyncPolicy) {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.fsyncPolicy = fsyncPolicy;
+    }
+
+    /**
+     * Open the journal held in a directory, recovering from an interrupted write if needed.
+     *
+     * @param directory - directory of the segment files, created if missing.
+     * @param recordsPerSegment - number of records of the segments created.
+     * @param fsyncPolicy - when the records are forced to disk.
+     * @return the journal, positioned after its last valid record.
+     * @throws IOException if the journal cannot be read or has a gap.
+     */
+    public static Journal open(Path directory, int recordsPerSegment, FsyncPolicy fsyncPolicy) throws IOException {
+        Journal journal = new Journal(directory, recordsPerSegment, fsyncPolicy);
+        journal.recover();
+        return journal;
+    }
+
+    private synchronized void recover() throws IOException {
+        Files.createDirectories(directory);
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                files.put(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())), file);
+            }
+        }
+
+        long next = files.isEmpty() ? 1 : files.firstKey();
+        boolean ended = false;
+        for (Map.Entry<Long, Path> file : files.entrySet()) {
+            if (ended) {
+                log.error("Remove journal segment {} found after the end of the journal", file.getValue());
+                Files.delete(file.getValue());
+                continue;
+            }
+            if (file.getKey() != next)
+                throw new IOException("The journal has a gap, expected a segment starting at " + next
+                        + " but found " + file.getValue());
+            Segment segment = Segment.open(file.getValue(), file.getKey());
+            int count = segment.scan();
+            segments.put(file.getKey(), segment);
+            next = file.getKey() + count;
+            if (count < segment.capacity) {
+                // end of the journal, a torn write may have left garbage after the last record
+                segment.truncate(count);
+                ended = true;
+            }
+        }
+        if (!segments.isEmpty()) {
+            Segment last = segments.lastEntry().getValue();
+            if (last.count < last.capacity)
+                active = last;
+        }
+        lastSequence = next - 1;
+        durableSequence = lastSequence;
+        log.info("Opened the journal in {}, last sequence {}", directory, lastSequence);
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * @return the sequence of the last record known to be on disk, it survives a crash of the host.
+     */
+    public long getDurableSequence() {
+        return durableSequence;
+    }
+
+    /**
+     * Append records to the journal, assigning them consecutive sequences. Either all the records are
+     * appended or none is.
+     *
+     * @param records - the records, their sequence is set.
+     * @return the sequence of the last record appended.
+     * @throws IOException if the journal is closed or failed, or a new segment cannot be created.
+     * @throws IllegalArgumentException if a record cannot be encoded.
+     */
+    public synchronized long append(List<JournalRecord> records) throws IOException {
+        if (closed)
+            throw new IOException("The journal is closed");
+        if (nonNull(failure))
+            throw new IOException("The journal could not be forced to disk and takes no more records", failure);
+        byte[][] encoded = new byte[records.size()][];
+        long sequence = lastSequence;
+        for (int i = 0; i < encoded.length; i++) {
+            JournalRecord record = records.get(i);
+            record.setSequence(++sequence);
+            encoded[i] = new byte[JournalRecord.SIZE];
+            record.encode(encoded[i]);
+        }
+        Iterator<Segment> reserved = reserve(encoded.length).iterator();
+        // nothing can fail from here on
+        for (byte[] bytes : encoded) {
+            if (isNull(active) || active.count == active.capacity) {
+                active = reserved.next();
+                segments.put(active.firstSequence, active);
+            }
+            active.write(bytes);
+        }
+        // publishes the records to the readers
+        lastSequence = sequence;
+        return sequence;
+    }
+
+    // creates the segments needed by the records beyond the room left in the active one
+    private List<Segment> reserve(int records) throws IOException {
+        List<Segment> reserved = new ArrayList<>();
+        long room = isNull(active) ? 0 : active.capacity - active.count;
+        long firstSequence = lastSequence + 1 + room;
+        try {
+            while (room < records) {
+                Path path = directory.resolve(String.format("%s%020d%s", PREFIX, firstSequence, SUFFIX));
+                Segment segment = Segment.create(path, firstSequence, recordsPerSegment);
+                reserved.add(segment);
+                log.info("Created journal segment {}", path);
+                room += segment.capacity;
+                firstSequence += segment.capacity;
+            }
+        } catch (IOException e) {
+            for (Segment segment : reserved) {
+                try {
+                    segment.close();
+                    Files.deleteIfExists(segment.path);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
+        }
+        return reserved;
+    }
+
+    /**
+     * Wait until the record with the sequence is on disk, when the fsync policy is GROUP. The first
+     * caller forces everything appended so far, the callers arriving meanwhile are covered by it.
+     *
+     * @param sequence - sequence of the last record of the caller.
+     * @throws IOException if the journal cannot be forced to disk.
+     */
+    public void awaitDurable(long sequence) throws IOException {
+        if (fsyncPolicy == FsyncPolicy.GROUP)
+            syncTo(sequence);
+    }
+
+    /**
+     * Force all the records appended so far to disk.
+     *
+     * @throws IOException if the journal cannot be forced to disk.
+     */
+    public void sync() throws IOException {
+        syncTo(lastSequence);
+    }
+
+    /**
+     * Force the records appended so far to disk, unless the record with the sequence already is.
+     *
+     * @param sequence - sequence of the last record which must be on disk.
+     * @throws IOException if the journal cannot be forced to disk, now or before.
+     */
+    public void syncTo(long sequence) throws IOException {
+        synchronized (syncLock) {
+            if (durableSequence >= sequence)
+                return;
+            if (nonNull(failure))
+                throw new IOException("The journal could not be forced to disk", failure);
+            long target = lastSequence;
+            List<Segment> dirty;
+            synchronized (this) {
+                Long from = segments.floorKey(durableSequence + 1);
+                if (isNull(from))
+                    from = segments.isEmpty() ? target : segments.firstKey();
+                dirty = new ArrayList<>(segments.subMap(from, true, target, true).values());
+            }
+            try {
+                for (Segment segment : dirty) {
+                    segment.force();
+                }
+            } catch (RuntimeException e) {
+                // the pages may or may not be on disk, any later record could end up after a hole
+                failure = new IOException("Failed to force the journal to disk after sequence " + durableSequence, e);
+                log.error("The journal in {} could not be forced to disk, it takes no more records", directory, failure);
+                throw failure;
+            }
+            durableSequence = target;
+        }
+    }
+
+    /**
+     * Read records from the journal.
+     *
+     * @param fromSequence - sequence of the first record to read.
+     * @param max - maximum number of records to read.
+     * @return the records, empty if there is no record at or after the sequence.
+     */
+    public List<JournalRecord> read(long fromSequence, int max) {
+        List<JournalRecord> records = new ArrayList<>();
+        long last = lastSequence;
+        byte[] bytes = new byte[JournalRecord.SIZE];
+        Segment segment = null;
+        for (long sequence = fromSequence; sequence <= last && records.size() < max; sequence++) {
+            if (isNull(segment) || sequence >= segment.firstSequence + segment.capacity) {
+                synchronized (this) {
+                    if (closed)
+                        throw new IllegalStateException("The journal is closed");
+                    Map.Entry<Long, Segment> entry = segments.floorEntry(sequence);
+                    if (isNull(entry) || sequence >= entry.getKey() + entry.getValue().capacity)
+                        throw new IllegalStateException("Journal record " + sequence + " has been deleted");
+                    segment = entry.getValue();
+                }
+            }
+            segment.read((int) (sequence - segment.firstSequence), bytes);
+            JournalRecord record = JournalRecord.decode(bytes);
+            if (isNull(record) || record.getSequence() != sequence)
+                throw new IllegalStateException("Journal record " + sequence + " is corrupt");
+            records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * Delete the segments whose records all have a sequence lower than the sequence.
+     *
+     * @param sequence - first sequence to keep.
+     * @throws IOException if a segment cannot be deleted.
+     */
+    public synchronized void deleteBefore(long sequence) throws IOException {
+        while (!segments.isEmpty()) {
+            Segment first = segments.firstEntry().getValue();
+            if (first == active || first.firstSequence + first.capacity > sequence)
+                return;
+            segments.remove(first.firstSequence);
+            first.close();
+            Files.delete(first.path);
+            log.info("Deleted journal segment {}", first.path);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (fsyncPolicy != FsyncPolicy.NEVER)
+                sync();
+        } finally {
+            synchronized (this) {
+                for (Segment segment : segments.values()) {
+                    segment.close();
+                }
+                segments.clear();
+                active = null;
+                closed = true;
+            }
+        }
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final long firstSequence;
+        private final int capacity;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        // records written, only changed by the appending thread
+        private int count;
+
+        private Segment(Path path, long firstSequence, FileChannel channel) throws IOException {
+            this.path = path;
+            this.firstSequence = firstSequence;
+            this.channel = channel;
+            this.capacity = (int) (channel.size() / JournalRecord.SIZE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * JournalRecord.SIZE);
+        }
+
+        static Segment create(Path path, long firstSequence, int capacity) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            // pre-allocated, so appends never grow the file
+            channel.write(ByteBuffer.wrap(new byte[1]), (long) capacity * JournalRecord.SIZE - 1);
+            return new Segment(path, firstSequence, channel);
+        }
+
+        static Segment open(Path path, long firstSequence) throws IOException {
+            return new Segment(path, firstSequence,
+                    FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+        }
+
+        // counts the valid records at the start of the segment
+        int scan() {
+            byte[] bytes = new byte[JournalRecord.SIZE];
+            count = 0;
+            while (count < capacity) {
+                read(count, bytes);
+                JournalRecord record = JournalRecord.decode(bytes);
+                if (isNull(record) || record.getSequence() != firstSequence + count)
+                    break;
+                count++;
+            }
+            return count;
+        }
+
+        void truncate(int records) {
+            ByteBuffer tail = buffer.duplicate();
+            tail.position(records * JournalRecord.SIZE);
+            while (tail.hasRemaining()) {
+                tail.put((byte) 0);
+            }
+            buffer.force();
+            count = records;
+        }
+
+        void write(byte[] bytes) {
+            ByteBuffer target = buffer.duplicate();
+            target.position(count * JournalRecord.SIZE);
+            target.put(bytes);
+            count++;
+        }
+
+        void read(int index, byte[] bytes) {
+            ByteBuffer source = buffer.duplicate();
+            source.position(index * JournalRecord.SIZE);
+            source.get(bytes);
+        }
+
+        void force() {
+            buffer.force();
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+}
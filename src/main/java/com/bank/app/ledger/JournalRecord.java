@@ -0,0 +1,160 @@
+package com.bank.app.ledger;
+
+import com.bank.app.model.Account;
+import com.bank.app.model.Transaction;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.zip.CRC32;
+
+/**
+ * One posting of the ledger journal. Records have a fixed size of {@link #SIZE} bytes:
+ *
+ * <pre>
+ *   0  sequence              long
+ *   8  posted on (millis)    long
+ *  16  amount (cents)        long
+ *  24  balance before        long
+ *  32  balance after         long
+ *  40  type                  byte, 0 debit, 1 credit
+ *  41  account id length     byte
+ *  42  account id            40 bytes, US-ASCII
+ *  82  transaction id length byte
+ *  83  transaction id        40 bytes, US-ASCII
+ * 124  CRC32 of bytes 0-123  int
+ * </pre>
+ */
+@Getter
+public class JournalRecord {
+
+    public static final int SIZE = 128;
+    public static final int MAX_ID_LENGTH = 40;
+
+    private static final int TYPE = 40;
+    private static final int ACCOUNT_ID = 41;
+    private static final int TRANSACTION_ID = 82;
+    private static final int CRC = 124;
+
+    private long sequence;
+    private final String transactionId;
+    private final String accountId;
+    private final Transaction.TransactionType type;
+    private final long amount;
+    private final long balanceBefore;
+    private final long balanceAfter;
+    private final long postedOn;
+
+    public JournalRecord(long sequence,
+                         String transactionId,
+                         String accountId,
+                         Transaction.TransactionType type,
+                         long amount,
+                         long balanceBefore,
+                         long balanceAfter,
+                         long postedOn) {
+        this.sequence = sequence;
+        this.transactionId = transactionId;
+        this.accountId = accountId;
+        this.type = type;
+        this.amount = amount;
+        this.balanceBefore = balanceBefore;
+        this.balanceAfter = balanceAfter;
+        this.postedOn = postedOn;
+    }
+
+    /**
+     * Build the record of a posting, the sequence is assigned when it is appended to the journal.
+     *
+     * @param transaction - the posting.
+     * @return the record.
+     */
+    public static JournalRecord of(Transaction transaction) {
+        return new JournalRecord(0,
+                transaction.getId(),
+                transaction.getAccount().getId(),
+                transaction.getTransactionType(),
+                transaction.getAmmount(),
+                transaction.getBalanceBefore(),
+                transaction.getBalanceAfter(),
+                transaction.getPostedOn().getTime());
+    }
+
+    /**
+     * @param account - the account of the posting.
+     * @return the posting as a transaction row.
+     */
+    public Transaction toTransaction(Account account) {
+        Transaction transaction = new Transaction();
+        transaction.setId(transactionId);
+        transaction.setAccount(account);
+        transaction.setTransactionType(type);
+        transaction.setAmmount(amount);
+        transaction.setBalanceBefore(balanceBefore);
+        transaction.setBalanceAfter(balanceAfter);
+        transaction.setPostedOn(new Date(postedOn));
+        return transaction;
+    }
+
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * Encode the record, with its checksum.
+     *
+     * @param bytes - buffer of {@link #SIZE} bytes.
+     */
+    void encode(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.putLong(0, sequence);
+        buffer.putLong(8, postedOn);
+        buffer.putLong(16, amount);
+        buffer.putLong(24, balanceBefore);
+        buffer.putLong(32, balanceAfter);
+        buffer.put(TYPE, (byte) (type == Transaction.TransactionType.CREDIT ? 1 : 0));
+        putId(bytes, ACCOUNT_ID, accountId);
+        putId(bytes, TRANSACTION_ID, transactionId);
+        buffer.putInt(CRC, checksum(bytes));
+    }
+
+    /**
+     * Decode a record.
+     *
+     * @param bytes - buffer of {@link #SIZE} bytes.
+     * @return the record, null if the checksum does not match.
+     */
+    static JournalRecord decode(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.getInt(CRC) != checksum(bytes))
+            return null;
+        return new JournalRecord(buffer.getLong(0),
+                getId(bytes, TRANSACTION_ID),
+                getId(bytes, ACCOUNT_ID),
+                bytes[TYPE] == 1 ? Transaction.TransactionType.CREDIT : Transaction.TransactionType.DEBIT,
+                buffer.getLong(16),
+                buffer.getLong(24),
+                buffer.getLong(32),
+                buffer.getLong(8));
+    }
+
+    private static void putId(byte[] bytes, int offset, String id) {
+        byte[] encoded = id.getBytes(StandardCharsets.US_ASCII);
+        if (encoded.length > MAX_ID_LENGTH)
+            throw new IllegalArgumentException("Identifier " + id + " is longer than " + MAX_ID_LENGTH + " characters");
+        bytes[offset] = (byte) encoded.length;
+        System.arraycopy(encoded, 0, bytes, offset + 1, encoded.length);
+    }
+
+    private static String getId(byte[] bytes, int offset) {
+        int length = Math.min(bytes[offset] & 0xFF, MAX_ID_LENGTH);
+        return new String(bytes, offset + 1, length, StandardCharsets.US_ASCII);
+    }
+
+    private static int checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, CRC);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,245 @@
+package com.bank.app.ledger;
+
+import com.bank.app.config.LedgerConfig;
+import com.bank.app.model.Transaction;
+import io.dropwizard.lifecycle.Managed;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Ledger of the postings made in journal mode. Postings are appended to the {@link Journal} and the
+ * resulting balances kept in memory; the database tables are brought up to date asynchronously by
+ * the {@link LedgerProjector}. The balances of the accounts posted to are taken from the ledger, the
+ * balances of the other accounts from the database.
+ *
+ * At startup the balances are rebuilt from the latest snapshot and the journal records after it.
+ * Snapshots are written periodically and at shutdown, after which the journal segments both
+ * snapshotted and projected are deleted. Neither a snapshot nor the projection gets ahead of the
+ * records on disk, whatever the fsync policy.
+ *
+ * The journal is local to the node, journal mode needs a single node posting transfers.
+ */
+@Slf4j
+public class Ledger implements Managed {
+
+    private final LedgerConfig config;
+    private final ScheduledExecutorService scheduler;
+    private final SnapshotStore snapshots;
+
+    // guarded by this
+    private final Map<String, Long> balances = new HashMap<>();
+    private Journal journal;
+    private volatile long projectedSequence;
+    private final List<ScheduledFuture<?>> tasks = new ArrayList<>();
+
+    public Ledger(LedgerConfig config, ScheduledExecutorService scheduler) {
+        this.config = config;
+        this.scheduler = scheduler;
+        this.snapshots = new SnapshotStore(Paths.get(config.getDirectory()));
+    }
+
+    @Override
+    public void start() throws Exception {
+        Path directory = Paths.get(config.getDirectory());
+        synchronized (this) {
+            journal = Journal.open(directory, config.getSegmentRecords(), config.getFsync());
+            long sequence = replay(journal, snapshots, balances, null);
+            log.info("Rebuilt the balances of {} accounts up to journal sequence {}", balances.size(), sequence);
+        }
+        long snapshotInterval = config.getSnapshotInterval().toMilliseconds();
+        tasks.add(scheduler.scheduleWithFixedDelay(this::snapshotQuietly, snapshotInterval, snapshotInterval, TimeUnit.MILLISECONDS));
+        if (config.getFsync() == Journal.FsyncPolicy.INTERVAL) {
+            long fsyncInterval = config.getFsyncInterval().toMilliseconds();
+            tasks.add(scheduler.scheduleWithFixedDelay(this::syncQuietly, fsyncInterval, fsyncInterval, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Override
+    public void stop() throws Exception {
+        for (ScheduledFuture<?> task : tasks) {
+            task.cancel(false);
+        }
+        snapshot();
+        journal.close();
+    }
+
+    /**
+     * Rebuild balances from the latest snapshot and the journal records after it.
+     *
+     * @param journal - the journal, opened.
+     * @param snapshots - the snapshots, null to replay the whole journal.
+     * @param balances - receives the balance of every account.
+     * @param listener - receives every record replayed, may be null.
+     * @return the sequence of the last record reflected in the balances.
+     */
+    static long replay(Journal journal, SnapshotStore snapshots, Map<String, Long> balances, RecordListener listener) {
+        long sequence = 0;
+        Optional<SnapshotStore.Snapshot> snapshot = isNull(snapshots) ? Optional.empty() : snapshots.latest();
+        if (snapshot.isPresent()) {
+            balances.putAll(snapshot.get().getBalances());
+            sequence = snapshot.get().getSequence();
+        }
+        // records lost by the journal would be appended again with sequences the snapshot already covers
+        if (journal.getLastSequence() < sequence)
+            throw new IllegalStateException("The journal ends at " + journal.getLastSequence()
+                    + " before the latest snapshot at " + sequence);
+        List<JournalRecord> records;
+        do {
+            records = journal.read(sequence + 1, 10000);
+            for (JournalRecord record : records) {
+                balances.put(record.getAccountId(), record.getBalanceAfter());
+                if (!isNull(listener))
+                    listener.replayed(record);
+                sequence = record.getSequence();
+            }
+        } while (!records.isEmpty());
+        return sequence;
+    }
+
+    interface RecordListener {
+        void replayed(JournalRecord record);
+    }
+
+    /**
+     * Append postings to the journal and apply them to the balances, all of them or none. Returns once
+     * the postings are durable according to the fsync policy. Postings to the same account must be
+     * appended in order by the caller.
+     *
+     * Once appended the postings stand, they are in the balances and will be projected: a journal
+     * which then cannot be forced to disk fails for the postings after them, not for these.
+     *
+     * @param postings - the postings.
+     * @throws UncheckedIOException if the postings could not be appended, none of them was.
+     */
+    public void append(List<Transaction> postings) {
+        List<JournalRecord> records = new ArrayList<>(postings.size());
+        for (Transaction posting : postings) {
+            records.add(JournalRecord.of(posting));
+        }
+        long sequence;
+        synchronized (this) {
+            try {
+                sequence = journal.append(records);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to append the postings to the journal", e);
+            }
+            for (JournalRecord record : records) {
+                balances.put(record.getAccountId(), record.getBalanceAfter());
+            }
+        }
+        try {
+            journal.awaitDurable(sequence);
+        } catch (IOException e) {
+            log.error("Postings up to journal sequence {} are applied but may not be on disk", sequence, e);
+        }
+    }
+
+    /**
+     * @param accountId - unique identifier of the account.
+     * @return the balance of the account in cents, empty if the ledger has no posting for it.
+     */
+    public synchronized OptionalLong balance(String accountId) {
+        Long balance = balances.get(accountId);
+        return isNull(balance) ? OptionalLong.empty() : OptionalLong.of(balance);
+    }
+
+    /**
+     * @param fromSequence - sequence of the first record to read.
+     * @param max - maximum number of records to read.
+     * @return the records.
+     */
+    public List<JournalRecord> read(long fromSequence, int max) {
+        return journal.read(fromSequence, max);
+    }
+
+    /**
+     * Read records which are on disk, the records appended but not yet forced are left out.
+     *
+     * @param fromSequence - sequence of the first record to read.
+     * @param max - maximum number of records to read.
+     * @return the records.
+     */
+    public List<JournalRecord> readDurable(long fromSequence, int max) {
+        long durable = journal.getDurableSequence();
+        if (durable < fromSequence)
+            return new ArrayList<>();
+        return journal.read(fromSequence, (int) Math.min(max, durable - fromSequence + 1));
+    }
+
+    /**
+     * Force the records appended so far to disk.
+     *
+     * @throws IOException if the journal cannot be forced to disk.
+     */
+    public void sync() throws IOException {
+        journal.sync();
+    }
+
+    /**
+     * @return the sequence of the last record appended to the journal.
+     */
+    public long getLastSequence() {
+        return journal.getLastSequence();
+    }
+
+    /**
+     * Record that the journal has been pushed into the database up to a sequence, the segments before
+     * it may be deleted once snapshotted.
+     *
+     * @param sequence - sequence of the last record projected.
+     */
+    public void projected(long sequence) {
+        projectedSequence = sequence;
+    }
+
+    /**
+     * Write a snapshot of the balances and delete the journal segments no longer needed.
+     *
+     * @throws IOException if the snapshot cannot be written.
+     */
+    public void snapshot() throws IOException {
+        Map<String, Long> copy;
+        long sequence;
+        synchronized (this) {
+            copy = new HashMap<>(balances);
+            sequence = journal.getLastSequence();
+        }
+        // a snapshot ahead of the journal on disk would not survive a crash of the host: the journal
+        // would end before it and the node would not start
+        journal.syncTo(sequence);
+        snapshots.write(sequence, copy);
+        journal.deleteBefore(Math.min(sequence, projectedSequence) + 1);
+        log.info("Wrote a snapshot of {} balances at journal sequence {}", copy.size(), sequence);
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to snapshot the ledger", e);
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            journal.sync();
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to force the journal to disk", e);
+        }
+    }
+}
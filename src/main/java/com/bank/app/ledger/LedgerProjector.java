@@ -0,0 +1,144 @@
+package com.bank.app.ledger;
+
+import com.bank.app.config.LedgerConfig;
+import com.bank.app.db.AccountDAO;
+import com.bank.app.db.AccountDailyRollupDAO;
+import com.bank.app.db.LedgerCheckpointDAO;
+import com.bank.app.db.TransactionDAO;
+import com.bank.app.model.Account;
+import com.bank.app.model.Transaction;
+import io.dropwizard.hibernate.UnitOfWork;
+import io.dropwizard.lifecycle.Managed;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Pushes the postings of the ledger journal into the accounts and transactions tables in the
+ * background. Every batch is written in one transaction together with the checkpoint of the last
+ * record projected, so a record is projected exactly once even if the node stops halfway. Only the
+ * records on disk are projected, so that the checkpoint never gets ahead of the journal after a crash.
+ *
+ * Instances must be created through {@link io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory}
+ * so that the {@link UnitOfWork} methods get a session.
+ */
+@Slf4j
+public class LedgerProjector implements Managed {
+
+    private final Ledger ledger;
+    private final AccountDAO accountDAO;
+    private final TransactionDAO transactionDAO;
+    private final AccountDailyRollupDAO rollupDAO;
+    private final LedgerCheckpointDAO checkpointDAO;
+    private final LedgerConfig config;
+    private final ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> task;
+
+    public LedgerProjector(Ledger ledger,
+                           AccountDAO accountDAO,
+                           TransactionDAO transactionDAO,
+                           AccountDailyRollupDAO rollupDAO,
+                           LedgerCheckpointDAO checkpointDAO,
+                           LedgerConfig config,
+                           ScheduledExecutorService scheduler) {
+        this.ledger = ledger;
+        this.accountDAO = accountDAO;
+        this.transactionDAO = transactionDAO;
+        this.rollupDAO = rollupDAO;
+        this.checkpointDAO = checkpointDAO;
+        this.config = config;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void start() {
+        checkJournal();
+        long interval = config.getProjectInterval().toMilliseconds();
+        task = scheduler.scheduleWithFixedDelay(this::drain, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        // a batch in flight rolls back if the journal closes under it, and is projected again on restart
+        task.cancel(false);
+    }
+
+    /**
+     * Refuse to start when the database has projected records the journal no longer has, i.e. the
+     * journal lost records in a crash: the postings appended next would reuse their sequences and be
+     * skipped as already projected.
+     */
+    @UnitOfWork
+    public void checkJournal() {
+        long checkpoint = checkpointDAO.getSequence();
+        if (checkpoint > ledger.getLastSequence())
+            throw new IllegalStateException("The ledger checkpoint is at journal sequence " + checkpoint
+                    + " but the journal ends at " + ledger.getLastSequence());
+    }
+
+    /**
+     * Project the journal records until the database has caught up with the journal on disk.
+     */
+    public void drain() {
+        try {
+            // only the records on disk are projected, force the ones appended since the last round
+            ledger.sync();
+            long before;
+            long after = projectBatch();
+            do {
+                ledger.projected(after);
+                before = after;
+                after = projectBatch();
+            } while (after > before);
+            ledger.projected(after);
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to project the ledger journal", e);
+        }
+    }
+
+    /**
+     * Project the next batch of journal records after the checkpoint, up to the last record on disk.
+     *
+     * @return the sequence of the last record projected.
+     */
+    @UnitOfWork
+    public long projectBatch() {
+        long checkpoint = checkpointDAO.getSequence();
+        List<JournalRecord> records = ledger.readDurable(checkpoint + 1, config.getProjectBatchSize());
+        if (records.isEmpty())
+            return checkpoint;
+
+        TreeSet<String> accountIds = new TreeSet<>();
+        for (JournalRecord record : records) {
+            accountIds.add(record.getAccountId());
+        }
+        Map<String, Account> accounts = accountDAO.findByIdsForUpdate(accountIds);
+        List<Transaction> postings = new ArrayList<>(records.size());
+        for (JournalRecord record : records) {
+            Account account = accounts.get(record.getAccountId());
+            if (isNull(account)) {
+                log.warn("Skip journal record {}, account {} no longer exists", record.getSequence(), record.getAccountId());
+                continue;
+            }
+            Transaction posting = record.toTransaction(account);
+            transactionDAO.add(posting);
+            postings.add(posting);
+            // the accounts are managed and locked, update them in place
+            account.setBalance(record.getBalanceAfter());
+        }
+        rollupDAO.apply(postings);
+        long last = records.get(records.size() - 1).getSequence();
+        checkpointDAO.save(last);
+        log.debug("Projected journal records {} to {}", checkpoint + 1, last);
+        return last;
+    }
+}
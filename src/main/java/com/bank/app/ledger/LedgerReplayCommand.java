@@ -0,0 +1,74 @@
+package com.bank.app.ledger;
+
+import com.bank.app.config.BankingAppConfig;
+import com.bank.app.config.LedgerConfig;
+import io.dropwizard.cli.ConfiguredCommand;
+import io.dropwizard.setup.Bootstrap;
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Rebuilds the account balances from the ledger journal, checking every record on the way. Must be
+ * run while the application is stopped, it opens the journal for writing.
+ *
+ * <pre>
+ *   java -jar target/BankingApplication-1.0-SNAPSHOT.jar ledger-replay [--full] [--print] [--snapshot] config.yml
+ * </pre>
+ */
+public class LedgerReplayCommand extends ConfiguredCommand<BankingAppConfig> {
+
+    public LedgerReplayCommand() {
+        super("ledger-replay", "Rebuild the account balances from the ledger journal");
+    }
+
+    @Override
+    public void configure(Subparser subparser) {
+        super.configure(subparser);
+        subparser.addArgument("--full")
+                .action(Arguments.storeTrue())
+                .dest("full")
+                .help("Replay the journal from its first record instead of the latest snapshot");
+        subparser.addArgument("--print")
+                .action(Arguments.storeTrue())
+                .dest("print")
+                .help("Print the balance of every account");
+        subparser.addArgument("--snapshot")
+                .action(Arguments.storeTrue())
+                .dest("snapshot")
+                .help("Write a snapshot of the rebuilt balances");
+    }
+
+    @Override
+    protected void run(Bootstrap<BankingAppConfig> bootstrap,
+                       Namespace namespace,
+                       BankingAppConfig configuration) throws Exception {
+        LedgerConfig config = configuration.getLedger();
+        Path directory = Paths.get(config.getDirectory());
+        SnapshotStore snapshots = new SnapshotStore(directory);
+        Map<String, Long> balances = new TreeMap<>();
+        long[] replayed = new long[1];
+        try (Journal journal = Journal.open(directory, config.getSegmentRecords(), config.getFsync())) {
+            long sequence = Ledger.replay(journal,
+                    namespace.getBoolean("full") ? null : snapshots,
+                    balances,
+                    record -> replayed[0]++);
+            System.out.printf("Replayed %d journal records, %d accounts at sequence %d%n",
+                    replayed[0], balances.size(), sequence);
+            if (namespace.getBoolean("print")) {
+                for (Map.Entry<String, Long> balance : balances.entrySet()) {
+                    System.out.printf("%s %d%n", balance.getKey(), balance.getValue());
+                }
+            }
+            if (namespace.getBoolean("snapshot")) {
+                snapshots.write(sequence, balances);
+                System.out.printf("Wrote a snapshot at sequence %d%n", sequence);
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.bank.app.ledger;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Snapshots of the account balances derived from the journal. A snapshot holds the balance of every
+ * account posted to up to a journal sequence, so that the balances can be rebuilt by replaying only
+ * the records after it. Snapshots are written to a temporary file and moved in place, and carry a
+ * checksum; a damaged snapshot is skipped in favour of the previous one.
+ */
+@Slf4j
+public class SnapshotStore {
+
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+    private static final int MAGIC = 0x4C454447;
+    private static final int KEEP = 2;
+
+    private final Path directory;
+
+    public SnapshotStore(Path directory) {
+        this.directory = directory;
+    }
+
+    @Getter
+    public static final class Snapshot {
+        private final long sequence;
+        private final Map<String, Long> balances;
+
+        Snapshot(long sequence, Map<String, Long> balances) {
+            this.sequence = sequence;
+            this.balances = balances;
+        }
+    }
+
+    /**
+     * Write a snapshot and remove the older ones, except the previous one.
+     *
+     * @param sequence - sequence of the last journal record reflected in the balances.
+     * @param balances - balance of every account, in cents.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    public void write(long sequence, Map<String, Long> balances) throws IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve(String.format("%s%020d%s", PREFIX, sequence, SUFFIX));
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporary)), crc))) {
+            out.writeInt(MAGIC);
+            out.writeLong(sequence);
+            out.writeInt(balances.size());
+            for (Map.Entry<String, Long> balance : balances.entrySet()) {
+                out.writeUTF(balance.getKey());
+                out.writeLong(balance.getValue());
+            }
+            // the checksum covers everything written before it
+            out.writeLong(crc.getValue());
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        prune();
+    }
+
+    /**
+     * @return the most recent readable snapshot.
+     */
+    public Optional<Snapshot> latest() {
+        for (Path file : list().descendingMap().values()) {
+            try {
+                return Optional.of(read(file));
+            } catch (IOException e) {
+                log.error("Skip the damaged snapshot {}", file, e);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private Snapshot read(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(file)), crc))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException("Not a snapshot");
+            long sequence = in.readLong();
+            int count = in.readInt();
+            Map<String, Long> balances = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                balances.put(in.readUTF(), in.readLong());
+            }
+            long expected = crc.getValue();
+            if (in.readLong() != expected)
+                throw new IOException("Checksum mismatch");
+            return new Snapshot(sequence, balances);
+        }
+    }
+
+    private void prune() throws IOException {
+        TreeMap<Long, Path> files = list();
+        while (files.size() > KEEP) {
+            Files.delete(files.pollFirstEntry().getValue());
+        }
+    }
+
+    private TreeMap<Long, Path> list() {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        if (!Files.isDirectory(directory))
+            return files;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                files.put(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())), file);
+            }
+        } catch (IOException e) {
+            log.error("Failed to list the snapshots in {}", directory, e);
+        }
+        return files;
+    }
+}
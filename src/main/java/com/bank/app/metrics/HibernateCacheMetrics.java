@@ -0,0 +1,58 @@
+package com.bank.app.metrics;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Exposes the statistics of the Hibernate second-level and query caches as metrics: hits, misses,
+ * puts, size and hit ratio of every region. Needs hibernate.generate_statistics set to true, the
+ * values stay at zero otherwise.
+ */
+public final class HibernateCacheMetrics {
+
+    private static final String PREFIX = "hibernate.cache";
+
+    private HibernateCacheMetrics() {
+    }
+
+    /**
+     * Register the gauges of every cache region of the session factory.
+     *
+     * @param metrics - registry the gauges are added to.
+     * @param sessionFactory - the session factory, already built.
+     */
+    public static void register(MetricRegistry metrics, SessionFactory sessionFactory) {
+        Statistics statistics = sessionFactory.getStatistics();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            SecondLevelCacheStatistics regionStatistics = statistics.getSecondLevelCacheStatistics(region);
+            if (regionStatistics == null)
+                continue;
+            metrics.register(name(PREFIX, region, "hits"), (Gauge<Long>) regionStatistics::getHitCount);
+            metrics.register(name(PREFIX, region, "misses"), (Gauge<Long>) regionStatistics::getMissCount);
+            metrics.register(name(PREFIX, region, "puts"), (Gauge<Long>) regionStatistics::getPutCount);
+            metrics.register(name(PREFIX, region, "size"), (Gauge<Long>) regionStatistics::getElementCountInMemory);
+            metrics.register(name(PREFIX, region, "hit-ratio"), new RatioGauge() {
+                @Override
+                protected Ratio getRatio() {
+                    long hits = regionStatistics.getHitCount();
+                    return Ratio.of(hits, hits + regionStatistics.getMissCount());
+                }
+            });
+        }
+        metrics.register(name(PREFIX, "query", "hits"), (Gauge<Long>) statistics::getQueryCacheHitCount);
+        metrics.register(name(PREFIX, "query", "misses"), (Gauge<Long>) statistics::getQueryCacheMissCount);
+        metrics.register(name(PREFIX, "query", "hit-ratio"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                long hits = statistics.getQueryCacheHitCount();
+                return Ratio.of(hits, hits + statistics.getQueryCacheMissCount());
+            }
+        });
+    }
+}
@@ -0,0 +1,65 @@
+package com.bank.app.metrics;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Exposes the session factory wide Hibernate statistics as metrics: statements, queries, entity
+ * loads and fetches, flushes, transactions and second-level cache activity. The values are counts
+ * since startup, rates are derived by the metrics backend. Needs hibernate.generate_statistics set to
+ * true, the values stay at zero otherwise.
+ */
+public final class HibernateStatisticsMetrics {
+
+    private static final String PREFIX = "hibernate.statistics";
+
+    private HibernateStatisticsMetrics() {
+    }
+
+    /**
+     * Register the gauges of the session factory.
+     *
+     * @param metrics - registry the gauges are added to.
+     * @param sessionFactory - the session factory, already built.
+     */
+    public static void register(MetricRegistry metrics, SessionFactory sessionFactory) {
+        registerGauges(metrics, PREFIX, sessionFactory);
+    }
+
+    /**
+     * Register the gauges of another session factory than the main one, e.g. of a shard or a read
+     * replica, named after it.
+     *
+     * @param metrics - registry the gauges are added to.
+     * @param name - name of the session factory, e.g. shard-1.
+     * @param sessionFactory - the session factory, already built.
+     */
+    public static void register(MetricRegistry metrics, String name, SessionFactory sessionFactory) {
+        registerGauges(metrics, name(PREFIX, name), sessionFactory);
+    }
+
+    private static void registerGauges(MetricRegistry metrics, String prefix, SessionFactory sessionFactory) {
+        Statistics statistics = sessionFactory.getStatistics();
+        metrics.register(name(prefix, "statements", "prepared"), (Gauge<Long>) statistics::getPrepareStatementCount);
+        metrics.register(name(prefix, "queries", "executed"), (Gauge<Long>) statistics::getQueryExecutionCount);
+        metrics.register(name(prefix, "queries", "max-time-ms"), (Gauge<Long>) statistics::getQueryExecutionMaxTime);
+        metrics.register(name(prefix, "queries", "slowest"), (Gauge<String>) statistics::getQueryExecutionMaxTimeQueryString);
+        metrics.register(name(prefix, "entities", "loaded"), (Gauge<Long>) statistics::getEntityLoadCount);
+        metrics.register(name(prefix, "entities", "fetched"), (Gauge<Long>) statistics::getEntityFetchCount);
+        metrics.register(name(prefix, "entities", "inserted"), (Gauge<Long>) statistics::getEntityInsertCount);
+        metrics.register(name(prefix, "entities", "updated"), (Gauge<Long>) statistics::getEntityUpdateCount);
+        metrics.register(name(prefix, "collections", "loaded"), (Gauge<Long>) statistics::getCollectionLoadCount);
+        metrics.register(name(prefix, "collections", "fetched"), (Gauge<Long>) statistics::getCollectionFetchCount);
+        metrics.register(name(prefix, "flushes"), (Gauge<Long>) statistics::getFlushCount);
+        metrics.register(name(prefix, "sessions", "opened"), (Gauge<Long>) statistics::getSessionOpenCount);
+        metrics.register(name(prefix, "transactions"), (Gauge<Long>) statistics::getTransactionCount);
+        metrics.register(name(prefix, "optimistic-failures"), (Gauge<Long>) statistics::getOptimisticFailureCount);
+        metrics.register(name(prefix, "second-level-cache", "hits"), (Gauge<Long>) statistics::getSecondLevelCacheHitCount);
+        metrics.register(name(prefix, "second-level-cache", "misses"), (Gauge<Long>) statistics::getSecondLevelCacheMissCount);
+        metrics.register(name(prefix, "second-level-cache", "puts"), (Gauge<Long>) statistics::getSecondLevelCachePutCount);
+    }
+}
@@ -0,0 +1,121 @@
+package com.bank.app.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where the time of one request went: request filters (authentication), the resource method and
+ * the DAO calls it made, the commit of its unit of work and the writing of the response. Filled in by
+ * {@link RequestTimingListener} for the requests it samples.
+ *
+ * DAO calls are only attributed to the request while its resource method runs on the request thread;
+ * work handed to other threads, e.g. the transfer pipeline, is not broken down.
+ */
+public class RequestTiming {
+
+    static final String PROPERTY = RequestTiming.class.getName();
+
+    private static final ThreadLocal<RequestTiming> CURRENT = new ThreadLocal<>();
+
+    private final long start = System.nanoTime();
+    private long matched;
+    private long filtered;
+    private long methodStart;
+    private long methodFinished;
+    private long responseFiltered;
+    private long finished;
+    // only written by the request thread while the resource method runs
+    private long daoNanos;
+    private int daoCalls;
+    // DAO calls in progress, a DAO method calling another one through its proxy is two
+    private int daoDepth;
+
+    /**
+     * Mark the start of a DAO call on the current thread, see {@link #recordDao(long)}.
+     */
+    public static void daoStarted() {
+        RequestTiming timing = CURRENT.get();
+        if (timing != null)
+            timing.daoDepth++;
+    }
+
+    /**
+     * Add the time of a DAO call to the request served by the current thread, if it is sampled. The
+     * calls made from within another DAO call are part of its time and are not counted again.
+     *
+     * @param nanos - duration of the call.
+     */
+    public static void recordDao(long nanos) {
+        RequestTiming timing = CURRENT.get();
+        if (timing != null && timing.daoDepth > 0 && --timing.daoDepth == 0) {
+            timing.daoNanos += nanos;
+            timing.daoCalls++;
+        }
+    }
+
+    void matched() {
+        matched = System.nanoTime();
+    }
+
+    void filtered() {
+        filtered = System.nanoTime();
+    }
+
+    void methodStarted() {
+        methodStart = System.nanoTime();
+        CURRENT.set(this);
+    }
+
+    void methodFinished() {
+        CURRENT.remove();
+        methodFinished = System.nanoTime();
+    }
+
+    void responseFiltered() {
+        responseFiltered = System.nanoTime();
+    }
+
+    void finished() {
+        finished = System.nanoTime();
+    }
+
+    public double getAuthMillis() {
+        return millis(matched, filtered);
+    }
+
+    public double getResourceMillis() {
+        return millis(methodStart, methodFinished);
+    }
+
+    public double getDaoMillis() {
+        return daoNanos / 1e6;
+    }
+
+    public int getDaoCalls() {
+        return daoCalls;
+    }
+
+    // the unit of work of the resource method is committed once it returns, before the response filters end
+    public double getCommitMillis() {
+        return millis(methodFinished, responseFiltered);
+    }
+
+    public double getWriteMillis() {
+        return millis(responseFiltered, finished);
+    }
+
+    public double getTotalMillis() {
+        return millis(start, finished == 0 ? System.nanoTime() : finished);
+    }
+
+    /**
+     * @return the timings known before the response is written, as a Server-Timing header value.
+     */
+    public String toServerTiming() {
+        return String.format("auth;dur=%.3f, resource;dur=%.3f, dao;dur=%.3f;desc=\"%d calls\", commit;dur=%.3f",
+                getAuthMillis(), getResourceMillis(), getDaoMillis(), daoCalls, getCommitMillis());
+    }
+
+    private static double millis(long from, long to) {
+        return from == 0 || to < from ? 0 : (to - from) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,108 @@
+package com.bank.app.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Breaks down the time of a sample of the requests, see {@link RequestTiming}. A sampled request
+ * gets a Server-Timing response header when the header is enabled and a log line with the full
+ * breakdown, including the time to write the response, when it is picked by the log sample rate.
+ * Requests which are not sampled cost one random number.
+ */
+@Slf4j
+public class RequestTimingListener implements ApplicationEventListener {
+
+    private final boolean serverTimingHeader;
+    private final double logSampleRate;
+
+    public RequestTimingListener(boolean serverTimingHeader, double logSampleRate) {
+        this.serverTimingHeader = serverTimingHeader;
+        this.logSampleRate = logSampleRate;
+    }
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent event) {
+        boolean logged = logSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < logSampleRate;
+        if (!serverTimingHeader && !logged)
+            return null;
+        return new TimingListener(new RequestTiming(), logged);
+    }
+
+    private static final class TimingListener implements RequestEventListener {
+        private final RequestTiming timing;
+        private final boolean logged;
+
+        private TimingListener(RequestTiming timing, boolean logged) {
+            this.timing = timing;
+            this.logged = logged;
+        }
+
+        @Override
+        public void onEvent(RequestEvent event) {
+            switch (event.getType()) {
+                case REQUEST_MATCHED:
+                    event.getContainerRequest().setProperty(RequestTiming.PROPERTY, timing);
+                    timing.matched();
+                    break;
+                case REQUEST_FILTERED:
+                    timing.filtered();
+                    break;
+                case RESOURCE_METHOD_START:
+                    timing.methodStarted();
+                    break;
+                case RESOURCE_METHOD_FINISHED:
+                    timing.methodFinished();
+                    break;
+                case RESP_FILTERS_FINISHED:
+                    timing.responseFiltered();
+                    break;
+                case FINISHED:
+                    timing.finished();
+                    if (logged)
+                        log(event.getContainerRequest(), event.getContainerResponse() == null
+                                ? 0 : event.getContainerResponse().getStatus());
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void log(ContainerRequest request, int status) {
+            if (!log.isInfoEnabled())
+                return;
+            log.info(String.format("%s /%s %d total=%.3fms auth=%.3fms resource=%.3fms dao=%.3fms/%d commit=%.3fms write=%.3fms",
+                    request.getMethod(), request.getPath(true), status, timing.getTotalMillis(),
+                    timing.getAuthMillis(), timing.getResourceMillis(), timing.getDaoMillis(), timing.getDaoCalls(),
+                    timing.getCommitMillis(), timing.getWriteMillis()));
+        }
+    }
+
+    /**
+     * Adds the Server-Timing header to the responses of the sampled requests.
+     */
+    public static class ServerTimingFilter implements ContainerResponseFilter {
+
+        @Override
+        public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+            Object timing = request.getProperty(RequestTiming.PROPERTY);
+            if (timing instanceof RequestTiming) {
+                // the unit of work is committed by now, the response filters are not over yet
+                ((RequestTiming) timing).responseFiltered();
+                response.getHeaders().add("Server-Timing", ((RequestTiming) timing).toServerTiming());
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.bank.app.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import javassist.util.proxy.Proxy;
+import javassist.util.proxy.ProxyFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Creates instances of a class whose public methods are timed, e.g. the DAOs. Every public method
+ * declared by the class gets a timer named after the class and the method, and the time spent in it
+ * is added to the {@link RequestTiming} of the request being served, if any. A timed method called by
+ * another one, e.g. findByName calling findByIds, has its own timer but only the outer call is added
+ * to the request. Methods inherited from a superclass are not timed.
+ *
+ * Works like {@link io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory}: the instance is a subclass
+ * built at runtime, so the class must not be final.
+ */
+public class TimedProxyFactory {
+
+    private final MetricRegistry metrics;
+
+    public TimedProxyFactory(MetricRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Create an instance of a class with timed methods.
+     *
+     * @param clazz - the class to instantiate.
+     * @param constructorParamTypes - types of the parameters of the constructor to call.
+     * @param constructorArguments - arguments of the constructor.
+     * @param <T> - the type of the class.
+     * @return the instance.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T create(Class<T> clazz, Class<?>[] constructorParamTypes, Object[] constructorArguments) {
+        ProxyFactory factory = new ProxyFactory();
+        factory.setSuperclass(clazz);
+        factory.setFilter(method -> method.getDeclaringClass() == clazz
+                && Modifier.isPublic(method.getModifiers())
+                && !Modifier.isStatic(method.getModifiers()));
+        try {
+            Proxy proxy = (Proxy) factory.create(constructorParamTypes, constructorArguments);
+            proxy.setHandler((self, overridden, proceed, args) -> {
+                RequestTiming.daoStarted();
+                Timer.Context context = metrics.timer(name(clazz, overridden.getName())).time();
+                try {
+                    return proceed.invoke(self, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                } finally {
+                    RequestTiming.recordDao(context.stop());
+                }
+            });
+            return (T) proxy;
+        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Unable to create a timed proxy for the class '" + clazz + "'", e);
+        }
+    }
+}
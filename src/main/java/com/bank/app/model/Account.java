@@ -1,8 +1,13 @@
 package com.bank.app.model;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
@@ -15,10 +20,23 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "com.bank.app.model.Account")
 @Table(name = "accounts")
 @NamedQueries({
         @NamedQuery(name = "com.bank.app.model.Account.findAll",
-                query = "select a from Account a")
+                query = "select a from Account a"),
+        @NamedQuery(name = "com.bank.app.model.Account.findPage",
+                query = "select a from Account a where a.id > :afterId order by a.id"),
+        @NamedQuery(name = "com.bank.app.model.Account.findByIds",
+                query = "select a from Account a where a.id in :ids order by a.id"),
+        @NamedQuery(name = "com.bank.app.model.Account.fetchTransactions",
+                query = "select distinct a from Account a left join fetch a.transactions "
+                        + "where a.id in :ids"),
+        @NamedQuery(name = "com.bank.app.model.Account.findByCustomers",
+                query = "select a, a.customer.id from Account a where a.customer.id in :customerIds"),
+        @NamedQuery(name = "com.bank.app.model.Account.countByCustomer",
+                query = "select count(a) from Account a where a.customer.id = :customerId")
 })
 public class Account {
     @Id
@@ -29,14 +47,23 @@ public class Account {
     @Enumerated(EnumType.STRING)
     private AccountType accountType;
 
-    @Column(name = "balance")
-    private Double balance = 0.0;
+    // in cents
+    @JsonSerialize(using = Money.Serializer.class)
+    @JsonDeserialize(using = Money.Deserializer.class)
+    @Column(name = "balance_cents")
+    private long balance;
 
     @Column(name = "created_on")
     private Date createdOn;
 
+    // incremented by every update, used as the ETag of the account
+    @JsonIgnore
+    @Version
+    @Column(name = "version")
+    private long version;
+
     @JsonBackReference
-    @ManyToOne(targetEntity = Customer.class)
+    @ManyToOne(targetEntity = Customer.class, fetch = FetchType.LAZY)
     @JoinColumn(name="customer_id")
     private Customer customer;
 
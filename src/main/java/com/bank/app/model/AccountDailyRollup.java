@@ -0,0 +1,62 @@
+package com.bank.app.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Totals of the transactions posted to an account during one day (UTC), maintained in the unit of
+ * work of the postings. Amounts are in cents.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@IdClass(AccountDailyRollup.Key.class)
+@Table(name = "account_daily_rollups")
+@NamedQueries({
+        @NamedQuery(name = "com.bank.app.model.AccountDailyRollup.findByAccountsAndDays",
+                query = "select r from AccountDailyRollup r "
+                        + "where r.accountId in :accountIds and r.day between :firstDay and :lastDay"),
+        @NamedQuery(name = "com.bank.app.model.AccountDailyRollup.findRange",
+                query = "select r from AccountDailyRollup r "
+                        + "where r.accountId = :accountId and r.day >= :firstDay and r.day < :endDay "
+                        + "order by r.day")
+})
+public class AccountDailyRollup {
+    @Id
+    @Column(name = "account_id")
+    private String accountId;
+
+    @Id
+    @Column(name = "day")
+    private LocalDate day;
+
+    @Column(name = "opening_balance_cents")
+    private long openingBalance;
+
+    @Column(name = "credits_cents")
+    private long credits;
+
+    @Column(name = "debits_cents")
+    private long debits;
+
+    @Column(name = "transaction_count")
+    private int transactionCount;
+
+    @Column(name = "closing_balance_cents")
+    private long closingBalance;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private String accountId;
+        private LocalDate day;
+    }
+}
@@ -4,10 +4,13 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 
 @Getter
 @Setter
@@ -15,17 +18,35 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "com.bank.app.model.Customer")
 @Table(name = "customers")
 @NamedQueries({
         @NamedQuery(name = "com.bank.app.model.Customer.findAll",
                 query = "select c from Customer c"),
+        @NamedQuery(name = "com.bank.app.model.Customer.findPage",
+                query = "select c from Customer c where c.id > :afterId order by c.id"),
         @NamedQuery(name = "com.bank.app.model.Customer.findByName",
                 query = "select c from Customer c "
                         + "where c.firstName like :name "
-                        + "or c.lastName like :name"),
+                        + "or c.lastName like :name",
+                hints = @QueryHint(name = "org.hibernate.cacheable", value = "true")),
         @NamedQuery(name = "com.bank.app.model.Customer.findByEmail",
                 query = "select e from Customer e "
-                        + "where e.email like :email")
+                        + "where e.email like :email",
+                hints = @QueryHint(name = "org.hibernate.cacheable", value = "true")),
+        @NamedQuery(name = "com.bank.app.model.Customer.findByNormalizedEmail",
+                query = "select c from Customer c where c.emailNormalized = :email",
+                hints = @QueryHint(name = "org.hibernate.cacheable", value = "true")),
+        @NamedQuery(name = "com.bank.app.model.Customer.count",
+                query = "select count(c) from Customer c"),
+        @NamedQuery(name = "com.bank.app.model.Customer.findByIds",
+                query = "select c from Customer c where c.id in :ids order by c.id"),
+        @NamedQuery(name = "com.bank.app.model.Customer.findAllWithAccounts",
+                query = "select distinct c from Customer c left join fetch c.accounts"),
+        @NamedQuery(name = "com.bank.app.model.Customer.fetchAccounts",
+                query = "select distinct c from Customer c left join fetch c.accounts "
+                        + "where c.id in :ids")
 })
 public class Customer {
     @Id
@@ -43,6 +64,11 @@ public class Customer {
     @Column(name = "email")
     private String email;
 
+    // lower cased email, unique across the customers
+    @JsonIgnore
+    @Column(name = "email_normalized", unique = true)
+    private String emailNormalized;
+
     @Column(name = "phone")
     private String phone;
 
@@ -56,10 +82,33 @@ public class Customer {
     @Column(name = "ssn")
     private String ssn;
 
+    // incremented by every update, part of the ETag of the customer
+    @JsonIgnore
+    @Version
+    @Column(name = "version")
+    private long version;
+
     @JsonManagedReference
     @OneToMany(mappedBy = "customer", targetEntity = Account.class)
     private List<Account> accounts;
 
+    /**
+     * Normalize an email for the uniqueness check: surrounding blanks are removed and the email is
+     * lower cased.
+     *
+     * @param email - the email.
+     * @return the normalized email, null if the email is null.
+     */
+    public static String normalizeEmail(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    @PrePersist
+    @PreUpdate
+    void normalizeEmail() {
+        emailNormalized = normalizeEmail(email);
+    }
+
     @JsonProperty
     public String getDateOfBirth() {
         return dateOfBirth;
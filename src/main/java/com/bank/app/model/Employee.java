@@ -1,5 +1,6 @@
 package com.bank.app.model;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -7,10 +8,13 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
+import javax.persistence.QueryHint;
 import javax.persistence.Table;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.Date;
 
@@ -20,17 +24,25 @@ import java.util.Date;
 @AllArgsConstructor
 @Data
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "com.bank.app.model.Employee")
 @Table(name = "employees")
 @NamedQueries({
     @NamedQuery(name = "com.bank.app.model.Employee.findAll",
             query = "select e from Employee e"),
+    @NamedQuery(name = "com.bank.app.model.Employee.findPage",
+            query = "select e from Employee e where e.id > :afterId order by e.id"),
+    @NamedQuery(name = "com.bank.app.model.Employee.findByIds",
+            query = "select e from Employee e where e.id in :ids order by e.id"),
     @NamedQuery(name = "com.bank.app.model.Employee.findByName",
             query = "select e from Employee e "
             + "where e.firstName like :name "
-            + "or e.lastName like :name"),
+            + "or e.lastName like :name",
+            hints = @QueryHint(name = "org.hibernate.cacheable", value = "true")),
     @NamedQuery(name = "com.bank.app.model.Employee.findByEmail",
                 query = "select e from Employee e "
-                        + "where e.email like :email")
+                        + "where e.email like :email",
+            hints = @QueryHint(name = "org.hibernate.cacheable", value = "true"))
 })
 public class Employee {
     @Id
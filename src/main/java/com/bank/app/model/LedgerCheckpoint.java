@@ -0,0 +1,25 @@
+package com.bank.app.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+
+/**
+ * Sequence of the last ledger journal record projected into the accounts and transactions tables,
+ * written in the same transaction as the projected rows.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "ledger_checkpoint")
+public class LedgerCheckpoint {
+    public static final int ID = 1;
+
+    @Id
+    private int id;
+
+    @Column(name = "sequence")
+    private long sequence;
+}
@@ -0,0 +1,104 @@
+package com.bank.app.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Amounts of money are held as a primitive long number of cents. This class holds the arithmetic,
+ * which fails instead of overflowing, and the JSON mapping, which reads and writes the amounts as
+ * decimal numbers with two decimals, e.g. 1234.50.
+ */
+public final class Money {
+
+    public static final int SCALE = 2;
+
+    private Money() {
+    }
+
+    /**
+     * @param a - amount in cents.
+     * @param b - amount in cents.
+     * @return a + b in cents.
+     * @throws ArithmeticException if the result overflows.
+     */
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    /**
+     * @param a - amount in cents.
+     * @param b - amount in cents.
+     * @return a - b in cents.
+     * @throws ArithmeticException if the result overflows.
+     */
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    /**
+     * @param amount - decimal amount, with at most two decimals.
+     * @return the amount in cents.
+     * @throws ArithmeticException if the amount has more than two decimals or does not fit in a long.
+     */
+    public static long toCents(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    /**
+     * @param cents - amount in cents.
+     * @return the decimal amount.
+     */
+    public static BigDecimal toDecimal(long cents) {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    public static class Serializer extends StdSerializer<Long> {
+
+        public Serializer() {
+            super(Long.class);
+        }
+
+        @Override
+        public void serialize(Long cents, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeNumber(toDecimal(cents));
+        }
+    }
+
+    public static class Deserializer extends StdDeserializer<Long> {
+
+        public Deserializer() {
+            super(Long.class);
+        }
+
+        @Override
+        public Long deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            BigDecimal amount;
+            if (p.hasToken(JsonToken.VALUE_STRING)) {
+                try {
+                    amount = new BigDecimal(p.getText().trim());
+                } catch (NumberFormatException e) {
+                    throw InvalidFormatException.from(p, "Invalid amount", p.getText(), Long.class);
+                }
+            } else if (p.getCurrentToken().isNumeric()) {
+                amount = p.getDecimalValue();
+            } else {
+                return (Long) ctxt.handleUnexpectedToken(Long.class, p);
+            }
+            try {
+                return toCents(amount);
+            } catch (ArithmeticException e) {
+                throw InvalidFormatException.from(p, "Amounts have at most " + SCALE + " decimals", amount, Long.class);
+            }
+        }
+    }
+}
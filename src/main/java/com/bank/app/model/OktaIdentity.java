@@ -0,0 +1,32 @@
+package com.bank.app.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * Okta user id of an employee, keyed by the lower cased email address.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "okta_identities")
+@NamedQueries({
+        @NamedQuery(name = "com.bank.app.model.OktaIdentity.findUpdatedBefore",
+                query = "select i from OktaIdentity i "
+                        + "where i.oktaLastUpdated is null or i.oktaLastUpdated < :before")
+})
+public class OktaIdentity {
+    @Id
+    @Column(name = "email")
+    private String email;
+
+    @Column(name = "okta_user_id")
+    private String oktaUserId;
+
+    @Column(name = "okta_last_updated")
+    private Date oktaLastUpdated;
+}
@@ -0,0 +1,29 @@
+package com.bank.app.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * Progress of the synchronisation of the Okta identities: the start of its last run, which took every
+ * user updated before it, and of its last run over the whole directory.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "okta_sync_checkpoint")
+public class OktaSyncCheckpoint {
+    public static final int ID = 1;
+
+    @Id
+    private int id;
+
+    @Column(name = "synced_until")
+    private Date syncedUntil;
+
+    @Column(name = "full_synced_at")
+    private Date fullSyncedAt;
+}
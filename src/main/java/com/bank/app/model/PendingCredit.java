@@ -0,0 +1,69 @@
+package com.bank.app.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * Credit of a transfer between accounts on different shards, written on the shard of the debited
+ * account in the transaction of the debit and applied to the credited account later, see
+ * {@link com.bank.app.service.CreditRelay}. Credits which cannot be posted are kept with the outcome
+ * of giving up on them.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "pending_credits",
+        indexes = @Index(name = "idx_pending_credits_status", columnList = "status, created_on, id"))
+@NamedQueries({
+        @NamedQuery(name = "com.bank.app.model.PendingCredit.findBatch",
+                query = "select p from PendingCredit p where p.status = :status order by p.createdOn, p.id"),
+        @NamedQuery(name = "com.bank.app.model.PendingCredit.delete",
+                query = "delete from PendingCredit p where p.id in :ids")
+})
+public class PendingCredit {
+    // id of the credit transaction to post
+    @Id
+    private String id;
+
+    @Column(name = "from_account_id")
+    private String fromAccountId;
+
+    @Column(name = "to_account_id")
+    private String toAccountId;
+
+    // in cents
+    @Column(name = "ammount_cents")
+    private long ammount;
+
+    // time of the debit
+    @Column(name = "created_on")
+    private Date createdOn;
+
+    @Column(name = "status")
+    @Enumerated(EnumType.STRING)
+    private Status status = Status.PENDING;
+
+    // failed attempts to post the credit
+    @Column(name = "attempts")
+    private int attempts;
+
+    @Column(name = "last_error")
+    private String lastError;
+
+    public PendingCredit(String id, String fromAccountId, String toAccountId, long ammount, Date createdOn) {
+        this(id, fromAccountId, toAccountId, ammount, createdOn, Status.PENDING, 0, null);
+    }
+
+    public enum Status {
+        // waiting for the relay
+        PENDING,
+        // given up on, the debit was returned to the debited account
+        REVERSED,
+        // given up on and the debit could not be returned either, needs a manual fix
+        FAILED
+    }
+}
@@ -0,0 +1,82 @@
+package com.bank.app.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * Pending change to the Okta user directory, written in the same transaction as the
+ * employee change it belongs to and applied later by the provisioning worker. The tasks of
+ * one email are applied one at a time in the order they were queued: a task is not due while
+ * an earlier task of its email is pending, even one waiting for its next attempt.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "okta_provisioning_outbox",
+        indexes = @Index(name = "idx_outbox_email", columnList = "email, status, id"))
+@NamedQueries({
+        @NamedQuery(name = "com.bank.app.model.ProvisioningTask.findDue",
+                query = "select t from ProvisioningTask t "
+                        + "where t.status = :status and t.nextAttemptAt <= :now "
+                        + "and not exists (select e.id from ProvisioningTask e "
+                        + "where e.email = t.email and e.status = :status and e.id < t.id) "
+                        + "order by t.id")
+})
+public class ProvisioningTask {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @Column(name = "operation")
+    @Enumerated(EnumType.STRING)
+    private Operation operation;
+
+    @Column(name = "email")
+    private String email;
+
+    @Column(name = "first_name")
+    private String firstName;
+
+    @Column(name = "last_name")
+    private String lastName;
+
+    @Column(name = "phone")
+    private String phone;
+
+    @Column(name = "status")
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    @Column(name = "attempts")
+    private int attempts;
+
+    @Column(name = "next_attempt_at")
+    private Date nextAttemptAt;
+
+    @Column(name = "last_error")
+    private String lastError;
+
+    @Column(name = "created_on")
+    private Date createdOn;
+
+    // okta user id, resolved from the local identity mapping or set once the user is created
+    @Transient
+    private String oktaUserId;
+
+    // last update of the okta user, set with the okta user id once the user is created
+    @Transient
+    private Date oktaLastUpdated;
+
+    public enum Operation {
+        CREATE_USER, DELETE_USER
+    }
+
+    public enum Status {
+        PENDING, FAILED
+    }
+}
@@ -0,0 +1,43 @@
+package com.bank.app.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * Summary of the transactions posted to an account during a period. Amounts are in cents.
+ */
+@Builder
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class Statement {
+    private String accountId;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "dd-MM-yyyy HH:mm:ss")
+    private Date from;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "dd-MM-yyyy HH:mm:ss")
+    private Date to;
+
+    // balance at the start of the period
+    @JsonSerialize(using = Money.Serializer.class)
+    private long openingBalance;
+
+    @JsonSerialize(using = Money.Serializer.class)
+    private long credits;
+
+    @JsonSerialize(using = Money.Serializer.class)
+    private long debits;
+
+    private long transactionCount;
+
+    // balance at the end of the period
+    @JsonSerialize(using = Money.Serializer.class)
+    private long closingBalance;
+}
@@ -2,6 +2,8 @@ package com.bank.app.model;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.*;
 
 import javax.persistence.*;
@@ -12,10 +14,20 @@ import java.util.Date;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions",
+        indexes = @Index(name = "idx_transactions_account_posted", columnList = "account_id, posted_on, id"))
 @NamedQueries({
         @NamedQuery(name = "com.bank.app.model.Transaction.findAll",
-                query = "select e from Transaction e")
+                query = "select e from Transaction e"),
+        @NamedQuery(name = "com.bank.app.model.Transaction.findPage",
+                query = "select e from Transaction e where e.id > :afterId order by e.id"),
+        @NamedQuery(name = "com.bank.app.model.Transaction.findLastBefore",
+                query = "select e from Transaction e where e.account.id = :accountId and e.postedOn < :before "
+                        + "order by e.postedOn desc, e.id desc"),
+        @NamedQuery(name = "com.bank.app.model.Transaction.sumByType",
+                query = "select e.transactionType, sum(e.ammount), count(e) from Transaction e "
+                        + "where e.account.id = :accountId and e.postedOn >= :from and e.postedOn < :to "
+                        + "group by e.transactionType")
 })
 public class Transaction {
     @Id
@@ -25,21 +37,28 @@ public class Transaction {
     @Enumerated(EnumType.STRING)
     private Transaction.TransactionType transactionType;
 
-    @Column(name = "ammount")
-    private Double ammount = 0.0;
+    // amounts in cents
+    @JsonSerialize(using = Money.Serializer.class)
+    @JsonDeserialize(using = Money.Deserializer.class)
+    @Column(name = "ammount_cents")
+    private long ammount;
 
-    @Column(name = "balance_before")
-    private Double balanceBefore = 0.0;
+    @JsonSerialize(using = Money.Serializer.class)
+    @JsonDeserialize(using = Money.Deserializer.class)
+    @Column(name = "balance_before_cents")
+    private long balanceBefore;
 
-    @Column(name = "balance_after")
-    private Double balanceAfter = 0.0;
+    @JsonSerialize(using = Money.Serializer.class)
+    @JsonDeserialize(using = Money.Deserializer.class)
+    @Column(name = "balance_after_cents")
+    private long balanceAfter;
 
     @Column(name = "posted_on")
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "dd-MM-yyyy hh:mm:ss")
     private Date postedOn;
 
     @JsonBackReference
-    @ManyToOne(targetEntity = Account.class)
+    @ManyToOne(targetEntity = Account.class, fetch = FetchType.LAZY)
     @JoinColumn(name="account_id", nullable=false)
     private Account account;
 
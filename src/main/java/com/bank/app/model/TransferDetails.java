@@ -1,5 +1,7 @@
 package com.bank.app.model;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -14,5 +16,8 @@ public class TransferDetails {
 
     private String toAccountId;
 
-    private double ammount = 0.0;
+    // in cents
+    @JsonSerialize(using = Money.Serializer.class)
+    @JsonDeserialize(using = Money.Deserializer.class)
+    private long ammount;
 }
@@ -0,0 +1,31 @@
+package com.bank.app.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@Builder
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferResult {
+    // position of the transfer in the batch
+    private int index;
+
+    private Status status;
+
+    private String message;
+
+    private String debitTransactionId;
+
+    private String creditTransactionId;
+
+    public enum Status {
+        SUCCESS,
+        // rejected, e.g. for an insufficient balance
+        FAILED,
+        // not posted because its transaction could not be committed, may be submitted again
+        ERROR
+    }
+}
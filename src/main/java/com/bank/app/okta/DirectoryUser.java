@@ -0,0 +1,16 @@
+package com.bank.app.okta;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Date;
+
+@Getter
+@AllArgsConstructor
+public class DirectoryUser {
+    private final String id;
+
+    private final String email;
+
+    private final Date lastUpdated;
+}
@@ -0,0 +1,126 @@
+package com.bank.app.okta;
+
+import com.bank.app.config.ProvisioningConfig;
+import com.bank.app.db.OktaIdentityDAO;
+import com.bank.app.db.OktaSyncCheckpointDAO;
+import com.bank.app.model.OktaIdentity;
+import com.bank.app.model.OktaSyncCheckpoint;
+import io.dropwizard.hibernate.UnitOfWork;
+import io.dropwizard.lifecycle.Managed;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Reconciles the local email to Okta user id mapping with the directory. Every run asks the
+ * directory for the users updated since the start of the last run (minus an overlap to absorb clock
+ * differences), recorded in the {@link OktaSyncCheckpoint}, so after the first run only changed users
+ * are transferred, whatever the mappings the provisioning worker added meanwhile.
+ *
+ * Users deleted in Okta are not listed as changed. Once per full sync interval, and on the first
+ * run, the whole directory is listed instead, and the mappings of the users missing from it are
+ * removed; the mappings recorded since the listing started are kept for the next one.
+ *
+ * Instances must be created through {@link io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory}
+ * so that the {@link UnitOfWork} methods get a session.
+ */
+@Slf4j
+public class OktaIdentitySync implements Managed {
+
+    private static final long OVERLAP_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final OktaIdentityDAO identityDAO;
+    private final OktaSyncCheckpointDAO checkpointDAO;
+    private final OktaUserDirectory directory;
+    private final ProvisioningConfig config;
+    private final ScheduledExecutorService scheduler;
+
+    public OktaIdentitySync(OktaIdentityDAO identityDAO,
+                            OktaSyncCheckpointDAO checkpointDAO,
+                            OktaUserDirectory directory,
+                            ProvisioningConfig config,
+                            ScheduledExecutorService scheduler) {
+        this.identityDAO = identityDAO;
+        this.checkpointDAO = checkpointDAO;
+        this.directory = directory;
+        this.config = config;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void start() {
+        long interval = config.getSyncInterval().toMilliseconds();
+        scheduler.scheduleWithFixedDelay(this::sync, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        // the scheduler is managed by the environment's lifecycle
+    }
+
+    /**
+     * Fetch the users changed since the last run and record their ids, or all the users when a full
+     * sync is due.
+     */
+    public void sync() {
+        try {
+            Date started = new Date();
+            OktaSyncCheckpoint checkpoint = checkpoint();
+            boolean full = isNull(checkpoint) || isNull(checkpoint.getFullSyncedAt())
+                    || started.getTime() - checkpoint.getFullSyncedAt().getTime() >= config.getFullSyncInterval().toMilliseconds();
+            Date since = full ? new Date(0) : new Date(checkpoint.getSyncedUntil().getTime() - OVERLAP_MILLIS);
+            List<DirectoryUser> users = directory.listUpdatedSince(since);
+            int removed = record(users, full, started);
+            if (full)
+                log.info("Synchronised all {} okta identities, removed {} of users no longer in okta", users.size(), removed);
+            else
+                log.info("Synchronised {} okta identities updated since {}", users.size(), since);
+        } catch (RuntimeException e) {
+            log.error("Failed to synchronise the okta identities", e);
+        }
+    }
+
+    @UnitOfWork
+    public OktaSyncCheckpoint checkpoint() {
+        return checkpointDAO.find().orNull();
+    }
+
+    /**
+     * Record the users listed by a run and its progress.
+     *
+     * @param users - the users listed.
+     * @param full - whether the users are the whole directory.
+     * @param started - when the run started, before the users were listed.
+     * @return the number of mappings removed, of users missing from the whole directory.
+     */
+    @UnitOfWork
+    public int record(List<DirectoryUser> users, boolean full, Date started) {
+        Set<String> listed = new HashSet<>();
+        for (DirectoryUser user : users) {
+            listed.add(user.getId());
+            if (isNull(user.getEmail()))
+                continue;
+            identityDAO.save(user.getEmail(), user.getId(), user.getLastUpdated());
+        }
+        int removed = 0;
+        if (full) {
+            for (OktaIdentity identity : identityDAO.findUpdatedBefore(new Date(started.getTime() - OVERLAP_MILLIS))) {
+                if (listed.contains(identity.getOktaUserId()))
+                    continue;
+                log.info("The okta user {} of {} no longer exists, removing the mapping", identity.getOktaUserId(), identity.getEmail());
+                identityDAO.delete(identity.getEmail());
+                removed++;
+            }
+        }
+        OktaSyncCheckpoint checkpoint = checkpointDAO.find().orNull();
+        checkpointDAO.save(started, full || isNull(checkpoint) ? started : checkpoint.getFullSyncedAt());
+        return removed;
+    }
+}
@@ -0,0 +1,179 @@
+package com.bank.app.okta;
+
+import com.bank.app.config.ProvisioningConfig;
+import com.bank.app.db.OktaIdentityDAO;
+import com.bank.app.db.ProvisioningTaskDAO;
+import com.bank.app.model.OktaIdentity;
+import com.bank.app.model.ProvisioningTask;
+import io.dropwizard.hibernate.UnitOfWork;
+import io.dropwizard.lifecycle.Managed;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * Drains the Okta provisioning outbox in the background. Tasks are claimed in batches in a short
+ * transaction, applied against Okta outside of any transaction and their outcome recorded in a
+ * second transaction. Failed tasks are retried with exponential backoff until the maximum number
+ * of attempts is reached, after which they are kept in the FAILED state for inspection.
+ *
+ * The Okta user id of every created user is kept in the local identity mapping, so that deletes
+ * are a keyed lookup instead of a scan over the users of the org. A mapped user which no longer
+ * exists in Okta, e.g. deleted there, is looked up by email instead, and the mapping removed with
+ * the task.
+ *
+ * Instances must be created through {@link io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory}
+ * so that the {@link UnitOfWork} methods get a session.
+ */
+@Slf4j
+public class OktaProvisioningWorker implements Managed {
+
+    private final ProvisioningTaskDAO taskDAO;
+    private final OktaIdentityDAO identityDAO;
+    private final OktaUserDirectory directory;
+    private final ProvisioningConfig config;
+    private final ScheduledExecutorService scheduler;
+
+    public OktaProvisioningWorker(ProvisioningTaskDAO taskDAO,
+                                  OktaIdentityDAO identityDAO,
+                                  OktaUserDirectory directory,
+                                  ProvisioningConfig config,
+                                  ScheduledExecutorService scheduler) {
+        this.taskDAO = taskDAO;
+        this.identityDAO = identityDAO;
+        this.directory = directory;
+        this.config = config;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void start() {
+        long interval = config.getPollInterval().toMilliseconds();
+        scheduler.scheduleWithFixedDelay(this::drain, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        // the scheduler is managed by the environment's lifecycle
+    }
+
+    /**
+     * Apply pending tasks until the outbox has no more due tasks.
+     */
+    public void drain() {
+        try {
+            List<ProvisioningTask> batch;
+            do {
+                batch = claimBatch();
+                List<ProvisioningTask> applied = new ArrayList<>();
+                List<ProvisioningTask> failed = new ArrayList<>();
+                for (ProvisioningTask task : batch) {
+                    try {
+                        apply(task);
+                        applied.add(task);
+                    } catch (RuntimeException e) {
+                        log.warn("Provisioning task {} ({} {}) failed", task.getId(), task.getOperation(), task.getEmail(), e);
+                        scheduleRetry(task, e);
+                        failed.add(task);
+                    }
+                }
+                if (!batch.isEmpty())
+                    complete(applied, failed);
+            } while (batch.size() == config.getBatchSize());
+        } catch (RuntimeException e) {
+            log.error("Failed to drain the provisioning outbox", e);
+        }
+    }
+
+    @UnitOfWork
+    public List<ProvisioningTask> claimBatch() {
+        Date now = new Date();
+        Date leaseUntil = new Date(now.getTime() + config.getLease().toMilliseconds());
+        List<ProvisioningTask> tasks = taskDAO.claimDue(now, leaseUntil, config.getBatchSize());
+        for (ProvisioningTask task : tasks) {
+            OktaIdentity identity = identityDAO.findByEmail(task.getEmail()).orNull();
+            if (nonNull(identity))
+                task.setOktaUserId(identity.getOktaUserId());
+        }
+        return tasks;
+    }
+
+    @UnitOfWork
+    public void complete(List<ProvisioningTask> applied, List<ProvisioningTask> failed) {
+        for (ProvisioningTask task : applied) {
+            if (task.getOperation() == ProvisioningTask.Operation.CREATE_USER && nonNull(task.getOktaUserId()))
+                identityDAO.save(task.getEmail(), task.getOktaUserId(), task.getOktaLastUpdated());
+            else if (task.getOperation() == ProvisioningTask.Operation.DELETE_USER)
+                identityDAO.delete(task.getEmail());
+            taskDAO.delete(task.getId());
+        }
+        for (ProvisioningTask task : failed) {
+            taskDAO.update(task);
+        }
+    }
+
+    private void apply(ProvisioningTask task) {
+        switch (task.getOperation()) {
+            case CREATE_USER:
+                createUser(task);
+                break;
+            case DELETE_USER:
+                deleteUser(task);
+                break;
+        }
+    }
+
+    private void createUser(ProvisioningTask task) {
+        // a previous attempt may have created the user before failing
+        if (task.getAttempts() > 0) {
+            Optional<DirectoryUser> existing = directory.findByEmail(task.getEmail());
+            if (existing.isPresent()) {
+                log.info("User {} already exists in okta", task.getEmail());
+                task.setOktaUserId(existing.get().getId());
+                task.setOktaLastUpdated(existing.get().getLastUpdated());
+                return;
+            }
+        }
+        log.info("Add the employee {} to okta", task.getEmail());
+        DirectoryUser user = directory.createUser(task);
+        task.setOktaUserId(user.getId());
+        task.setOktaLastUpdated(user.getLastUpdated());
+    }
+
+    private void deleteUser(ProvisioningTask task) {
+        log.info("Remove the employee {} from okta", task.getEmail());
+        if (nonNull(task.getOktaUserId())) {
+            if (directory.deleteUser(task.getOktaUserId()))
+                return;
+            log.info("The okta user {} of {} no longer exists, looking the email up", task.getOktaUserId(), task.getEmail());
+        }
+        // no mapping or a stale one, fall back to a filtered search
+        Optional<DirectoryUser> user = directory.findByEmail(task.getEmail());
+        if (user.isPresent())
+            directory.deleteUser(user.get().getId());
+        else
+            log.info("User {} is not present in okta", task.getEmail());
+    }
+
+    private void scheduleRetry(ProvisioningTask task, Exception error) {
+        int attempts = task.getAttempts() + 1;
+        task.setAttempts(attempts);
+        task.setLastError(StringUtils.abbreviate(String.valueOf(error.getMessage()), 1024));
+        if (attempts >= config.getMaxAttempts()) {
+            log.error("Giving up on provisioning task {} after {} attempts", task.getId(), attempts);
+            task.setStatus(ProvisioningTask.Status.FAILED);
+            return;
+        }
+        long backoff = config.getInitialBackoff().toMilliseconds() << Math.min(attempts - 1, 20);
+        backoff = Math.min(backoff, config.getMaxBackoff().toMilliseconds());
+        task.setNextAttemptAt(new Date(System.currentTimeMillis() + backoff));
+    }
+}
@@ -0,0 +1,78 @@
+package com.bank.app.okta;
+
+import com.bank.app.model.ProvisioningTask;
+import com.okta.sdk.client.Client;
+import com.okta.sdk.resource.ResourceException;
+import com.okta.sdk.resource.user.User;
+import com.okta.sdk.resource.user.UserBuilder;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.TimeZone;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * {@link OktaUserDirectory} backed by the Okta SDK, sharing one client for the whole application.
+ */
+public class OktaSdkUserDirectory implements OktaUserDirectory {
+
+    private final Supplier<Client> client;
+
+    public OktaSdkUserDirectory(Supplier<Client> client) {
+        this.client = client;
+    }
+
+    @Override
+    public DirectoryUser createUser(ProvisioningTask task) {
+        User user = UserBuilder.instance()
+                .setEmail(task.getEmail())
+                .setFirstName(task.getFirstName())
+                .setLastName(task.getLastName())
+                .setActive(true)
+                .setPassword("Abcd@1234".toCharArray())
+                .setMobilePhone(task.getPhone())
+                .buildAndCreate(client.get());
+        return toDirectoryUser(user);
+    }
+
+    @Override
+    public Optional<DirectoryUser> findByEmail(String email) {
+        String filter = "profile.email eq \"" + email.replace("\"", "\\\"") + "\"";
+        return client.get().listUsers(null, filter, null, null, null).stream()
+                .findFirst()
+                .map(OktaSdkUserDirectory::toDirectoryUser);
+    }
+
+    @Override
+    public boolean deleteUser(String userId) {
+        User user;
+        try {
+            user = client.get().getUser(userId);
+        } catch (ResourceException e) {
+            if (e.getStatus() == 404)
+                return false;
+            throw e;
+        }
+        // the first delete deactivates the user, the second removes it
+        user.delete();
+        user.delete(true);
+        return true;
+    }
+
+    @Override
+    public List<DirectoryUser> listUpdatedSince(Date since) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        String filter = "lastUpdated gt \"" + format.format(since) + "\"";
+        return client.get().listUsers(null, filter, null, null, null).stream()
+                .map(OktaSdkUserDirectory::toDirectoryUser)
+                .collect(Collectors.toList());
+    }
+
+    private static DirectoryUser toDirectoryUser(User user) {
+        return new DirectoryUser(user.getId(), user.getProfile().getEmail(), user.getLastUpdated());
+    }
+}
@@ -0,0 +1,46 @@
+package com.bank.app.okta;
+
+import com.bank.app.model.ProvisioningTask;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Operations on the Okta users API used by provisioning and identity synchronisation. Kept behind
+ * an interface so that both can run against a local stub of the users API.
+ */
+public interface OktaUserDirectory {
+
+    /**
+     * Create an active user for the employee.
+     *
+     * @param task - details of the employee.
+     * @return the created user.
+     */
+    DirectoryUser createUser(ProvisioningTask task);
+
+    /**
+     * Look up a user with a filtered search on the email address.
+     *
+     * @param email - email address of the user.
+     * @return optional user.
+     */
+    Optional<DirectoryUser> findByEmail(String email);
+
+    /**
+     * Deactivate and delete the user.
+     *
+     * @param userId - id of the user in Okta.
+     * @return false if no user exists with the id.
+     */
+    boolean deleteUser(String userId);
+
+    /**
+     * List the users updated after the given time.
+     *
+     * @param since - exclusive lower bound of the last update time.
+     * @return list of users.
+     */
+    List<DirectoryUser> listUpdatedSince(Date since);
+}
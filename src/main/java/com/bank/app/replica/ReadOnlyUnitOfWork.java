@@ -0,0 +1,22 @@
+package com.bank.app.replica;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Like {@link io.dropwizard.hibernate.UnitOfWork}, for resource methods which only read: the session
+ * is read-only, never flushed, and opened on a read replica when {@link ReadRouter} picks one.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ReadOnlyUnitOfWork {
+
+    /**
+     * If false the session is used without a transaction, a connection is only taken when a query runs.
+     */
+    boolean transactional() default true;
+}
@@ -0,0 +1,118 @@
+package com.bank.app.replica;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import io.dropwizard.hibernate.HibernateBundle;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.util.Duration;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * Picks the database serving a read-only unit of work. The replicas take turns; a replica failing its
+ * health check, or failing to open a unit of work, gets no reads until it passes a health check
+ * again. The primary serves the reads when no replica is up and, for the staleness bound, the reads
+ * of a client which just wrote, so that it sees its own writes despite the replication lag.
+ */
+@Slf4j
+public class ReadRouter implements Managed {
+
+    // name of the session factory of the primary database
+    public static final String PRIMARY = HibernateBundle.DEFAULT_NAME;
+
+    private final List<String> replicas;
+    private final HealthCheckRegistry healthChecks;
+    private final ScheduledExecutorService scheduler;
+    private final Duration healthCheckInterval;
+    private final long stalenessBoundMillis;
+    private final Set<String> down = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger next = new AtomicInteger();
+    private ScheduledFuture<?> checks;
+
+    /**
+     * @param replicas - names of the session factories of the replicas, also the names of their health checks.
+     * @param healthChecks - registry holding the health checks of the replicas.
+     * @param scheduler - executor running the health checks.
+     * @param healthCheckInterval - time between two health checks of the replicas.
+     * @param stalenessBound - how long the reads of a client go to the primary after it wrote.
+     */
+    public ReadRouter(List<String> replicas,
+                      HealthCheckRegistry healthChecks,
+                      ScheduledExecutorService scheduler,
+                      Duration healthCheckInterval,
+                      Duration stalenessBound) {
+        this.replicas = replicas;
+        this.healthChecks = healthChecks;
+        this.scheduler = scheduler;
+        this.healthCheckInterval = healthCheckInterval;
+        this.stalenessBoundMillis = stalenessBound.toMilliseconds();
+    }
+
+    @Override
+    public void start() {
+        if (replicas.isEmpty())
+            return;
+        long interval = healthCheckInterval.toMilliseconds();
+        checks = scheduler.scheduleWithFixedDelay(this::checkHealth, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        if (nonNull(checks))
+            checks.cancel(false);
+    }
+
+    public boolean hasReplicas() {
+        return !replicas.isEmpty();
+    }
+
+    /**
+     * @param lastWriteMillis - time of the last write of the client, 0 if unknown.
+     * @return the name of the session factory to read from.
+     */
+    public String route(long lastWriteMillis) {
+        if (replicas.isEmpty() || System.currentTimeMillis() - lastWriteMillis < stalenessBoundMillis)
+            return PRIMARY;
+        int first = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            String replica = replicas.get((first + i) % replicas.size());
+            if (!down.contains(replica))
+                return replica;
+        }
+        return PRIMARY;
+    }
+
+    /**
+     * Stop sending reads to a replica until it passes a health check.
+     *
+     * @param replica - name of the replica.
+     * @param cause - why the replica is considered down.
+     */
+    public void markDown(String replica, String cause) {
+        if (down.add(replica))
+            log.warn("Read replica {} is down, its reads go to the other replicas or the primary: {}", replica, cause);
+    }
+
+    void checkHealth() {
+        for (String replica : replicas) {
+            try {
+                HealthCheck.Result result = healthChecks.runHealthCheck(replica);
+                if (!result.isHealthy())
+                    markDown(replica, result.getMessage());
+                else if (down.remove(replica))
+                    log.info("Read replica {} is back up", replica);
+            } catch (RuntimeException e) {
+                markDown(replica, e.getMessage());
+            }
+        }
+    }
+}
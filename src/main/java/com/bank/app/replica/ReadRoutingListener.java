@@ -0,0 +1,229 @@
+package com.bank.app.replica;
+
+import com.bank.app.db.RoutedDAO;
+import io.dropwizard.hibernate.UnitOfWork;
+import io.dropwizard.hibernate.UnitOfWorkAspect;
+import io.dropwizard.util.Duration;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.internal.process.MappableException;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+import org.hibernate.CacheMode;
+import org.hibernate.FlushMode;
+import org.hibernate.SessionFactory;
+import org.hibernate.exception.JDBCConnectionException;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.Cookie;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.NewCookie;
+import javax.ws.rs.core.Response;
+import java.lang.annotation.Annotation;
+import java.sql.SQLException;
+import java.util.Map;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Runs the resource methods annotated with {@link ReadOnlyUnitOfWork} in a read-only unit of work on
+ * the database picked by the {@link ReadRouter}, the way Dropwizard runs the {@link UnitOfWork} ones.
+ * A replica which cannot open the unit of work is marked down and the request served by the primary.
+ * Without a transaction opening the unit of work does not reach the database, so the connection of a
+ * replica is checked first; a replica losing its connection during the request fails that request,
+ * and is marked down for the next ones.
+ *
+ * Clients are told about their writes with the last-write cookie, see {@link LastWriteFilter}.
+ */
+public class ReadRoutingListener implements ApplicationEventListener {
+
+    public static final String LAST_WRITE_COOKIE = "last-write";
+
+    // how long the connection of a replica may take to answer before the read goes to the primary
+    private static final int PROBE_TIMEOUT_SECONDS = 2;
+
+    private final ReadRouter router;
+    // session factories of the primary and of the replicas, by name
+    private final Map<String, SessionFactory> sessionFactories;
+
+    public ReadRoutingListener(ReadRouter router, Map<String, SessionFactory> sessionFactories) {
+        this.router = router;
+        this.sessionFactories = sessionFactories;
+    }
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent event) {
+        return new RoutedUnitOfWork();
+    }
+
+    private final class RoutedUnitOfWork implements RequestEventListener {
+        private UnitOfWorkAspect aspect;
+        // the session factory the unit of work is on
+        private String route;
+
+        @Override
+        public void onEvent(RequestEvent event) {
+            switch (event.getType()) {
+                case RESOURCE_METHOD_START:
+                    ReadOnlyUnitOfWork annotation = event.getUriInfo().getMatchedResourceMethod().getInvocable()
+                            .getDefinitionMethod().getAnnotation(ReadOnlyUnitOfWork.class);
+                    if (nonNull(annotation))
+                        begin(annotation.transactional(), lastWrite(event.getContainerRequest()));
+                    break;
+                case RESOURCE_METHOD_FINISHED:
+                    RoutedDAO.unbindReads();
+                    break;
+                case RESP_FILTERS_START:
+                    if (nonNull(aspect)) {
+                        try {
+                            aspect.afterEnd();
+                        } catch (Exception e) {
+                            throw new MappableException(e);
+                        }
+                    }
+                    break;
+                case ON_EXCEPTION:
+                    if (nonNull(aspect)) {
+                        aspect.onError();
+                        if (!ReadRouter.PRIMARY.equals(route) && isConnectionFailure(event.getException()))
+                            router.markDown(route, event.getException().getMessage());
+                    }
+                    break;
+                case FINISHED:
+                    if (nonNull(aspect))
+                        aspect.onFinish();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void begin(boolean transactional, long lastWrite) {
+            String replica = router.route(lastWrite);
+            if (!ReadRouter.PRIMARY.equals(replica)) {
+                try {
+                    start(replica, transactional);
+                    if (!transactional)
+                        probe(sessionFactories.get(replica));
+                    RoutedDAO.bindReads(sessionFactories.get(replica));
+                    return;
+                } catch (RuntimeException e) {
+                    router.markDown(replica, e.getMessage());
+                    if (nonNull(aspect))
+                        aspect.onFinish();
+                    aspect = null;
+                }
+            }
+            start(ReadRouter.PRIMARY, transactional);
+        }
+
+        private void start(String sessionFactory, boolean transactional) {
+            route = sessionFactory;
+            aspect = new UnitOfWorkAspect(sessionFactories);
+            aspect.beforeStart(new ReadOnly(sessionFactory, transactional));
+        }
+    }
+
+    // takes the connection the unit of work will read with, and checks it still answers
+    private static void probe(SessionFactory sessionFactory) {
+        sessionFactory.getCurrentSession().doWork(connection -> {
+            if (!connection.isValid(PROBE_TIMEOUT_SECONDS))
+                throw new SQLException("The connection does not answer");
+        });
+    }
+
+    private static boolean isConnectionFailure(Throwable exception) {
+        for (Throwable cause = exception; nonNull(cause); cause = cause.getCause()) {
+            if (cause instanceof JDBCConnectionException)
+                return true;
+        }
+        return false;
+    }
+
+    private static long lastWrite(ContainerRequest request) {
+        Cookie cookie = request.getCookies().get(LAST_WRITE_COOKIE);
+        if (isNull(cookie))
+            return 0;
+        try {
+            return Long.parseLong(cookie.getValue());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Sets the last-write cookie on the successful responses to writes. It expires with the staleness
+     * bound, after which the reads of the client go back to the replicas.
+     */
+    public static class LastWriteFilter implements ContainerResponseFilter {
+
+        private final int maxAgeSeconds;
+
+        public LastWriteFilter(Duration stalenessBound) {
+            this.maxAgeSeconds = (int) Math.max(1, (stalenessBound.toMilliseconds() + 999) / 1000);
+        }
+
+        @Override
+        public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+            String method = request.getMethod();
+            if (HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method) || HttpMethod.OPTIONS.equals(method)
+                    || response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL)
+                return;
+            response.getHeaders().add(HttpHeaders.SET_COOKIE, new NewCookie(LAST_WRITE_COOKIE,
+                    String.valueOf(System.currentTimeMillis()), "/", null, null, maxAgeSeconds, false));
+        }
+    }
+
+    // the unit of work of a read-only resource method, on one of the session factories
+    @SuppressWarnings("ClassExplicitlyAnnotation")
+    private static final class ReadOnly implements UnitOfWork {
+        private final String value;
+        private final boolean transactional;
+
+        private ReadOnly(String value, boolean transactional) {
+            this.value = value;
+            this.transactional = transactional;
+        }
+
+        @Override
+        public String value() {
+            return value;
+        }
+
+        @Override
+        public boolean readOnly() {
+            return true;
+        }
+
+        @Override
+        public boolean transactional() {
+            return transactional;
+        }
+
+        // what a lagging replica reads must not reach the second-level and query caches shared with the
+        // primary, where it would outlive the invalidation of the write it is missing
+        @Override
+        public CacheMode cacheMode() {
+            return ReadRouter.PRIMARY.equals(value) ? CacheMode.NORMAL : CacheMode.GET;
+        }
+
+        @Override
+        public FlushMode flushMode() {
+            return FlushMode.MANUAL;
+        }
+
+        @Override
+        public Class<? extends Annotation> annotationType() {
+            return UnitOfWork.class;
+        }
+    }
+}
@@ -1,23 +1,42 @@
 package com.bank.app.resource;
 
+import com.bank.app.audit.AuditLog;
+import com.bank.app.cache.VersionCache;
 import com.bank.app.db.AccountDAO;
 import com.bank.app.db.CustomerDAO;
+import com.bank.app.db.RoutedDAO;
 import com.bank.app.db.TransactionDAO;
 import com.bank.app.model.Account;
 import com.bank.app.model.Customer;
 import com.bank.app.model.CustomerId;
+import com.bank.app.model.Statement;
 import com.bank.app.model.Transaction;
+import com.bank.app.replica.ReadOnlyUnitOfWork;
+import com.bank.app.service.StatementService;
+import com.codahale.metrics.annotation.ExceptionMetered;
+import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Optional;
 import io.dropwizard.hibernate.UnitOfWork;
+import io.dropwizard.jersey.params.DateTimeParam;
+import io.dropwizard.jersey.params.IntParam;
 import io.dropwizard.jersey.params.NonEmptyStringParam;
 
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 
 import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
 
 @Slf4j
 @Path("/accounts")
@@ -28,13 +47,25 @@ public class AccountResource {
     private AccountDAO accountDAO;
     private TransactionDAO transactionDAO;
     private CustomerDAO customerDAO;
+    private ObjectMapper mapper;
+    private VersionCache versionCache;
+    private StatementService statementService;
+    private AuditLog auditLog;
 
     public AccountResource(AccountDAO accountDAO,
                            TransactionDAO transactionDAO,
-                           CustomerDAO customerDAO) {
+                           CustomerDAO customerDAO,
+                           ObjectMapper mapper,
+                           VersionCache versionCache,
+                           StatementService statementService,
+                           AuditLog auditLog) {
         this.accountDAO = accountDAO;
         this.transactionDAO = transactionDAO;
         this.customerDAO = customerDAO;
+        this.mapper = mapper;
+        this.versionCache = versionCache;
+        this.statementService = statementService;
+        this.auditLog = auditLog;
     }
 
     /**
@@ -43,59 +74,197 @@ public class AccountResource {
      * @param account - details of the account.
      */
     @POST
+    @Timed
+    @ExceptionMetered
     @UnitOfWork
     public void addAccount(Account account) {
-        log.info("Validate the account details");
         if (isNull(account.getAccountType()))
             throw new BadRequestException("Account type is not specified");
-        if (account.getBalance() <= 0.0)
+        if (account.getBalance() <= 0)
             throw new BadRequestException("Account balance cannot be zero while opening the account");
         account.setCreatedOn(new Date());
         accountDAO.add(account);
-        log.info("Successfully added the account");
+        auditLog.debug("account.add", account.getId());
     }
 
     /**
      * Retrieve the account with the identifier passed in as a path parameter.
+     * The response carries an ETag. When the If-None-Match header holds the current ETag, 304 Not
+     * Modified is returned, usually without reading the database.
      *
      * @param accountId - unique identifier of the account.
+     * @param includeTransactions - whether the transactions of the account should be returned.
+     * @param request - the request, for its preconditions.
      * @return the account with the identifier.
      */
     @GET
+    @Timed
+    @ExceptionMetered
     @Path("/{id}")
-    @UnitOfWork
-    public Optional<Account> findById(@PathParam("id") NonEmptyStringParam accountId) {
-        log.info("Retrieve the account identified by {}", accountId);
-        return accountDAO.findById(accountId.get().get());
+    @ReadOnlyUnitOfWork(transactional = false)
+    public Response findById(@PathParam("id") NonEmptyStringParam accountId,
+                             @QueryParam("includeTransactions") @DefaultValue("false") boolean includeTransactions,
+                             @Context Request request) {
+        auditLog.debug("account.find", accountId.get().get());
+        String key = VersionCache.accountKey(accountId.get().get());
+        long stamp = versionCache.stamp(key);
+        String version = versionCache.get(key);
+        if (nonNull(version)) {
+            Response.ResponseBuilder notModified = request.evaluatePreconditions(etag(version, includeTransactions));
+            if (nonNull(notModified))
+                return notModified.build();
+        }
+
+        Optional<Account> accountOptional = accountDAO.findById(accountId.get().get());
+        if (!accountOptional.isPresent())
+            throw new NotFoundException("No account found with the id " + accountId);
+        Account account = accountOptional.get();
+        version = String.valueOf(account.getVersion());
+        // the invalidation of a write a lagging replica has not seen yet has already run, its version
+        // would stay cached and be served to every client, the writer included
+        if (!RoutedDAO.isReadingReplica())
+            versionCache.put(key, stamp, version);
+        EntityTag etag = etag(version, includeTransactions);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if (nonNull(notModified))
+            return notModified.build();
+        // the version of the account changes with every posting, so it covers the transactions too
+        if (includeTransactions)
+            accountDAO.fetchTransactions(Collections.singletonList(account));
+        return Response.ok(account).tag(etag).build();
+    }
+
+    private static EntityTag etag(String version, boolean includeTransactions) {
+        return new EntityTag(includeTransactions ? version + "-transactions" : version);
     }
 
     /**
-     * Retrieve all the accounts.
+     * Retrieve the accounts ordered by id. When neither after nor limit is specified all the accounts
+     * are returned, otherwise one page of accounts. The next page is requested with the id of the
+     * last account of the page in the after parameter.
+     * The transactions of the accounts are only returned when includeTransactions is true.
      *
+     * @param after - id of the last account of the previous page.
+     * @param limit - maximum number of accounts to return.
+     * @param includeTransactions - whether the transactions of the accounts should be returned.
      * @return the list of accounts.
      */
     @GET
-    @UnitOfWork
-    public List<Account> findAll() {
-        log.info("Retrieve all the accounts");
-        return accountDAO.findAll();
+    @Timed
+    @ExceptionMetered
+    @ReadOnlyUnitOfWork
+    public List<Account> findAll(@QueryParam("after") String after,
+                                 @QueryParam("limit") IntParam limit,
+                                 @QueryParam("includeTransactions") @DefaultValue("false") boolean includeTransactions) {
+        List<Account> accounts;
+        if (isNull(after) && isNull(limit)) {
+            auditLog.debug("account.findAll", null);
+            accounts = accountDAO.findAll();
+        } else {
+            auditLog.debug("account.findPage", after);
+            accounts = accountDAO.findPage(isNull(after) ? "" : after, Paging.limit(limit));
+        }
+        return includeTransactions ? accountDAO.fetchTransactions(accounts) : accounts;
+    }
+
+    /**
+     * Stream all the accounts, shard after shard, ordered by id within a shard. The accounts are read
+     * through a database cursor and written as they are read, so the size of the table does not affect
+     * memory use.
+     *
+     * @return JSON array of all the accounts.
+     */
+    @GET
+    @Timed
+    @ExceptionMetered
+    @Path("/stream")
+    public StreamingOutput streamAll() {
+        auditLog.debug("account.stream", null);
+        return new JsonArrayOutput<>(mapper, Account.class, accountDAO::scrollAll);
     }
 
     /**
-     * Retrieve all the transactions done on the account.
+     * Retrieve the transactions done on the account, oldest first, one page at a time.
+     * When the page is full the X-Next-Cursor response header holds the value of the after parameter
+     * for the next page.
      *
      * @param accountId - unique identifier of the account.
+     * @param from - earliest posting time (inclusive).
+     * @param to - latest posting time (exclusive).
+     * @param type - type of the transactions, CREDIT or DEBIT.
+     * @param after - cursor returned with the previous page.
+     * @param limit - maximum number of transactions to return.
      * @return the list of transactions made on the account.
      */
     @GET
+    @Timed
+    @ExceptionMetered
     @Path("/{id}/transactions")
-    @UnitOfWork
-    public List<Transaction> findTransacationsByAccountId(@PathParam("id") NonEmptyStringParam accountId) {
-        log.info("Retrieve all the transactions recorded for the account with id {}", accountId);
+    @ReadOnlyUnitOfWork
+    public Response findTransacationsByAccountId(@PathParam("id") NonEmptyStringParam accountId,
+                                                 @QueryParam("from") DateTimeParam from,
+                                                 @QueryParam("to") DateTimeParam to,
+                                                 @QueryParam("type") Transaction.TransactionType type,
+                                                 @QueryParam("after") String after,
+                                                 @QueryParam("limit") IntParam limit) {
+        auditLog.debug("account.transactions", accountId.get().get());
+        Optional<Account> accountOptional = accountDAO.findById(accountId.get().get());
+        if (!accountOptional.isPresent())
+            throw new NotFoundException("No account found with the id " + accountId);
+
+        Date afterPostedOn = null;
+        String afterId = null;
+        if (nonNull(after)) {
+            // the cursor is the posting time in epoch millis and the id of the last transaction
+            int separator = after.indexOf('_');
+            try {
+                afterPostedOn = new Date(Long.parseLong(after.substring(0, separator)));
+                afterId = after.substring(separator + 1);
+            } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                throw new BadRequestException("Invalid cursor " + after);
+            }
+        }
+        int pageSize = Paging.limit(limit);
+        List<Transaction> transactions = transactionDAO.findByAccount(accountId.get().get(),
+                isNull(from) ? null : from.get().toDate(),
+                isNull(to) ? null : to.get().toDate(),
+                type, afterPostedOn, afterId, pageSize);
+
+        Response.ResponseBuilder response = Response.ok(new GenericEntity<List<Transaction>>(transactions) {});
+        if (transactions.size() == pageSize) {
+            Transaction last = transactions.get(pageSize - 1);
+            response.header("X-Next-Cursor", last.getPostedOn().getTime() + "_" + last.getId());
+        }
+        return response.build();
+    }
+
+    /**
+     * Summarise the transactions done on the account during a period: opening and closing balance,
+     * total credits and debits and number of transactions. Answered from the daily rollups, so the
+     * cost does not grow with the number of transactions in the period.
+     *
+     * @param accountId - unique identifier of the account.
+     * @param from - start of the period (inclusive).
+     * @param to - end of the period (exclusive).
+     * @return the statement of the account.
+     */
+    @GET
+    @Timed
+    @ExceptionMetered
+    @Path("/{id}/statement")
+    @ReadOnlyUnitOfWork
+    public Statement findStatementByAccountId(@PathParam("id") NonEmptyStringParam accountId,
+                                              @QueryParam("from") DateTimeParam from,
+                                              @QueryParam("to") DateTimeParam to) {
+        auditLog.debug("account.statement", accountId.get().get());
+        if (isNull(from) || isNull(to))
+            throw new BadRequestException("The from and to parameters are required");
+        if (!from.get().isBefore(to.get()))
+            throw new BadRequestException("The from parameter must be before the to parameter");
         Optional<Account> accountOptional = accountDAO.findById(accountId.get().get());
         if (!accountOptional.isPresent())
             throw new NotFoundException("No account found with the id " + accountId);
-        return accountOptional.get().getTransactions();
+        return statementService.statement(accountOptional.get(), from.get().toDate(), to.get().toDate());
     }
 
     /**
@@ -106,21 +275,20 @@ public class AccountResource {
      * @param customerId - unique identifier of the customer.
      */
     @PUT
+    @Timed
+    @ExceptionMetered
     @Path("/{id}/link")
     @UnitOfWork
     public void linkCustomer(@PathParam("id") NonEmptyStringParam accountId,
                               CustomerId customerId) {
-        log.info("Link the customer with id {} to the account with id {}", customerId, accountId);
-        log.info("Validate whether an account exists with the id {}", accountId);
+        auditLog.debug("account.link", accountId.get().get(), customerId.getId());
         Optional<Account> accountOptional = accountDAO.findById(accountId.get().get());
         if (!accountOptional.isPresent())
             throw new NotFoundException("No account found with the id " + accountId);
-        log.info("Validate whether a customer exists with the id {}", customerId);
         Optional<Customer> customerOptional = customerDAO.findById(customerId.getId());
         if (!customerOptional.isPresent())
             throw new NotFoundException("No customer found with the id " + customerId);
         accountDAO.update(accountOptional.get().withCustomer(customerOptional.get()));
-        log.info("Linked the account to the customer successfully");
     }
 
     /**
@@ -129,14 +297,15 @@ public class AccountResource {
      * @param accountId - unique identifier of the account.
      */
     @DELETE
+    @Timed
+    @ExceptionMetered
     @Path("/{id}")
     @UnitOfWork
     public void deleteAccount(@PathParam("id") NonEmptyStringParam accountId) {
-        log.info("Delete the account with the id {}", accountId);
+        auditLog.debug("account.delete", accountId.get().get());
         Optional<Account> accountOptional = accountDAO.findById(accountId.get().get());
         if (!accountOptional.isPresent())
             throw new NotFoundException("No account found with the id " + accountId);
         accountDAO.delete(accountId.get().get());
-        log.info("Deleted the account successfully");
     }
 }
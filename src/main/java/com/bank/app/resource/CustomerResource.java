@@ -1,18 +1,38 @@
 package com.bank.app.resource;
 
+import com.bank.app.audit.AuditLog;
+import com.bank.app.cache.VersionCache;
 import com.bank.app.db.AccountDAO;
 import com.bank.app.db.CustomerDAO;
+import com.bank.app.db.RoutedDAO;
 import com.bank.app.model.Account;
 import com.bank.app.model.Customer;
+import com.bank.app.replica.ReadOnlyUnitOfWork;
+import com.codahale.metrics.annotation.ExceptionMetered;
+import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Optional;
+import com.google.common.hash.Hashing;
 import io.dropwizard.hibernate.UnitOfWork;
+import io.dropwizard.jersey.params.IntParam;
 import io.dropwizard.jersey.params.NonEmptyStringParam;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
 
+import javax.persistence.PersistenceException;
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 
@@ -27,11 +47,20 @@ public class CustomerResource {
 
     private CustomerDAO customerDAO;
     private AccountDAO accountDAO;
+    private AuditLog auditLog;
+    private ObjectMapper mapper;
+    private VersionCache versionCache;
 
     public CustomerResource(CustomerDAO customerDAO,
-                            AccountDAO accountDAO) {
+                            AccountDAO accountDAO,
+                            ObjectMapper mapper,
+                            VersionCache versionCache,
+                            AuditLog auditLog) {
         this.customerDAO = customerDAO;
         this.accountDAO = accountDAO;
+        this.auditLog = auditLog;
+        this.mapper = mapper;
+        this.versionCache = versionCache;
     }
 
     /**
@@ -40,6 +69,8 @@ public class CustomerResource {
      * @param customer - details of the customer.
      */
     @POST
+    @Timed
+    @ExceptionMetered
     @UnitOfWork
     public void createCustomer(Customer customer){
         //Validate the customer details
@@ -47,8 +78,7 @@ public class CustomerResource {
                 || isNull(customer.getEmail())
                 || isNull(customer.getSsn()))
             throw new BadRequestException("Insufficient details provided.");
-        log.info("Validate the customer details");
-        if (!customerDAO.findByEmail(customer.getEmail()).isEmpty())
+        if (customerDAO.findByNormalizedEmail(customer.getEmail()).isPresent())
             throw new BadRequestException("Email provided is already used, it should be unique");
         SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd");
         Date dob = null;
@@ -58,8 +88,15 @@ public class CustomerResource {
             throw new BadRequestException("Date of birth should be specified in yyyy-MM-dd format");
         }
         customer.setDob(dob);
-        customerDAO.add(customer);
-        log.info("Successfully added the customer");
+        try {
+            customerDAO.add(customer);
+        } catch (PersistenceException e) {
+            // the email was taken by a concurrent signup
+            if (e.getCause() instanceof ConstraintViolationException)
+                throw new BadRequestException("Email provided is already used, it should be unique");
+            throw e;
+        }
+        auditLog.debug("customer.add", customer.getId());
     }
 
     /**
@@ -68,38 +105,118 @@ public class CustomerResource {
      * email specified in the parameter.
      * If name is specified in the query parameter, retrieve the customers whose first name or last name
      * matches the name specified in the parameter.
+     * If after or limit is specified, retrieve one page of customers ordered by id. The next page is
+     * requested with the id of the last customer of the page in the after parameter.
      * If no query parameter is specified, retrieve all the customers.
+     * The customers are returned with their accounts. The transactions of the accounts are only
+     * returned when includeTransactions is true.
      *
      * @param name - String to be used to match the first and last names of the customer.
      * @param email - String to be used to match the email of the customer.
+     * @param after - id of the last customer of the previous page.
+     * @param limit - maximum number of customers to return.
+     * @param includeTransactions - whether the transactions of the accounts should be returned.
      * @return - the list of customers matching the criteria.
      */
     @GET
-    @UnitOfWork
+    @Timed
+    @ExceptionMetered
+    @ReadOnlyUnitOfWork
     public List<Customer> findByName(@QueryParam("name") Optional<String> name,
-                                     @QueryParam("email") Optional<String> email) {
-        log.info("Retrieve the list of customers matching the criteria");
+                                     @QueryParam("email") Optional<String> email,
+                                     @QueryParam("after") String after,
+                                     @QueryParam("limit") IntParam limit,
+                                     @QueryParam("includeTransactions") @DefaultValue("false") boolean includeTransactions) {
+        auditLog.debug("customer.find", null);
+        List<Customer> customers;
         if (email.isPresent()) {
-            return customerDAO.findByEmail(email.get());
+            customers = customerDAO.findByEmail(email.get());
         } else if (name.isPresent()) {
-            return customerDAO.findByName(name.get());
+            customers = customerDAO.findByName(name.get());
+        } else if (nonNull(after) || nonNull(limit)) {
+            customers = customerDAO.findPage(isNull(after) ? "" : after, Paging.limit(limit));
         } else {
-            return customerDAO.findAll();
+            customers = customerDAO.findAllWithAccounts();
         }
+        customerDAO.fetchAccounts(customers, includeTransactions);
+        return accountDAO.fetchFromShards(customers, includeTransactions);
     }
 
     /**
-     * Retrieve the customer with the identifier passed in as a path parameter.
+     * Stream all the customers ordered by id. The customers are read through a database cursor and
+     * written as they are read, so the size of the table does not affect memory use.
+     *
+     * @return JSON array of all the customers.
+     */
+    @GET
+    @Timed
+    @ExceptionMetered
+    @Path("/stream")
+    public StreamingOutput streamAll() {
+        auditLog.debug("customer.stream", null);
+        return new JsonArrayOutput<>(mapper, Customer.class, customerDAO::scrollAll);
+    }
+
+    /**
+     * Retrieve the customer with the identifier passed in as a path parameter, with its accounts.
+     * The response carries an ETag, which changes with the customer and its accounts. When the
+     * If-None-Match header holds the current ETag, 304 Not Modified is returned, usually without
+     * reading the database.
      *
      * @param customerId - unique identifier of the customer.
+     * @param includeTransactions - whether the transactions of the accounts should be returned.
+     * @param request - the request, for its preconditions.
      * @return - the customer.
      */
     @GET
+    @Timed
+    @ExceptionMetered
     @Path("/{id}")
-    @UnitOfWork
-    public Optional<Customer> findById(@PathParam("id") NonEmptyStringParam customerId) {
-        log.info("Retrieve the customer with the id {}", customerId);
-        return customerDAO.findById(customerId.get().get());
+    @ReadOnlyUnitOfWork(transactional = false)
+    public Response findById(@PathParam("id") NonEmptyStringParam customerId,
+                             @QueryParam("includeTransactions") @DefaultValue("false") boolean includeTransactions,
+                             @Context Request request) {
+        auditLog.debug("customer.find", customerId.get().get());
+        String key = VersionCache.customerKey(customerId.get().get());
+        long stamp = versionCache.stamp(key);
+        String version = versionCache.get(key);
+        if (nonNull(version)) {
+            Response.ResponseBuilder notModified = request.evaluatePreconditions(etag(version, includeTransactions));
+            if (nonNull(notModified))
+                return notModified.build();
+        }
+
+        Optional<Customer> customerOptional = customerDAO.findById(customerId.get().get());
+        if (!customerOptional.isPresent())
+            throw new NotFoundException("No customer found with the id " + customerId);
+        Customer customer = customerOptional.get();
+        customerDAO.fetchAccounts(Collections.singletonList(customer), includeTransactions);
+        accountDAO.fetchFromShards(Collections.singletonList(customer), includeTransactions);
+        version = version(customer);
+        // the invalidation of a write a lagging replica has not seen yet has already run, its version
+        // would stay cached and be served to every client, the writer included
+        if (!RoutedDAO.isReadingReplica())
+            versionCache.put(key, stamp, version);
+        EntityTag etag = etag(version, includeTransactions);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+        if (nonNull(notModified))
+            return notModified.build();
+        return Response.ok(customer).tag(etag).build();
+    }
+
+    // the versions of the accounts change with every posting, so they cover the transactions too
+    private static String version(Customer customer) {
+        StringBuilder builder = new StringBuilder().append(customer.getVersion());
+        List<Account> accounts = new ArrayList<>(customer.getAccounts());
+        accounts.sort(Comparator.comparing(Account::getId));
+        for (Account account : accounts) {
+            builder.append('/').append(account.getId()).append(':').append(account.getVersion());
+        }
+        return Hashing.murmur3_128().hashString(builder, StandardCharsets.UTF_8).toString();
+    }
+
+    private static EntityTag etag(String version, boolean includeTransactions) {
+        return new EntityTag(includeTransactions ? version + "-transactions" : version);
     }
 
     /**
@@ -110,11 +227,13 @@ public class CustomerResource {
      * @param customer - details of the customer to be used to update the customer.
      */
     @PUT
+    @Timed
+    @ExceptionMetered
     @Path("/{id}")
     @UnitOfWork
     public void updateCustomer(@PathParam("id") NonEmptyStringParam customerId,
                                Customer customer) {
-        log.info("Update the customer with the id {}", customerId);
+        auditLog.debug("customer.update", customerId.get().get());
         Optional<Customer> customerOptional = customerDAO.findById(customerId.get().get());
         if (!customerOptional.isPresent())
             throw new NotFoundException("No customer found with the id " + customerId);
@@ -130,12 +249,15 @@ public class CustomerResource {
             cust.setSsn(customer.getSsn());
         if (nonNull(customer.getAddress()))
             cust.setAddress(customer.getAddress());
-        if (nonNull(customer.getEmail()))
+        if (nonNull(customer.getEmail())) {
+            Optional<Customer> existing = customerDAO.findByNormalizedEmail(customer.getEmail());
+            if (existing.isPresent() && !existing.get().getId().equals(cust.getId()))
+                throw new BadRequestException("Email provided is already used, it should be unique");
             cust.setEmail(customer.getEmail());
+        }
         if (nonNull(customer.getPhone()))
             cust.setPhone(customer.getPhone());
         customerDAO.update(cust);
-        log.info("Successfully updated the customer");
 
     }
 
@@ -145,17 +267,18 @@ public class CustomerResource {
      * @param customerId - unique identifier of the customer.
      */
     @DELETE
+    @Timed
+    @ExceptionMetered
     @Path("/{id}")
     @UnitOfWork
     public void deleteCustomer(@PathParam("id") NonEmptyStringParam customerId) {
-        log.info("Delete the customer with the id {}", customerId);
+        auditLog.debug("customer.delete", customerId.get().get());
         Optional<Customer> customerOptional = customerDAO.findById(customerId.get().get());
         if (!customerOptional.isPresent())
             throw new NotFoundException("No customer found with the id " + customerId);
         List<Account> accounts = customerOptional.get().getAccounts();
-        if (accounts.size() > 0)
+        if (accounts.size() > 0 || accountDAO.countOnOtherShards(customerId.get().get()) > 0)
             throw new NotAuthorizedException("Customer cannot be deleted, as the associated accounts are not deleted.");
         customerDAO.delete(customerId.get().get());
-        log.info("Successfully deleted the customer");
     }
 }
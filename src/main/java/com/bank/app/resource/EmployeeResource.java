@@ -1,18 +1,19 @@
 package com.bank.app.resource;
 
+import com.bank.app.audit.AuditLog;
 import com.bank.app.auth.AccessTokenPrincipal;
-import com.bank.app.config.BankingAppConfig;
+import com.bank.app.db.ProvisioningTaskDAO;
 import com.bank.app.model.Employee;
+import com.bank.app.model.ProvisioningTask;
 import com.google.common.base.Optional;
 import com.bank.app.db.EmployeeDAO;
-import com.okta.sdk.authc.credentials.TokenClientCredentials;
-import com.okta.sdk.client.Client;
-import com.okta.sdk.client.Clients;
-import com.okta.sdk.resource.user.User;
-import com.okta.sdk.resource.user.UserBuilder;
-import com.okta.sdk.resource.user.UserList;
+import com.bank.app.replica.ReadOnlyUnitOfWork;
+import com.codahale.metrics.annotation.ExceptionMetered;
+import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.dropwizard.auth.Auth;
 import io.dropwizard.hibernate.UnitOfWork;
+import io.dropwizard.jersey.params.IntParam;
 import io.dropwizard.jersey.params.LongParam;
 import lombok.extern.slf4j.Slf4j;
 
@@ -20,6 +21,10 @@ import java.util.Date;
 import java.util.List;
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
 
 @Slf4j
 @Path("/employees")
@@ -28,12 +33,18 @@ import javax.ws.rs.core.MediaType;
 public class EmployeeResource {
 
     private EmployeeDAO employeeDAO;
-    private BankingAppConfig config;
+    private ProvisioningTaskDAO provisioningTaskDAO;
+    private ObjectMapper mapper;
+    private AuditLog auditLog;
 
     public EmployeeResource(EmployeeDAO employeeDAO,
-                            BankingAppConfig config) {
+                            ProvisioningTaskDAO provisioningTaskDAO,
+                            ObjectMapper mapper,
+                            AuditLog auditLog) {
         this.employeeDAO = employeeDAO;
-        this.config = config;
+        this.provisioningTaskDAO = provisioningTaskDAO;
+        this.mapper = mapper;
+        this.auditLog = auditLog;
     }
 
     /**
@@ -43,28 +54,24 @@ public class EmployeeResource {
      * @param employee - details of the employee to be added.
      */
     @POST
+    @Timed
+    @ExceptionMetered
     @UnitOfWork
     public void createEmployee(@Auth AccessTokenPrincipal tokenPrincipal,
                             Employee employee) {
         if (!tokenPrincipal.isAdmin())
             throw new NotAuthorizedException("Principal not authorized to perform this operation");
-        log.info("Add an employee.");
         //Validate the employee details
         employee.setDateOfJoining(new Date());
         employeeDAO.add(employee);
-        //Add the employee to the Okta account.
-        Client client = Clients.builder()
-                .setOrgUrl(config.getAuthConfig().getBaseUrl())
-                .setClientCredentials(new TokenClientCredentials(config.getAuthConfig().getApiToken()))
-                .build();
-        User user = UserBuilder.instance()
-                .setEmail(employee.getEmail())
-                .setFirstName(employee.getFirstName())
-                .setLastName(employee.getLastName())
-                .setActive(true)
-                .setPassword("Abcd@1234".toCharArray())
-                .setMobilePhone(employee.getPhone())
-                .buildAndCreate(client);
+        //Add the employee to the Okta account once the transaction commits.
+        provisioningTaskDAO.add(ProvisioningTask.builder()
+                .operation(ProvisioningTask.Operation.CREATE_USER)
+                .email(employee.getEmail())
+                .firstName(employee.getFirstName())
+                .lastName(employee.getLastName())
+                .phone(employee.getPhone())
+                .build());
     }
 
     /**
@@ -73,28 +80,54 @@ public class EmployeeResource {
      * email specified in the parameter.
      * If name is specified in the query parameter, retrieve the employees whose first name or last name
      * matches the name specified in the parameter.
+     * If after or limit is specified, retrieve one page of employees ordered by id. The next page is
+     * requested with the id of the last employee of the page in the after parameter.
      * If no query parameter is specified, retrieve all the employees.
      *
      * @param tokenPrincipal - principal performing the operation.
      * @param name
      * @param email
+     * @param after - id of the last employee of the previous page.
+     * @param limit - maximum number of employees to return.
      * @return
      */
     @GET
-    @UnitOfWork
+    @Timed
+    @ExceptionMetered
+    @ReadOnlyUnitOfWork
     public List<Employee> findByName(@Auth AccessTokenPrincipal tokenPrincipal,
                                      @QueryParam("name") Optional<String> name,
-                                     @QueryParam("email") Optional<String> email) {
-        log.info("Retrive the employees with the criteria mentioned in query parameters");
+                                     @QueryParam("email") Optional<String> email,
+                                     @QueryParam("after") LongParam after,
+                                     @QueryParam("limit") IntParam limit) {
+        auditLog.debug("employee.find", null);
         if (email.isPresent()) {
             return employeeDAO.findByEmail(email.get());
         } else if (name.isPresent()) {
             return employeeDAO.findByName(name.get());
+        } else if (nonNull(after) || nonNull(limit)) {
+            return employeeDAO.findPage(isNull(after) ? 0 : after.get(), Paging.limit(limit));
         } else {
             return employeeDAO.findAll();
         }
     }
 
+    /**
+     * Stream all the employees ordered by id. The employees are read through a database cursor and
+     * written as they are read, so the size of the table does not affect memory use.
+     *
+     * @param tokenPrincipal - principal performing the operation.
+     * @return JSON array of all the employees.
+     */
+    @GET
+    @Timed
+    @ExceptionMetered
+    @Path("/stream")
+    public StreamingOutput streamAll(@Auth AccessTokenPrincipal tokenPrincipal) {
+        auditLog.debug("employee.stream", null);
+        return new JsonArrayOutput<>(mapper, Employee.class, employeeDAO::scrollAll);
+    }
+
     /**
      * Retrieve the details of an employee with the identifier passed in as path parameter.
      *
@@ -103,11 +136,13 @@ public class EmployeeResource {
      * @return
      */
     @GET
+    @Timed
+    @ExceptionMetered
     @Path("/{id}")
-    @UnitOfWork
+    @ReadOnlyUnitOfWork
     public Optional<Employee> findById(@Auth AccessTokenPrincipal tokenPrincipal,
                                        @PathParam("id") LongParam employeeId) {
-        log.info("Retrieve the employee with the id " + employeeId);
+        auditLog.debug("employee.find", String.valueOf(employeeId.get()));
         return employeeDAO.findById(employeeId.get());
     }
 
@@ -118,6 +153,8 @@ public class EmployeeResource {
      * @param employeeId - unique identifier of the employee.
      */
     @DELETE
+    @Timed
+    @ExceptionMetered
     @Path("/{id}")
     @UnitOfWork
     public void deleteEmployee(@Auth AccessTokenPrincipal tokenPrincipal,
@@ -127,21 +164,15 @@ public class EmployeeResource {
         Optional<Employee> e = employeeDAO.findById(employeeId.get());
         if (!e.isPresent())
             throw new NotFoundException("No employee found with the id " + employeeId);
-        log.info("Remove the employee with id {}", employeeId);
+        auditLog.debug("employee.delete", String.valueOf(employeeId.get()));
 
-        //Delete the user from okta.
-        log.info("Remove the employee from okta");
-        Client client = Clients.builder()
-                .setOrgUrl(config.getAuthConfig().getBaseUrl())
-                .setClientCredentials(new TokenClientCredentials(config.getAuthConfig().getApiToken()))
-                .build();
-        UserList userList = client.listUsers();
-        User user = userList.stream().filter(u -> u.getProfile().getEmail().equalsIgnoreCase(e.get().getEmail())).findFirst().get();
-        user.delete();
-        user.delete(true);
+        //Delete the user from okta once the transaction commits.
+        provisioningTaskDAO.add(ProvisioningTask.builder()
+                .operation(ProvisioningTask.Operation.DELETE_USER)
+                .email(e.get().getEmail())
+                .build());
 
         //Delete the employee from the database.
-        log.info("Remove the employee from database.");
         employeeDAO.delete(employeeId.get());
     }
 }
@@ -0,0 +1,50 @@
+package com.bank.app.resource;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Writes the rows produced by a source as a JSON array, one element at a time, so that the
+ * response never holds more than one row in memory.
+ */
+class JsonArrayOutput<T> implements StreamingOutput {
+
+    interface Source<T> {
+        void forEach(Consumer<T> consumer);
+    }
+
+    private final ObjectWriter writer;
+    private final Source<T> source;
+
+    JsonArrayOutput(ObjectMapper mapper, Class<T> type, Source<T> source) {
+        this.writer = mapper.writerFor(type).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.source = source;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        JsonGenerator generator = writer.getFactory().createGenerator(output);
+        generator.writeStartArray();
+        try {
+            source.forEach(row -> {
+                try {
+                    writer.writeValue(generator, row);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        generator.writeEndArray();
+        generator.flush();
+    }
+}
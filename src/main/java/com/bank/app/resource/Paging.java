@@ -0,0 +1,27 @@
+package com.bank.app.resource;
+
+import io.dropwizard.jersey.params.IntParam;
+
+import javax.ws.rs.BadRequestException;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Page size handling shared by the list endpoints.
+ */
+final class Paging {
+
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1000;
+
+    private Paging() {
+    }
+
+    static int limit(IntParam limit) {
+        if (isNull(limit))
+            return DEFAULT_LIMIT;
+        if (limit.get() <= 0)
+            throw new BadRequestException("limit should be a positive number");
+        return Math.min(limit.get(), MAX_LIMIT);
+    }
+}
@@ -1,21 +1,29 @@
 package com.bank.app.resource;
 
-import com.bank.app.db.AccountDAO;
+import com.bank.app.audit.AuditLog;
 import com.bank.app.db.TransactionDAO;
-import com.bank.app.model.Account;
 import com.bank.app.model.Transaction;
 import com.bank.app.model.TransferDetails;
-import com.google.common.base.Optional;
-import io.dropwizard.hibernate.UnitOfWork;
+import com.bank.app.model.TransferResult;
+import com.bank.app.replica.ReadOnlyUnitOfWork;
+import com.bank.app.service.TransferPipeline;
+import com.bank.app.service.TransferService;
+import com.codahale.metrics.annotation.ExceptionMetered;
+import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dropwizard.jersey.params.IntParam;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.UUID;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.util.List;
 
 import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
 
 @Slf4j
 @Path("/transactions")
@@ -24,74 +32,99 @@ import static java.util.Objects.isNull;
 public class TransactionResource {
 
     private TransactionDAO transactionDAO;
-    private AccountDAO accountDAO;
+    private TransferService transferService;
+    // null unless the transfers are posted in groups
+    private TransferPipeline transferPipeline;
+    private ObjectMapper mapper;
+    private AuditLog auditLog;
 
     public TransactionResource(TransactionDAO transactionDAO,
-                               AccountDAO accountDAO) {
+                               TransferService transferService,
+                               TransferPipeline transferPipeline,
+                               ObjectMapper mapper,
+                               AuditLog auditLog) {
         this.transactionDAO = transactionDAO;
-        this.accountDAO = accountDAO;
+        this.transferService = transferService;
+        this.transferPipeline = transferPipeline;
+        this.mapper = mapper;
+        this.auditLog = auditLog;
     }
 
     /**
-     * Post a transaction to transfer money from one account to the other.
+     * Retrieve one page of transactions ordered by id. The next page is requested with the id of the
+     * last transaction of the page in the after parameter.
      *
-     * @param transferDetails - details of the accounts for money transfer
+     * @param after - id of the last transaction of the previous page.
+     * @param limit - maximum number of transactions to return.
+     * @return the list of transactions.
      */
-    @POST
-    @UnitOfWork
-    public void transfer(TransferDetails transferDetails) {
-        //Validate the transfer details
-        if (isNull(transferDetails.getFromAccountId())
-                || isNull(transferDetails.getToAccountId())
-                || transferDetails.getAmmount() <= 0.0)
-            throw new BadRequestException("Insufficient transfer details");
-
-        log.info("Retrieve the account with the id {}", transferDetails.getFromAccountId());
-        Optional<Account> fromAccount = accountDAO.findById(transferDetails.getFromAccountId());
-        log.info("Retrieve the account with the id {}", transferDetails.getToAccountId());
-        Optional<Account> toAccount = accountDAO.findById(transferDetails.getToAccountId());
-        if (!fromAccount.isPresent()
-                || !toAccount.isPresent())
-            throw new BadRequestException("One of the accounts for money transfer is not found");
-        if (fromAccount.get().getAccountType().equals(Account.AccountType.Loan))
-            throw new BadRequestException("Cannot transfer money from a loan account");
-        if (fromAccount.get().getBalance() - transferDetails.getAmmount() < 0.0)
-            throw new BadRequestException("Insufficient balance in the account to be debited from");
-
-        Date date = new Date();
-        String randomString = UUID.randomUUID().toString().substring(1, 7);
-        Transaction tr1 = new Transaction();
-        tr1.setId("DB" + randomString);
-        tr1.setAccount(fromAccount.get());
-        tr1.setBalanceBefore(fromAccount.get().getBalance());
-        tr1.setPostedOn(date);
-        tr1.setAmmount(transferDetails.getAmmount());
-        tr1.setTransactionType(Transaction.TransactionType.DEBIT);
+    @GET
+    @Timed
+    @ExceptionMetered
+    @ReadOnlyUnitOfWork
+    public List<Transaction> findPage(@QueryParam("after") String after,
+                                      @QueryParam("limit") IntParam limit) {
+        auditLog.debug("transaction.findPage", after);
+        return transactionDAO.findPage(isNull(after) ? "" : after, Paging.limit(limit));
+    }
 
-        Transaction tr2 = new Transaction();
-        tr2.setId("CR" + randomString);
-        tr2.setAccount(toAccount.get());
-        tr2.setBalanceBefore(toAccount.get().getBalance());
-        tr2.setPostedOn(date);
-        tr2.setAmmount(transferDetails.getAmmount());
-        tr2.setTransactionType(Transaction.TransactionType.CREDIT);
+    /**
+     * Stream all the transactions, shard after shard, ordered by id within a shard. The transactions
+     * are read through a database cursor and written as they are read, so the size of the table does
+     * not affect memory use.
+     *
+     * @return JSON array of all the transactions.
+     */
+    @GET
+    @Timed
+    @ExceptionMetered
+    @Path("/stream")
+    public StreamingOutput streamAll() {
+        auditLog.debug("transaction.stream", null);
+        return new JsonArrayOutput<>(mapper, Transaction.class, transactionDAO::scrollAll);
+    }
 
-        Double fromAccountAfterBalance = fromAccount.get().getBalance() - transferDetails.getAmmount();
-        Double toAccountAfterBalance = 0.0;
-        if (toAccount.get().getAccountType().equals(Account.AccountType.Loan)) {
-            toAccountAfterBalance = toAccount.get().getBalance() - transferDetails.getAmmount();
-        } else {
-            toAccountAfterBalance = toAccount.get().getBalance() + transferDetails.getAmmount();
+    /**
+     * Post a transaction to transfer money from one account to the other. With the transfer pipeline
+     * the request thread is released while the transfer waits for its group to be committed.
+     *
+     * @param transferDetails - details of the accounts for money transfer
+     * @param response - completed with no content once the transfer is committed.
+     */
+    @POST
+    @Timed
+    @ExceptionMetered
+    public void transfer(TransferDetails transferDetails, @Suspended AsyncResponse response) {
+        if (isNull(transferPipeline)) {
+            try {
+                transferService.transfer(transferDetails);
+                response.resume(Response.noContent().build());
+            } catch (RuntimeException e) {
+                response.resume(e);
+            }
+            return;
         }
-        tr1.setBalanceAfter(fromAccountAfterBalance);
-        tr2.setBalanceAfter(toAccountAfterBalance);
+        transferPipeline.submit(transferDetails).whenComplete((result, error) -> {
+            if (nonNull(error))
+                response.resume(error);
+            else
+                response.resume(Response.noContent().build());
+        });
+    }
 
-        log.info("Post the debit transaction in account with id {} ", transferDetails.getFromAccountId());
-        accountDAO.update(fromAccount.get().withBalance(fromAccountAfterBalance));
-        transactionDAO.add(tr1);
-        log.info("Post the credit transaction in account with id {} ", transferDetails.getToAccountId());
-        accountDAO.update(toAccount.get().withBalance(toAccountAfterBalance));
-        transactionDAO.add(tr2);
+    /**
+     * Post a batch of transfers in a single transaction. The whole batch is rejected if any transfer
+     * is malformed, otherwise every transfer is applied in order and its outcome reported.
+     *
+     * @param batch - details of the transfers.
+     * @return the outcome of every transfer, in the order of the batch.
+     */
+    @POST
+    @Timed
+    @ExceptionMetered
+    @Path("/batch")
+    public List<TransferResult> transferBatch(List<TransferDetails> batch) {
+        auditLog.debug("transfer.batch", null);
+        return transferService.transferBatch(batch);
     }
 }
-
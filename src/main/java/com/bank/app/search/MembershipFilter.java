@@ -0,0 +1,86 @@
+package com.bank.app.search;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import java.nio.charset.StandardCharsets;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Bloom filter over the values of a unique column, used to skip the database probe for values which
+ * are certainly not taken. A negative answer is definite, a positive answer has to be confirmed
+ * against the database. Deleted values stay in the filter until the next rebuild, which only costs
+ * a probe.
+ *
+ * Until the first rebuild completes every value might be present.
+ */
+public class MembershipFilter {
+
+    private final long minExpectedInsertions;
+    private final double falsePositiveRate;
+
+    private volatile BloomFilter<CharSequence> filter;
+    // filter being rebuilt, receives the writes made while the table is read
+    private BloomFilter<CharSequence> building;
+
+    /**
+     * @param minExpectedInsertions - lower bound of the number of values the filter is sized for.
+     * @param falsePositiveRate - expected rate of false positives once the filter is full.
+     */
+    public MembershipFilter(long minExpectedInsertions, double falsePositiveRate) {
+        this.minExpectedInsertions = minExpectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    /**
+     * @param value - the value to look up.
+     * @return false if the value is certainly absent, true if it might be present.
+     */
+    public boolean mightContain(String value) {
+        BloomFilter<CharSequence> current = filter;
+        return isNull(current) || current.mightContain(value);
+    }
+
+    /**
+     * Record a value written to the table.
+     *
+     * @param value - the value.
+     */
+    public synchronized void put(String value) {
+        if (nonNull(filter))
+            filter.put(value);
+        if (nonNull(building))
+            building.put(value);
+    }
+
+    /**
+     * Start rebuilding the filter. The filter is sized for twice the current number of values, so that
+     * the false positive rate holds until the next rebuild.
+     *
+     * @param expectedValues - current number of values in the table.
+     * @return the filter to feed with every value of the table, installed by {@link #commit()}.
+     */
+    public synchronized BloomFilter<CharSequence> rebuild(long expectedValues) {
+        building = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8),
+                Math.max(minExpectedInsertions, 2 * expectedValues), falsePositiveRate);
+        return building;
+    }
+
+    /**
+     * Replace the filter with the one rebuilt.
+     */
+    public synchronized void commit() {
+        if (nonNull(building))
+            filter = building;
+        building = null;
+    }
+
+    /**
+     * Give up the rebuild, the current filter is kept.
+     */
+    public synchronized void abort() {
+        building = null;
+    }
+}
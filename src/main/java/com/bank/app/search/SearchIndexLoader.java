@@ -0,0 +1,61 @@
+package com.bank.app.search;
+
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.util.Duration;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the search indexes in the background once the application starts and rebuilds them
+ * periodically. Searches are served by the database until the first build of an index completes.
+ */
+@Slf4j
+public class SearchIndexLoader implements Managed {
+
+    private final Map<String, Runnable> rebuilds;
+    private final ScheduledExecutorService scheduler;
+    private final Duration rebuildInterval;
+
+    /**
+     * @param rebuilds - rebuild of every index, by the name used in the logs.
+     * @param scheduler - executor running the rebuilds.
+     * @param rebuildInterval - time between two rebuilds.
+     */
+    public SearchIndexLoader(Map<String, Runnable> rebuilds,
+                             ScheduledExecutorService scheduler,
+                             Duration rebuildInterval) {
+        this.rebuilds = rebuilds;
+        this.scheduler = scheduler;
+        this.rebuildInterval = rebuildInterval;
+    }
+
+    @Override
+    public void start() {
+        long interval = rebuildInterval.toMilliseconds();
+        scheduler.scheduleWithFixedDelay(this::rebuild, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        // the scheduler is managed by the environment's lifecycle
+    }
+
+    /**
+     * Rebuild all the indexes. A failed rebuild leaves the index with its previous content.
+     */
+    public void rebuild() {
+        for (Map.Entry<String, Runnable> rebuild : rebuilds.entrySet()) {
+            long start = System.nanoTime();
+            try {
+                rebuild.getValue().run();
+                log.info("Rebuilt the {} search index in {} ms", rebuild.getKey(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } catch (RuntimeException e) {
+                log.error("Failed to rebuild the {} search index", rebuild.getKey(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.bank.app.search;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ObjectArrays;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * In-memory substring index over one or more text fields of a table. Every value is broken into its
+ * lower cased three character sequences; a search term is answered by intersecting the keys of its
+ * trigrams and checking the surviving keys against the indexed values, which matches the semantics of
+ * a case insensitive '%term%' LIKE.
+ *
+ * The index holds a superset of the rows matching a term: updated values are added to the values
+ * already indexed for a key, and writes of transactions which roll back are not undone. Callers must
+ * therefore re-check the rows they fetch for the returned keys. Stale values are dropped by
+ * {@link #rebuild()}.
+ *
+ * Until the first rebuild completes the index is not ready: writes are ignored and searches return
+ * absent, so that callers fall back to the database.
+ *
+ * @param <K> - type of the primary key of the indexed rows.
+ */
+public class TrigramIndex<K> {
+
+    public static final int GRAM = 3;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<String, Set<K>> postings = new HashMap<>();
+    private Map<K, String[]> documents = new HashMap<>();
+    // keys written while a rebuild is in progress, null otherwise
+    private Set<K> touched;
+    private volatile boolean ready;
+
+    /**
+     * Whether the index can answer the term. Terms shorter than a trigram or containing LIKE wildcards
+     * have to be served by the database.
+     *
+     * @param term - the search term.
+     * @return true if {@link #search(String)} can be used for the term.
+     */
+    public static boolean isSearchable(String term) {
+        return nonNull(term) && term.length() >= GRAM && term.indexOf('%') < 0 && term.indexOf('_') < 0;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Index values for a key, in addition to the values already indexed for it.
+     *
+     * @param key - primary key of the row.
+     * @param values - values of the indexed fields, nulls are ignored.
+     */
+    public void add(K key, String... values) {
+        lock.writeLock().lock();
+        try {
+            if (!ready && isNull(touched))
+                return;
+            if (nonNull(touched))
+                touched.add(key);
+            String[] current = documents.get(key);
+            index(postings, documents, key, isNull(current) ? values : ObjectArrays.concat(current, values, String.class));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a key from the index.
+     *
+     * @param key - primary key of the row.
+     */
+    public void remove(K key) {
+        lock.writeLock().lock();
+        try {
+            if (!ready && isNull(touched))
+                return;
+            if (nonNull(touched))
+                touched.add(key);
+            unindex(postings, documents, key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find the keys of the rows with a value containing the term, ignoring case.
+     *
+     * @param term - the search term.
+     * @return the matching keys, absent if the index is not ready or the term is not searchable.
+     */
+    public Optional<Set<K>> search(String term) {
+        if (!ready || !isSearchable(term))
+            return Optional.absent();
+        String needle = term.toLowerCase(Locale.ROOT);
+        lock.readLock().lock();
+        try {
+            List<Set<K>> sets = new ArrayList<>();
+            for (String gram : grams(needle)) {
+                Set<K> keys = postings.get(gram);
+                if (isNull(keys))
+                    return Optional.of(Collections.<K>emptySet());
+                sets.add(keys);
+            }
+            // intersect starting with the rarest trigram
+            sets.sort(Comparator.comparingInt(Set::size));
+            Set<K> result = new HashSet<>();
+            for (K key : sets.get(0)) {
+                if (containsAll(sets, key) && matches(documents.get(key), needle))
+                    result.add(key);
+            }
+            return Optional.of(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Start rebuilding the index from a full read of the table. Writes made while the rebuild runs are
+     * kept when it is committed.
+     *
+     * @return the rebuild to feed with every row of the table.
+     */
+    public Rebuild rebuild() {
+        lock.writeLock().lock();
+        try {
+            if (nonNull(touched))
+                throw new IllegalStateException("A rebuild of the index is already in progress");
+            touched = new HashSet<>();
+            return new Rebuild();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public class Rebuild {
+        private final Map<String, Set<K>> postings = new HashMap<>();
+        private final Map<K, String[]> documents = new HashMap<>();
+        private boolean finished;
+
+        private Rebuild() {
+        }
+
+        public void add(K key, String... values) {
+            index(postings, documents, key, values);
+        }
+
+        /**
+         * Replace the content of the index with the rows read, except for the keys written meanwhile.
+         */
+        public void commit() {
+            lock.writeLock().lock();
+            try {
+                checkNotFinished();
+                for (K key : touched) {
+                    unindex(postings, documents, key);
+                    String[] current = TrigramIndex.this.documents.get(key);
+                    if (nonNull(current))
+                        index(postings, documents, key, current);
+                }
+                TrigramIndex.this.postings = postings;
+                TrigramIndex.this.documents = documents;
+                touched = null;
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Give up the rebuild, the index keeps its current content.
+         */
+        public void abort() {
+            lock.writeLock().lock();
+            try {
+                if (finished)
+                    return;
+                finished = true;
+                touched = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void checkNotFinished() {
+            if (finished)
+                throw new IllegalStateException("The rebuild is already finished");
+            finished = true;
+        }
+    }
+
+    private static <K> void index(Map<String, Set<K>> postings, Map<K, String[]> documents, K key, String[] values) {
+        unindex(postings, documents, key);
+        List<String> normalized = new ArrayList<>(values.length);
+        for (String value : values) {
+            if (nonNull(value) && !normalized.contains(value.toLowerCase(Locale.ROOT)))
+                normalized.add(value.toLowerCase(Locale.ROOT));
+        }
+        String[] document = normalized.toArray(new String[0]);
+        documents.put(key, document);
+        for (String value : document) {
+            for (String gram : grams(value)) {
+                postings.computeIfAbsent(gram, g -> new HashSet<>()).add(key);
+            }
+        }
+    }
+
+    private static <K> void unindex(Map<String, Set<K>> postings, Map<K, String[]> documents, K key) {
+        String[] document = documents.remove(key);
+        if (isNull(document))
+            return;
+        for (String value : document) {
+            for (String gram : grams(value)) {
+                Set<K> keys = postings.get(gram);
+                if (nonNull(keys) && keys.remove(key) && keys.isEmpty())
+                    postings.remove(gram);
+            }
+        }
+    }
+
+    private static Set<String> grams(String value) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            grams.add(value.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private static <K> boolean containsAll(List<Set<K>> sets, K key) {
+        for (int i = 1; i < sets.size(); i++) {
+            if (!sets.get(i).contains(key))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean matches(String[] document, String needle) {
+        if (isNull(document))
+            return false;
+        for (String value : document) {
+            if (value.contains(needle))
+                return true;
+        }
+        return false;
+    }
+}
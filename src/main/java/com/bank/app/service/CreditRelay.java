@@ -0,0 +1,199 @@
+package com.bank.app.service;
+
+import com.bank.app.config.ShardingConfig;
+import com.bank.app.db.AccountDAO;
+import com.bank.app.db.AccountDailyRollupDAO;
+import com.bank.app.db.PendingCreditDAO;
+import com.bank.app.db.TransactionDAO;
+import com.bank.app.model.Account;
+import com.bank.app.model.PendingCredit;
+import com.bank.app.model.Transaction;
+import com.google.common.collect.ImmutableList;
+import io.dropwizard.hibernate.UnitOfWork;
+import io.dropwizard.lifecycle.Managed;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Posts the credits of the transfers between accounts on different shards. The debit and the
+ * {@link PendingCredit} are committed together on the shard of the debited account; the relay claims
+ * the pending credits of every shard in batches, posts each credit in a unit of work of its own on the
+ * shard of the credited account, then deletes the credits posted.
+ *
+ * A credit is posted at most once: the credit transaction carries the id of the pending credit, and
+ * a credit whose transaction exists already, because the relay stopped before deleting it or another
+ * node posted it meanwhile, is only deleted. Until it is posted the money is in neither account.
+ *
+ * A credit that fails is counted and left for the next round; after {@link ShardingConfig#getRelayMaxAttempts()}
+ * failures, e.g. because the credited account was deleted or its balance would overflow, the relay
+ * gives up on it and returns the debit to the debited account with a reversal credit. The credit is
+ * then kept as {@link PendingCredit.Status#REVERSED}, or {@link PendingCredit.Status#FAILED} when the
+ * debited account cannot take it back either, so it no longer holds up the credits behind it.
+ *
+ * Instances must be created through {@link io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory}
+ * so that the {@link UnitOfWork} methods get a session.
+ */
+@Slf4j
+public class CreditRelay implements Managed {
+
+    private final PendingCreditDAO pendingCreditDAO;
+    private final AccountDAO accountDAO;
+    private final TransactionDAO transactionDAO;
+    private final AccountDailyRollupDAO rollupDAO;
+    private final ShardingConfig config;
+    private final ScheduledExecutorService scheduler;
+
+    public CreditRelay(PendingCreditDAO pendingCreditDAO,
+                       AccountDAO accountDAO,
+                       TransactionDAO transactionDAO,
+                       AccountDailyRollupDAO rollupDAO,
+                       ShardingConfig config,
+                       ScheduledExecutorService scheduler) {
+        this.pendingCreditDAO = pendingCreditDAO;
+        this.accountDAO = accountDAO;
+        this.transactionDAO = transactionDAO;
+        this.rollupDAO = rollupDAO;
+        this.config = config;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void start() {
+        long interval = config.getRelayInterval().toMilliseconds();
+        scheduler.scheduleWithFixedDelay(this::drain, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        // the scheduler is managed by the environment's lifecycle
+    }
+
+    /**
+     * Post the pending credits of every shard until none is left.
+     */
+    public void drain() {
+        for (int shard = 0; shard < pendingCreditDAO.getShards().count(); shard++) {
+            try {
+                List<PendingCredit> batch;
+                List<String> posted;
+                do {
+                    batch = claimBatch(shard);
+                    posted = new ArrayList<>(batch.size());
+                    for (PendingCredit credit : batch) {
+                        try {
+                            if (post(credit))
+                                posted.add(credit.getId());
+                        } catch (RuntimeException e) {
+                            log.warn("Pending credit {} to account {} failed", credit.getId(), credit.getToAccountId(), e);
+                            fail(credit, e);
+                        }
+                    }
+                    if (!posted.isEmpty())
+                        complete(shard, posted);
+                    // a failing credit stays first in line until given up on, leave it to the next round
+                } while (batch.size() == config.getRelayBatchSize() && posted.size() == batch.size());
+            } catch (RuntimeException e) {
+                log.error("Failed to relay the pending credits of shard {}", shard, e);
+            }
+        }
+    }
+
+    @UnitOfWork
+    public List<PendingCredit> claimBatch(int shard) {
+        return pendingCreditDAO.findBatch(shard, config.getRelayBatchSize());
+    }
+
+    /**
+     * Post a pending credit to the credited account.
+     *
+     * @param credit - credit to post.
+     * @return true when the credit is posted and can be deleted, false when it was given up on meanwhile.
+     */
+    @UnitOfWork
+    public boolean post(PendingCredit credit) {
+        if (!isPending(credit))
+            return false;
+        String accountId = credit.getToAccountId();
+        // the account row lock serialises the relays of all the nodes and the transfers
+        Account account = accountDAO.findByIdsForUpdate(Collections.singleton(accountId)).get(accountId);
+        if (isNull(account))
+            throw new IllegalStateException("Account " + accountId + " not found");
+        if (transactionDAO.exists(credit.getId(), accountId)) {
+            log.info("Pending credit {} was posted already", credit.getId());
+            return true;
+        }
+        apply(TransferService.credit(credit.getId(), account, credit.getAmmount(), new Date()), account);
+        return true;
+    }
+
+    // locks the pending credit, so that it is posted and given up on by one relay at a time
+    private boolean isPending(PendingCredit credit) {
+        return pendingCreditDAO.findForUpdate(credit.getId(), credit.getFromAccountId())
+                .transform(current -> current.getStatus() == PendingCredit.Status.PENDING)
+                .or(false);
+    }
+
+    /**
+     * Count a failed attempt to post a pending credit, and give up on it once it has failed
+     * {@link ShardingConfig#getRelayMaxAttempts()} times: the debit is returned to the debited account.
+     *
+     * @param credit - credit which failed.
+     * @param error - failure of the attempt.
+     */
+    @UnitOfWork
+    public void fail(PendingCredit credit, Exception error) {
+        PendingCredit current = pendingCreditDAO.findForUpdate(credit.getId(), credit.getFromAccountId()).orNull();
+        if (isNull(current) || current.getStatus() != PendingCredit.Status.PENDING)
+            return;
+        int attempts = current.getAttempts() + 1;
+        if (attempts >= config.getRelayMaxAttempts() && transactionDAO.exists(current.getId(), current.getToAccountId())) {
+            // posted after all, only the delete failed
+            pendingCreditDAO.delete(pendingCreditDAO.getShards().shardOf(current.getFromAccountId()),
+                    Collections.singleton(current.getId()));
+            return;
+        }
+        current.setAttempts(attempts);
+        current.setLastError(StringUtils.abbreviate(String.valueOf(error), 1024));
+        if (attempts < config.getRelayMaxAttempts())
+            return;
+        String accountId = current.getFromAccountId();
+        Account account = accountDAO.findByIdsForUpdate(Collections.singleton(accountId)).get(accountId);
+        if (isNull(account)) {
+            current.setStatus(PendingCredit.Status.FAILED);
+            log.error("Gave up on pending credit {} of {} cents from account {} to account {}, the debited account is gone",
+                    current.getId(), current.getAmmount(), accountId, current.getToAccountId());
+            return;
+        }
+        String reversalId = TransferService.REVERSAL_PREFIX + current.getId().substring(TransferService.CREDIT_PREFIX.length());
+        try {
+            apply(TransferService.credit(reversalId, account, current.getAmmount(), new Date()), account);
+            current.setStatus(PendingCredit.Status.REVERSED);
+            log.warn("Gave up on pending credit {} to account {} after {} attempts, returned {} cents to account {}",
+                    current.getId(), current.getToAccountId(), current.getAttempts(), current.getAmmount(), accountId);
+        } catch (ArithmeticException e) {
+            current.setStatus(PendingCredit.Status.FAILED);
+            log.error("Gave up on pending credit {} of {} cents from account {} to account {}, the debited account cannot take it back",
+                    current.getId(), current.getAmmount(), accountId, current.getToAccountId(), e);
+        }
+    }
+
+    private void apply(Transaction posting, Account account) {
+        accountDAO.update(account);
+        transactionDAO.add(posting);
+        rollupDAO.apply(ImmutableList.of(posting));
+    }
+
+    @UnitOfWork
+    public void complete(int shard, List<String> ids) {
+        pendingCreditDAO.delete(shard, ids);
+    }
+}
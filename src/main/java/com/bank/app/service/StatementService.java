@@ -0,0 +1,111 @@
+package com.bank.app.service;
+
+import com.bank.app.db.AccountDailyRollupDAO;
+import com.bank.app.db.TransactionDAO;
+import com.bank.app.model.Account;
+import com.bank.app.model.AccountDailyRollup;
+import com.bank.app.model.Money;
+import com.bank.app.model.Statement;
+import com.bank.app.model.Transaction;
+import com.google.common.base.Optional;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Builds account statements. The whole days (UTC) of the period are read from the daily rollups,
+ * the transactions themselves are only summed for the partial days at either end. The opening and
+ * closing balances are taken from the postings nearest to the ends of the period. Must be called
+ * inside a unit of work.
+ */
+@Slf4j
+public class StatementService {
+
+    private final TransactionDAO transactionDAO;
+    private final AccountDailyRollupDAO rollupDAO;
+
+    public StatementService(TransactionDAO transactionDAO,
+                            AccountDailyRollupDAO rollupDAO) {
+        this.transactionDAO = transactionDAO;
+        this.rollupDAO = rollupDAO;
+    }
+
+    /**
+     * Summarise the transactions posted to an account during a period.
+     *
+     * @param account - the account.
+     * @param from - start of the period (inclusive).
+     * @param to - end of the period (exclusive), after from.
+     * @return the statement.
+     */
+    public Statement statement(Account account, Date from, Date to) {
+        Totals totals = new Totals();
+        LocalDate firstDay = AccountDailyRollupDAO.day(from);
+        if (from.after(startOf(firstDay)))
+            firstDay = firstDay.plusDays(1);
+        LocalDate endDay = AccountDailyRollupDAO.day(to);
+
+        if (!firstDay.isBefore(endDay)) {
+            // no whole day in the period
+            sumTransactions(account, from, to, totals);
+        } else {
+            if (from.before(startOf(firstDay)))
+                sumTransactions(account, from, startOf(firstDay), totals);
+            List<AccountDailyRollup> rollups = rollupDAO.findRange(account.getId(), firstDay, endDay);
+            log.info("Read {} daily rollups of the account {}", rollups.size(), account.getId());
+            for (AccountDailyRollup rollup : rollups) {
+                totals.credits = Money.add(totals.credits, rollup.getCredits());
+                totals.debits = Money.add(totals.debits, rollup.getDebits());
+                totals.count += rollup.getTransactionCount();
+            }
+            if (startOf(endDay).before(to))
+                sumTransactions(account, startOf(endDay), to, totals);
+        }
+
+        return Statement.builder()
+                .accountId(account.getId())
+                .from(from)
+                .to(to)
+                .openingBalance(balanceAt(account, from))
+                .credits(totals.credits)
+                .debits(totals.debits)
+                .transactionCount(totals.count)
+                .closingBalance(balanceAt(account, to))
+                .build();
+    }
+
+    private void sumTransactions(Account account, Date from, Date to, Totals totals) {
+        for (Object[] row : transactionDAO.sumByType(account.getId(), from, to)) {
+            long amount = (Long) row[1];
+            if (row[0] == Transaction.TransactionType.CREDIT)
+                totals.credits = Money.add(totals.credits, amount);
+            else
+                totals.debits = Money.add(totals.debits, amount);
+            totals.count += (Long) row[2];
+        }
+    }
+
+    // balance of the account at a time, from the posting just before or just after it
+    private long balanceAt(Account account, Date time) {
+        Optional<Transaction> before = transactionDAO.findLastBefore(account.getId(), time);
+        if (before.isPresent())
+            return before.get().getBalanceAfter();
+        List<Transaction> after = transactionDAO.findByAccount(account.getId(), time, null, null, null, null, 1);
+        if (!after.isEmpty())
+            return after.get(0).getBalanceBefore();
+        return account.getBalance();
+    }
+
+    private static Date startOf(LocalDate day) {
+        return Date.from(day.atStartOfDay(ZoneOffset.UTC).toInstant());
+    }
+
+    private static final class Totals {
+        private long credits;
+        private long debits;
+        private long count;
+    }
+}
@@ -0,0 +1,169 @@
+package com.bank.app.service;
+
+import com.bank.app.model.TransferDetails;
+import com.bank.app.model.TransferResult;
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.util.Duration;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ServiceUnavailableException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Posts single transfers in groups. Transfers are queued in a bounded buffer and taken by one
+ * sequencer thread, which applies them in arrival order and commits them in one transaction per
+ * group and shard of the debited accounts; the transfers of a shard which failed to commit are
+ * refused with 503, the others go through. A group is closed when it holds groupSize transfers or groupInterval after its first
+ * transfer arrived, whichever comes first.
+ *
+ * The request threads do not wait for a database connection: they are released as soon as the
+ * transfer is queued, and the response is sent once the group is committed. When the buffer is full
+ * transfers are refused with 503 instead of queueing without bound. The responses are completed on
+ * the responder executor, so that writing them does not hold up the sequencer.
+ */
+@Slf4j
+public class TransferPipeline implements Managed {
+
+    private static final long POLL_MILLIS = 100;
+
+    private final TransferService transferService;
+    private final BlockingQueue<Pending> queue;
+    private final int groupSize;
+    private final long groupIntervalNanos;
+    private final Executor responder;
+    private final Thread sequencer;
+    private volatile boolean running;
+
+    public TransferPipeline(TransferService transferService,
+                            Executor responder,
+                            int capacity,
+                            int groupSize,
+                            Duration groupInterval) {
+        this.transferService = transferService;
+        this.responder = responder;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.groupSize = groupSize;
+        this.groupIntervalNanos = TimeUnit.MILLISECONDS.toNanos(groupInterval.toMilliseconds());
+        this.sequencer = new Thread(this::run, "transfer-sequencer");
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        sequencer.start();
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        // the transfers already queued are still posted
+        running = false;
+        sequencer.join();
+    }
+
+    /**
+     * Queue a transfer.
+     *
+     * @param transferDetails - details of the accounts for money transfer.
+     * @return completed with the outcome of the transfer once it is committed, or exceptionally with
+     * the reason it was refused.
+     */
+    public CompletableFuture<TransferResult> submit(TransferDetails transferDetails) {
+        Pending pending = new Pending(transferDetails);
+        if (!running || !queue.offer(pending))
+            pending.future.completeExceptionally(new ServiceUnavailableException("Too many transfers in progress, retry later"));
+        return pending.future;
+    }
+
+    /**
+     * @return number of transfers waiting for the sequencer.
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    private void run() {
+        List<Pending> group = new ArrayList<>(groupSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                group.add(first);
+                long deadline = System.nanoTime() + groupIntervalNanos;
+                while (group.size() < groupSize) {
+                    Pending next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null)
+                        break;
+                    group.add(next);
+                }
+                commit(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                group.clear();
+            }
+        }
+        log.info("Transfer sequencer stopped");
+    }
+
+    private void commit(List<Pending> group) {
+        List<TransferDetails> transfers = new ArrayList<>(group.size());
+        for (Pending pending : group) {
+            transfers.add(pending.transferDetails);
+        }
+        List<Pending> completed = new ArrayList<>(group);
+        List<TransferResult> results;
+        try {
+            // committed when it returns
+            results = transferService.transferGroup(transfers);
+        } catch (Throwable e) {
+            // whatever went wrong, the sequencer carries on with the next group
+            log.error("Failed to post a group of {} transfers", group.size(), e);
+            respond(() -> {
+                for (Pending pending : completed) {
+                    pending.future.completeExceptionally(e);
+                }
+            });
+            return;
+        }
+        respond(() -> {
+            for (int i = 0; i < completed.size(); i++) {
+                TransferResult result = results.get(i);
+                if (result.getStatus() == TransferResult.Status.SUCCESS)
+                    completed.get(i).future.complete(result);
+                else if (result.getStatus() == TransferResult.Status.ERROR)
+                    completed.get(i).future.completeExceptionally(new ServiceUnavailableException(result.getMessage()));
+                else
+                    completed.get(i).future.completeExceptionally(new BadRequestException(result.getMessage()));
+            }
+        });
+    }
+
+    // completes the responses on the sequencer when the responder refuses them, e.g. while it shuts down
+    private void respond(Runnable responses) {
+        try {
+            responder.execute(responses);
+        } catch (RejectedExecutionException e) {
+            log.warn("The responder refused the responses of a group, completing them on the sequencer");
+            responses.run();
+        }
+    }
+
+    private static final class Pending {
+        private final TransferDetails transferDetails;
+        private final CompletableFuture<TransferResult> future = new CompletableFuture<>();
+
+        private Pending(TransferDetails transferDetails) {
+            this.transferDetails = transferDetails;
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.bank.app.service;
+
+import com.bank.app.audit.AuditLog;
+import com.bank.app.db.AccountDAO;
+import com.bank.app.db.AccountDailyRollupDAO;
+import com.bank.app.db.PendingCreditDAO;
+import com.bank.app.db.Shards;
+import com.bank.app.db.TransactionDAO;
+import com.bank.app.id.IdGenerator;
+import com.bank.app.ledger.Ledger;
+import com.bank.app.model.Account;
+import com.bank.app.model.Money;
+import com.bank.app.model.PendingCredit;
+import com.bank.app.model.Transaction;
+import com.bank.app.model.TransferDetails;
+import com.bank.app.model.TransferResult;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Striped;
+import io.dropwizard.hibernate.UnitOfWork;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.ws.rs.BadRequestException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Moves money between accounts. Every call is a unit of work of its own, instances must be created
+ * through {@link io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory}.
+ *
+ * Concurrent transfers touching the same account are serialised in two layers. An in-process
+ * striped lock settles contention between the threads of this node before it reaches the
+ * database: it is taken before the transaction begins and released once it is committed, so that a
+ * transfer waiting for it holds no connection and never waits on a row lock of this node. The
+ * account rows are then locked with SELECT ... FOR UPDATE, always in ascending id order, so that
+ * transfers in opposite directions between the same accounts cannot deadlock, including across
+ * nodes.
+ *
+ * With a {@link Ledger} the postings are appended to its journal instead: the accounts are read
+ * without a row lock, their balances taken from the ledger, and neither the accounts nor the
+ * transactions are written in the caller's transaction. The ledger projects them into the
+ * database later. The striped lock alone serialises the transfers, so only one node may post
+ * transfers in this mode.
+ *
+ * When the accounts are on different {@link Shards} the credit is not posted with the debit: a
+ * {@link PendingCredit} is written on the shard of the debited account instead, in the same
+ * transaction, and the {@link CreditRelay} posts it later. A transfer thus only writes to the shard of
+ * the debited account, and is committed there alone: a group of transfers is committed in one
+ * transaction per shard of their debited accounts, see {@link Shards#inTransaction}, and the
+ * transfers of a shard which failed to commit are reported as {@link TransferResult.Status#ERROR}.
+ * The ledger does not support shards.
+ */
+@Slf4j
+public class TransferService {
+
+    // the debit and the credit of a transfer share the id
+    static final String DEBIT_PREFIX = "DB";
+    static final String CREDIT_PREFIX = "CR";
+    // credit returning the debit of a transfer whose credit could not be posted, see CreditRelay
+    static final String REVERSAL_PREFIX = "RV";
+
+    private final AccountDAO accountDAO;
+    private final TransactionDAO transactionDAO;
+    private final AccountDailyRollupDAO rollupDAO;
+    private final PendingCreditDAO pendingCreditDAO;
+    private final Shards shards;
+    private final Striped<Lock> accountLocks;
+    private final int maxBatchSize;
+    private final IdGenerator idGenerator;
+    private final AuditLog auditLog;
+    // null when the postings are written to the database directly
+    private final Ledger ledger;
+
+    public TransferService(AccountDAO accountDAO,
+                           TransactionDAO transactionDAO,
+                           AccountDailyRollupDAO rollupDAO,
+                           PendingCreditDAO pendingCreditDAO,
+                           IdGenerator idGenerator,
+                           Ledger ledger,
+                           int lockStripes,
+                           int maxBatchSize,
+                           AuditLog auditLog) {
+        this.accountDAO = accountDAO;
+        this.transactionDAO = transactionDAO;
+        this.rollupDAO = rollupDAO;
+        this.pendingCreditDAO = pendingCreditDAO;
+        this.shards = accountDAO.getShards();
+        this.idGenerator = idGenerator;
+        this.ledger = ledger;
+        this.accountLocks = Striped.lock(lockStripes);
+        this.maxBatchSize = maxBatchSize;
+        this.auditLog = auditLog;
+    }
+
+    /**
+     * Post a transaction to transfer money from one account to the other.
+     *
+     * @param transferDetails - details of the accounts for money transfer
+     * @return the debit and the credit transaction, the debit alone when the credit is pending.
+     */
+    @UnitOfWork(transactional = false)
+    public List<Transaction> transfer(TransferDetails transferDetails) {
+        String invalid = validate(transferDetails);
+        if (nonNull(invalid))
+            throw new BadRequestException(invalid);
+
+        String fromAccountId = transferDetails.getFromAccountId();
+        List<Lock> locks = lock(ImmutableList.of(fromAccountId, transferDetails.getToAccountId()));
+        try {
+            return shards.inTransaction(shards.shardOf(fromAccountId), () -> postTransfer(transferDetails));
+        } finally {
+            unlock(locks);
+        }
+    }
+
+    private List<Transaction> postTransfer(TransferDetails transferDetails) {
+        String fromAccountId = transferDetails.getFromAccountId();
+        String toAccountId = transferDetails.getToAccountId();
+        auditLog.debug("transfer", fromAccountId, toAccountId);
+        Map<String, Account> accounts = load(ImmutableList.of(fromAccountId, toAccountId));
+        Account fromAccount = accounts.get(fromAccountId);
+        Account toAccount = accounts.get(toAccountId);
+        String rejection = reject(fromAccount, toAccount, transferDetails.getAmmount());
+        if (nonNull(rejection))
+            throw new BadRequestException(rejection);
+        List<Transaction> postings = new ArrayList<>(2);
+        List<PendingCredit> pendingCredits = new ArrayList<>(1);
+        post(fromAccount, toAccount, transferDetails.getAmmount(), new Date(), postings, pendingCredits);
+        record(postings, pendingCredits);
+        return postings;
+    }
+
+    /**
+     * Post a batch of transfers in one transaction per shard of the debited accounts. The batch is
+     * validated up front and rejected as a whole if any transfer is malformed. All the accounts
+     * referenced are then loaded and locked and the transfers are applied in order; a transfer which
+     * cannot be applied (unknown account, insufficient balance...) is reported as failed without
+     * affecting the others.
+     *
+     * @param batch - the transfers, applied in order.
+     * @return the outcome of every transfer, in the order of the batch.
+     */
+    @UnitOfWork(transactional = false)
+    public List<TransferResult> transferBatch(List<TransferDetails> batch) {
+        if (isNull(batch) || batch.isEmpty())
+            throw new BadRequestException("No transfers specified");
+        if (batch.size() > maxBatchSize)
+            throw new BadRequestException("A batch cannot contain more than " + maxBatchSize + " transfers");
+        for (int i = 0; i < batch.size(); i++) {
+            String invalid = validate(batch.get(i));
+            if (nonNull(invalid))
+                throw new BadRequestException("Transfer " + i + ": " + invalid);
+        }
+        return apply(batch);
+    }
+
+    /**
+     * Post a group of unrelated transfers in one transaction per shard of the debited accounts, in
+     * order. Unlike a batch, a malformed transfer is reported as failed like any transfer which cannot
+     * be applied.
+     *
+     * @param group - the transfers, applied in order.
+     * @return the outcome of every transfer, in the order of the group.
+     */
+    @UnitOfWork(transactional = false)
+    public List<TransferResult> transferGroup(List<TransferDetails> group) {
+        return apply(group);
+    }
+
+    private List<TransferResult> apply(List<TransferDetails> transfers) {
+        TransferResult[] results = new TransferResult[transfers.size()];
+        // the transfers only write to the shard of their debited account
+        Map<Integer, List<Integer>> byShard = new TreeMap<>();
+        for (int i = 0; i < transfers.size(); i++) {
+            String invalid = validate(transfers.get(i));
+            if (nonNull(invalid))
+                results[i] = failed(i, TransferResult.Status.FAILED, invalid);
+            else
+                byShard.computeIfAbsent(shards.shardOf(transfers.get(i).getFromAccountId()), shard -> new ArrayList<>()).add(i);
+        }
+        for (Map.Entry<Integer, List<Integer>> shard : byShard.entrySet()) {
+            TreeSet<String> accountIds = new TreeSet<>();
+            for (int i : shard.getValue()) {
+                accountIds.add(transfers.get(i).getFromAccountId());
+                accountIds.add(transfers.get(i).getToAccountId());
+            }
+            List<Lock> locks = lock(accountIds);
+            try {
+                shards.inTransaction(shard.getKey(), () -> apply(transfers, shard.getValue(), accountIds, results));
+            } catch (RuntimeException e) {
+                // nothing of the shard was committed, the transfers can be submitted again
+                log.error("Failed to commit {} transfers on shard {}", shard.getValue().size(), shard.getKey(), e);
+                for (int i : shard.getValue()) {
+                    results[i] = failed(i, TransferResult.Status.ERROR, "The transfer could not be committed and was not posted");
+                }
+            } finally {
+                unlock(locks);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private static TransferResult failed(int index, TransferResult.Status status, String message) {
+        return TransferResult.builder()
+                .index(index)
+                .status(status)
+                .message(message)
+                .build();
+    }
+
+    // applies the transfers of one shard, in order
+    private Void apply(List<TransferDetails> transfers, List<Integer> indexes, Collection<String> accountIds, TransferResult[] results) {
+        auditLog.debug("transfer.group", null);
+        Map<String, Account> accounts = load(accountIds);
+        Date date = new Date();
+        List<Transaction> posted = new ArrayList<>(2 * indexes.size());
+        List<PendingCredit> pendingCredits = new ArrayList<>();
+        for (int i : indexes) {
+            TransferDetails transferDetails = transfers.get(i);
+            String rejection = reject(accounts.get(transferDetails.getFromAccountId()),
+                    accounts.get(transferDetails.getToAccountId()),
+                    transferDetails.getAmmount());
+            if (nonNull(rejection)) {
+                results[i] = failed(i, TransferResult.Status.FAILED, rejection);
+                continue;
+            }
+            String transferId = post(accounts.get(transferDetails.getFromAccountId()),
+                    accounts.get(transferDetails.getToAccountId()),
+                    transferDetails.getAmmount(),
+                    date,
+                    posted,
+                    pendingCredits);
+            results[i] = TransferResult.builder()
+                    .index(i)
+                    .status(TransferResult.Status.SUCCESS)
+                    .debitTransactionId(DEBIT_PREFIX + transferId)
+                    .creditTransactionId(CREDIT_PREFIX + transferId)
+                    .build();
+        }
+        record(posted, pendingCredits);
+        return null;
+    }
+
+    private Map<String, Account> load(Collection<String> accountIds) {
+        if (isNull(ledger))
+            // lock the account rows in id order
+            return accountDAO.findByIdsForUpdate(accountIds);
+        Map<String, Account> accounts = accountDAO.findByIdsReadOnly(accountIds);
+        for (Account account : accounts.values()) {
+            // the database lags behind the ledger until the postings are projected
+            OptionalLong balance = ledger.balance(account.getId());
+            if (balance.isPresent())
+                account.setBalance(balance.getAsLong());
+        }
+        return accounts;
+    }
+
+    private static String validate(TransferDetails transferDetails) {
+        //Validate the transfer details
+        if (isNull(transferDetails)
+                || isNull(transferDetails.getFromAccountId())
+                || isNull(transferDetails.getToAccountId())
+                || transferDetails.getAmmount() <= 0)
+            return "Insufficient transfer details";
+        if (transferDetails.getFromAccountId().equals(transferDetails.getToAccountId()))
+            return "Cannot transfer money to the same account";
+        return null;
+    }
+
+    private static String reject(Account fromAccount, Account toAccount, long ammount) {
+        if (isNull(fromAccount)
+                || isNull(toAccount))
+            return "One of the accounts for money transfer is not found";
+        if (fromAccount.getAccountType().equals(Account.AccountType.Loan))
+            return "Cannot transfer money from a loan account";
+        if (fromAccount.getBalance() < ammount)
+            return "Insufficient balance in the account to be debited from";
+        try {
+            afterBalance(toAccount, ammount);
+        } catch (ArithmeticException e) {
+            return "The balance of the account to be credited would overflow";
+        }
+        return null;
+    }
+
+    static long afterBalance(Account toAccount, long ammount) {
+        // crediting a loan account pays the loan back
+        if (toAccount.getAccountType().equals(Account.AccountType.Loan))
+            return Money.subtract(toAccount.getBalance(), ammount);
+        return Money.add(toAccount.getBalance(), ammount);
+    }
+
+    /**
+     * Post a transfer, updating the balances of the accounts: later transfers of a batch see the new
+     * balances.
+     *
+     * @return the id of the transfer, shared by the debit and the credit.
+     */
+    private String post(Account fromAccount,
+                        Account toAccount,
+                        long ammount,
+                        Date date,
+                        List<Transaction> postings,
+                        List<PendingCredit> pendingCredits) {
+        String transferId = idGenerator.nextId();
+        Transaction debit = posting(DEBIT_PREFIX + transferId, fromAccount, ammount, date, Transaction.TransactionType.DEBIT);
+        debit.setBalanceAfter(Money.subtract(fromAccount.getBalance(), ammount));
+        fromAccount.setBalance(debit.getBalanceAfter());
+        postings.add(debit);
+
+        if (shards.shardOf(fromAccount.getId()) == shards.shardOf(toAccount.getId())) {
+            postings.add(credit(CREDIT_PREFIX + transferId, toAccount, ammount, date));
+        } else {
+            auditLog.debug("transfer.deferCredit", transferId, toAccount.getId());
+            pendingCredits.add(new PendingCredit(CREDIT_PREFIX + transferId, fromAccount.getId(), toAccount.getId(), ammount, date));
+        }
+        return transferId;
+    }
+
+    /**
+     * Build the credit of a transfer and update the balance of the credited account.
+     *
+     * @param id - id of the credit transaction.
+     * @param toAccount - the account credited.
+     * @param ammount - ammount of the transfer, in cents.
+     * @param date - posting date.
+     * @return the credit transaction.
+     */
+    static Transaction credit(String id, Account toAccount, long ammount, Date date) {
+        Transaction credit = posting(id, toAccount, ammount, date, Transaction.TransactionType.CREDIT);
+        credit.setBalanceAfter(afterBalance(toAccount, ammount));
+        toAccount.setBalance(credit.getBalanceAfter());
+        return credit;
+    }
+
+    private static Transaction posting(String id, Account account, long ammount, Date date, Transaction.TransactionType type) {
+        Transaction posting = new Transaction();
+        posting.setId(id);
+        posting.setAccount(account);
+        posting.setBalanceBefore(account.getBalance());
+        posting.setPostedOn(date);
+        posting.setAmmount(ammount);
+        posting.setTransactionType(type);
+        return posting;
+    }
+
+    private void record(List<Transaction> postings, List<PendingCredit> pendingCredits) {
+        for (PendingCredit pendingCredit : pendingCredits) {
+            pendingCreditDAO.add(pendingCredit);
+        }
+        if (postings.isEmpty())
+            return;
+        if (nonNull(ledger)) {
+            auditLog.debug("transfer.journal", null);
+            ledger.append(postings);
+            return;
+        }
+        // the accounts are managed and locked, update them in place
+        for (Transaction posting : postings) {
+            accountDAO.update(posting.getAccount());
+            transactionDAO.add(posting);
+        }
+        rollupDAO.apply(postings);
+    }
+
+    // the stripes are handed out in a fixed order, which keeps the in-process locking deadlock free
+    private List<Lock> lock(Iterable<String> accountIds) {
+        List<Lock> locks = ImmutableList.copyOf(accountLocks.bulkGet(accountIds));
+        for (Lock lock : locks) {
+            lock.lock();
+        }
+        return locks;
+    }
+
+    private static void unlock(List<Lock> locks) {
+        for (Lock lock : Lists.reverse(locks)) {
+            lock.unlock();
+        }
+    }
+}
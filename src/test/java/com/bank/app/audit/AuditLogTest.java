@@ -0,0 +1,215 @@
+package com.bank.app.audit;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.bank.app.config.AuditConfig;
+import io.dropwizard.jackson.Jackson;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The ring buffer of the audit log, with the smallest buffer so that it wraps around and fills up,
+ * writing to a temporary directory; what goes to the application log instead is captured.
+ */
+public class AuditLogTest {
+
+    private static final int BUFFER_SIZE = 64;
+    private static final long TIMEOUT_SECONDS = 30;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final ListAppender<ILoggingEvent> applicationLog = new ListAppender<>();
+    private File file;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "audit.log");
+        applicationLog.start();
+        logger().addAppender(applicationLog);
+    }
+
+    @After
+    public void tearDown() {
+        logger().detachAppender(applicationLog);
+    }
+
+    private static Logger logger() {
+        return (Logger) LoggerFactory.getLogger(AuditLog.class);
+    }
+
+    private static AuditLog auditLog(String filename, String pollInterval) throws IOException {
+        AuditConfig config = Jackson.newObjectMapper().readValue(
+                "{\"currentLogFilename\": \"" + filename.replace("\\", "\\\\") + "\", "
+                        + "\"ringBufferSize\": " + BUFFER_SIZE + ", \"batchSize\": 16, "
+                        + "\"pollInterval\": \"" + pollInterval + "\", \"debugSampleRate\": 1}",
+                AuditConfig.class);
+        return new AuditLog(config);
+    }
+
+    private List<String> lines() throws IOException {
+        return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    }
+
+    // the audit records which went to the application log, by their reference
+    private List<String> loggedReferences() {
+        List<String> references = new ArrayList<>();
+        for (ILoggingEvent event : applicationLog.list) {
+            if (event.getMessage().startsWith("Audit {} {}"))
+                references.add((String) event.getArgumentArray()[1]);
+            else if (event.getMessage().equals("Audit {}"))
+                references.add((String) event.getArgumentArray()[0]);
+        }
+        return references;
+    }
+
+    @Test
+    public void recordsOfEveryProducerAreWrittenInTheirOrder() throws Exception {
+        AuditLog auditLog = auditLog(file.getPath(), "1 millisecond");
+        auditLog.start();
+        int producers = 4;
+        int records = 2_000;
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                String producer = "P" + p;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < records; i++) {
+                        auditLog.audit("transfer", producer + "-" + i, "SA1", "SA2", i);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        auditLog.stop();
+
+        // many times around the buffer, and not one record lost
+        List<String> lines = lines();
+        assertEquals(producers * records, lines.size());
+        int[] next = new int[producers];
+        for (String line : lines) {
+            int start = line.indexOf("\"reference\":\"P") + "\"reference\":\"P".length();
+            int producer = line.charAt(start) - '0';
+            int sequence = Integer.parseInt(line.substring(start + 2, line.indexOf('"', start)));
+            assertEquals(line, next[producer]++, sequence);
+        }
+        assertEquals(0, auditLog.getDroppedCount());
+        assertTrue(loggedReferences().isEmpty());
+    }
+
+    @Test
+    public void fullBufferDropsDebugEventsAndHoldsAuditRecords() throws Exception {
+        // the writer sleeps until it is woken up
+        AuditLog auditLog = auditLog(file.getPath(), "1 minute");
+        auditLog.start();
+        Thread.sleep(200);
+
+        for (int i = 0; i < BUFFER_SIZE; i++) {
+            auditLog.debug("account.find", "SA" + i);
+        }
+        assertEquals(BUFFER_SIZE, auditLog.getQueueSize());
+        auditLog.debug("account.find", "SA-dropped");
+        assertEquals(1, auditLog.getDroppedCount());
+
+        // waits for the writer to make room
+        auditLog.audit("transfer", "DB1", "SA1", "SA2", 100);
+        auditLog.stop();
+
+        List<String> lines = lines();
+        assertEquals(BUFFER_SIZE + 1, lines.size());
+        assertTrue(lines.get(BUFFER_SIZE), lines.get(BUFFER_SIZE).contains("\"kind\":\"audit\""));
+        assertTrue(lines.get(BUFFER_SIZE), lines.get(BUFFER_SIZE).contains("\"reference\":\"DB1\""));
+        for (String line : lines) {
+            assertFalse(line, line.contains("SA-dropped"));
+        }
+    }
+
+    @Test
+    public void recordsPublishedWhileTheLogStopsAreNotLost() throws Exception {
+        AuditLog auditLog = auditLog(file.getPath(), "1 millisecond");
+        auditLog.start();
+        int producers = 4;
+        AtomicBoolean producing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        List<Future<Integer>> futures = new ArrayList<>();
+        try {
+            for (int p = 0; p < producers; p++) {
+                String producer = "P" + p;
+                futures.add(executor.submit(() -> {
+                    int count = 0;
+                    while (producing.get()) {
+                        auditLog.audit("transfer", producer + "-" + count++, "SA1", "SA2", 1);
+                    }
+                    return count;
+                }));
+            }
+            Thread.sleep(100);
+            // the producers carry on while the log stops
+            auditLog.stop();
+            producing.set(false);
+            int published = 0;
+            for (Future<Integer> future : futures) {
+                published += future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+            // every record is in the file or, once stopped, in the application log
+            assertEquals(published, lines().size() + loggedReferences().size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void auditRecordsGoToTheApplicationLogWhenTheFileCannotBeWritten() throws Exception {
+        // every write fails with no space left on the device
+        Assume.assumeTrue(Files.isWritable(Paths.get("/dev/full")));
+        AuditLog auditLog = auditLog("/dev/full", "1 millisecond");
+        auditLog.start();
+        auditLog.debug("account.find", "SA1");
+        auditLog.audit("transfer", "DB1", "SA1", "SA2", 100);
+        auditLog.stop();
+
+        List<String> logged = loggedReferences();
+        assertEquals(1, logged.size());
+        assertTrue(logged.get(0), logged.get(0).contains("\"reference\":\"DB1\""));
+        assertEquals(1, auditLog.getDroppedCount());
+    }
+
+    @Test
+    public void auditRecordsGoToTheApplicationLogUntilTheLogIsStarted() throws IOException {
+        AuditLog auditLog = auditLog(file.getPath(), "1 millisecond");
+        auditLog.audit("transfer", "DB1", "SA1", "SA2", 100);
+        auditLog.debug("account.find", "SA1");
+        List<String> logged = loggedReferences();
+        assertEquals(1, logged.size());
+        assertEquals("DB1", logged.get(0));
+        assertEquals(0, auditLog.getQueueSize());
+    }
+}
@@ -0,0 +1,115 @@
+package com.bank.app.audit;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Archives and retention of the rolling file, in a temporary directory, with lines of eight bytes and
+ * files of at most ten.
+ */
+public class RollingFileTest {
+
+    private static final long MAX_BYTES = 10;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] line(int n) {
+        return String.format("line %02d\n", n).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String read(Path path) throws IOException {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+
+    // oldest first
+    private List<Path> archives() throws IOException {
+        List<Path> archives = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder.getRoot().toPath(), "audit-*.log")) {
+            for (Path archive : stream) {
+                archives.add(archive);
+            }
+        }
+        Collections.sort(archives);
+        return archives;
+    }
+
+    private Path writeLines(int count, int archivedFileCount) throws Exception {
+        Path path = folder.getRoot().toPath().resolve("audit.log");
+        try (RollingFile file = new RollingFile(path, MAX_BYTES, archivedFileCount)) {
+            for (int n = 1; n <= count; n++) {
+                file.write(line(n));
+                // the archives are named after the millisecond they are made
+                Thread.sleep(2);
+            }
+        }
+        return path;
+    }
+
+    @Test
+    public void fullFileIsArchivedBeforeTheNextWrite() throws Exception {
+        Path path = writeLines(5, 0);
+        // every line but the first fills the file past its size
+        assertEquals("line 05\n", read(path));
+        List<Path> archives = archives();
+        assertEquals(4, archives.size());
+        for (int i = 0; i < archives.size(); i++) {
+            assertEquals(new String(line(i + 1), StandardCharsets.UTF_8), read(archives.get(i)));
+        }
+    }
+
+    @Test
+    public void onlyTheNewestArchivesAreKept() throws Exception {
+        Path path = writeLines(5, 2);
+        assertEquals("line 05\n", read(path));
+        List<Path> archives = archives();
+        assertEquals(2, archives.size());
+        assertEquals("line 03\n", read(archives.get(0)));
+        assertEquals("line 04\n", read(archives.get(1)));
+    }
+
+    @Test
+    public void reopenedFileIsAppendedTo() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("audit.log");
+        try (RollingFile file = new RollingFile(path, 100, 0)) {
+            file.write(line(1));
+        }
+        try (RollingFile file = new RollingFile(path, 100, 0)) {
+            file.write(line(2));
+        }
+        assertEquals("line 01\nline 02\n", read(path));
+        assertEquals(0, archives().size());
+    }
+
+    @Test
+    public void failedWriteIsReportedAndTheFileReopened() throws Exception {
+        // every write fails with no space left on the device
+        Path full = Paths.get("/dev/full");
+        Assume.assumeTrue(Files.isWritable(full));
+        try (RollingFile file = new RollingFile(full, MAX_BYTES, 0)) {
+            for (int attempt = 0; attempt < 2; attempt++) {
+                try {
+                    file.write(line(1));
+                    fail("The device is full");
+                } catch (IOException expected) {
+                    // the next write opens the file again
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.bank.app.auth;
+
+import com.google.common.collect.ImmutableMap;
+import io.dropwizard.util.Duration;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.bank.app.auth.LocalJwtVerifierTest.MAPPER;
+import static com.bank.app.auth.LocalJwtVerifierTest.generateKey;
+import static com.bank.app.auth.LocalJwtVerifierTest.writeJwks;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Fetches of a local JWKS file, counted through the URL the key store reads.
+ */
+public class JwksKeyStoreTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static final long MIN_REFETCH_MILLIS = 500;
+
+    private final AtomicInteger fetches = new AtomicInteger();
+    private File jwks;
+    private KeyPair first;
+    private KeyPair second;
+    private JwksKeyStore keyStore;
+
+    @Before
+    public void setUp() throws Exception {
+        first = generateKey();
+        second = generateKey();
+        jwks = folder.newFile("jwks.json");
+        writeJwks(jwks, ImmutableMap.of("k1", first));
+        URL file = jwks.toURI().toURL();
+        // counts the fetches, and reads the file
+        URL counted = new URL(null, file.toString(), new URLStreamHandler() {
+            @Override
+            protected URLConnection openConnection(URL url) throws IOException {
+                fetches.incrementAndGet();
+                return file.openConnection();
+            }
+        });
+        keyStore = new JwksKeyStore(counted, MAPPER, null, Duration.minutes(5),
+                Duration.milliseconds(MIN_REFETCH_MILLIS), Duration.seconds(1));
+        assertTrue(keyStore.refresh());
+        assertEquals(1, fetches.get());
+    }
+
+    // the preload counts as a fetch for the minimum refetch interval
+    private static void awaitRefetchAllowed() throws InterruptedException {
+        Thread.sleep(MIN_REFETCH_MILLIS + 100);
+    }
+
+    @Test
+    public void knownKeyIsServedWithoutAFetch() {
+        assertEquals(first.getPublic(), keyStore.getKey("k1"));
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    public void unknownKeyTriggersOneRefetch() throws Exception {
+        // the issuer rotated its keys
+        writeJwks(jwks, ImmutableMap.of("k1", first, "k2", second));
+        awaitRefetchAllowed();
+        assertEquals(second.getPublic(), keyStore.getKey("k2"));
+        assertEquals(2, fetches.get());
+
+        // another unknown key within the minimum refetch interval is not fetched
+        assertNull(keyStore.getKey("k3"));
+        assertNull(keyStore.getKey("k3"));
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    public void unknownKeyIsRefetchedOnceEvenWhenStillUnknown() throws InterruptedException {
+        awaitRefetchAllowed();
+        assertNull(keyStore.getKey("k9"));
+        assertNull(keyStore.getKey("k9"));
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    public void unknownKeyRightAfterAFetchIsNotRefetched() {
+        assertNull(keyStore.getKey("k9"));
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    public void lastGoodKeysAreServedWhenTheSourceFails() throws Exception {
+        Files.delete(jwks.toPath());
+        assertFalse(keyStore.refresh());
+        assertNotNull(keyStore.getKey("k1"));
+
+        Files.write(jwks.toPath(), "{not json".getBytes("UTF-8"));
+        assertFalse(keyStore.refresh());
+        assertEquals(first.getPublic(), keyStore.getKey("k1"));
+    }
+
+    @Test
+    public void keySetWithoutSigningKeysKeepsTheLastGoodKeys() throws Exception {
+        Files.write(jwks.toPath(), "{\"keys\": [{\"kty\": \"EC\", \"kid\": \"e1\"}]}".getBytes("UTF-8"));
+        assertFalse(keyStore.refresh());
+        assertEquals(first.getPublic(), keyStore.getKey("k1"));
+    }
+}
@@ -0,0 +1,227 @@
+package com.bank.app.auth;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.okta.jwt.JoseException;
+import com.okta.jwt.Jwt;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.util.Duration;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tokens signed in the test and verified against the keys of a local JWKS file.
+ */
+public class LocalJwtVerifierTest {
+
+    static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+    static final String ISSUER = "https://issuer.example.com/oauth2/default";
+    static final String AUDIENCE = "api://default";
+    private static final long SKEW_SECONDS = 30;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private KeyPair signingKey;
+    private KeyPair otherKey;
+    private LocalJwtVerifier verifier;
+
+    static KeyPair generateKey() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        return generator.generateKeyPair();
+    }
+
+    // a JWKS document holding the public keys under their kid
+    static void writeJwks(File file, Map<String, KeyPair> keys) throws Exception {
+        List<Map<String, String>> jwks = new ArrayList<>();
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        for (Map.Entry<String, KeyPair> key : keys.entrySet()) {
+            RSAPublicKey publicKey = (RSAPublicKey) key.getValue().getPublic();
+            jwks.add(ImmutableMap.of(
+                    "kty", "RSA",
+                    "use", "sig",
+                    "kid", key.getKey(),
+                    "n", encoder.encodeToString(unsigned(publicKey.getModulus())),
+                    "e", encoder.encodeToString(unsigned(publicKey.getPublicExponent()))));
+        }
+        Files.write(file.toPath(), MAPPER.writeValueAsBytes(ImmutableMap.of("keys", jwks)));
+    }
+
+    private static byte[] unsigned(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        return bytes[0] == 0 ? Arrays.copyOfRange(bytes, 1, bytes.length) : bytes;
+    }
+
+    static String token(Map<String, Object> header, Map<String, Object> claims, PrivateKey key, String algorithm) throws Exception {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String signed = encoder.encodeToString(MAPPER.writeValueAsBytes(header)) + "."
+                + encoder.encodeToString(MAPPER.writeValueAsBytes(claims));
+        Signature signature = Signature.getInstance(algorithm);
+        signature.initSign(key);
+        signature.update(signed.getBytes(StandardCharsets.US_ASCII));
+        return signed + "." + encoder.encodeToString(signature.sign());
+    }
+
+    private static Map<String, Object> claims() {
+        long now = Instant.now().getEpochSecond();
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("iss", ISSUER);
+        claims.put("aud", AUDIENCE);
+        claims.put("sub", "employee@example.com");
+        claims.put("iat", now);
+        claims.put("exp", now + 3600);
+        return claims;
+    }
+
+    private String token(Map<String, Object> claims) throws Exception {
+        return token(ImmutableMap.of("alg", "RS256", "kid", "k1"), claims, signingKey.getPrivate(), "SHA256withRSA");
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        signingKey = generateKey();
+        otherKey = generateKey();
+        File jwks = folder.newFile("jwks.json");
+        writeJwks(jwks, ImmutableMap.of("k1", signingKey));
+        JwksKeyStore keyStore = new JwksKeyStore(jwks.toURI().toURL(), MAPPER, null,
+                Duration.minutes(5), Duration.minutes(1), Duration.seconds(1));
+        keyStore.refresh();
+        verifier = new LocalJwtVerifier(keyStore, MAPPER, ISSUER, AUDIENCE, "tests", Duration.seconds(SKEW_SECONDS));
+    }
+
+    private void assertRejected(String token) {
+        try {
+            verifier.decodeAccessToken(token);
+            fail("The token was accepted");
+        } catch (JoseException expected) {
+            // refused
+        }
+    }
+
+    @Test
+    public void validTokenIsAccepted() throws Exception {
+        Jwt jwt = verifier.decodeAccessToken(token(claims()));
+        assertEquals("employee@example.com", jwt.getClaims().get("sub"));
+        assertEquals(ISSUER, jwt.getClaims().get("iss"));
+        assertNotNull(jwt.getExpiresAt());
+    }
+
+    @Test
+    public void everyRsaAlgorithmIsAccepted() throws Exception {
+        verifier.decodeAccessToken(token(ImmutableMap.of("alg", "RS384", "kid", "k1"), claims(), signingKey.getPrivate(), "SHA384withRSA"));
+        verifier.decodeAccessToken(token(ImmutableMap.of("alg", "RS512", "kid", "k1"), claims(), signingKey.getPrivate(), "SHA512withRSA"));
+    }
+
+    @Test
+    public void tokenSignedWithAnotherKeyIsRejected() throws Exception {
+        assertRejected(token(ImmutableMap.of("alg", "RS256", "kid", "k1"), claims(), otherKey.getPrivate(), "SHA256withRSA"));
+    }
+
+    @Test
+    public void tamperedClaimsAreRejected() throws Exception {
+        String[] parts = token(claims()).split("\\.");
+        Map<String, Object> claims = claims();
+        claims.put("sub", "admin@example.com");
+        String payload = Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(claims));
+        assertRejected(parts[0] + "." + payload + "." + parts[2]);
+    }
+
+    @Test
+    public void wrongIssuerIsRejected() throws Exception {
+        Map<String, Object> claims = claims();
+        claims.put("iss", "https://other.example.com/oauth2/default");
+        assertRejected(token(claims));
+    }
+
+    @Test
+    public void wrongAudienceIsRejected() throws Exception {
+        Map<String, Object> claims = claims();
+        claims.put("aud", "api://other");
+        assertRejected(token(claims));
+    }
+
+    @Test
+    public void audienceListContainingTheAudienceIsAccepted() throws Exception {
+        Map<String, Object> claims = claims();
+        claims.put("aud", new String[]{"api://other", AUDIENCE});
+        verifier.decodeAccessToken(token(claims));
+    }
+
+    @Test
+    public void expiryIsCheckedWithTheClockSkew() throws Exception {
+        long now = Instant.now().getEpochSecond();
+        Map<String, Object> claims = claims();
+        // expired, but within the skew
+        claims.put("exp", now - SKEW_SECONDS + 2);
+        verifier.decodeAccessToken(token(claims));
+        claims.put("exp", now - SKEW_SECONDS - 2);
+        assertRejected(token(claims));
+        claims.remove("exp");
+        assertRejected(token(claims));
+    }
+
+    @Test
+    public void notBeforeIsCheckedWithTheClockSkew() throws Exception {
+        long now = Instant.now().getEpochSecond();
+        Map<String, Object> claims = claims();
+        // not valid yet, but within the skew
+        claims.put("nbf", now + SKEW_SECONDS - 2);
+        verifier.decodeAccessToken(token(claims));
+        claims.put("nbf", now + SKEW_SECONDS + 2);
+        assertRejected(token(claims));
+    }
+
+    @Test
+    public void unsignedTokenIsRejected() throws Exception {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String unsigned = encoder.encodeToString(MAPPER.writeValueAsBytes(ImmutableMap.of("alg", "none", "kid", "k1"))) + "."
+                + encoder.encodeToString(MAPPER.writeValueAsBytes(claims())) + ".";
+        assertRejected(unsigned);
+    }
+
+    @Test
+    public void hmacTokenIsRejected() throws Exception {
+        // signed with the public key as the HMAC secret, the classic key confusion
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String signed = encoder.encodeToString(MAPPER.writeValueAsBytes(ImmutableMap.of("alg", "HS256", "kid", "k1"))) + "."
+                + encoder.encodeToString(MAPPER.writeValueAsBytes(claims()));
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(signingKey.getPublic().getEncoded(), "HmacSHA256"));
+        assertRejected(signed + "." + encoder.encodeToString(mac.doFinal(signed.getBytes(StandardCharsets.US_ASCII))));
+    }
+
+    @Test
+    public void malformedTokensAreRejected() {
+        assertRejected(null);
+        assertRejected("");
+        assertRejected("abc.def");
+        assertRejected("%%%.%%%.%%%");
+    }
+}
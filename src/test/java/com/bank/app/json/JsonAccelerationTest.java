@@ -0,0 +1,150 @@
+package com.bank.app.json;
+
+import com.bank.app.BankingApplication;
+import com.bank.app.config.BankingAppConfig;
+import com.bank.app.model.Account;
+import com.bank.app.model.AccountDailyRollup;
+import com.bank.app.model.Transaction;
+import com.google.common.io.Files;
+import io.dropwizard.testing.ConfigOverride;
+import io.dropwizard.testing.ResourceHelpers;
+import io.dropwizard.testing.junit.DropwizardAppRule;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import javax.ws.rs.core.Response;
+import java.io.File;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The same data served by two instances of the application, one with json.accelerated: the
+ * responses of the accelerated one go through the cached writers and are the same bytes.
+ */
+public class JsonAccelerationTest {
+
+    private static final File AUDIT = Files.createTempDir();
+
+    @ClassRule
+    public static final DropwizardAppRule<BankingAppConfig> DEFAULT = new DropwizardAppRule<>(BankingApplication.class,
+            ResourceHelpers.resourceFilePath("test-config.yml"),
+            ConfigOverride.config("audit.currentLogFilename", new File(AUDIT, "default.log").getAbsolutePath()),
+            ConfigOverride.config("database.url", "jdbc:h2:mem:json-default;MODE=MySQL;DB_CLOSE_DELAY=-1"));
+
+    @ClassRule
+    public static final DropwizardAppRule<BankingAppConfig> ACCELERATED = new DropwizardAppRule<>(BankingApplication.class,
+            ResourceHelpers.resourceFilePath("test-config.yml"),
+            ConfigOverride.config("audit.currentLogFilename", new File(AUDIT, "accelerated.log").getAbsolutePath()),
+            ConfigOverride.config("database.url", "jdbc:h2:mem:json-accelerated;MODE=MySQL;DB_CLOSE_DELAY=-1"),
+            ConfigOverride.config("json.accelerated", "true"));
+
+    private static final String ACCOUNT = "SA0000000000000000000000001";
+
+    @BeforeClass
+    public static void seed() {
+        seed(DEFAULT.<BankingApplication>getApplication().getSessionFactory());
+        seed(ACCELERATED.<BankingApplication>getApplication().getSessionFactory());
+    }
+
+    private static void seed(SessionFactory sessionFactory) {
+        StatelessSession session = sessionFactory.openStatelessSession();
+        try {
+            org.hibernate.Transaction transaction = session.beginTransaction();
+            Account account = new Account();
+            account.setId(ACCOUNT);
+            account.setAccountType(Account.AccountType.Savings);
+            account.setCreatedOn(Date.from(Instant.parse("2024-03-01T09:30:00Z")));
+            account.setBalance(12_345);
+            session.insert(account);
+            // in the morning and in the afternoon, the pattern of postedOn has a 12 hour clock
+            insert(session, account, "CR01", Transaction.TransactionType.CREDIT, 10_000, 0, "2024-03-04T01:05:07Z");
+            insert(session, account, "CR02", Transaction.TransactionType.CREDIT, 2_500, 10_000, "2024-03-05T13:05:07.250Z");
+            insert(session, account, "DB03", Transaction.TransactionType.DEBIT, 155, 12_500, "2024-03-07T23:59:59.999Z");
+            session.insert(new AccountDailyRollup(ACCOUNT, LocalDate.parse("2024-03-05"), 10_000, 2_500, 0, 1, 12_500));
+            session.insert(new AccountDailyRollup(ACCOUNT, LocalDate.parse("2024-03-06"), 12_500, 0, 0, 0, 12_500));
+            transaction.commit();
+        } finally {
+            session.close();
+        }
+    }
+
+    private static void insert(StatelessSession session,
+                               Account account,
+                               String id,
+                               Transaction.TransactionType type,
+                               long ammount,
+                               long balanceBefore,
+                               String postedOn) {
+        Transaction posting = new Transaction();
+        posting.setId(id + ACCOUNT.substring(2));
+        posting.setAccount(account);
+        posting.setTransactionType(type);
+        posting.setAmmount(ammount);
+        posting.setBalanceBefore(balanceBefore);
+        posting.setBalanceAfter(type == Transaction.TransactionType.CREDIT ? balanceBefore + ammount : balanceBefore - ammount);
+        posting.setPostedOn(Date.from(Instant.parse(postedOn)));
+        session.insert(posting);
+    }
+
+    private static String get(DropwizardAppRule<BankingAppConfig> app, String path) {
+        Response response = app.client()
+                .target("http://localhost:" + app.getLocalPort() + "/api" + path)
+                .request()
+                .get();
+        assertEquals(path, 200, response.getStatus());
+        return response.readEntity(String.class);
+    }
+
+    private static CachedWriterJsonProvider provider(DropwizardAppRule<BankingAppConfig> app) {
+        for (Object singleton : app.getEnvironment().jersey().getResourceConfig().getSingletons()) {
+            if (singleton instanceof CachedWriterJsonProvider)
+                return (CachedWriterJsonProvider) singleton;
+        }
+        return null;
+    }
+
+    private static void assertSameResponses(String path) {
+        String expected = get(DEFAULT, path);
+        assertEquals(path, expected, get(ACCELERATED, path));
+    }
+
+    @Test
+    public void acceleratedResponsesAreWrittenByTheCachedWriters() {
+        assertNull(provider(DEFAULT));
+        CachedWriterJsonProvider provider = provider(ACCELERATED);
+        get(ACCELERATED, "/transactions");
+        assertTrue(provider.getWriterCount() > 0);
+    }
+
+    @Test
+    public void transactionsAreTheSameBytes() {
+        assertSameResponses("/transactions");
+        assertSameResponses("/accounts/" + ACCOUNT + "/transactions");
+        // the afternoon posting on the 12 hour clock, as it always was
+        assertTrue(get(ACCELERATED, "/transactions").contains("\"postedOn\":\"05-03-2024 01:05:07\""));
+    }
+
+    @Test
+    public void statementsAreTheSameBytes() {
+        // partial days at both ends, read from the transactions, and whole days from the rollups
+        assertSameResponses("/accounts/" + ACCOUNT + "/statement?from=2024-03-04T00:30:00Z&to=2024-03-07T23:00:00Z");
+        assertTrue(get(ACCELERATED, "/accounts/" + ACCOUNT + "/statement?from=2024-03-04T00:30:00Z&to=2024-03-07T23:00:00Z")
+                .contains("\"from\":\"04-03-2024 00:30:00\""));
+    }
+
+    @Test
+    public void accountsAreTheSameBytes() {
+        assertSameResponses("/accounts");
+        assertSameResponses("/accounts?includeTransactions=true");
+        assertSameResponses("/accounts/" + ACCOUNT);
+        assertSameResponses("/accounts/" + ACCOUNT + "?includeTransactions=true");
+    }
+}
@@ -0,0 +1,184 @@
+package com.bank.app.ledger;
+
+import com.bank.app.model.Transaction;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Appends and crash recovery of the journal, in a temporary directory with segments of four records.
+ */
+public class JournalTest {
+
+    private static final int RECORDS_PER_SEGMENT = 4;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    static JournalRecord record(String accountId, long balanceBefore, long balanceAfter) {
+        return new JournalRecord(0, "CR" + accountId + balanceAfter, accountId, Transaction.TransactionType.CREDIT,
+                balanceAfter - balanceBefore, balanceBefore, balanceAfter, 1_500_000_000_000L + balanceAfter);
+    }
+
+    static List<JournalRecord> records(int count, long firstBalance) {
+        List<JournalRecord> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(record("SA" + i, firstBalance + i, firstBalance + i + 1));
+        }
+        return records;
+    }
+
+    private static Path segment(Path directory, long firstSequence) {
+        return directory.resolve(String.format("journal-%020d.seg", firstSequence));
+    }
+
+    private Journal open(Path directory) throws IOException {
+        return Journal.open(directory, RECORDS_PER_SEGMENT, Journal.FsyncPolicy.GROUP);
+    }
+
+    @Test
+    public void recordsAreReadBackAcrossSegmentsAndReopens() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (Journal journal = open(directory)) {
+            assertEquals(3, journal.append(records(3, 0)));
+            // fills the first segment and goes on in the second
+            assertEquals(6, journal.append(records(3, 100)));
+            journal.awaitDurable(6);
+            assertEquals(6, journal.getDurableSequence());
+        }
+        assertTrue(Files.exists(segment(directory, 5)));
+        try (Journal journal = open(directory)) {
+            assertEquals(6, journal.getLastSequence());
+            List<JournalRecord> read = journal.read(1, 10);
+            assertEquals(6, read.size());
+            for (int i = 0; i < read.size(); i++) {
+                assertEquals(i + 1, read.get(i).getSequence());
+            }
+            assertEquals(101, read.get(3).getBalanceAfter());
+            assertEquals(7, journal.append(records(1, 200)));
+        }
+    }
+
+    @Test
+    public void tornRecordEndsTheJournal() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (Journal journal = open(directory)) {
+            journal.append(records(6, 0));
+        }
+        // a crash while writing the third record: its bytes are half there
+        try (FileChannel channel = FileChannel.open(segment(directory, 1), StandardOpenOption.WRITE)) {
+            byte[] garbage = new byte[JournalRecord.SIZE / 2];
+            Arrays.fill(garbage, (byte) 0x5A);
+            channel.write(ByteBuffer.wrap(garbage), 2L * JournalRecord.SIZE);
+        }
+
+        try (Journal journal = open(directory)) {
+            assertEquals(2, journal.getLastSequence());
+            assertEquals(2, journal.read(1, 10).size());
+            // the records after the torn one are gone, with their segment
+            assertFalse(Files.exists(segment(directory, 5)));
+            assertEquals(3, journal.append(records(1, 300)));
+            assertEquals(301, journal.read(3, 1).get(0).getBalanceAfter());
+        }
+        try (Journal journal = open(directory)) {
+            assertEquals(3, journal.getLastSequence());
+        }
+    }
+
+    @Test
+    public void recordWithABadSequenceEndsTheJournal() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (Journal journal = open(directory)) {
+            journal.append(records(3, 0));
+        }
+        // a stale record left in the slot after the end, with a valid checksum
+        JournalRecord stale = record("SA9", 0, 1);
+        stale.setSequence(42);
+        byte[] bytes = new byte[JournalRecord.SIZE];
+        stale.encode(bytes);
+        try (FileChannel channel = FileChannel.open(segment(directory, 1), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), 3L * JournalRecord.SIZE);
+        }
+        try (Journal journal = open(directory)) {
+            assertEquals(3, journal.getLastSequence());
+        }
+    }
+
+    @Test
+    public void failedSegmentCreationAppendsNothing() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        Path blocker = segment(directory, 5);
+        try (Journal journal = open(directory)) {
+            journal.append(records(3, 0));
+            // the segment the next append needs cannot be created
+            Files.createFile(blocker);
+            try {
+                journal.append(records(3, 100));
+                fail("The append needs a new segment");
+            } catch (IOException expected) {
+                // the first record would have fit in the current segment, it is not appended either
+            }
+            assertEquals(3, journal.getLastSequence());
+            assertEquals(3, journal.read(1, 10).size());
+
+            Files.delete(blocker);
+            assertEquals(6, journal.append(records(3, 100)));
+        }
+        try (Journal journal = open(directory)) {
+            assertEquals(6, journal.getLastSequence());
+            assertEquals(101, journal.read(4, 1).get(0).getBalanceAfter());
+        }
+    }
+
+    @Test
+    public void recordWhichCannotBeEncodedAppendsNothing() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (Journal journal = open(directory)) {
+            journal.append(records(1, 0));
+            List<JournalRecord> records = records(2, 100);
+            char[] id = new char[JournalRecord.MAX_ID_LENGTH + 1];
+            Arrays.fill(id, 'X');
+            records.add(record(new String(id), 0, 1));
+            try {
+                journal.append(records);
+                fail("The account id is too long");
+            } catch (IllegalArgumentException expected) {
+                // nothing written
+            }
+            assertEquals(1, journal.getLastSequence());
+            assertEquals(2, journal.append(records(1, 200)));
+        }
+        try (Journal journal = open(directory)) {
+            assertEquals(2, journal.getLastSequence());
+            assertEquals(201, journal.read(2, 1).get(0).getBalanceAfter());
+        }
+    }
+
+    @Test
+    public void segmentsBeforeASequenceAreDeleted() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (Journal journal = open(directory)) {
+            journal.append(records(10, 0));
+            journal.deleteBefore(6);
+            assertFalse(Files.exists(segment(directory, 1)));
+            // holds the record 6
+            assertTrue(Files.exists(segment(directory, 5)));
+            assertEquals(5, journal.read(6, 10).size());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.bank.app.ledger;
+
+import com.bank.app.config.BankingAppConfig;
+import com.google.common.collect.ImmutableMap;
+import io.dropwizard.jackson.Jackson;
+import net.sourceforge.argparse4j.inf.Namespace;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.bank.app.ledger.JournalTest.record;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Rebuilding the balances from a snapshot and the journal after it, directly and through the
+ * ledger-replay command, in a temporary directory.
+ */
+public class LedgerReplayTest {
+
+    private static final int RECORDS_PER_SEGMENT = 4;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    // SA1 goes 0 -> 10 -> 20 -> 30, SA2 0 -> 5 -> 15
+    private void writeJournal(Path directory) throws IOException {
+        try (Journal journal = Journal.open(directory, RECORDS_PER_SEGMENT, Journal.FsyncPolicy.GROUP)) {
+            List<JournalRecord> records = new ArrayList<>();
+            records.add(record("SA1", 0, 10));
+            records.add(record("SA2", 0, 5));
+            records.add(record("SA1", 10, 20));
+            journal.append(records);
+            records.clear();
+            records.add(record("SA2", 5, 15));
+            records.add(record("SA1", 20, 30));
+            journal.append(records);
+        }
+    }
+
+    private Journal open(Path directory) throws IOException {
+        return Journal.open(directory, RECORDS_PER_SEGMENT, Journal.FsyncPolicy.GROUP);
+    }
+
+    @Test
+    public void wholeJournalIsReplayedWithoutASnapshot() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        writeJournal(directory);
+        Map<String, Long> balances = new HashMap<>();
+        List<Long> replayed = new ArrayList<>();
+        try (Journal journal = open(directory)) {
+            assertEquals(5, Ledger.replay(journal, null, balances, record -> replayed.add(record.getSequence())));
+        }
+        assertEquals(ImmutableMap.of("SA1", 30L, "SA2", 15L), balances);
+        assertEquals(5, replayed.size());
+    }
+
+    @Test
+    public void recordsAfterTheSnapshotAreReplayedOverIt() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        writeJournal(directory);
+        SnapshotStore snapshots = new SnapshotStore(directory);
+        // the balances after the third record, plus an account the journal has no record for any more
+        snapshots.write(3, ImmutableMap.of("SA1", 20L, "SA2", 5L, "SA3", 7L));
+
+        Map<String, Long> balances = new HashMap<>();
+        List<Long> replayed = new ArrayList<>();
+        try (Journal journal = open(directory)) {
+            // the segments the snapshot covers can go
+            journal.deleteBefore(4);
+            assertEquals(5, Ledger.replay(journal, snapshots, balances, record -> replayed.add(record.getSequence())));
+        }
+        assertEquals(ImmutableMap.of("SA1", 30L, "SA2", 15L, "SA3", 7L), balances);
+        assertEquals(2, replayed.size());
+        assertEquals(4L, (long) replayed.get(0));
+    }
+
+    @Test
+    public void journalEndingBeforeTheSnapshotIsRefused() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        writeJournal(directory);
+        new SnapshotStore(directory).write(9, ImmutableMap.of("SA1", 90L));
+        try (Journal journal = open(directory)) {
+            Ledger.replay(journal, new SnapshotStore(directory), new HashMap<>(), null);
+            fail("The journal lost the records the snapshot covers");
+        } catch (IllegalStateException expected) {
+            // new records would reuse the sequences of the snapshot
+        }
+    }
+
+    @Test
+    public void replayCommandPrintsTheBalancesAndWritesASnapshot() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        writeJournal(directory);
+        new SnapshotStore(directory).write(3, ImmutableMap.of("SA1", 20L, "SA2", 5L));
+
+        String output = replayCommand(directory, false);
+        assertTrue(output, output.contains("Replayed 2 journal records, 2 accounts at sequence 5"));
+        assertTrue(output, output.contains("SA1 30"));
+        assertTrue(output, output.contains("SA2 15"));
+        assertEquals(5, new SnapshotStore(directory).latest().get().getSequence());
+
+        output = replayCommand(directory, true);
+        assertTrue(output, output.contains("Replayed 5 journal records, 2 accounts at sequence 5"));
+    }
+
+    private static String replayCommand(Path directory, boolean full) throws Exception {
+        BankingAppConfig configuration = Jackson.newObjectMapper().readValue(
+                "{\"ledger\": {\"directory\": \"" + directory.toAbsolutePath().toString().replace("\\", "\\\\")
+                        + "\", \"segmentRecords\": " + RECORDS_PER_SEGMENT + "}}",
+                BankingAppConfig.class);
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("full", full);
+        arguments.put("print", true);
+        arguments.put("snapshot", !full);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(output, true, StandardCharsets.UTF_8.name()));
+        try {
+            new LedgerReplayCommand().run(null, new Namespace(arguments), configuration);
+        } finally {
+            System.setOut(out);
+        }
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,183 @@
+package com.bank.app.okta;
+
+import com.bank.app.BankingApplication;
+import com.bank.app.config.BankingAppConfig;
+import com.bank.app.config.ProvisioningConfig;
+import com.bank.app.db.OktaIdentityDAO;
+import com.bank.app.db.OktaSyncCheckpointDAO;
+import com.bank.app.db.ProvisioningTaskDAO;
+import com.bank.app.model.OktaIdentity;
+import com.bank.app.model.ProvisioningTask;
+import com.google.common.io.Files;
+import io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory;
+import io.dropwizard.testing.ConfigOverride;
+import io.dropwizard.testing.ResourceHelpers;
+import io.dropwizard.testing.junit.DropwizardAppRule;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.context.internal.ManagedSessionContext;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Identity synchronisation and provisioning against a local stub of the Okta users API; the runs
+ * are made by the test rather than scheduled.
+ */
+public class OktaIdentitySyncTest {
+
+    @ClassRule
+    public static final DropwizardAppRule<BankingAppConfig> APP = new DropwizardAppRule<>(BankingApplication.class,
+            ResourceHelpers.resourceFilePath("test-config.yml"),
+            ConfigOverride.config("audit.currentLogFilename", new File(Files.createTempDir(), "audit.log").getAbsolutePath()),
+            ConfigOverride.config("database.url", "jdbc:h2:mem:okta;MODE=MySQL;DB_CLOSE_DELAY=-1"));
+
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final StubUserDirectory directory = new StubUserDirectory();
+    private SessionFactory sessionFactory;
+    private OktaIdentityDAO identityDAO;
+    private OktaSyncCheckpointDAO checkpointDAO;
+    private ProvisioningTaskDAO taskDAO;
+    private OktaIdentitySync sync;
+    private OktaProvisioningWorker worker;
+
+    @Before
+    public void setUp() {
+        sessionFactory = APP.<BankingApplication>getApplication().getSessionFactory();
+        identityDAO = new OktaIdentityDAO(sessionFactory);
+        checkpointDAO = new OktaSyncCheckpointDAO(sessionFactory);
+        taskDAO = new ProvisioningTaskDAO(sessionFactory);
+        ProvisioningConfig config = new ProvisioningConfig();
+        UnitOfWorkAwareProxyFactory proxyFactory = new UnitOfWorkAwareProxyFactory("hibernate", sessionFactory);
+        sync = proxyFactory.create(OktaIdentitySync.class,
+                new Class<?>[]{OktaIdentityDAO.class, OktaSyncCheckpointDAO.class, OktaUserDirectory.class,
+                        ProvisioningConfig.class, ScheduledExecutorService.class},
+                new Object[]{identityDAO, checkpointDAO, directory, config, null});
+        worker = proxyFactory.create(OktaProvisioningWorker.class,
+                new Class<?>[]{ProvisioningTaskDAO.class, OktaIdentityDAO.class, OktaUserDirectory.class,
+                        ProvisioningConfig.class, ScheduledExecutorService.class},
+                new Object[]{taskDAO, identityDAO, directory, config, null});
+        inTransaction(() -> {
+            Session session = sessionFactory.getCurrentSession();
+            session.createQuery("delete from OktaIdentity").executeUpdate();
+            session.createQuery("delete from OktaSyncCheckpoint").executeUpdate();
+            return session.createQuery("delete from ProvisioningTask").executeUpdate();
+        });
+    }
+
+    private <T> T inTransaction(Supplier<T> work) {
+        Session session = sessionFactory.openSession();
+        ManagedSessionContext.bind(session);
+        try {
+            org.hibernate.Transaction transaction = session.beginTransaction();
+            T result = work.get();
+            transaction.commit();
+            return result;
+        } finally {
+            ManagedSessionContext.unbind(sessionFactory);
+            session.close();
+        }
+    }
+
+    private OktaIdentity identity(String email) {
+        return inTransaction(() -> identityDAO.findByEmail(email).orNull());
+    }
+
+    private void queue(ProvisioningTask.Operation operation, String email) {
+        inTransaction(() -> {
+            taskDAO.add(ProvisioningTask.builder()
+                    .operation(operation)
+                    .email(email)
+                    .firstName("Jane")
+                    .lastName("Doe")
+                    .build());
+            return null;
+        });
+    }
+
+    private static Date hoursAgo(int hours) {
+        return new Date(System.currentTimeMillis() - hours * HOUR_MILLIS);
+    }
+
+    @Test
+    public void firstRunListsTheWholeDirectoryAndTheNextOnesTheChanges() {
+        directory.add("jane.doe@bank.com", hoursAgo(5));
+        // mapped by the worker before any synchronisation
+        queue(ProvisioningTask.Operation.CREATE_USER, "john.doe@bank.com");
+        worker.drain();
+        assertNotNull(identity("john.doe@bank.com").getOktaLastUpdated());
+
+        sync.sync();
+        sync.sync();
+        List<Date> listings = directory.getListings();
+        assertEquals(2, listings.size());
+        assertEquals(0, listings.get(0).getTime());
+        // from the start of the first run, less the overlap
+        assertTrue(listings.get(1).getTime() > hoursAgo(1).getTime());
+        assertNotNull(identity("jane.doe@bank.com"));
+    }
+
+    @Test
+    public void mappingsOfUsersDeletedInOktaAreRemovedByTheFullSync() {
+        DirectoryUser deleted = directory.add("jane.doe@bank.com", hoursAgo(5));
+        DirectoryUser kept = directory.add("john.doe@bank.com", hoursAgo(5));
+        sync.sync();
+        directory.remove(deleted.getId());
+        inTransaction(() -> {
+            // written before the last update times were recorded
+            identityDAO.save("legacy@bank.com", "00u-legacy", null);
+            // the user of a mapping recorded while the directory is listed is not in the listing
+            identityDAO.save("created@bank.com", "00u-created", new Date());
+            return null;
+        });
+
+        // a deleted user is not a change
+        sync.sync();
+        assertNotNull(identity("jane.doe@bank.com"));
+
+        inTransaction(() -> {
+            checkpointDAO.save(new Date(), hoursAgo(25));
+            return null;
+        });
+        sync.sync();
+        assertEquals(0, directory.getListings().get(2).getTime());
+        assertNull(identity("jane.doe@bank.com"));
+        assertNull(identity("legacy@bank.com"));
+        assertEquals(kept.getId(), identity("john.doe@bank.com").getOktaUserId());
+        assertNotNull(identity("created@bank.com"));
+
+        // and the next full sync is a day later
+        sync.sync();
+        assertTrue(directory.getListings().get(3).getTime() > 0);
+    }
+
+    @Test
+    public void userWhoseMappingIsStaleIsDeletedByEmail() {
+        DirectoryUser user = directory.add("jane.doe@bank.com", hoursAgo(5));
+        inTransaction(() -> {
+            // deleted in okta and created again, the mapping still has the first id
+            identityDAO.save("jane.doe@bank.com", "00u-stale", hoursAgo(6));
+            return null;
+        });
+        queue(ProvisioningTask.Operation.DELETE_USER, "jane.doe@bank.com");
+        worker.drain();
+
+        assertFalse(directory.contains(user.getId()));
+        assertNull(identity("jane.doe@bank.com"));
+        assertTrue(inTransaction(() -> taskDAO.claimDue(new Date(), new Date(), 10)).isEmpty());
+    }
+}
@@ -0,0 +1,68 @@
+package com.bank.app.okta;
+
+import com.bank.app.model.ProvisioningTask;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Local stub of the Okta users API, holding the users in memory and recording the listings asked
+ * for. Users can be added and removed behind the back of the application, as in the Okta console.
+ */
+class StubUserDirectory implements OktaUserDirectory {
+
+    private final Map<String, DirectoryUser> users = new LinkedHashMap<>();
+    private final List<Date> listings = new ArrayList<>();
+    private int nextId = 1;
+
+    synchronized DirectoryUser add(String email, Date lastUpdated) {
+        DirectoryUser user = new DirectoryUser(String.format("00u%05d", nextId++), email, lastUpdated);
+        users.put(user.getId(), user);
+        return user;
+    }
+
+    synchronized void remove(String userId) {
+        users.remove(userId);
+    }
+
+    synchronized boolean contains(String userId) {
+        return users.containsKey(userId);
+    }
+
+    // the lower bound of every listing, oldest first
+    synchronized List<Date> getListings() {
+        return new ArrayList<>(listings);
+    }
+
+    @Override
+    public DirectoryUser createUser(ProvisioningTask task) {
+        return add(task.getEmail(), new Date());
+    }
+
+    @Override
+    public synchronized Optional<DirectoryUser> findByEmail(String email) {
+        return users.values().stream()
+                .filter(user -> user.getEmail().equalsIgnoreCase(email))
+                .findFirst();
+    }
+
+    @Override
+    public synchronized boolean deleteUser(String userId) {
+        return users.remove(userId) != null;
+    }
+
+    @Override
+    public synchronized List<DirectoryUser> listUpdatedSince(Date since) {
+        listings.add(since);
+        List<DirectoryUser> updated = new ArrayList<>();
+        for (DirectoryUser user : users.values()) {
+            if (user.getLastUpdated().after(since))
+                updated.add(user);
+        }
+        return updated;
+    }
+}
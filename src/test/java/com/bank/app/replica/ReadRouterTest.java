@@ -0,0 +1,113 @@
+package com.bank.app.replica;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import com.google.common.collect.ImmutableList;
+import io.dropwizard.util.Duration;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Routing of the reads between two replicas whose health checks answer as told; the health checks are
+ * run by the test rather than scheduled.
+ */
+public class ReadRouterTest {
+
+    private static final String REPLICA_1 = "replica-0";
+    private static final String REPLICA_2 = "replica-1";
+    private static final long STALENESS_BOUND_MILLIS = 5_000;
+
+    private final Map<String, HealthCheck.Result> health = new HashMap<>();
+    private ReadRouter router;
+
+    @Before
+    public void setUp() {
+        HealthCheckRegistry healthChecks = new HealthCheckRegistry();
+        for (String replica : new String[]{REPLICA_1, REPLICA_2}) {
+            health.put(replica, HealthCheck.Result.healthy());
+            healthChecks.register(replica, new HealthCheck() {
+                @Override
+                protected Result check() {
+                    return health.get(replica);
+                }
+            });
+        }
+        router = router(ImmutableList.of(REPLICA_1, REPLICA_2), healthChecks);
+    }
+
+    private static ReadRouter router(ImmutableList<String> replicas, HealthCheckRegistry healthChecks) {
+        return new ReadRouter(replicas, healthChecks, null, Duration.seconds(10),
+                Duration.milliseconds(STALENESS_BOUND_MILLIS));
+    }
+
+    private Set<String> routes(int reads) {
+        Set<String> routes = new HashSet<>();
+        for (int i = 0; i < reads; i++) {
+            routes.add(router.route(0));
+        }
+        return routes;
+    }
+
+    @Test
+    public void replicasTakeTurns() {
+        String first = router.route(0);
+        String second = router.route(0);
+        assertEquals(ImmutableList.of(REPLICA_1, REPLICA_2), ImmutableList.sortedCopyOf(ImmutableList.of(first, second)));
+        assertEquals(first, router.route(0));
+        assertEquals(second, router.route(0));
+    }
+
+    @Test
+    public void replicaMarkedDownIsSkipped() {
+        router.markDown(REPLICA_1, "Connection refused");
+        assertEquals(ImmutableList.of(REPLICA_2), ImmutableList.copyOf(routes(4)));
+    }
+
+    @Test
+    public void primaryServesTheReadsWhenNoReplicaIsUp() {
+        router.markDown(REPLICA_1, "Connection refused");
+        router.markDown(REPLICA_2, "Connection refused");
+        assertEquals(ImmutableList.of(ReadRouter.PRIMARY), ImmutableList.copyOf(routes(4)));
+    }
+
+    @Test
+    public void primaryServesTheReadsWithoutReplicas() {
+        router = router(ImmutableList.of(), new HealthCheckRegistry());
+        assertEquals(ReadRouter.PRIMARY, router.route(0));
+    }
+
+    @Test
+    public void replicaFailingItsHealthCheckIsSkippedUntilItPassesAgain() {
+        health.put(REPLICA_2, HealthCheck.Result.unhealthy("Replication stopped"));
+        router.checkHealth();
+        assertEquals(ImmutableList.of(REPLICA_1), ImmutableList.copyOf(routes(4)));
+
+        health.put(REPLICA_2, HealthCheck.Result.healthy());
+        router.checkHealth();
+        assertEquals(2, routes(4).size());
+    }
+
+    @Test
+    public void replicaMarkedDownComesBackWithItsHealthCheck() {
+        router.markDown(REPLICA_1, "Connection refused");
+        router.checkHealth();
+        assertEquals(2, routes(4).size());
+    }
+
+    @Test
+    public void readsOfAClientWhichJustWroteGoToThePrimary() {
+        long now = System.currentTimeMillis();
+        assertEquals(ReadRouter.PRIMARY, router.route(now));
+        assertEquals(ReadRouter.PRIMARY, router.route(now - STALENESS_BOUND_MILLIS + 1_000));
+        // the replicas have caught up with the write by now
+        assertNotEquals(ReadRouter.PRIMARY, router.route(now - STALENESS_BOUND_MILLIS - 1_000));
+    }
+}
@@ -0,0 +1,149 @@
+package com.bank.app.resource;
+
+import com.bank.app.BankingApplication;
+import com.bank.app.config.BankingAppConfig;
+import com.bank.app.model.Account;
+import com.bank.app.model.Customer;
+import com.bank.app.model.Transaction;
+import com.google.common.io.Files;
+import io.dropwizard.testing.ConfigOverride;
+import io.dropwizard.testing.ResourceHelpers;
+import io.dropwizard.testing.junit.DropwizardAppRule;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.stat.Statistics;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import javax.ws.rs.core.Response;
+import java.io.File;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The customer reads load the accounts and transactions of all the customers returned with a fixed
+ * number of statements, however many customers, accounts and transactions there are.
+ */
+public class CustomerResourceStatementsTest {
+
+    private static final File AUDIT = Files.createTempDir();
+
+    @ClassRule
+    public static final DropwizardAppRule<BankingAppConfig> APP = new DropwizardAppRule<>(BankingApplication.class,
+            ResourceHelpers.resourceFilePath("test-config.yml"),
+            ConfigOverride.config("audit.currentLogFilename", new File(AUDIT, "audit.log").getAbsolutePath()));
+
+    private static final int CUSTOMERS = 20;
+    private static final int TRANSACTIONS_PER_ACCOUNT = 3;
+
+    private static Statistics statistics;
+
+    @BeforeClass
+    public static void seed() {
+        SessionFactory sessionFactory = APP.<BankingApplication>getApplication().getSessionFactory();
+        statistics = sessionFactory.getStatistics();
+        StatelessSession session = sessionFactory.openStatelessSession();
+        try {
+            org.hibernate.Transaction transaction = session.beginTransaction();
+            Date now = new Date();
+            for (int c = 0; c < CUSTOMERS; c++) {
+                Customer customer = new Customer();
+                customer.setId(customerId(c));
+                customer.setFirstName("First" + c);
+                customer.setLastName("Last" + c);
+                customer.setEmail("customer" + c + "@example.com");
+                customer.setEmailNormalized(Customer.normalizeEmail(customer.getEmail()));
+                customer.setDob(now);
+                customer.setSsn(String.format("%09d", c));
+                session.insert(customer);
+                // customer c has 1 + c % 5 accounts
+                for (int a = 0; a <= c % 5; a++) {
+                    Account account = new Account();
+                    account.setId(String.format("SA%s%02d", customer.getId().substring(2), a));
+                    account.setAccountType(Account.AccountType.Savings);
+                    account.setCreatedOn(now);
+                    account.setCustomer(customer);
+                    account.setBalance(TRANSACTIONS_PER_ACCOUNT * 100);
+                    session.insert(account);
+                    for (int t = 0; t < TRANSACTIONS_PER_ACCOUNT; t++) {
+                        Transaction posting = new Transaction();
+                        posting.setId(String.format("CR%s%02d", account.getId().substring(2), t));
+                        posting.setAccount(account);
+                        posting.setTransactionType(Transaction.TransactionType.CREDIT);
+                        posting.setAmmount(100);
+                        posting.setBalanceBefore(t * 100);
+                        posting.setBalanceAfter((t + 1) * 100);
+                        posting.setPostedOn(new Date(now.getTime() - (TRANSACTIONS_PER_ACCOUNT - t) * 60_000L));
+                        session.insert(posting);
+                    }
+                }
+            }
+            transaction.commit();
+        } finally {
+            session.close();
+        }
+    }
+
+    private static String customerId(int c) {
+        return String.format("CU%023d", c);
+    }
+
+    @Test
+    public void customerListTakesTheSameStatementsForAnyNumberOfCustomers() {
+        long few = statements("/customers?limit=2");
+        assertEquals(few, statements("/customers?limit=" + CUSTOMERS));
+        // the page of customers and their accounts
+        assertTrue("statements: " + few, few <= 2);
+    }
+
+    @Test
+    public void customerListWithTransactionsTakesTheSameStatementsForAnyNumberOfCustomers() {
+        long few = statements("/customers?limit=2&includeTransactions=true");
+        assertEquals(few, statements("/customers?limit=" + CUSTOMERS + "&includeTransactions=true"));
+        // the page of customers, their accounts and the transactions of the accounts
+        assertTrue("statements: " + few, few <= 3);
+    }
+
+    @Test
+    public void allCustomersTakeTheSameStatementsAsAPage() {
+        long all = statements("/customers");
+        assertTrue("statements: " + all, all <= 2);
+        assertTrue("statements: " + all, statements("/customers?includeTransactions=true") <= 3);
+    }
+
+    @Test
+    public void customerDetailTakesTheSameStatementsForAnyNumberOfAccounts() {
+        // one account against five
+        long few = statements("/customers/" + customerId(0));
+        assertEquals(few, statements("/customers/" + customerId(4)));
+        // the customer and its accounts
+        assertTrue("statements: " + few, few <= 2);
+    }
+
+    @Test
+    public void customerDetailWithTransactionsTakesTheSameStatementsForAnyNumberOfAccounts() {
+        long few = statements("/customers/" + customerId(0) + "?includeTransactions=true");
+        assertEquals(few, statements("/customers/" + customerId(4) + "?includeTransactions=true"));
+        // the customer, its accounts and their transactions
+        assertTrue("statements: " + few, few <= 3);
+    }
+
+    // the background jobs may run statements during a request, the fewest of a few runs are the request's own
+    private static long statements(String path) {
+        long fewest = Long.MAX_VALUE;
+        for (int run = 0; run < 3; run++) {
+            long before = statistics.getPrepareStatementCount();
+            Response response = APP.client()
+                    .target("http://localhost:" + APP.getLocalPort() + "/api" + path)
+                    .request()
+                    .get();
+            assertEquals(path, 200, response.getStatus());
+            response.readEntity(String.class);
+            fewest = Math.min(fewest, statistics.getPrepareStatementCount() - before);
+        }
+        return fewest;
+    }
+}
@@ -0,0 +1,124 @@
+package com.bank.app.service;
+
+import com.bank.app.BankingApplication;
+import com.bank.app.config.BankingAppConfig;
+import com.bank.app.model.Account;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import io.dropwizard.testing.ConfigOverride;
+import io.dropwizard.testing.ResourceHelpers;
+import io.dropwizard.testing.junit.DropwizardAppRule;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import javax.ws.rs.client.Entity;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Transfers in both directions between the same two accounts at once, against an in-memory H2
+ * database of its own: every transfer is posted on the balances the previous one committed, and
+ * none of them deadlocks.
+ */
+public class ConcurrentTransferTest {
+
+    private static final File AUDIT = Files.createTempDir();
+
+    @ClassRule
+    public static final DropwizardAppRule<BankingAppConfig> APP = new DropwizardAppRule<>(BankingApplication.class,
+            ResourceHelpers.resourceFilePath("test-config.yml"),
+            ConfigOverride.config("audit.currentLogFilename", new File(AUDIT, "audit.log").getAbsolutePath()),
+            ConfigOverride.config("database.url", "jdbc:h2:mem:transfers;MODE=MySQL;DB_CLOSE_DELAY=-1"));
+
+    private static final String A = "SA0000000000000000000000000000A";
+    private static final String B = "SA0000000000000000000000000000B";
+    private static final long BALANCE = 1_000_000;
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 50;
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private static SessionFactory sessionFactory;
+
+    @BeforeClass
+    public static void seed() {
+        sessionFactory = APP.<BankingApplication>getApplication().getSessionFactory();
+        StatelessSession session = sessionFactory.openStatelessSession();
+        try {
+            org.hibernate.Transaction transaction = session.beginTransaction();
+            for (String id : new String[]{A, B}) {
+                Account account = new Account();
+                account.setId(id);
+                account.setAccountType(Account.AccountType.Savings);
+                account.setCreatedOn(new Date());
+                account.setBalance(BALANCE);
+                session.insert(account);
+            }
+            transaction.commit();
+        } finally {
+            session.close();
+        }
+    }
+
+    private static long balance(String accountId) {
+        Session session = sessionFactory.openSession();
+        try {
+            return session.get(Account.class, accountId).getBalance();
+        } finally {
+            session.close();
+        }
+    }
+
+    private static int transfer(String fromAccountId, String toAccountId, String ammount) {
+        return APP.client()
+                .target("http://localhost:" + APP.getLocalPort() + "/api/transactions")
+                .request()
+                .post(Entity.json(ImmutableMap.of(
+                        "fromAccountId", fromAccountId,
+                        "toAccountId", toAccountId,
+                        "ammount", ammount)))
+                .getStatus();
+    }
+
+    @Test
+    public void transfersInOppositeDirectionsKeepTheBalances() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Integer>> threads = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                // half of the threads send 1.00 from A to B, the other half 3.00 from B to A
+                boolean fromA = t % 2 == 0;
+                threads.add(executor.submit(() -> {
+                    int posted = 0;
+                    for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                        int status = fromA ? transfer(A, B, "1.00") : transfer(B, A, "3.00");
+                        assertEquals(204, status);
+                        posted++;
+                    }
+                    return posted;
+                }));
+            }
+            for (Future<Integer> thread : threads) {
+                // a deadlock would hold the transfers until the timeout
+                assertEquals(TRANSFERS_PER_THREAD, (int) thread.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long each = (long) (THREADS / 2) * TRANSFERS_PER_THREAD;
+        assertEquals(BALANCE - each * 100 + each * 300, balance(A));
+        assertEquals(BALANCE + each * 100 - each * 300, balance(B));
+    }
+}
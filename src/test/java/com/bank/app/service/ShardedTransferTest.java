@@ -0,0 +1,224 @@
+package com.bank.app.service;
+
+import com.bank.app.BankingApplication;
+import com.bank.app.config.BankingAppConfig;
+import com.bank.app.db.Shards;
+import com.bank.app.model.Account;
+import com.bank.app.model.PendingCredit;
+import com.bank.app.model.Transaction;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import io.dropwizard.testing.ConfigOverride;
+import io.dropwizard.testing.ResourceHelpers;
+import io.dropwizard.testing.junit.DropwizardAppRule;
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.Response;
+import java.io.File;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Transfers between accounts on different shards, each shard being an in-memory H2 database of its
+ * own: the credit relay posts the credits, and gives up on the credits which cannot be posted.
+ */
+public class ShardedTransferTest {
+
+    private static final File AUDIT = Files.createTempDir();
+
+    @ClassRule
+    public static final DropwizardAppRule<BankingAppConfig> APP = new DropwizardAppRule<>(BankingApplication.class,
+            ResourceHelpers.resourceFilePath("sharded-test-config.yml"),
+            ConfigOverride.config("audit.currentLogFilename", new File(AUDIT, "audit.log").getAbsolutePath()));
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    private static final String DEBITED = accountId(1, 1);
+    private static final String CREDITED = accountId(2, 1);
+    private static final String SAME_SHARD = accountId(1, 2);
+    private static final String REVERSED = accountId(1, 3);
+    private static final String BATCH_FROM_1 = accountId(1, 4);
+    private static final String BATCH_FROM_2 = accountId(2, 4);
+
+    private static Shards shards;
+
+    @BeforeClass
+    public static void seed() {
+        shards = APP.<BankingApplication>getApplication().getShards();
+        assertEquals(3, shards.count());
+        insertAccount(DEBITED, 10_000);
+        insertAccount(CREDITED, 0);
+        insertAccount(SAME_SHARD, 0);
+        insertAccount(REVERSED, 10_000);
+        insertAccount(BATCH_FROM_1, 10_000);
+        insertAccount(BATCH_FROM_2, 10_000);
+    }
+
+    // the type, the two hex digits of the shard, then the 25 characters of a generated id
+    private static String accountId(int shard, int n) {
+        return String.format("SA%02x%025d", shard, n);
+    }
+
+    private static void insertAccount(String id, long balance) {
+        Account account = new Account();
+        account.setId(id);
+        account.setAccountType(Account.AccountType.Savings);
+        account.setCreatedOn(new Date());
+        account.setBalance(balance);
+        insert(shards.shardOf(id), account);
+    }
+
+    private static void insert(int shard, Object entity) {
+        StatelessSession session = shards.sessionFactory(shard).openStatelessSession();
+        try {
+            org.hibernate.Transaction transaction = session.beginTransaction();
+            session.insert(entity);
+            transaction.commit();
+        } finally {
+            session.close();
+        }
+    }
+
+    private static <T> T find(int shard, Class<T> type, String id) {
+        Session session = shards.sessionFactory(shard).openSession();
+        try {
+            return session.get(type, id);
+        } finally {
+            session.close();
+        }
+    }
+
+    private static void await(String what, Supplier<Boolean> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.get()) {
+            assertTrue("Timed out waiting for " + what, System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    private static Response transfer(String fromAccountId, String toAccountId, String ammount) {
+        return APP.client()
+                .target("http://localhost:" + APP.getLocalPort() + "/api/transactions")
+                .request()
+                .post(Entity.json(transferDetails(fromAccountId, toAccountId, ammount)));
+    }
+
+    @Test
+    public void accountIdsPlaceTheAccountsOnTheirShards() {
+        assertEquals(1, shards.shardOf(DEBITED));
+        assertEquals(2, shards.shardOf(CREDITED));
+        assertNotNull(find(1, Account.class, DEBITED));
+        assertNull(find(0, Account.class, DEBITED));
+        assertNull(find(1, Account.class, CREDITED));
+    }
+
+    @Test
+    public void transferBetweenShardsIsCreditedByTheRelay() throws InterruptedException {
+        assertEquals(204, transfer(DEBITED, CREDITED, "12.50").getStatus());
+        // the debit is committed with the transfer
+        assertEquals(10_000 - 1_250, find(1, Account.class, DEBITED).getBalance());
+
+        await("the credit", () -> find(2, Account.class, CREDITED).getBalance() == 1_250);
+        Session session = shards.sessionFactory(1).openSession();
+        try {
+            assertEquals(0L, (long) session
+                    .createQuery("select count(p) from PendingCredit p", Long.class)
+                    .getSingleResult());
+        } finally {
+            session.close();
+        }
+    }
+
+    @Test
+    public void batchIsCommittedOnTheShardOfEveryDebitedAccount() {
+        List<Map<String, Object>> batch = ImmutableList.of(
+                transferDetails(BATCH_FROM_1, BATCH_FROM_2, "1.00"),
+                transferDetails(BATCH_FROM_2, BATCH_FROM_1, "2.00"),
+                transferDetails(BATCH_FROM_1, BATCH_FROM_2, "1000.00"),
+                transferDetails(BATCH_FROM_2, accountId(2, 97), "1.00"));
+        List<Map<String, Object>> results = APP.client()
+                .target("http://localhost:" + APP.getLocalPort() + "/api/transactions/batch")
+                .request()
+                .post(Entity.json(batch))
+                .readEntity(new GenericType<List<Map<String, Object>>>() {});
+        assertEquals(4, results.size());
+        assertEquals("SUCCESS", results.get(0).get("status"));
+        assertEquals("SUCCESS", results.get(1).get("status"));
+        // rejected, without holding up the others
+        assertEquals("FAILED", results.get(2).get("status"));
+        assertEquals("FAILED", results.get(3).get("status"));
+        // each debit committed on the shard of its account, the credits are left to the relay
+        assertEquals(100, debited(BATCH_FROM_1));
+        assertEquals(200, debited(BATCH_FROM_2));
+    }
+
+    private static long debited(String accountId) {
+        Session session = shards.sessionFactory(shards.shardOf(accountId)).openSession();
+        try {
+            return session
+                    .createQuery("select coalesce(sum(t.ammount), 0) from Transaction t "
+                            + "where t.account.id = :accountId and t.transactionType = :type", Long.class)
+                    .setParameter("accountId", accountId)
+                    .setParameter("type", Transaction.TransactionType.DEBIT)
+                    .getSingleResult();
+        } finally {
+            session.close();
+        }
+    }
+
+    private static Map<String, Object> transferDetails(String fromAccountId, String toAccountId, String ammount) {
+        return ImmutableMap.of(
+                "fromAccountId", fromAccountId,
+                "toAccountId", toAccountId,
+                "ammount", ammount);
+    }
+
+    @Test
+    public void transferWithinAShardIsCreditedAtOnce() {
+        long before = find(1, Account.class, DEBITED).getBalance();
+        assertEquals(204, transfer(DEBITED, SAME_SHARD, "1.00").getStatus());
+        assertEquals(before - 100, find(1, Account.class, DEBITED).getBalance());
+        assertEquals(100, find(1, Account.class, SAME_SHARD).getBalance());
+    }
+
+    @Test
+    public void creditToAMissingAccountIsReversedAfterTheLastAttempt() throws InterruptedException {
+        // the debit of 5.00 was committed, the credited account is gone since
+        insert(1, new PendingCredit(TransferService.CREDIT_PREFIX + "0000000000000000000000001",
+                REVERSED, accountId(2, 99), 500, new Date()));
+
+        String id = TransferService.CREDIT_PREFIX + "0000000000000000000000001";
+        await("the reversal", () -> find(1, PendingCredit.class, id).getStatus() != PendingCredit.Status.PENDING);
+        PendingCredit credit = find(1, PendingCredit.class, id);
+        assertEquals(PendingCredit.Status.REVERSED, credit.getStatus());
+        assertEquals(3, credit.getAttempts());
+        assertNotNull(credit.getLastError());
+        assertEquals(10_000 + 500, find(1, Account.class, REVERSED).getBalance());
+        Transaction reversal = find(1, Transaction.class, TransferService.REVERSAL_PREFIX + "0000000000000000000000001");
+        assertNotNull(reversal);
+        assertEquals(500, reversal.getAmmount());
+    }
+
+    @Test
+    public void creditBetweenMissingAccountsFails() throws InterruptedException {
+        String id = TransferService.CREDIT_PREFIX + "0000000000000000000000002";
+        insert(1, new PendingCredit(id, accountId(1, 98), accountId(2, 98), 500, new Date()));
+
+        await("giving up", () -> find(1, PendingCredit.class, id).getStatus() != PendingCredit.Status.PENDING);
+        assertEquals(PendingCredit.Status.FAILED, find(1, PendingCredit.class, id).getStatus());
+    }
+}
@@ -0,0 +1,235 @@
+package com.bank.app.service;
+
+import com.bank.app.audit.AuditLog;
+import com.bank.app.config.AuditConfig;
+import com.bank.app.db.AccountDAO;
+import com.bank.app.db.Shards;
+import com.bank.app.model.TransferDetails;
+import com.bank.app.model.TransferResult;
+import com.google.common.collect.ImmutableList;
+import io.dropwizard.util.Duration;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ServiceUnavailableException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Grouping and responses of the pipeline, with a transfer service which posts nothing and answers
+ * every group as told.
+ */
+public class TransferPipelineTest {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final ExecutorService responder = Executors.newSingleThreadExecutor();
+    private final BlockingQueue<List<TransferDetails>> groups = new LinkedBlockingQueue<>();
+    // the outcome of the next groups, every transfer succeeds by default
+    private volatile Function<List<TransferDetails>, List<TransferResult>> outcome = TransferPipelineTest::succeeded;
+    private TransferPipeline pipeline;
+
+    private final TransferService transferService = new TransferService(
+            new AccountDAO(noSessionFactory(), new Shards(ImmutableList.of(noSessionFactory())), null),
+            null, null, null, null, null, 16, 100,
+            new AuditLog(new AuditConfig())) {
+        @Override
+        public List<TransferResult> transferGroup(List<TransferDetails> transfers) {
+            groups.add(new ArrayList<>(transfers));
+            return outcome.apply(transfers);
+        }
+    };
+
+    private static SessionFactory noSessionFactory() {
+        return (SessionFactory) Proxy.newProxyInstance(TransferPipelineTest.class.getClassLoader(),
+                new Class<?>[]{SessionFactory.class},
+                (proxy, method, args) -> {
+                    throw new UnsupportedOperationException("No database in the pipeline tests: " + method.getName());
+                });
+    }
+
+    private static List<TransferResult> succeeded(List<TransferDetails> transfers) {
+        List<TransferResult> results = new ArrayList<>();
+        for (int i = 0; i < transfers.size(); i++) {
+            results.add(TransferResult.builder().index(i).status(TransferResult.Status.SUCCESS).build());
+        }
+        return results;
+    }
+
+    private static TransferDetails transferDetails(int n) {
+        return new TransferDetails(String.format("SA%025d", n), String.format("SA%025d", n + 1), 100);
+    }
+
+    private void start(int capacity, int groupSize, Duration groupInterval) {
+        pipeline = new TransferPipeline(transferService, responder, capacity, groupSize, groupInterval);
+        pipeline.start();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (pipeline != null)
+            pipeline.stop();
+        responder.shutdownNow();
+    }
+
+    private static TransferResult result(CompletableFuture<TransferResult> future) throws Exception {
+        return future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static Throwable failure(CompletableFuture<TransferResult> future) throws Exception {
+        try {
+            future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        throw new AssertionError("The transfer succeeded");
+    }
+
+    private List<TransferDetails> nextGroup() throws InterruptedException {
+        List<TransferDetails> group = groups.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull("No group was posted", group);
+        return group;
+    }
+
+    @Test
+    public void groupIsClosedWhenItHoldsGroupSizeTransfers() throws Exception {
+        // the interval alone would hold the group far beyond the timeout
+        start(100, 3, Duration.minutes(1));
+        List<CompletableFuture<TransferResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(pipeline.submit(transferDetails(i)));
+        }
+        List<TransferDetails> group = nextGroup();
+        assertEquals(3, group.size());
+        for (int i = 0; i < 3; i++) {
+            // in arrival order
+            assertEquals(transferDetails(i).getFromAccountId(), group.get(i).getFromAccountId());
+            assertEquals(TransferResult.Status.SUCCESS, result(futures.get(i)).getStatus());
+        }
+    }
+
+    @Test
+    public void groupIsClosedAfterTheGroupInterval() throws Exception {
+        start(100, 100, Duration.milliseconds(200));
+        long start = System.nanoTime();
+        CompletableFuture<TransferResult> first = pipeline.submit(transferDetails(0));
+        CompletableFuture<TransferResult> second = pipeline.submit(transferDetails(1));
+        assertEquals(2, nextGroup().size());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 200);
+        assertEquals(TransferResult.Status.SUCCESS, result(first).getStatus());
+        assertEquals(TransferResult.Status.SUCCESS, result(second).getStatus());
+    }
+
+    @Test
+    public void transferIsRefusedWhenTheBufferIsFull() throws Exception {
+        CountDownLatch posting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        outcome = transfers -> {
+            posting.countDown();
+            try {
+                release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return succeeded(transfers);
+        };
+        start(2, 1, Duration.milliseconds(10));
+        // taken by the sequencer, which is held in the transfer service
+        CompletableFuture<TransferResult> posted = pipeline.submit(transferDetails(0));
+        assertTrue(posting.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        CompletableFuture<TransferResult> queued1 = pipeline.submit(transferDetails(1));
+        CompletableFuture<TransferResult> queued2 = pipeline.submit(transferDetails(2));
+        CompletableFuture<TransferResult> refused = pipeline.submit(transferDetails(3));
+        assertEquals(2, pipeline.getQueueSize());
+        // at once, without waiting for room in the buffer
+        assertTrue(refused.isDone());
+        assertTrue(failure(refused) instanceof ServiceUnavailableException);
+
+        release.countDown();
+        assertEquals(TransferResult.Status.SUCCESS, result(posted).getStatus());
+        assertEquals(TransferResult.Status.SUCCESS, result(queued1).getStatus());
+        assertEquals(TransferResult.Status.SUCCESS, result(queued2).getStatus());
+    }
+
+    @Test
+    public void transferIsRefusedWhenThePipelineIsNotRunning() throws Exception {
+        TransferPipeline stopped = new TransferPipeline(transferService, responder, 10, 1, Duration.milliseconds(10));
+        assertTrue(failure(stopped.submit(transferDetails(0))) instanceof ServiceUnavailableException);
+    }
+
+    @Test
+    public void failedGroupFailsOnlyItsOwnTransfers() throws Exception {
+        RuntimeException failed = new IllegalStateException("The database went away");
+        outcome = transfers -> {
+            // the next groups go through
+            outcome = TransferPipelineTest::succeeded;
+            throw failed;
+        };
+        start(100, 2, Duration.minutes(1));
+        CompletableFuture<TransferResult> first = pipeline.submit(transferDetails(0));
+        CompletableFuture<TransferResult> second = pipeline.submit(transferDetails(1));
+        CompletableFuture<TransferResult> third = pipeline.submit(transferDetails(2));
+        CompletableFuture<TransferResult> fourth = pipeline.submit(transferDetails(3));
+
+        assertEquals(failed, failure(first));
+        assertEquals(failed, failure(second));
+        assertEquals(TransferResult.Status.SUCCESS, result(third).getStatus());
+        assertEquals(TransferResult.Status.SUCCESS, result(fourth).getStatus());
+        assertEquals(2, nextGroup().size());
+        assertEquals(2, nextGroup().size());
+    }
+
+    @Test
+    public void everyTransferOfAGroupGetsItsOwnOutcome() throws Exception {
+        outcome = transfers -> ImmutableList.of(
+                TransferResult.builder().index(0).status(TransferResult.Status.SUCCESS).build(),
+                TransferResult.builder().index(1).status(TransferResult.Status.FAILED).message("Insufficient balance").build(),
+                TransferResult.builder().index(2).status(TransferResult.Status.ERROR).message("Not committed").build());
+        start(100, 3, Duration.minutes(1));
+        CompletableFuture<TransferResult> succeeded = pipeline.submit(transferDetails(0));
+        CompletableFuture<TransferResult> rejected = pipeline.submit(transferDetails(1));
+        CompletableFuture<TransferResult> notCommitted = pipeline.submit(transferDetails(2));
+
+        assertEquals(TransferResult.Status.SUCCESS, result(succeeded).getStatus());
+        // 400 for a transfer refused on its own account, 503 for one whose shard did not commit
+        Throwable refusal = failure(rejected);
+        assertTrue(refusal instanceof BadRequestException);
+        assertEquals("Insufficient balance", refusal.getMessage());
+        assertTrue(failure(notCommitted) instanceof ServiceUnavailableException);
+    }
+
+    @Test
+    public void responsesAreCompletedOnTheSequencerWhenTheResponderRefusesThem() throws Exception {
+        pipeline = new TransferPipeline(transferService,
+                command -> {
+                    throw new RejectedExecutionException("Shutting down");
+                },
+                100, 1, Duration.milliseconds(10));
+        pipeline.start();
+        CompletableFuture<TransferResult> future = pipeline.submit(transferDetails(0));
+        assertEquals(TransferResult.Status.SUCCESS, result(future).getStatus());
+
+        // and the sequencer carries on with the next groups
+        assertEquals(TransferResult.Status.SUCCESS, result(pipeline.submit(transferDetails(1))).getStatus());
+        assertFalse(future.isCompletedExceptionally());
+    }
+}